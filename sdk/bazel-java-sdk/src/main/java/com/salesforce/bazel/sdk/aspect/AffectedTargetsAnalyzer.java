@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.salesforce.bazel.sdk.graph.BazelDependencyGraph;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.util.BazelConstants;
+
+/**
+ * Answers "which targets are affected by these changes" from the aspect data and the dependency graph built from it
+ * (see AspectDependencyGraphFactory), without running 'bazel query rdeps()'.
+ * <p>
+ * Changed files are mapped to their owning targets using the sources listed in the aspect data. A changed BUILD file
+ * affects every target in its package. The affected targets are then the transitive reverse dependencies of the owning
+ * targets in the graph. A changed file that is not a source of any target (e.g. a file that was added after the aspects
+ * were run) is owned by the targets of its package, which is found by walking up to the closest BUILD file. The reverse
+ * dependencies of each owning label are memoized, so repeated questions about the same area of the workspace are
+ * answered from memory.
+ * <p>
+ * An analyzer works on a snapshot: create a new one when the aspect data or the graph change.
+ */
+public class AffectedTargetsAnalyzer {
+    private static final LogHelper LOG = LogHelper.log(AffectedTargetsAnalyzer.class);
+
+    private final BazelDependencyGraph graph;
+    private final boolean includeTarget;
+    private final File workspaceRootDirectory;
+
+    // workspace relative source path -> labels of the targets that consume it
+    private final Map<String, Set<String>> sourceOwners = new HashMap<>();
+
+    // package path (e.g. a/b/c) -> labels of the targets in the package
+    private final Map<String, Set<String>> packageTargets = new HashMap<>();
+
+    // graph label -> affected labels
+    private final Map<String, Set<String>> affectedLabelsCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param aspects
+     *            the aspect data that the graph was built from
+     * @param graph
+     *            the dependency graph
+     * @param includeTarget
+     *            the value that was passed to AspectDependencyGraphFactory.build(); if false the graph labels are
+     *            packages, and the results of this analyzer are packages as well
+     */
+    public AffectedTargetsAnalyzer(AspectTargetInfos aspects, BazelDependencyGraph graph, boolean includeTarget) {
+        this(aspects, graph, includeTarget, null);
+    }
+
+    /**
+     * @param aspects
+     *            the aspect data that the graph was built from
+     * @param graph
+     *            the dependency graph
+     * @param includeTarget
+     *            the value that was passed to AspectDependencyGraphFactory.build(); if false the graph labels are
+     *            packages, and the results of this analyzer are packages as well
+     * @param workspaceRootDirectory
+     *            the workspace root, used to find the BUILD file that owns a changed file that is not a source of any
+     *            target; if null, the closest package that has targets in the aspect data is used instead
+     */
+    public AffectedTargetsAnalyzer(AspectTargetInfos aspects, BazelDependencyGraph graph, boolean includeTarget,
+            File workspaceRootDirectory) {
+        this.graph = graph;
+        this.includeTarget = includeTarget;
+        this.workspaceRootDirectory = workspaceRootDirectory;
+
+        for (AspectTargetInfo info : aspects.getTargetInfos()) {
+            String label = toGraphLabel(info.getLabelPath());
+            for (String source : info.getSources()) {
+                sourceOwners.computeIfAbsent(normalizePath(source), k -> new LinkedHashSet<>()).add(label);
+            }
+            packageTargets.computeIfAbsent(info.getLabel().getPackagePath(), k -> new LinkedHashSet<>()).add(label);
+        }
+    }
+
+    /**
+     * Maps each changed item to the labels that own it. An item is either a label (e.g. //a/b/c:d) or a workspace
+     * relative file path (e.g. a/b/c/src/main/java/Foo.java). A file that is not a source of any target is owned by the
+     * targets of its enclosing package.
+     */
+    public Set<String> findOwningLabels(Collection<String> changedFilesOrLabels) {
+        Set<String> owningLabels = new LinkedHashSet<>();
+        for (String changed : changedFilesOrLabels) {
+            if (changed.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)
+                    || changed.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+                owningLabels.add(toGraphLabel(changed));
+                continue;
+            }
+
+            String path = normalizePath(changed);
+            Set<String> owners = sourceOwners.get(path);
+            if (owners != null) {
+                owningLabels.addAll(owners);
+                continue;
+            }
+            // a BUILD file affects its own package, any other file the targets of its enclosing package; this catches
+            // new files, and files that are read by a target without being listed as a source (e.g. resources)
+            owners = packageTargets.get(findEnclosingPackage(path));
+            if (owners != null) {
+                owningLabels.addAll(owners);
+                continue;
+            }
+            LOG.debug("Changed file {} is not in a package with targets, it does not affect the graph", changed);
+        }
+        return owningLabels;
+    }
+
+    /**
+     * Computes the labels affected by the passed changes: the owning labels of the changed files and labels, plus
+     * every label that depends on them directly or transitively.
+     */
+    public Set<String> findAffectedLabels(Collection<String> changedFilesOrLabels) {
+        Set<String> affectedLabels = new LinkedHashSet<>();
+        for (String owningLabel : findOwningLabels(changedFilesOrLabels)) {
+            affectedLabels.addAll(affectedLabelsCache.computeIfAbsent(owningLabel,
+                k -> Collections.unmodifiableSet(graph.getAffectedLabels(Collections.singleton(k)))));
+        }
+        return affectedLabels;
+    }
+
+    // INTERNALS
+
+    private String toGraphLabel(String label) {
+        return includeTarget ? label : AspectDependencyGraphFactory.stripTargetFromLabel(label);
+    }
+
+    // walks up from the directory of the file to the closest package
+    private String findEnclosingPackage(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        String directory = lastSlash == -1 ? "" : path.substring(0, lastSlash);
+        while (!isPackage(directory)) {
+            if (directory.isEmpty()) {
+                return null;
+            }
+            lastSlash = directory.lastIndexOf('/');
+            directory = lastSlash == -1 ? "" : directory.substring(0, lastSlash);
+        }
+        return directory;
+    }
+
+    private boolean isPackage(String directory) {
+        if (workspaceRootDirectory == null) {
+            return packageTargets.containsKey(directory);
+        }
+        File packageDirectory =
+                directory.isEmpty() ? workspaceRootDirectory : new File(workspaceRootDirectory, directory);
+        for (String buildFileName : BazelConstants.BUILD_FILE_NAMES) {
+            if (new File(packageDirectory, buildFileName).isFile()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalizePath(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+        return normalized;
+    }
+}
@@ -82,7 +82,7 @@ public class AspectDependencyGraphFactory {
         return graph;
     }
 
-    private static String stripTargetFromLabel(String labelStr) {
+    static String stripTargetFromLabel(String labelStr) {
         BazelLabel label = new BazelLabel(labelStr);
         if (label.isExternalRepoLabel()) {
             // this is an external workspace ref, we do not change these since they are correct as-is
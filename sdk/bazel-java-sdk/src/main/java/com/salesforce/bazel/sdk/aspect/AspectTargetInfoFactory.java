@@ -34,8 +34,10 @@
 package com.salesforce.bazel.sdk.aspect;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -121,8 +123,8 @@ public class AspectTargetInfoFactory {
 
         if (aspectFile.exists()) {
             JSONObject jsonObject = null;
-            try {
-                jsonObject = (JSONObject) jsonParser.parse(new FileReader(aspectFile));
+            try (Reader reader = Files.newBufferedReader(aspectFile.toPath(), StandardCharsets.UTF_8)) {
+                jsonObject = (JSONObject) jsonParser.parse(reader);
             } catch (Exception je) {
                 LOG.error("JSON file {} has illegal characters: {}", aspectFile.getAbsolutePath(),
                     aspectFile.getAbsolutePath());
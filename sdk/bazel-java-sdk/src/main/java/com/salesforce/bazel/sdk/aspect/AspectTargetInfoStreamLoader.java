@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Loads aspect json files as their paths are discovered, instead of waiting for the full list. The typical producer is
+ * the output line filter of the aspect 'bazel build' command, which sees each path as soon as Bazel prints it. Parsing
+ * happens on a shared, bounded worker pool, so by the time Bazel finishes most of the files are already loaded.
+ * <p>
+ * When the pool queue is full, the submitting thread parses the file itself. This throttles the producer instead of
+ * letting the backlog of paths grow without bounds.
+ * <p>
+ * A loader instance is used for a single load operation: submit paths, then call {@link #awaitResults()} once.
+ */
+public class AspectTargetInfoStreamLoader {
+    private static final LogHelper LOG = LogHelper.log(AspectTargetInfoStreamLoader.class);
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static final ThreadPoolExecutor parserPool;
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        parserPool = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "bzljavasdk-aspect-parser-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        parserPool.allowCoreThreadTimeOut(true);
+    }
+
+    private final Set<String> submittedPaths = ConcurrentHashMap.newKeySet();
+    private final List<Future<AspectTargetInfo>> pendingLoads = new ArrayList<>();
+
+    /**
+     * Queues the aspect json file at the passed path for parsing. Paths that were already submitted to this loader are
+     * ignored, so it is safe to submit the same path again after the command completes.
+     */
+    public void submit(String aspectFilePath) {
+        if ((aspectFilePath == null) || aspectFilePath.isEmpty()) {
+            return;
+        }
+        if (!submittedPaths.add(aspectFilePath)) {
+            return;
+        }
+        File aspectFile = new File(aspectFilePath);
+        Future<AspectTargetInfo> load = parserPool.submit(() -> AspectTargetInfoFactory.loadAspectFile(aspectFile));
+        synchronized (pendingLoads) {
+            pendingLoads.add(load);
+        }
+    }
+
+    /**
+     * Queues each of the passed paths for parsing.
+     */
+    public void submitAll(List<String> aspectFilePaths) {
+        for (String aspectFilePath : aspectFilePaths) {
+            submit(aspectFilePath);
+        }
+    }
+
+    /**
+     * Number of distinct paths that have been submitted to this loader.
+     */
+    public int getSubmittedCount() {
+        return submittedPaths.size();
+    }
+
+    /**
+     * Waits for all submitted files to be parsed, and returns the map of label -> {@link AspectTargetInfo}. If a file
+     * cannot be parsed, the error is rethrown here.
+     */
+    public Map<String, AspectTargetInfo> awaitResults() throws IOException, InterruptedException {
+        List<Future<AspectTargetInfo>> loads;
+        synchronized (pendingLoads) {
+            loads = new ArrayList<>(pendingLoads);
+        }
+        Map<String, AspectTargetInfo> infos = new HashMap<>();
+        for (Future<AspectTargetInfo> load : loads) {
+            AspectTargetInfo buildInfo = waitForLoad(load);
+            if (buildInfo == null) {
+                // the factory already logged the reason
+                continue;
+            }
+            String labelPath = buildInfo.getLabelPath();
+            if (labelPath != null) {
+                infos.put(labelPath, buildInfo);
+            } else {
+                // bug in the aspect parsing code
+                LOG.error("Bug in the aspect parsing code, the label is null for package path {} for aspect file {}",
+                    buildInfo.workspaceRelativePath, buildInfo.getAspectDataFile());
+            }
+        }
+        return infos;
+    }
+
+    // INTERNAL
+
+    private static AspectTargetInfo waitForLoad(Future<AspectTargetInfo> load)
+            throws IOException, InterruptedException {
+        try {
+            return load.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
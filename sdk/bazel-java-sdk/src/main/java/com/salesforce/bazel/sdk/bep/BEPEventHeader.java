@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.bep;
+
+/**
+ * The few facts about a BEP json event that are needed before deciding whether to parse it: the event type, which is
+ * the name of the first key in the "id" object, and whether the event has the lastMessage flag.
+ * <p>
+ * These are found by scanning the top level keys of the json without building a json tree. Bazel writes the "id" key
+ * first, and the values of the other keys are skipped over character by character, which is much cheaper than
+ * parsing them.
+ */
+final class BEPEventHeader {
+    final String eventType;
+    final boolean isLastMessage;
+
+    private BEPEventHeader(String eventType, boolean isLastMessage) {
+        this.eventType = eventType;
+        this.isLastMessage = isLastMessage;
+    }
+
+    /**
+     * Scans the event. Returns null if the json is not well formed enough to find the top level keys.
+     */
+    static BEPEventHeader scan(String json) {
+        int length = json.length();
+        int i = skipWhitespace(json, 0);
+        if ((i >= length) || (json.charAt(i) != '{')) {
+            return null;
+        }
+        i++;
+
+        String eventType = null;
+        boolean isLastMessage = false;
+        while (true) {
+            i = skipWhitespace(json, i);
+            if (i >= length) {
+                return null;
+            }
+            char c = json.charAt(i);
+            if (c == '}') {
+                break;
+            }
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            if (c != '"') {
+                return null;
+            }
+            int keyEnd = skipString(json, i);
+            if (keyEnd < 0) {
+                return null;
+            }
+            String key = json.substring(i + 1, keyEnd - 1);
+            i = skipWhitespace(json, keyEnd);
+            if ((i >= length) || (json.charAt(i) != ':')) {
+                return null;
+            }
+            i = skipWhitespace(json, i + 1);
+
+            if ("id".equals(key) && (i < length) && (json.charAt(i) == '{')) {
+                int typeStart = skipWhitespace(json, i + 1);
+                if ((typeStart < length) && (json.charAt(typeStart) == '"')) {
+                    int typeEnd = skipString(json, typeStart);
+                    if (typeEnd < 0) {
+                        return null;
+                    }
+                    eventType = json.substring(typeStart + 1, typeEnd - 1);
+                }
+            } else if ("lastMessage".equals(key)) {
+                isLastMessage = !json.startsWith("null", i);
+            }
+            i = skipValue(json, i);
+            if (i < 0) {
+                return null;
+            }
+        }
+        return new BEPEventHeader(eventType, isLastMessage);
+    }
+
+    // INTERNALS
+
+    private static int skipWhitespace(String json, int i) {
+        int length = json.length();
+        while ((i < length) && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index just past the closing quote of the string that starts at i, or -1.
+     */
+    private static int skipString(String json, int i) {
+        int length = json.length();
+        for (int j = i + 1; j < length; j++) {
+            char c = json.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == '"') {
+                return j + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index just past the value that starts at i, or -1.
+     */
+    private static int skipValue(String json, int i) {
+        int length = json.length();
+        if (i >= length) {
+            return -1;
+        }
+        char c = json.charAt(i);
+        if (c == '"') {
+            return skipString(json, i);
+        }
+        if ((c == '{') || (c == '[')) {
+            int depth = 0;
+            for (int j = i; j < length; j++) {
+                c = json.charAt(j);
+                if (c == '"') {
+                    j = skipString(json, j) - 1;
+                    if (j < 0) {
+                        return -1;
+                    }
+                } else if ((c == '{') || (c == '[')) {
+                    depth++;
+                } else if ((c == '}') || (c == ']')) {
+                    depth--;
+                    if (depth == 0) {
+                        return j + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+        // number, true, false, null
+        int j = i;
+        while ((j < length) && (",}] \t\r\n".indexOf(json.charAt(j)) < 0)) {
+            j++;
+        }
+        return j;
+    }
+}
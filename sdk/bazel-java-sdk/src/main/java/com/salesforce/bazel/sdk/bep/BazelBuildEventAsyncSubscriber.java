@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.bep;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPProgressEvent;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Wraps a subscriber so that events are delivered to it on an executor, instead of on the thread that reads the BEP
+ * file. Each wrapped subscriber has its own bounded queue, so a slow subscriber does not stall delivery to the others.
+ * What happens when the queue is full is set by the {@link BazelBuildEventOverflowPolicy}.
+ * <p>
+ * Events are delivered to the wrapped subscriber in order, and by one thread at a time. If the wrapped subscriber
+ * implements {@link BazelBuildEventBatchSubscriber}, the queued events are delivered in batches.
+ * <p>
+ * Subscribe the wrapper to the stream, in place of your subscriber:
+ *
+ * <pre>
+ * stream.subscribe(new BazelBuildEventAsyncSubscriber(mySubscriber, 1000, BazelBuildEventOverflowPolicy.BLOCK));
+ * </pre>
+ */
+public class BazelBuildEventAsyncSubscriber implements BazelBuildEventSubscriber {
+    private static final LogHelper LOG = LogHelper.log(BazelBuildEventAsyncSubscriber.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    // shared by all async subscribers that are not given an executor, the threads exit when idle
+    private static final ExecutorService sharedExecutor;
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        sharedExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "bzljavasdk-bep-dispatch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private final BazelBuildEventSubscriber subscriber;
+    private final int capacity;
+    private final BazelBuildEventOverflowPolicy overflowPolicy;
+    private final Executor executor;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final ArrayDeque<BEPEvent> queue = new ArrayDeque<>();
+
+    // true while a drain task is scheduled or running, guarded by lock
+    private boolean draining = false;
+    private long droppedEventCount = 0;
+
+    public BazelBuildEventAsyncSubscriber(BazelBuildEventSubscriber subscriber) {
+        this(subscriber, DEFAULT_QUEUE_CAPACITY, BazelBuildEventOverflowPolicy.BLOCK, sharedExecutor);
+    }
+
+    public BazelBuildEventAsyncSubscriber(BazelBuildEventSubscriber subscriber, int capacity,
+            BazelBuildEventOverflowPolicy overflowPolicy) {
+        this(subscriber, capacity, overflowPolicy, sharedExecutor);
+    }
+
+    /**
+     * @param executor
+     *            runs the deliveries. With the BLOCK and COALESCE_PROGRESS policies, this must not be the thread that
+     *            publishes the events, else a full queue would never drain.
+     */
+    public BazelBuildEventAsyncSubscriber(BazelBuildEventSubscriber subscriber, int capacity,
+            BazelBuildEventOverflowPolicy overflowPolicy, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be positive.");
+        }
+        this.subscriber = subscriber;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = executor;
+    }
+
+    /**
+     * The most events that are passed to a {@link BazelBuildEventBatchSubscriber} in one call.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Queues the event for delivery. Called by the stream.
+     */
+    @Override
+    public void onEvent(BEPEvent event) {
+        lock.lock();
+        try {
+            while (queue.size() >= capacity) {
+                if (makeRoom()) {
+                    continue;
+                }
+                // only a drain task makes room, a previous scheduling failure left none behind
+                if (!draining && !scheduleDrain()) {
+                    LOG.error("Could not deliver the queued BEP events, event {} is dropped.", event.getIndex());
+                    droppedEventCount++;
+                    return;
+                }
+                notFull.await();
+            }
+            queue.addLast(event);
+            if (!draining) {
+                scheduleDrain();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            LOG.info("Interrupted while waiting to queue BEP event {}, the event is dropped.", event.getIndex());
+            droppedEventCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every queued event has been delivered. Returns false if the timeout elapsed first.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (draining) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = idle.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of events that were discarded by the overflow policy.
+     */
+    public long getDroppedEventCount() {
+        lock.lock();
+        try {
+            return droppedEventCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public BazelBuildEventSubscriber getSubscriber() {
+        return subscriber;
+    }
+
+    // INTERNALS
+
+    // called with the lock held, returns false if the caller must wait for the subscriber to catch up
+    private boolean makeRoom() {
+        switch (overflowPolicy) {
+        case DROP_OLDEST:
+            queue.pollFirst();
+            droppedEventCount++;
+            return true;
+        case COALESCE_PROGRESS:
+            Iterator<BEPEvent> iter = queue.iterator();
+            while (iter.hasNext()) {
+                if (BEPProgressEvent.NAME.equals(iter.next().getEventType())) {
+                    iter.remove();
+                    droppedEventCount++;
+                    return true;
+                }
+            }
+            return false;
+        default:
+            return false;
+        }
+    }
+
+    // called with the lock held, returns false if the executor did not accept the drain task
+    private boolean scheduleDrain() {
+        draining = true;
+        try {
+            executor.execute(this::drain);
+            return true;
+        } catch (RuntimeException anyE) {
+            // executor was shut down, or rejected the task; the events stay queued until the next event retries
+            draining = false;
+            idle.signalAll();
+            LOG.error("Could not schedule the delivery of BEP events to subscriber [{}]", anyE, subscriber);
+            return false;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            List<BEPEvent> batch = new ArrayList<>();
+            lock.lock();
+            try {
+                int batchSize = subscriber instanceof BazelBuildEventBatchSubscriber ? maxBatchSize : 1;
+                while ((batch.size() < batchSize) && !queue.isEmpty()) {
+                    batch.add(queue.pollFirst());
+                }
+                if (batch.isEmpty()) {
+                    draining = false;
+                    idle.signalAll();
+                    return;
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            deliver(batch);
+        }
+    }
+
+    private void deliver(List<BEPEvent> batch) {
+        try {
+            if (subscriber instanceof BazelBuildEventBatchSubscriber) {
+                ((BazelBuildEventBatchSubscriber) subscriber).onEvents(batch);
+            } else {
+                subscriber.onEvent(batch.get(0));
+            }
+        } catch (RuntimeException anyE) {
+            // one bad event should not stop the delivery of the rest
+            LOG.error("BEP subscriber [{}] failed to process events", anyE, subscriber);
+        }
+    }
+}
@@ -34,10 +34,11 @@
 package com.salesforce.bazel.sdk.bep;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.salesforce.bazel.sdk.bep.event.BEPEvent;
 
@@ -46,12 +47,13 @@ import com.salesforce.bazel.sdk.bep.event.BEPEvent;
  */
 public abstract class BazelBuildEventStream {
 
-    List<BazelBuildEventSubscriber> subscribeAll = new ArrayList<>();
+    // subscribers can be added while the stream is publishing on another thread
+    List<BazelBuildEventSubscriber> subscribeAll = new CopyOnWriteArrayList<>();
 
-    Map<String, List<BazelBuildEventSubscriber>> subscribeFiltered = new HashMap<>();
-    List<BazelBuildEventSubscriber> subscribeLastMessage = new ArrayList<>();
+    Map<String, List<BazelBuildEventSubscriber>> subscribeFiltered = new ConcurrentHashMap<>();
+    List<BazelBuildEventSubscriber> subscribeLastMessage = new CopyOnWriteArrayList<>();
 
-    boolean paused = false;
+    volatile boolean paused = false;
 
     // PUBLIC API
 
@@ -79,11 +81,8 @@ public abstract class BazelBuildEventStream {
             subscribeAll.add(subscriber);
         } else {
             for (String eventType : eventTypes) {
-                List<BazelBuildEventSubscriber> subscribers = subscribeFiltered.get(eventType);
-                if (subscribers == null) {
-                    subscribers = new ArrayList<>();
-                    subscribeFiltered.put(eventType, subscribers);
-                }
+                List<BazelBuildEventSubscriber> subscribers =
+                        subscribeFiltered.computeIfAbsent(eventType, t -> new CopyOnWriteArrayList<>());
                 subscribers.add(subscriber);
             }
 
@@ -93,6 +92,23 @@ public abstract class BazelBuildEventStream {
         }
     }
 
+    /**
+     * Subscribe to particular BEP events, with the events delivered on a separate thread. This prevents a slow
+     * subscriber from delaying the delivery of events to the other subscribers, and from delaying the reading of the
+     * BEP file. See {@link BazelBuildEventAsyncSubscriber} for the options.
+     *
+     * @param overflowPolicy
+     *            what to do if the subscriber falls behind and its queue fills up
+     * @return the wrapper that delivers the events to your subscriber
+     */
+    public BazelBuildEventAsyncSubscriber subscribeAsync(BazelBuildEventSubscriber subscriber, Set<String> eventTypes,
+            boolean matchLastMessage, BazelBuildEventOverflowPolicy overflowPolicy) {
+        BazelBuildEventAsyncSubscriber asyncSubscriber = new BazelBuildEventAsyncSubscriber(subscriber,
+                BazelBuildEventAsyncSubscriber.DEFAULT_QUEUE_CAPACITY, overflowPolicy);
+        subscribe(asyncSubscriber, eventTypes, matchLastMessage);
+        return asyncSubscriber;
+    }
+
     /**
      * API to pause monitoring the Bazel build.
      */
@@ -40,6 +40,7 @@ import java.util.Set;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 import com.salesforce.bazel.sdk.bep.event.BEPBuildFinishedEvent;
 import com.salesforce.bazel.sdk.bep.event.BEPBuildMetricsEvent;
@@ -110,10 +111,43 @@ public class BazelBuildEventTypeManager {
 
     /**
      * Normally called by a BazelBuildEventsStream while loading an event json.
+     * <p>
+     * The json is only scanned for its event type here. Events of types that the SDK does not recognize are replaced
+     * by a placeholder without parsing them, and recognized events parse their payload when it is first accessed.
      */
     public static BEPEvent parseEvent(String json, int index) {
         BEPEvent event = null;
 
+        try {
+            BEPEventHeader header = BEPEventHeader.scan(json);
+            if (header == null) {
+                // let the json parser report the problem
+                return parseEventEagerly(json, index);
+            }
+            if ((header.eventType != null) && eventTypes.contains(header.eventType)) {
+                // this is a supported type in the SDK
+                event = createEvent(header.eventType, json, index, header.isLastMessage);
+            }
+            if (event == null) {
+                // placeholder event, having this in the list makes it possible to skip reparsing
+                // lines that were seen in the last iteration of this file by keeping the file lines/events
+                // lists in sync; it does not hold on to the json
+                event = createEvent(EVENTTYPE_IGNORED, null, index, header.isLastMessage);
+            }
+        } catch (Exception anyE) {
+            LOG.error("Error parsing json BEP event [{}]", anyE, json);
+            return null;
+        }
+
+        return event;
+    }
+
+    /**
+     * Parses the full json tree of the event up front. This is the fallback if the json cannot be scanned.
+     */
+    static BEPEvent parseEventEagerly(String json, int index) {
+        BEPEvent event = null;
+
         try {
             JSONObject eventObject = (JSONObject) new JSONParser().parse(json);
             JSONObject id = (JSONObject) eventObject.get("id");
@@ -131,9 +165,6 @@ public class BazelBuildEventTypeManager {
                 }
             }
             if (event == null) {
-                // placeholder event, having this in the list makes it possible to skip reparsing
-                // lines that were seen in the last iteration of this file by keeping the file lines/events
-                // lists in sync
                 event = createEvent(EVENTTYPE_IGNORED, json, index, null);
             }
         } catch (Exception anyE) {
@@ -158,4 +189,27 @@ public class BazelBuildEventTypeManager {
         }
         return event;
     }
+
+    /**
+     * Creates an event object that parses its payload on first access. Resolvers that do not support that are given
+     * the parsed json instead.
+     */
+    static BEPEvent createEvent(String eventType, String rawEvent, int index, boolean isLastMessage)
+            throws ParseException {
+        JSONObject eventObject = null;
+
+        for (BazelBuildEventTypeResolver resolver : resolvers) {
+            BEPEvent event = resolver.createLazyEvent(eventType, rawEvent, index, isLastMessage);
+            if ((event == null) && (rawEvent != null)) {
+                if (eventObject == null) {
+                    eventObject = (JSONObject) new JSONParser().parse(rawEvent);
+                }
+                event = resolver.createEvent(eventType, rawEvent, index, eventObject);
+            }
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
 }
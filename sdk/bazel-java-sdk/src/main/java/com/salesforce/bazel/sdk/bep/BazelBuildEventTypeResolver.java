@@ -51,4 +51,13 @@ public interface BazelBuildEventTypeResolver {
      */
     BEPEvent createEvent(String eventType, String rawEvent, int index, JSONObject eventObject);
 
+    /**
+     * Create the event object without parsing the json, the event parses its payload when it is first accessed. The
+     * rawEvent is null for ignored events. Return null if your resolver does not support this, and createEvent() will
+     * be called with the parsed json instead.
+     */
+    default BEPEvent createLazyEvent(String eventType, String rawEvent, int index, boolean isLastMessage) {
+        return null;
+    }
+
 }
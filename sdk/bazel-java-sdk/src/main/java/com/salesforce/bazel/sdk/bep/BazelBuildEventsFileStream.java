@@ -34,13 +34,13 @@
 package com.salesforce.bazel.sdk.bep;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import com.salesforce.bazel.sdk.bep.event.BEPEvent;
 import com.salesforce.bazel.sdk.bep.file.BEPFileContents;
 import com.salesforce.bazel.sdk.bep.file.BEPFileParser;
 import com.salesforce.bazel.sdk.bep.file.BEPMonitoredFile;
+import com.salesforce.bazel.sdk.bep.file.BEPRetentionPolicy;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 
 /**
@@ -63,7 +63,9 @@ import com.salesforce.bazel.sdk.logging.LogHelper;
 public class BazelBuildEventsFileStream extends BazelBuildEventStream {
     private static final LogHelper LOG = LogHelper.log(BazelBuildEventsFileStream.class);
 
-    protected final List<BEPMonitoredFile> monitoredFiles = new ArrayList<>();
+    protected final List<BEPMonitoredFile> monitoredFiles = new CopyOnWriteArrayList<>();
+
+    private volatile BEPRetentionPolicy retentionPolicy = BEPRetentionPolicy.retainAll();
 
     public BazelBuildEventsFileStream() {}
 
@@ -79,6 +81,31 @@ public class BazelBuildEventsFileStream extends BazelBuildEventStream {
         addFileToMonitor_Internal(bepFile);
     }
 
+    /**
+     * Stops monitoring the file, and deletes the spill file of its parser. Events of the file that are still waiting
+     * for subscribers may no longer be parsed after this.
+     */
+    public void removeFileFromMonitor(File bepFile) {
+        for (BEPMonitoredFile monitoredFile : monitoredFiles) {
+            if (monitoredFile.file.equals(bepFile)) {
+                monitoredFiles.remove(monitoredFile);
+                monitoredFile.bepFile.close();
+            }
+        }
+    }
+
+    /**
+     * Bounds the memory used to hold the events of each monitored file. By default every event of the current build is
+     * kept in memory, which is a problem for long lived processes that monitor long builds. See
+     * {@link BEPRetentionPolicy#lastEvents(int)}.
+     */
+    public void setRetentionPolicy(BEPRetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+        for (BEPMonitoredFile monitoredFile : monitoredFiles) {
+            monitoredFile.bepFile.setRetentionPolicy(retentionPolicy);
+        }
+    }
+
     @Override
     public void activateStream() {
         super.activateStream();
@@ -99,6 +126,7 @@ public class BazelBuildEventsFileStream extends BazelBuildEventStream {
 
         // create the parser object
         monitoredFile.bepFile = new BEPFileParser(bepFile);
+        monitoredFile.bepFile.setRetentionPolicy(retentionPolicy);
 
         monitoredFiles.add(monitoredFile);
 
@@ -116,16 +144,13 @@ public class BazelBuildEventsFileStream extends BazelBuildEventStream {
         // to avoid reparsing lines we have already parsed
         BEPFileContents previousContent = monitoredFile.previousResults;
         BEPFileParser bepFile = monitoredFile.bepFile;
-        BEPFileContents newContent = bepFile.readEvents("BazelBuildEventsFileStream", previousContent);
-        monitoredFile.previousResults = newContent;
-
-        // iterate through the newly found lines and send them to the subscribers
-        for (BEPEvent event : newContent.events) {
-            if (event.isProcessed()) {
-                continue;
+        // the newly found events are sent to the subscribers as they are parsed
+        BEPFileContents newContent = bepFile.readEvents("BazelBuildEventsFileStream", previousContent, event -> {
+            if (!event.isProcessed()) {
+                event.processed();
+                publishEventToSubscribers(event);
             }
-            event.processed();
-            publishEventToSubscribers(event);
-        }
+        });
+        monitoredFile.previousResults = newContent;
     }
 }
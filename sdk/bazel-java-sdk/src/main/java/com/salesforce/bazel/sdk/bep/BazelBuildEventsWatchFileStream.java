@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.bep;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.salesforce.bazel.sdk.bep.file.BEPMonitoredFile;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Bazel build event protocol stream (BEP) for a Bazel workspace. A BEP stream allows you to monitor and react to build
+ * events emitted from Bazel. This implementation watches the directories of the BEP files with a java.nio
+ * WatchService, and reads the new events as soon as Bazel writes them. Compared to
+ * {@link BazelBuildEventsPollingFileStream}, events reach the subscribers within milliseconds instead of seconds, and
+ * nothing is done while the files do not change.
+ * <p>
+ * Bazel writes events in bursts, so change notifications that arrive within the debounce window are coalesced into a
+ * single read. As a safety net the files are also checked on a (slow) fallback interval, which covers platforms
+ * without a native WatchService, lost notifications, and BEP files whose directory does not exist yet. The watcher
+ * runs on a daemon thread, so it will not keep your JVM alive.
+ * <p>
+ * After creation, you must start the stream by calling activateStream(), and you should call stopStream() when you
+ * are done with it.
+ * <p>
+ * <b>NOTE:</b> This feature requires a configuration change to your Bazel workspace: you must add the following lines
+ * to your .bazelrc file to enable BEP:<br/>
+ * build --build_event_json_file bep_build.json<br/>
+ * test --build_event_json_file bep_test.json<br/>
+ * <p>
+ * In the above example, you must call addFileToMonitor() for each configured json file (bep_build.json and
+ * bep_test.json).
+ */
+public class BazelBuildEventsWatchFileStream extends BazelBuildEventsFileStream {
+    private static final LogHelper LOG = LogHelper.log(BazelBuildEventsWatchFileStream.class);
+
+    public static final long DEFAULT_DEBOUNCE_MS = 50L;
+    public static final long DEFAULT_FALLBACK_POLL_MS = 5000L;
+
+    private volatile long debounceMS = DEFAULT_DEBOUNCE_MS;
+    private volatile long fallbackPollMS = DEFAULT_FALLBACK_POLL_MS;
+
+    private ExecutorService watcherExecutor;
+    private volatile WatchService watchService;
+    private volatile boolean running = false;
+    private final Map<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<>();
+
+    public BazelBuildEventsWatchFileStream() {}
+
+    // PUBLIC API
+
+    /**
+     * Bazel supports output of BEP events to one or more files. For each BEP file you have configured for your
+     * workspace, add it here. The file does not need to exist. This helps in cases when the build has not yet run and
+     * the file has not been written yet. But this does mean that passing an incorrect File object will cause your
+     * events to be missed.
+     * <p>
+     * You must decide if the stream should parse the state of the BEP file when this stream is created. This might be
+     * correct behavior, but think about cases in which the user has not run the build in many days. The BEP file would
+     * contain build events from many days ago. If it would be odd for your app to react to build events that are many
+     * days old, set <i>parseOnStart</i> to false.
+     */
+    public void addFileToMonitor(File bepFile, boolean parseOnStart) {
+        BEPMonitoredFile monitoredFile = addFileToMonitor_Internal(bepFile);
+
+        // if caller does not want the initial state parsed, capture the current last mod
+        if (!parseOnStart && monitoredFile.file.exists()) {
+            monitoredFile.fileLastModifiedMS = monitoredFile.file.lastModified();
+        }
+        watchDirectory(monitoredFile);
+    }
+
+    /**
+     * Change notifications that arrive within this many milliseconds of the first one are handled with a single read
+     * of the file.
+     */
+    public void setDebounceMillis(long debounceMS) {
+        this.debounceMS = debounceMS;
+    }
+
+    /**
+     * The files are checked for changes on this interval even if no change notification arrives.
+     */
+    public void setFallbackPollMillis(long fallbackPollMS) {
+        this.fallbackPollMS = fallbackPollMS;
+    }
+
+    /**
+     * Starts watching the files, or resumes publishing events after a call to pauseStream(). Events already in the
+     * files are read and published on the watcher thread, not on the calling thread.
+     */
+    @Override
+    public synchronized void activateStream() {
+        // we do not call the super class, it would parse the files on the calling thread
+        paused = false;
+        if (watcherExecutor != null) {
+            return;
+        }
+        running = true;
+        watchService = createWatchService();
+        for (BEPMonitoredFile monitoredFile : monitoredFiles) {
+            watchDirectory(monitoredFile);
+        }
+        watcherExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "bzljavasdk-bep-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        watcherExecutor.execute(this::watchFiles);
+    }
+
+    /**
+     * Stops watching the files and releases the watcher thread. The stream can be started again with
+     * activateStream().
+     */
+    public synchronized void stopStream() {
+        if (watcherExecutor == null) {
+            return;
+        }
+        running = false;
+        WatchService ws = watchService;
+        watchService = null;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException ioe) {
+                LOG.error("Could not close the BEP file watcher.", ioe);
+            }
+        }
+        watchedDirectories.clear();
+        watcherExecutor.shutdownNow();
+        watcherExecutor = null;
+    }
+
+    /**
+     * Is the watcher running? A paused stream is still running.
+     */
+    public synchronized boolean isRunning() {
+        return watcherExecutor != null;
+    }
+
+    // INTERNAL
+
+    private WatchService createWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException anyE) {
+            LOG.error("File watching is not available, the BEP files will be polled every {} ms.", anyE,
+                fallbackPollMS);
+            return null;
+        }
+    }
+
+    private void watchDirectory(BEPMonitoredFile monitoredFile) {
+        WatchService ws = watchService;
+        if (ws == null) {
+            return;
+        }
+        File parent = monitoredFile.file.getAbsoluteFile().getParentFile();
+        if ((parent == null) || !parent.isDirectory()) {
+            // we will try again on the next fallback poll
+            return;
+        }
+        Path directory = parent.toPath();
+        if (watchedDirectories.containsKey(directory)) {
+            return;
+        }
+        try {
+            watchedDirectories.put(directory,
+                directory.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException | ClosedWatchServiceException anyE) {
+            LOG.info("Could not watch directory [{}], it will be polled instead.", directory);
+        }
+    }
+
+    /**
+     * The watcher loop, runs on the watcher thread until the stream is stopped.
+     */
+    private void watchFiles() {
+        // publish what is already in the files
+        pollFiles();
+
+        while (running) {
+            try {
+                WatchService ws = watchService;
+                Set<Path> changedPaths = new HashSet<>();
+                boolean overflow = false;
+                if (ws == null) {
+                    Thread.sleep(fallbackPollMS);
+                } else {
+                    WatchKey key = ws.poll(fallbackPollMS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        overflow = collectChanges(key, changedPaths);
+
+                        // debounce, Bazel writes events in bursts so coalesce the notifications of a burst
+                        long deadline = System.currentTimeMillis() + debounceMS;
+                        long remaining;
+                        while (((remaining = deadline - System.currentTimeMillis()) > 0)
+                                && ((key = ws.poll(remaining, TimeUnit.MILLISECONDS)) != null)) {
+                            overflow |= collectChanges(key, changedPaths);
+                        }
+                    }
+                }
+
+                if (overflow) {
+                    // we lost track of what changed, read all the files
+                    for (BEPMonitoredFile monitoredFile : monitoredFiles) {
+                        publishFile(monitoredFile, true);
+                    }
+                } else if (changedPaths.isEmpty()) {
+                    // nothing was announced, fall back to polling
+                    pollFiles();
+                } else {
+                    for (BEPMonitoredFile monitoredFile : monitoredFiles) {
+                        if (changedPaths.contains(monitoredFile.file.getAbsoluteFile().toPath())) {
+                            publishFile(monitoredFile, true);
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException stopped) {
+                // stopStream() was called
+                break;
+            } catch (RuntimeException anyE) {
+                LOG.error("Error processing the BEP files.", anyE);
+            }
+        }
+    }
+
+    /**
+     * Adds the paths announced by the key to changedPaths. Returns true if events were lost.
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> changedPaths) {
+        boolean overflow = false;
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                changedPaths.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            // the directory went away, the fallback poll will watch it again if it comes back
+            watchedDirectories.remove(directory);
+        }
+        return overflow;
+    }
+
+    private void pollFiles() {
+        for (BEPMonitoredFile monitoredFile : monitoredFiles) {
+            watchDirectory(monitoredFile);
+            publishFile(monitoredFile, false);
+        }
+    }
+
+    /**
+     * Reads the new events of the file and publishes them. Unless changeAnnounced is true, the file is only read if its
+     * last modified time has changed.
+     */
+    private void publishFile(BEPMonitoredFile monitoredFile, boolean changeAnnounced) {
+        if (paused || !monitoredFile.file.exists()) {
+            return;
+        }
+        long currentLastMod = monitoredFile.file.lastModified();
+        if (!changeAnnounced && (currentLastMod == monitoredFile.fileLastModifiedMS)) {
+            return;
+        }
+        monitoredFile.fileLastModifiedMS = currentLastMod;
+
+        // the parser only reads the lines appended since the last read
+        processFile(monitoredFile);
+    }
+}
@@ -109,4 +109,56 @@ class DefaultBazelBuildEventTypeResolver implements BazelBuildEventTypeResolver
         }
         return event;
     }
+
+    /**
+     * Create the event object for the passed parameters, without parsing the json.
+     */
+    @Override
+    public BEPEvent createLazyEvent(String eventType, String rawEvent, int index, boolean isLastMessage) {
+        BEPEvent event = null;
+        switch (eventType) {
+        case BEPBuildMetricsEvent.NAME:
+            event = new BEPBuildMetricsEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPBuildFinishedEvent.NAME:
+            event = new BEPBuildFinishedEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPConfigurationEvent.NAME:
+            event = new BEPConfigurationEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPOptionsParsedEvent.NAME:
+            event = new BEPOptionsParsedEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPPatternEvent.NAME:
+            event = new BEPPatternEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPProgressEvent.NAME:
+            event = new BEPProgressEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPNamedSetEvent.NAME:
+            event = new BEPNamedSetEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPStartedEvent.NAME:
+            event = new BEPStartedEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPTargetCompletedEvent.NAME:
+            event = new BEPTargetCompletedEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPTargetConfiguredEvent.NAME:
+            event = new BEPTargetConfiguredEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPTestResultEvent.NAME:
+            event = new BEPTestResultEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPTestSummaryEvent.NAME:
+            event = new BEPTestSummaryEvent(rawEvent, index, isLastMessage);
+            break;
+        case BEPUnstructuredCommandLineEvent.NAME:
+            event = new BEPUnstructuredCommandLineEvent(rawEvent, index, isLastMessage);
+            break;
+        default:
+            event = new BEPEvent(eventType, rawEvent, index, isLastMessage);
+        }
+        return event;
+    }
 }
@@ -49,7 +49,18 @@ public class BEPBuildFinishedEvent extends BEPEvent {
 
     public BEPBuildFinishedEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPBuildFinishedEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject finishedDetail = (JSONObject) eventObj.get("finished");
         if (finishedDetail != null) {
             parseDetails(finishedDetail);
@@ -59,18 +70,22 @@ public class BEPBuildFinishedEvent extends BEPEvent {
     // GETTERS
 
     public boolean isOverallSuccess() {
+        ensureParsed();
         return overallSuccess;
     }
 
     public long getFinishTimeMillis() {
+        ensureParsed();
         return finishTimeMillis;
     }
 
     public String getExitCodeName() {
+        ensureParsed();
         return exitCodeName;
     }
 
     public int getExitCodeCode() {
+        ensureParsed();
         return exitCodeCode;
     }
 
@@ -112,6 +127,7 @@ public class BEPBuildFinishedEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPBuildFinishedEvent [overallSuccess=" + overallSuccess + ", finishTimeMillis=" + finishTimeMillis
                 + ", exitCodeName=" + exitCodeName + ", exitCodeCode=" + exitCodeCode + ", index=" + index
                 + ", eventType=" + eventType + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage
@@ -53,7 +53,19 @@ public class BEPBuildMetricsEvent extends BEPEvent {
 
     public BEPBuildMetricsEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPBuildMetricsEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject metricsDetail = (JSONObject) eventObj.get("buildMetrics");
         if (metricsDetail != null) {
             parseDetails(metricsDetail);
@@ -64,30 +76,37 @@ public class BEPBuildMetricsEvent extends BEPEvent {
     // GETTERS
 
     public int getActionsCreated() {
+        ensureParsed();
         return actionsCreated;
     }
 
     public int getActionsExecuted() {
+        ensureParsed();
         return actionsExecuted;
     }
 
     public long getUsedHeapSizePostBuild() {
+        ensureParsed();
         return usedHeapSizePostBuild;
     }
 
     public int getCpuTimeInMs() {
+        ensureParsed();
         return cpuTimeInMs;
     }
 
     public int getWallTimeInMs() {
+        ensureParsed();
         return wallTimeInMs;
     }
 
     public int getAnalysisPhaseTimeInMs() {
+        ensureParsed();
         return analysisPhaseTimeInMs;
     }
 
     public List<String> getActionData() {
+        ensureParsed();
         return actionData;
     }
 
@@ -147,6 +166,7 @@ public class BEPBuildMetricsEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPBuildMetricsEvent [actionsCreated=" + actionsCreated + ", actionsExecuted=" + actionsExecuted
                 + ", usedHeapSizePostBuild=" + usedHeapSizePostBuild + ", cpuTimeInMs=" + cpuTimeInMs
                 + ", wallTimeInMs=" + wallTimeInMs + ", analysisPhaseTimeInMs=" + analysisPhaseTimeInMs
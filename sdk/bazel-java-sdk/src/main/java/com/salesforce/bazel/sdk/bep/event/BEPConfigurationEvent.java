@@ -51,7 +51,19 @@ public class BEPConfigurationEvent extends BEPEvent {
 
     public BEPConfigurationEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPConfigurationEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject configDetail = (JSONObject) eventObj.get("configuration");
         if (configDetail != null) {
             parseDetails(configDetail);
@@ -61,18 +73,22 @@ public class BEPConfigurationEvent extends BEPEvent {
     // GETTERS
 
     public String getMnemonic() {
+        ensureParsed();
         return mnemonic;
     }
 
     public String getPlatformName() {
+        ensureParsed();
         return platformName;
     }
 
     public String getCpu() {
+        ensureParsed();
         return cpu;
     }
 
     public Map<String, String> getMakeVariables() {
+        ensureParsed();
         return makeVariables;
     }
 
@@ -112,6 +128,7 @@ public class BEPConfigurationEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPConfigurationEvent [mnemonic=" + mnemonic + ", platformName=" + platformName + ", cpu=" + cpu
                 + ", makeVariables=" + makeVariables + ", index=" + index + ", eventType=" + eventType
                 + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage + ", isError=" + isError + "]";
@@ -40,6 +40,7 @@ import java.util.Set;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 
 import com.salesforce.bazel.sdk.logging.LogHelper;
 
@@ -73,6 +74,17 @@ public class BEPEvent {
     protected boolean isLastMessage = false;
     protected boolean isError = false;
 
+    // false if it is known without parsing the payload that this event cannot be an error
+    protected boolean mayBeError = true;
+
+    // the json of an event that has not been parsed yet, see ensureParsed()
+    private volatile boolean parsed = true;
+    private String unparsedEvent;
+    private BEPPayloadSource payloadSource;
+    private long payloadOffset;
+    private int payloadLength;
+    private boolean parsing = false;
+
     public BEPEvent(String eventType, String rawEvent, int index, JSONObject eventObj) {
         this.eventType = eventType;
         this.index = index;
@@ -94,6 +106,23 @@ public class BEPEvent {
         }
     }
 
+    /**
+     * Creates the event without parsing the json. The payload is parsed on the first call to a getter, which saves
+     * the work for the many events that nobody looks at. The lastMessage flag is passed in, because it is needed for
+     * every event.
+     */
+    public BEPEvent(String eventType, String rawEvent, int index, boolean isLastMessage) {
+        this.eventType = eventType;
+        this.index = index;
+        this.isLastMessage = isLastMessage;
+
+        if (keepRawJsonString) {
+            rawEventString = rawEvent;
+        }
+        unparsedEvent = rawEvent;
+        parsed = rawEvent == null;
+    }
+
     // GETTERS
 
     /**
@@ -125,6 +154,7 @@ public class BEPEvent {
      * Call this static method: <b>keepEventJsonObject()</b>
      */
     public JSONObject getJsonEventObject() {
+        ensureParsed();
         return eventObject;
     }
 
@@ -142,6 +172,10 @@ public class BEPEvent {
      * Does this event signal a failure of the entire operation (build error, test failure)?
      */
     public boolean isError() {
+        if (!mayBeError) {
+            return false;
+        }
+        ensureParsed();
         return isError;
     }
 
@@ -176,6 +210,71 @@ public class BEPEvent {
 
     // INTERNALS
 
+    /**
+     * Parses the payload of an event that was created without parsing it. Getters of subclasses call this before
+     * returning a parsed value. Does nothing if the event has already been parsed.
+     */
+    protected final void ensureParsed() {
+        if (parsed) {
+            return;
+        }
+        synchronized (this) {
+            if (parsed || parsing) {
+                // already parsed, or a getter was called while parsing
+                return;
+            }
+            parsing = true;
+            String json = unparsedEvent;
+            try {
+                if ((json == null) && (payloadSource != null)) {
+                    json = payloadSource.readPayload(payloadOffset, payloadLength);
+                }
+                JSONObject eventObj = (JSONObject) new JSONParser().parse(json);
+                if (keepJsonObject) {
+                    eventObject = eventObj;
+                }
+                parsePayload(eventObj);
+            } catch (Exception anyE) {
+                LOG.error("Error parsing json BEP event [{}]", anyE, json);
+            } finally {
+                if (payloadSource != null) {
+                    payloadSource.release(payloadOffset, payloadLength);
+                }
+                parsing = false;
+                unparsedEvent = null;
+                payloadSource = null;
+                parsed = true;
+            }
+        }
+    }
+
+    /**
+     * Is the json of this event still waiting to be parsed?
+     */
+    public boolean hasUnparsedPayload() {
+        return !parsed;
+    }
+
+    /**
+     * Releases the unparsed json of this event from the heap. It will be read back from the source if the event is
+     * ever accessed. Returns false if the event has already been parsed.
+     */
+    public synchronized boolean spillPayload(BEPPayloadSource source, long offset, int length) {
+        if (parsed || parsing) {
+            return false;
+        }
+        payloadSource = source;
+        payloadOffset = offset;
+        payloadLength = length;
+        unparsedEvent = null;
+        return true;
+    }
+
+    /**
+     * Subclasses parse the event specific parts of the json here.
+     */
+    protected void parsePayload(JSONObject eventObj) {}
+
     /**
      * This event has been delivered to any interested subscriber.
      */
@@ -328,6 +427,7 @@ public class BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPEvent [index=" + index + ", eventType=" + eventType + ", isProcessed=" + isProcessed
                 + ", isLastMessage=" + isLastMessage + ", isError=" + isError + "]";
     }
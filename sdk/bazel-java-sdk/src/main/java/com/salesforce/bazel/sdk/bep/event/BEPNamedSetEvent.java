@@ -51,7 +51,19 @@ public class BEPNamedSetEvent extends BEPEvent {
 
     public BEPNamedSetEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
+
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPNamedSetEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
 
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject setDetail = (JSONObject) eventObj.get("namedSetOfFiles");
         if (setDetail != null) {
             parseDetails(setDetail);
@@ -61,6 +73,7 @@ public class BEPNamedSetEvent extends BEPEvent {
     // GETTERS
 
     public List<BEPFileUri> getFiles() {
+        ensureParsed();
         return files;
     }
 
@@ -90,6 +103,7 @@ public class BEPNamedSetEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPNamedSetOfFilesEvent [files=" + files + ", index=" + index + ", eventType=" + eventType
                 + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage + ", isError=" + isError + "]";
     }
@@ -52,7 +52,19 @@ public class BEPOptionsParsedEvent extends BEPEvent {
 
     public BEPOptionsParsedEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPOptionsParsedEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject optionsDetail = (JSONObject) eventObj.get("optionsParsed");
         if (optionsDetail != null) {
             parseDetails(optionsDetail);
@@ -62,14 +74,17 @@ public class BEPOptionsParsedEvent extends BEPEvent {
     // GETTERS
 
     public List<String> getStartupOptions() {
+        ensureParsed();
         return startupOptions;
     }
 
     public List<String> getExplicitStartupOptions() {
+        ensureParsed();
         return explicitStartupOptions;
     }
 
     public List<String> getCommandLine() {
+        ensureParsed();
         return commandLine;
     }
 
@@ -105,6 +120,7 @@ public class BEPOptionsParsedEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPOptionsParsedEvent [startupOptions=" + startupOptions + ", explicitStartupOptions="
                 + explicitStartupOptions + ", commandLine=" + commandLine + ", index=" + index + ", eventType="
                 + eventType + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage + ", isError="
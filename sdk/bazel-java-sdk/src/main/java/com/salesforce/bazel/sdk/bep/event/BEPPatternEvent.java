@@ -53,7 +53,19 @@ public class BEPPatternEvent extends BEPEvent {
 
     public BEPPatternEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPPatternEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject idDetail = (JSONObject) eventObj.get("id");
         if (idDetail != null) {
             parseInputPatterns(idDetail);
@@ -67,10 +79,12 @@ public class BEPPatternEvent extends BEPEvent {
     // GETTERS
 
     public List<String> getInputPatterns() {
+        ensureParsed();
         return inputPatterns;
     }
 
     public List<String> getResolvedPatterns() {
+        ensureParsed();
         return resolvedPatterns;
     }
 
@@ -125,6 +139,7 @@ public class BEPPatternEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPPatternEvent [inputPatterns=" + inputPatterns + ", resolvedPatterns=" + resolvedPatterns + ", index="
                 + index + ", eventType=" + eventType + ", isProcessed=" + isProcessed + ", isLastMessage="
                 + isLastMessage + ", isError=" + isError + "]";
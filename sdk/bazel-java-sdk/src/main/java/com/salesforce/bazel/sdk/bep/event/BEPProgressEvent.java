@@ -50,7 +50,20 @@ public class BEPProgressEvent extends BEPEvent {
 
     public BEPProgressEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
+
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPProgressEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        // only a progress event with error output can be an error, which we can tell without parsing it
+        mayBeError = (rawEvent != null) && (rawEvent.contains("ERROR:") || rawEvent.contains("FAILED"));
+    }
 
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject progressDetail = (JSONObject) eventObj.get("progress");
         if (progressDetail != null) {
             parseDetails(progressDetail);
@@ -60,10 +73,12 @@ public class BEPProgressEvent extends BEPEvent {
     // GETTERS
 
     public List<String> getStdout() {
+        ensureParsed();
         return stdout;
     }
 
     public List<String> getStderr() {
+        ensureParsed();
         return stderr;
     }
 
@@ -103,6 +118,7 @@ public class BEPProgressEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         String stdoutStr = includeStdOutErrInToString ? "stdout=" + stdout.toString() : "";
         String stderrStr = includeStdOutErrInToString ? ", stderr=" + stderr.toString() + ", " : "";
         return "BEPProgressEvent [" + stdoutStr + stderrStr + "index=" + index + ", eventType=" + eventType
@@ -53,7 +53,19 @@ public class BEPStartedEvent extends BEPEvent {
 
     public BEPStartedEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPStartedEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject startedDetail = (JSONObject) eventObj.get("started");
         if (startedDetail != null) {
             parseDetails(startedDetail);
@@ -63,6 +75,7 @@ public class BEPStartedEvent extends BEPEvent {
     // GETTERS
 
     public long getStartTimeMillis() {
+        ensureParsed();
         return startTimeMillis;
     }
 
@@ -71,30 +84,37 @@ public class BEPStartedEvent extends BEPEvent {
     }
 
     public String getUuid() {
+        ensureParsed();
         return uuid;
     }
 
     public String getBuildToolVersion() {
+        ensureParsed();
         return buildToolVersion;
     }
 
     public String getOptionsDescription() {
+        ensureParsed();
         return optionsDescription;
     }
 
     public String getCommand() {
+        ensureParsed();
         return command;
     }
 
     public String getWorkingDirectory() {
+        ensureParsed();
         return workingDirectory;
     }
 
     public String getWorkspaceDirectory() {
+        ensureParsed();
         return workspaceDirectory;
     }
 
     public String getServerPid() {
+        ensureParsed();
         return serverPid;
     }
 
@@ -128,6 +148,7 @@ public class BEPStartedEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPStartedEvent [uuid=" + uuid + ", startTimeMillis=" + startTimeMillis + ", buildToolVersion="
                 + buildToolVersion + ", optionsDescription=" + optionsDescription + ", command=" + command
                 + ", workingDirectory=" + workingDirectory + ", workspaceDirectory=" + workspaceDirectory
@@ -54,7 +54,18 @@ public class BEPTargetCompletedEvent extends BEPEvent {
 
     public BEPTargetCompletedEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
+
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPTargetCompletedEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+    }
 
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject completedDetail = (JSONObject) eventObj.get("completed");
         if (completedDetail != null) {
             parseDetails(completedDetail);
@@ -64,18 +75,22 @@ public class BEPTargetCompletedEvent extends BEPEvent {
     // GETTERS
 
     public String getFailureMessage() {
+        ensureParsed();
         return failureMessage;
     }
 
     public String getFailureSpawnCode() {
+        ensureParsed();
         return failureSpawnCode;
     }
 
     public int getFailureSpawnExitCode() {
+        ensureParsed();
         return failureSpawnExitCode;
     }
 
     public boolean isSuccess() {
+        ensureParsed();
         return success;
     }
 
@@ -84,6 +99,7 @@ public class BEPTargetCompletedEvent extends BEPEvent {
      * name "importantOutput" comes from the BEP json format.
      */
     public List<BEPFileUri> getImportantOutput() {
+        ensureParsed();
         return importantOutput;
     }
 
@@ -155,6 +171,7 @@ public class BEPTargetCompletedEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPTargetCompletedEvent [failureMessage=" + failureMessage + ", failureSpawnCode=" + failureSpawnCode
                 + ", failureSpawnExitCode=" + failureSpawnExitCode + ", success=" + success + ", importantOutput="
                 + importantOutput + ", index=" + index + ", eventType=" + eventType + ", isProcessed=" + isProcessed
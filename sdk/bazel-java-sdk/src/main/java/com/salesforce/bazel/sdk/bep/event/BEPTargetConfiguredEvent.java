@@ -51,7 +51,19 @@ public class BEPTargetConfiguredEvent extends BEPEvent {
 
     public BEPTargetConfiguredEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPTargetConfiguredEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject idDetail = (JSONObject) eventObj.get("id");
         if (idDetail != null) {
             parseId(idDetail);
@@ -66,18 +78,22 @@ public class BEPTargetConfiguredEvent extends BEPEvent {
     // GETTERS
 
     public String getTargetLabel() {
+        ensureParsed();
         return targetLabel;
     }
 
     public String getTargetKind() {
+        ensureParsed();
         return targetKind;
     }
 
     public String getTestSize() {
+        ensureParsed();
         return testSize;
     }
 
     public List<String> getTags() {
+        ensureParsed();
         return tags;
     }
 
@@ -109,6 +125,7 @@ public class BEPTargetConfiguredEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPTargetConfiguredEvent [targetKind=" + targetKind + ", testSize=" + testSize + ", tags=" + tags
                 + ", index=" + index + ", eventType=" + eventType + ", isProcessed=" + isProcessed + ", isLastMessage="
                 + isLastMessage + ", isError=" + isError + "]";
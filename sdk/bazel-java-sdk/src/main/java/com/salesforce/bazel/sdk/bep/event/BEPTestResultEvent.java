@@ -67,7 +67,18 @@ public class BEPTestResultEvent extends BEPEvent {
 
     public BEPTestResultEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
+
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPTestResultEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+    }
 
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject idDetail = (JSONObject) eventObj.get("id");
         if (idDetail != null) {
             parseId(idDetail);
@@ -85,18 +96,22 @@ public class BEPTestResultEvent extends BEPEvent {
      * The Bazel label of the failed target.
      */
     public String getTestLabel() {
+        ensureParsed();
         return testLabel;
     }
 
     public int getTestRun() {
+        ensureParsed();
         return testRun;
     }
 
     public int getTestShard() {
+        ensureParsed();
         return testShard;
     }
 
     public int getTestAttempt() {
+        ensureParsed();
         return testAttempt;
     }
 
@@ -104,6 +119,7 @@ public class BEPTestResultEvent extends BEPEvent {
      * References to the files on disk that contain the output from the test run.
      */
     public Map<String, BEPFileUri> getActionOutputs() {
+        ensureParsed();
         return actionOutputs;
     }
 
@@ -111,6 +127,7 @@ public class BEPTestResultEvent extends BEPEvent {
      * Duration of the test run.
      */
     public int getTestDurationMs() {
+        ensureParsed();
         return testDurationMs;
     }
 
@@ -118,10 +135,12 @@ public class BEPTestResultEvent extends BEPEvent {
      * Result of the test, appears to be either PASSED or FAILED.
      */
     public String getTestStatus() {
+        ensureParsed();
         return testStatus;
     }
 
     public long getTestAttemptStartMillisEpoch() {
+        ensureParsed();
         return testAttemptStartMillisEpoch;
     }
 
@@ -130,6 +149,7 @@ public class BEPTestResultEvent extends BEPEvent {
      * this being present.
      */
     public String getTestStrategy() {
+        ensureParsed();
         return testStrategy;
     }
 
@@ -198,6 +218,7 @@ public class BEPTestResultEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPTestResultEvent [testLabel=" + testLabel + ", testRun=" + testRun + ", testShard=" + testShard
                 + ", testAttempt=" + testAttempt + ", testDurationMs=" + testDurationMs + ", testStatus=" + testStatus
                 + ", testAttemptStartMillisEpoch=" + testAttemptStartMillisEpoch + ", testStrategy=" + testStrategy
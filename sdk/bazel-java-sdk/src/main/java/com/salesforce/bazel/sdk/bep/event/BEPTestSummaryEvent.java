@@ -56,7 +56,18 @@ public class BEPTestSummaryEvent extends BEPEvent {
 
     public BEPTestSummaryEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
 
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPTestSummaryEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+    }
+
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject idDetail = (JSONObject) eventObj.get("id");
         if (idDetail != null) {
             parseId(idDetail);
@@ -71,34 +82,42 @@ public class BEPTestSummaryEvent extends BEPEvent {
     // GETTERS
 
     public String getTestLabel() {
+        ensureParsed();
         return testLabel;
     }
 
     public String getTestStatus() {
+        ensureParsed();
         return testStatus;
     }
 
     public List<BEPFileUri> getTestLogs() {
+        ensureParsed();
         return testLogs;
     }
 
     public long getFirstStartTimeMillis() {
+        ensureParsed();
         return firstStartTimeMillis;
     }
 
     public long getLastStopTimeMillis() {
+        ensureParsed();
         return lastStopTimeMillis;
     }
 
     public int getTotalRunDurationMillis() {
+        ensureParsed();
         return totalRunDurationMillis;
     }
 
     public int getTotalRunCount() {
+        ensureParsed();
         return totalRunCount;
     }
 
     public int getRunCount() {
+        ensureParsed();
         return runCount;
     }
 
@@ -161,6 +180,7 @@ public class BEPTestSummaryEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPTestSummaryEvent [testLabel=" + testLabel + ", testStatus=" + testStatus + ", actionOutputs="
                 + testLogs + ", firstStartTimeMillis=" + firstStartTimeMillis + ", lastStopTimeMillis="
                 + lastStopTimeMillis + ", totalRunDurationMillis=" + totalRunDurationMillis + ", totalRunCount="
@@ -45,7 +45,19 @@ public class BEPUnstructuredCommandLineEvent extends BEPEvent {
 
     public BEPUnstructuredCommandLineEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
+        parsePayload(eventObj);
+    }
+
+    /**
+     * Creates the event without parsing it, the payload is parsed on first access.
+     */
+    public BEPUnstructuredCommandLineEvent(String rawEvent, int index, boolean isLastMessage) {
+        super(NAME, rawEvent, index, isLastMessage);
+        mayBeError = false;
+    }
 
+    @Override
+    protected void parsePayload(JSONObject eventObj) {
         JSONObject commandDetail = (JSONObject) eventObj.get("unstructuredCommandLine");
         if (commandDetail != null) {
             parseDetails(commandDetail);
@@ -55,12 +67,14 @@ public class BEPUnstructuredCommandLineEvent extends BEPEvent {
     // GETTERS
 
     public List<String> getArgs() {
+        ensureParsed();
         return args;
     }
 
     // PARSER
 
     public void setArgs(List<String> args) {
+        ensureParsed();
         this.args = args;
     }
 
@@ -74,6 +88,7 @@ public class BEPUnstructuredCommandLineEvent extends BEPEvent {
 
     @Override
     public String toString() {
+        ensureParsed();
         return "BEPUnstructuredCommandLineEvent [args=" + args + ", index=" + index + ", eventType=" + eventType
                 + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage + ", isError=" + isError + "]";
     }
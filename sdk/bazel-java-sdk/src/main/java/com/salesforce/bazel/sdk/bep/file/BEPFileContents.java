@@ -33,21 +33,122 @@
  */
 package com.salesforce.bazel.sdk.bep.file;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.salesforce.bazel.sdk.bep.event.BEPEvent;
 import com.salesforce.bazel.sdk.bep.event.BEPStartedEvent;
 
 /**
  * Contents of a single pass parsing of a BEP json file.
+ * <p>
+ * By default every event of the file is kept in events. If the parser was configured with a bounded
+ * {@link BEPRetentionPolicy}, events only holds the most recent events, and the counters below cover the whole file.
  */
 public class BEPFileContents {
-    public List<BEPEvent> events = new ArrayList<>();
+    public List<BEPEvent> events;
+
+    // the events that were found by this pass, when the pass only read the lines appended since the previous pass this
+    // is a suffix of events; it is bounded like events, and is empty if the events were passed to a consumer instead
+    public List<BEPEvent> newEvents;
 
     // commonly needed quick lookups, if any event has these fields set, we set the flag on the result
     public BEPStartedEvent startedEvent = null;
     public boolean hasLastEvent = false;
     public boolean hasBuildError = false;
     public boolean hasTestError = false;
+
+    // counters for the whole file, these are maintained even if older events have been dropped from events
+    public long eventCount = 0;
+    public long errorEventCount = 0;
+    public Map<String, Integer> eventTypeCounts = new HashMap<>();
+
+    public BEPFileContents() {
+        events = new ArrayList<>();
+        newEvents = new ArrayList<>();
+    }
+
+    public BEPFileContents(BEPRetentionPolicy policy) {
+        if (policy.getMaxRetainedEvents() == BEPRetentionPolicy.UNLIMITED) {
+            events = new ArrayList<>();
+            newEvents = new ArrayList<>();
+        } else {
+            events = new EventWindow(policy.getMaxRetainedEvents());
+            newEvents = new EventWindow(policy.getMaxRetainedEvents());
+        }
+    }
+
+    /**
+     * Builds on the contents of the previous pass of the same build.
+     */
+    void continueFrom(BEPFileContents previous) {
+        events = previous.events;
+        startedEvent = previous.startedEvent;
+        hasLastEvent = previous.hasLastEvent;
+        hasBuildError = previous.hasBuildError;
+        hasTestError = previous.hasTestError;
+        eventCount = previous.eventCount;
+        errorEventCount = previous.errorEventCount;
+        eventTypeCounts = previous.eventTypeCounts;
+    }
+
+    void countEvent(BEPEvent event, boolean isError) {
+        eventCount++;
+        if (isError) {
+            errorEventCount++;
+        }
+        eventTypeCounts.merge(event.getEventType(), 1, Integer::sum);
+    }
+
+    /**
+     * Ring buffer that keeps the last N events added to it. Adding to a full window evicts the oldest event.
+     */
+    static class EventWindow extends AbstractList<BEPEvent> {
+        private final BEPEvent[] ring;
+        private int head = 0;
+        private int size = 0;
+
+        EventWindow(int capacity) {
+            ring = new BEPEvent[capacity];
+        }
+
+        @Override
+        public boolean add(BEPEvent event) {
+            int tail = (head + size) % ring.length;
+            ring[tail] = event;
+            if (size < ring.length) {
+                size++;
+            } else {
+                head = (head + 1) % ring.length;
+            }
+            modCount++;
+            return true;
+        }
+
+        @Override
+        public BEPEvent get(int index) {
+            if ((index < 0) || (index >= size)) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return ring[(head + index) % ring.length];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = null;
+            }
+            head = 0;
+            size = 0;
+            modCount++;
+        }
+    }
 }
@@ -33,12 +33,11 @@
  */
 package com.salesforce.bazel.sdk.bep.file;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.salesforce.bazel.sdk.bep.BazelBuildEventTypeManager;
 import com.salesforce.bazel.sdk.bep.event.BEPEvent;
@@ -62,24 +61,63 @@ public class BEPFileParser {
 
     private final File bepFile;
 
-    // since it is common to want to see the errors in a build, we always populate the list
+    // remembers how far into the file we have read, so each poll only parses the newly appended lines
+    private final BEPFileTailer tailer;
+
+    // since it is common to want to see the errors in a build, we always populate the list (up to the limit set by the
+    // retention policy)
     private final List<BEPEvent> errorEvents = new ArrayList<>();
 
+    private BEPRetentionPolicy retentionPolicy = BEPRetentionPolicy.retainAll();
+
+    // holds the json of unparsed events of the current build, if the retention policy spills payloads
+    private BEPPayloadSpillFile spillFile;
+
     /**
      * Creates the BazelBuildEventsFile for a File. Note that the File may not exist. This can happen if this
      * configuration happens prior to a build with the configuration setting enabled.
      */
     public BEPFileParser(File bepFile) {
         this.bepFile = bepFile;
+        tailer = new BEPFileTailer(bepFile);
+    }
+
+    /**
+     * Sets the policy that bounds how many events are kept in memory. The default retains every event. The policy is
+     * applied starting with the next read.
+     */
+    public synchronized void setRetentionPolicy(BEPRetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    public BEPRetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
     }
 
     /**
      * Reads the BEP json file, and returns a results object with the parsed events.
+     * <p>
+     * If previousContents is the result of the previous call for this file, and the file has only been appended to
+     * since then, only the appended lines are read and parsed. The returned contents then shares its events list with
+     * previousContents, and {@link BEPFileContents#newEvents} holds the events found by this call. If the file was
+     * truncated or replaced, or previousContents is null, the file is read from the beginning.
+     * <p>
+     * With a bounded retention policy, newEvents only holds the most recent of the new events. Use
+     * {@link #readEvents(String, BEPFileContents, Consumer)} to see all of them.
      */
-    public BEPFileContents readEvents(String callerForLog, BEPFileContents previousContents) {
+    public synchronized BEPFileContents readEvents(String callerForLog, BEPFileContents previousContents) {
+        return readEvents(callerForLog, previousContents, null);
+    }
 
-        BEPFileContents result = new BEPFileContents();
-        int eventIndex = 0;
+    /**
+     * Same as {@link #readEvents(String, BEPFileContents)}, but each event found by this call is passed to
+     * newEventConsumer as soon as it is parsed, instead of being added to {@link BEPFileContents#newEvents}. The lines
+     * are parsed as they are read from the file, so a pass holds no more events than the retention policy allows.
+     */
+    public synchronized BEPFileContents readEvents(String callerForLog, BEPFileContents previousContents,
+            Consumer<BEPEvent> newEventConsumer) {
+
+        BEPFileContents result = new BEPFileContents(retentionPolicy);
 
         if (!bepFile.exists()) {
             LOG.debug(callerForLog + ": BEP file " + bepFile.getAbsolutePath() + " does not exist.");
@@ -95,66 +133,196 @@ public class BEPFileParser {
             return result;
         }
 
+        if (previousContents == null) {
+            // the caller wants a full read
+            tailer.reset();
+        }
+
+        FilePass pass = new FilePass(previousContents, result, newEventConsumer);
+        try {
+            LOG.info(callerForLog + ": Reading " + bepFile.getAbsolutePath() + " from offset " + tailer.getOffset());
+            tailer.readNewLines(pass::readLine);
+        } catch (IOException e) {
+            LOG.error("error reading BEP events file [{}]", e, bepFile.getAbsolutePath());
+            if (!pass.started) {
+                return result;
+            }
+        }
+        pass.start();
+        return result;
+    }
+
+    /**
+     * Deletes the spill file of the current build. Call this once the parser is no longer used, rather than waiting
+     * for the file to be deleted when its events are unreachable. Events of this parser whose json is still in the
+     * spill file can no longer be parsed after this.
+     */
+    public synchronized void close() {
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+
+    /**
+     * One read of the file. The lines are parsed as the tailer reads them, so they are not all held in memory.
+     */
+    private class FilePass {
+        private final BEPFileContents previousContents;
+        private final BEPFileContents result;
+        private final Consumer<BEPEvent> newEventConsumer;
+
+        private boolean started = false;
+        private boolean appended;
+        private int eventIndex = 0;
+
         // we will determine if this is the same build as the last polling interval; if so we will
         // build on the work there, and not resend same events to subscribers
-        boolean isContinuation = false;
+        private boolean isContinuation = false;
 
-        try (BufferedReader b = new BufferedReader(new FileReader(bepFile))) {
-            String eventString = "";
-            BEPEvent event = null;
+        FilePass(BEPFileContents previousContents, BEPFileContents result, Consumer<BEPEvent> newEventConsumer) {
+            this.previousContents = previousContents;
+            this.result = result;
+            this.newEventConsumer = newEventConsumer;
+        }
 
-            LOG.info(callerForLog + ": Reading " + bepFile.getAbsolutePath());
+        /**
+         * Decides how to read the lines, the tailer knows whether it restarted at the beginning of the file once it
+         * has started reading.
+         */
+        void start() {
+            if (started) {
+                return;
+            }
+            started = true;
+            appended = !tailer.isRestart() && (previousContents != null);
+            if (appended) {
+                // the file was only appended to, so build on the previous results
+                result.continueFrom(previousContents);
+                eventIndex = (int) result.eventCount;
+            }
+        }
 
-            while ((eventString = b.readLine()) != null) {
-                LOG.debug("BEP EVENT: {}", eventString);
+        void readLine(String eventString) {
+            start();
+            LOG.debug("BEP EVENT: {}", eventString);
+            if (appended) {
+                readAppendedEvent(eventString);
+            } else {
+                readEvent(eventString);
+            }
+        }
 
-                if (isContinuation && (eventIndex < previousContents.events.size())) {
-                    event = previousContents.events.get(eventIndex);
+        /**
+         * Parses a line appended to the file since the previous read.
+         */
+        private void readAppendedEvent(String eventString) {
+            BEPEvent event = BazelBuildEventTypeManager.parseEvent(eventString, eventIndex);
+            if (event != null) {
+                if ((result.startedEvent == null) && BEPStartedEvent.NAME.equals(event.getEventType())) {
+                    result.startedEvent = (BEPStartedEvent) event;
+                }
+                addEvent(event, eventString, result, newEventConsumer);
+                eventIndex++;
+            }
+        }
 
-                    result.events.add(event);
+        /**
+         * Parses a line of a full read of the file. If the started event shows that this is the same build as the
+         * previous read, the events from the previous read are reused so that subscribers are not sent the same event
+         * twice.
+         */
+        private void readEvent(String eventString) {
+            if (isContinuation && (eventIndex < previousContents.eventCount)) {
+                // already parsed in the previous pass
+                eventIndex++;
+                return;
+            }
+
+            BEPEvent event = BazelBuildEventTypeManager.parseEvent(eventString, eventIndex);
+            if (event == null) {
+                return;
+            }
+            if (BEPStartedEvent.NAME.equals(event.getEventType())) {
+                // started event is handled differently
+                BEPStartedEvent currentStartEvent = (BEPStartedEvent) event;
+                BEPStartedEvent previousStartEvent = previousContents != null ? previousContents.startedEvent : null;
+                if ((previousStartEvent != null)
+                        && (previousStartEvent.getStartTimeMillis() == currentStartEvent.getStartTimeMillis())) {
+                    // this is the same build we were looking at last time, this will enable us to optimize parsing
+                    // and retain the history so we don't resend the same event more than once to subscribers
+                    isContinuation = true;
+                    result.continueFrom(previousContents);
                     eventIndex++;
-                    continue;
+                    return;
                 }
+                // this is a new build, so ignore previous state
+                result.startedEvent = currentStartEvent;
+                startNewBuild();
+            }
+            addEvent(event, eventString, result, newEventConsumer);
+            eventIndex++;
+        }
+    }
 
-                event = BazelBuildEventTypeManager.parseEvent(eventString, eventIndex);
-                if (event != null) {
-
-                    if (BEPStartedEvent.NAME.equals(event.getEventType())) {
-                        // started event is handled differently
-                        BEPStartedEvent currentStartEvent = (BEPStartedEvent) event;
-                        BEPStartedEvent previousStartEvent =
-                                previousContents != null ? previousContents.startedEvent : null;
-                        if ((previousStartEvent != null) && (previousContents.startedEvent
-                                .getStartTimeMillis() == currentStartEvent.getStartTimeMillis())) {
-                            // this is the same build we were looking at last time, this will enable us to optimize parsing
-                            // and retain the history so we don't resend the same event more than once to subscribers
-                            isContinuation = true;
-                            result.startedEvent = previousStartEvent;
-                            result.events.add(previousStartEvent);
-                        } else {
-                            // this is a new build, so ignore previous state
-                            result.startedEvent = currentStartEvent;
-                            result.events.add(currentStartEvent);
-                        }
-                    } else {
-                        // otherwise all other events are just added
-                        result.events.add(event);
-                    }
-                    eventIndex++;
+    private void addEvent(BEPEvent event, String eventString, BEPFileContents result,
+            Consumer<BEPEvent> newEventConsumer) {
+        result.events.add(event);
+        boolean isError = event.isError();
+        if (isError && (errorEvents.size() < retentionPolicy.getMaxErrorEvents())) {
+            errorEvents.add(event);
+        }
+        if (event.isLastMessage()) {
+            result.hasLastEvent = true;
+        }
+        result.countEvent(event, isError);
 
-                    if (event.isError()) {
-                        errorEvents.add(event);
-                    }
-                    if (event.isLastMessage()) {
-                        result.hasLastEvent = true;
-                    }
-                }
+        if (retentionPolicy.isSpillPayloads() && event.hasUnparsedPayload()) {
+            BEPPayloadSpillFile spill = getSpillFile();
+            if (spill != null) {
+                spill.spill(event, eventString);
             }
-        } catch (IOException e) {
-            LOG.error("error reading BEP events file [{}]", e, bepFile.getAbsolutePath());
-            return result;
         }
-        return result;
+
+        if (newEventConsumer != null) {
+            newEventConsumer.accept(event);
+        } else {
+            result.newEvents.add(event);
+        }
+    }
+
+    /**
+     * A new build has been written to the file, so drop the state kept for the previous build.
+     */
+    private void startNewBuild() {
+        errorEvents.clear();
+        if (spillFile != null) {
+            // the events of the previous build may still be waiting in subscriber queues, so the file is deleted once
+            // they no longer need it
+            spillFile.retire();
+            spillFile = null;
+        }
+    }
+
+    private BEPPayloadSpillFile getSpillFile() {
+        if (spillFile == null) {
+            try {
+                spillFile = new BEPPayloadSpillFile(retentionPolicy.getSpillDirectory());
+            } catch (IOException ioe) {
+                LOG.error("could not create the BEP spill file, event payloads will be kept in memory", ioe);
+                // stop trying to spill for this parser
+                retentionPolicy = new BEPRetentionPolicy(retentionPolicy.getMaxRetainedEvents(),
+                        retentionPolicy.getMaxErrorEvents(), false, null);
+            }
+        }
+        return spillFile;
+    }
+
+    /**
+     * The reader that tracks how far into the file this parser has read. Visible for tests.
+     */
+    BEPFileTailer getTailer() {
+        return tailer;
     }
 
     public List<BEPEvent> getBuildErrorEvents() {
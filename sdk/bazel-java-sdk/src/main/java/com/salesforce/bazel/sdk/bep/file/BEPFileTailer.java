@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.bep.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the lines that were appended to a BEP json file since the previous read. Bazel appends one json event per
+ * line while the build runs, so rereading the file from the start on every poll is quadratic for large builds.
+ * <p>
+ * The tailer remembers the byte offset just past the last complete line it has returned, and resumes there. A
+ * trailing line that Bazel has not finished writing is left in the file until the next read. Reading restarts at the
+ * beginning of the file (see {@link #isRestart()}) if the file was truncated, replaced by a different file (rotation),
+ * or rewritten by a new build such that the first line (the started event) differs.
+ */
+public class BEPFileTailer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+
+    // position just past the last complete line that has been returned
+    private long offset = 0L;
+
+    // identity of the file we are tailing
+    private Object fileKey;
+    private FileTime creationTime;
+    private byte[] firstLine;
+
+    private boolean restart = true;
+
+    public BEPFileTailer(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the complete lines appended to the file since the last read, without line terminators. Blank lines are
+     * skipped.
+     */
+    public List<String> readNewLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        readNewLines(lines::add);
+        return lines;
+    }
+
+    /**
+     * Passes each complete line appended to the file since the last read to lineConsumer, without line terminators, as
+     * it is read. Blank lines are skipped. {@link #isRestart()} is set for this read before the first line is passed.
+     */
+    public void readNewLines(Consumer<String> lineConsumer) throws IOException {
+        Path path = file.toPath();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if ((offset > 0L) && !isSameFile(channel, attrs)) {
+                reset();
+            }
+            restart = offset == 0L;
+            if (restart) {
+                fileKey = attrs.fileKey();
+                creationTime = attrs.creationTime();
+            }
+
+            channel.position(offset);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+            long bufferStart = offset;
+            int read;
+            while ((read = channel.read(buffer)) > 0) {
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+                    partialLine.write(bytes, lineStart, i - lineStart);
+                    byte[] line = partialLine.toByteArray();
+                    partialLine.reset();
+                    if (offset == 0L) {
+                        firstLine = line;
+                    }
+                    offset = bufferStart + i + 1;
+                    lineStart = i + 1;
+                    passLine(line, lineConsumer);
+                }
+                partialLine.write(bytes, lineStart, read - lineStart);
+                bufferStart += read;
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * True if the last call to {@link #readNewLines()} started at the beginning of the file. The lines returned by
+     * that call are then the full contents of the file, not an append to the lines returned before.
+     */
+    public boolean isRestart() {
+        return restart;
+    }
+
+    /**
+     * The position in the file just past the last complete line that has been read.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Forget the read position, the next read starts at the beginning of the file.
+     */
+    public void reset() {
+        offset = 0L;
+        fileKey = null;
+        creationTime = null;
+        firstLine = null;
+    }
+
+    // INTERNAL
+
+    private boolean isSameFile(FileChannel channel, BasicFileAttributes attrs) throws IOException {
+        if (channel.size() < offset) {
+            // truncated, Bazel does this at the start of each build
+            return false;
+        }
+        if (fileKey != null) {
+            if (!fileKey.equals(attrs.fileKey())) {
+                return false;
+            }
+        } else if ((creationTime != null) && !creationTime.equals(attrs.creationTime())) {
+            return false;
+        }
+        if (firstLine != null) {
+            // a new build may have rewritten the file past our offset before we looked, so check the started event
+            ByteBuffer header = ByteBuffer.allocate(firstLine.length + 1);
+            channel.position(0L);
+            while (header.hasRemaining() && (channel.read(header) > 0)) {}
+            byte[] expected = Arrays.copyOf(firstLine, firstLine.length + 1);
+            expected[firstLine.length] = '\n';
+            return Arrays.equals(expected, header.array());
+        }
+        return true;
+    }
+
+    private static void passLine(byte[] line, Consumer<String> lineConsumer) {
+        int length = line.length;
+        if ((length > 0) && (line[length - 1] == '\r')) {
+            length--;
+        }
+        if (length > 0) {
+            lineConsumer.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.bep.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPPayloadSource;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Temp file that holds the json of BEP events that have not been parsed yet. Spilling the json to this file keeps the
+ * heap cost of an unparsed event down to a few fields. The json is read back if the event is ever accessed.
+ * <p>
+ * There is one spill file per build. When a new build starts in the BEP file, the parser retires the old spill file and
+ * opens a new one. Events of the old build may still be queued for, or held by, subscribers, so a retired file is only
+ * deleted once none of its events still need it: either all of them have been parsed, or the events (and so this
+ * object) are no longer reachable.
+ */
+public class BEPPayloadSpillFile implements BEPPayloadSource {
+    private static final LogHelper LOG = LogHelper.log(BEPPayloadSpillFile.class);
+
+    // resources of the spill files, kept until they are closed; unreachable spill files are closed from the queue
+    private static final ReferenceQueue<BEPPayloadSpillFile> unreachableSpillFiles = new ReferenceQueue<>();
+    private static final Set<SpillResources> openSpillFiles =
+            Collections.newSetFromMap(new ConcurrentHashMap<SpillResources, Boolean>());
+
+    private final SpillResources resources;
+    private long writeOffset = 0;
+    // events spilled to this file that have not been parsed yet; not guarded by the monitor, as the events release
+    // their payload while holding their own monitor, and spill() locks this file before the event
+    private final AtomicInteger unparsedCount = new AtomicInteger();
+    private volatile boolean retired = false;
+
+    public BEPPayloadSpillFile(File directory) throws IOException {
+        closeUnreachableSpillFiles();
+        File file = File.createTempFile("bzljavasdk-bep", ".spill", directory);
+        file.deleteOnExit();
+        resources = new SpillResources(this, file, new RandomAccessFile(file, "rw"));
+        openSpillFiles.add(resources);
+    }
+
+    /**
+     * Writes the json of the event to the file, and releases it from the event. Returns false if the event could not
+     * be spilled, in which case the event keeps its json in memory.
+     */
+    public synchronized boolean spill(BEPEvent event, String json) {
+        if (!event.hasUnparsedPayload() || retired) {
+            return false;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        long offset = writeOffset;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                resources.channel.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException ioe) {
+            LOG.error("error writing to BEP spill file [{}]", ioe, resources.file.getAbsolutePath());
+            return false;
+        }
+        writeOffset += bytes.length;
+        unparsedCount.incrementAndGet();
+        if (!event.spillPayload(this, offset, bytes.length)) {
+            release(offset, bytes.length);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String readPayload(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            // positional reads do not move the channel position, so readers do not need to lock out the writer
+            int read = resources.channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new IOException(
+                        "BEP spill file " + resources.file.getAbsolutePath() + " is shorter than expected");
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An event no longer needs its payload. Deletes the file if it is retired and this was the last such event.
+     */
+    @Override
+    public void release(long offset, int length) {
+        if ((unparsedCount.decrementAndGet() <= 0) && retired) {
+            close();
+        }
+    }
+
+    /**
+     * Number of bytes written to the spill file.
+     */
+    public synchronized long size() {
+        return writeOffset;
+    }
+
+    public File getFile() {
+        return resources.file;
+    }
+
+    /**
+     * No more events will be written to this file. The file is deleted as soon as the events already written to it
+     * have been parsed, or are no longer reachable.
+     */
+    public void retire() {
+        retired = true;
+        if (unparsedCount.get() <= 0) {
+            close();
+        }
+    }
+
+    /**
+     * Closes and deletes the file right away. Events still pointing at this file can no longer be parsed after this,
+     * see {@link #retire()} for the safe alternative.
+     */
+    public void close() {
+        resources.close();
+        openSpillFiles.remove(resources);
+    }
+
+    // closes the files of the spill files that were retired and then dropped along with all of their events
+    private static void closeUnreachableSpillFiles() {
+        Reference<? extends BEPPayloadSpillFile> ref;
+        while ((ref = unreachableSpillFiles.poll()) != null) {
+            SpillResources unreachable = (SpillResources) ref;
+            unreachable.close();
+            openSpillFiles.remove(unreachable);
+        }
+    }
+
+    // the open file of a spill file, which must not reference the spill file itself
+    private static class SpillResources extends PhantomReference<BEPPayloadSpillFile> {
+        final File file;
+        final RandomAccessFile randomAccessFile;
+        final FileChannel channel;
+        private boolean closed = false;
+
+        SpillResources(BEPPayloadSpillFile spillFile, File file, RandomAccessFile randomAccessFile) {
+            super(spillFile, unreachableSpillFiles);
+            this.file = file;
+            this.randomAccessFile = randomAccessFile;
+            channel = randomAccessFile.getChannel();
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.close();
+                randomAccessFile.close();
+            } catch (IOException ioe) {
+                LOG.error("error closing BEP spill file [{}]", ioe, file.getAbsolutePath());
+            }
+            if (!file.delete()) {
+                LOG.debug("could not delete BEP spill file {}", file.getAbsolutePath());
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.bep.file;
+
+import java.io.File;
+
+/**
+ * Controls how much of a BEP file is kept in memory by the {@link BEPFileParser}. A long running build can write
+ * hundreds of thousands of events, and keeping all of them (and their json) makes the memory of a monitoring process
+ * grow with the length of the build.
+ * <p>
+ * Counters ({@link BEPFileContents#eventCount}, {@link BEPFileContents#errorEventCount},
+ * {@link BEPFileContents#eventTypeCounts}) are always maintained, regardless of the policy.
+ */
+public class BEPRetentionPolicy {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // default number of error events retained by the parser when the events are bounded
+    public static final int DEFAULT_MAX_ERROR_EVENTS = 1000;
+
+    private final int maxRetainedEvents;
+    private final int maxErrorEvents;
+    private final boolean spillPayloads;
+    private final File spillDirectory;
+
+    /**
+     * @param maxRetainedEvents
+     *            the number of most recent events kept in {@link BEPFileContents#events}, older events are dropped
+     * @param maxErrorEvents
+     *            the number of error events kept by the parser, the first errors of a build are kept since they
+     *            are typically the cause of the later ones
+     * @param spillPayloads
+     *            if true, the json of events that have not been parsed yet is moved out of the heap into a temp file
+     *            and read back only if the event is accessed
+     * @param spillDirectory
+     *            the directory for the temp file, null to use the default temp directory
+     */
+    public BEPRetentionPolicy(int maxRetainedEvents, int maxErrorEvents, boolean spillPayloads, File spillDirectory) {
+        if ((maxRetainedEvents < 1) || (maxErrorEvents < 0)) {
+            throw new IllegalArgumentException(
+                    "maxRetainedEvents must be positive and maxErrorEvents must not be negative");
+        }
+        this.maxRetainedEvents = maxRetainedEvents;
+        this.maxErrorEvents = maxErrorEvents;
+        this.spillPayloads = spillPayloads;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Keeps every event in memory. This is the default behavior.
+     */
+    public static BEPRetentionPolicy retainAll() {
+        return new BEPRetentionPolicy(UNLIMITED, UNLIMITED, false, null);
+    }
+
+    /**
+     * Keeps the last N events, the first {@link #DEFAULT_MAX_ERROR_EVENTS} error events, and spills the json of
+     * unparsed events to a temp file. Memory stays flat regardless of the length of the build.
+     */
+    public static BEPRetentionPolicy lastEvents(int maxRetainedEvents) {
+        return new BEPRetentionPolicy(maxRetainedEvents, DEFAULT_MAX_ERROR_EVENTS, true, null);
+    }
+
+    public int getMaxRetainedEvents() {
+        return maxRetainedEvents;
+    }
+
+    public int getMaxErrorEvents() {
+        return maxErrorEvents;
+    }
+
+    public boolean isSpillPayloads() {
+        return spillPayloads;
+    }
+
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public boolean isRetainAll() {
+        return (maxRetainedEvents == UNLIMITED) && (maxErrorEvents == UNLIMITED) && !spillPayloads;
+    }
+}
@@ -165,8 +165,11 @@ public class BazelLauncherBuilder {
 
         String consoleName = ConsoleType.WORKSPACE.getConsoleName(bazelBinDirectory);
 
-        return commandBuilder.setConsoleName(consoleName).setDirectory(bazelBinDirectory)
-                .addArguments(Collections.unmodifiableList(args)).setProgressMonitor(progressMonitor).build();
+        // the builder is shared with the command executors, which build their commands under the same lock
+        synchronized (commandBuilder) {
+            return commandBuilder.setConsoleName(consoleName).setDirectory(bazelBinDirectory)
+                    .addArguments(Collections.unmodifiableList(args)).setProgressMonitor(progressMonitor).build();
+        }
     }
 
     /**
@@ -200,9 +203,11 @@ public class BazelLauncherBuilder {
         File workspaceDirectory = bazelCommandRunner.getBazelWorkspaceRootDirectory();
         String consoleName = ConsoleType.WORKSPACE.getConsoleName(workspaceDirectory);
 
-        return commandBuilder.setConsoleName(consoleName).setDirectory(workspaceDirectory)
-                .addArguments(BazelWorkspaceCommandRunner.getBazelExecutablePath())
-                .addArguments(Collections.unmodifiableList(args)).setProgressMonitor(progressMonitor).build();
+        synchronized (commandBuilder) {
+            return commandBuilder.setConsoleName(consoleName).setDirectory(workspaceDirectory)
+                    .addArguments(BazelWorkspaceCommandRunner.getBazelExecutablePath())
+                    .addArguments(Collections.unmodifiableList(args)).setProgressMonitor(progressMonitor).build();
+        }
     }
 
 }
@@ -86,7 +86,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * <p>
      * Determined by running this command line: <i>bazel info execution_root</i>
      */
-    private File bazelExecRootDirectory;
+    private volatile File bazelExecRootDirectory;
 
     /**
      * The internal location on disk for Bazel's 'output base' for this workspace. E.g.
@@ -94,7 +94,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * <p>
      * Determined by running this command line: <i>bazel info output_base</i>
      */
-    private File bazelOutputBaseDirectory;
+    private volatile File bazelOutputBaseDirectory;
 
     /**
      * The internal location on disk for Bazel's 'bazel-bin' for this workspace. E.g.
@@ -102,7 +102,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * <p>
      * Determined by running this command line: <i>bazel info bazel-bin</i>
      */
-    private File bazelBinDirectory;
+    private volatile File bazelBinDirectory;
 
     // GLOBAL CONFIG
 
@@ -239,12 +239,16 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
 
         List<String> results = new ArrayList<>();
         try {
-            List<String> argBuilder = new ArrayList<>();
-            argBuilder.add("query");
-            argBuilder.add(query);
+            if (bazelQueryHelper != null) {
+                results = bazelQueryHelper.runQuery(bazelWorkspaceRootDirectory, Collections.singletonList(query));
+            } else {
+                List<String> argBuilder = new ArrayList<>();
+                argBuilder.add("query");
+                argBuilder.add(query);
 
-            results = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null, argBuilder,
-                t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+                results = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null,
+                    argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+            }
 
         } catch (IOException | InterruptedException | BazelCommandLineToolConfigurationException e) {
             throw new IllegalStateException(e);
@@ -380,6 +384,26 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
         return bazelQueryHelper.querySourceFilesForTarget(bazelWorkspaceRootDirectory, bazelLabel);
     }
 
+    /**
+     * Returns the source files used to build the targets of each of the passed packages (e.g. //a/b/c:*), keyed by
+     * package. Uses a single Bazel Query for all the packages, so it is much cheaper than calling
+     * querySourceFilesForTarget() for each package.
+     */
+    public synchronized Map<BazelLabel, Collection<String>> querySourceFilesForPackages(
+            File bazelWorkspaceRootDirectory, Collection<BazelLabel> packageLabels)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        return bazelQueryHelper.querySourceFilesForPackages(bazelWorkspaceRootDirectory, packageLabels);
+    }
+
+    /**
+     * Enables the on disk cache of bazel query results, in the passed directory. The cache survives restarts of the
+     * tool, and each entry is invalidated when the BUILD and .bzl files it depends on change. Passing null disables it,
+     * which is the default.
+     */
+    public synchronized void setPersistentQueryCacheDirectory(File cacheDirectory) {
+        bazelQueryHelper.setPersistentCacheDirectory(cacheDirectory, bazelWorkspaceRootDirectory);
+    }
+
     /**
      * @param bazelPackageName
      *            the label path that identifies the package where the BUILD file lives (//projects/libs/foo)
@@ -444,6 +468,8 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
     }
 
     // ASPECT OPERATIONS
+    // These are not synchronized on the runner, the aspect processor does its own fine grained locking so that cache
+    // hits are not blocked by a long running aspect build.
 
     /**
      * Runs the analysis of the given list of targets using the build information Bazel Aspect and returns a map of
@@ -458,7 +484,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      *
      * @throws BazelCommandLineToolConfigurationException
      */
-    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfoForPackages(
+    public Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfoForPackages(
             Collection<BazelPackageLocation> targetPackages, String caller)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
         List<BazelLabel> targetLabels = new ArrayList<>();
@@ -487,7 +513,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * @return Mapping of the requested label to its AspectTargetInfo instances
      * @throws BazelCommandLineToolConfigurationException
      */
-    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<String> targetLabels,
+    public Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<String> targetLabels,
             String caller) throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
         Collection<BazelLabel> labels = targetLabels.stream().map(BazelLabel::new).collect(Collectors.toList());
@@ -504,14 +530,14 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
     /**
      * Clear the AspectTargetInfo cache for the passed target. This flushes the dependency graph for that target.
      */
-    public synchronized void flushAspectInfoCache(String target) {
+    public void flushAspectInfoCache(String target) {
         aspectHelper.flushAspectInfoCache(new BazelLabel(target));
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed targets. This flushes the dependency graph for those targets.
      */
-    public synchronized void flushAspectInfoCache(Set<String> targets) {
+    public void flushAspectInfoCache(Set<String> targets) {
         Set<BazelLabel> labels = targets.stream().map(BazelLabel::new).collect(Collectors.toSet());
         aspectHelper.flushAspectInfoCache(labels);
     }
@@ -520,7 +546,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * Clear the AspectTargetInfo cache for the passed package. This flushes the dependency graph for any target that
      * contains the package name.
      */
-    public synchronized Set<String> flushAspectInfoCacheForPackage(String packageName) {
+    public Set<String> flushAspectInfoCacheForPackage(String packageName) {
         BazelLabel packageLabel = new BazelLabel(packageName);
         Set<BazelLabel> flushedPackages = aspectHelper.flushAspectInfoCacheForPackage(packageLabel);
         LOG.info("Flushed aspect cache for package: " + packageLabel);
@@ -540,6 +566,9 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * Returns a builder for issuing custom commands that are not covered in the convenience APIs in this class. You can
      * use the CommandBuilder to build any command you need. For 'run' or 'test' commands, consider using the special
      * purpose BazelLauncherBuilder instead.
+     * <p>
+     * The builder is shared with the commands run by this runner, so synchronize on it while configuring and building
+     * the command.
      */
     public CommandBuilder getBazelCommandBuilder() {
         return commandBuilder;
@@ -25,6 +25,7 @@ package com.salesforce.bazel.sdk.command;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -40,6 +41,25 @@ public interface Command {
      */
     int run() throws IOException, InterruptedException;
 
+    /**
+     * Executes the command on the shared {@link CommandIoExecutor}, and returns a future that completes with the exit
+     * code of the command. The calling thread is not blocked, so independent commands can run concurrently. This method
+     * should not be called twice on the same object, nor combined with run().
+     * <p>
+     * Cancelling the returned future kills the command, for implementations that support it.
+     */
+    default CompletableFuture<Integer> runAsync() {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        CommandIoExecutor.getExecutor().execute(() -> {
+            try {
+                result.complete(run());
+            } catch (Throwable anyT) {
+                result.completeExceptionally(anyT);
+            }
+        });
+        return result;
+    }
+
     /**
      * Returns the list of lines selected from the standard error stream. Lines printed to the standard error stream by
      * the executed command can be filtered to be added to that list.
@@ -29,6 +29,7 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.console.CommandConsoleFactory;
@@ -43,7 +44,8 @@ import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
  * <p>
  * As currently implemented, this class is not thread-safe. Meaning a single builder is stateful and can only build one
  * command object at a time. Invoking build() clears the state and makes the builder ready for the next command to
- * build.
+ * build. A builder shared between threads must be configured and built while holding its monitor, as the SDK does
+ * itself.
  */
 public abstract class CommandBuilder {
 
@@ -54,6 +56,7 @@ public abstract class CommandBuilder {
     protected OutputStream stderr = null;
     protected Function<String, String> stdoutSelector;
     protected Function<String, String> stderrSelector;
+    protected Consumer<String> stdoutLineConsumer;
     protected final CommandConsoleFactory consoleFactory;
     protected WorkProgressMonitor progressMonitor;
     protected long timeoutMS;
@@ -74,10 +77,11 @@ public abstract class CommandBuilder {
         this.stderr = null;
         this.stdoutSelector = null;
         this.stderrSelector = null;
+        this.stdoutLineConsumer = null;
         this.progressMonitor = null;
 
-        // TODO make Bazel command timeout configurable
-        this.timeoutMS = 100000; // default timeout
+        // no timeout by default, builds and tests can legitimately run for a long time
+        this.timeoutMS = 0;
     }
 
     /**
@@ -158,6 +162,16 @@ public abstract class CommandBuilder {
         return this;
     }
 
+    /**
+     * Set a consumer to receive the lines that are selected from the standard output stream, as soon as they are
+     * printed. The selected lines are then not accumulated in {@link Command#getSelectedOutputLines()}, which keeps the
+     * memory use flat for commands with a very large output (e.g. bazel query //...).
+     */
+    public CommandBuilder setStdoutLineConsumer(Consumer<String> lineConsumer) {
+        this.stdoutLineConsumer = lineConsumer;
+        return this;
+    }
+
     /**
      * Set a selector to accumulate lines that are selected from the standard error stream.
      *
@@ -181,7 +195,8 @@ public abstract class CommandBuilder {
     }
 
     /**
-     * Provide an optional timeout for the command (in milliseconds).
+     * Provide an optional timeout for the command (in milliseconds). The command is killed if it runs longer. Zero
+     * means no timeout.
      */
     public CommandBuilder setTimeout(long timeoutMS) {
         this.timeoutMS = timeoutMS;
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+/**
+ * Decides how many labels go into each 'bazel build' invocation when running the build info aspect over a large set of
+ * labels.
+ * <p>
+ * Each Bazel invocation has a few seconds of fixed overhead, so we want few invocations. But we also want to see
+ * progress along the way, and a huge single invocation means we cannot start parsing the aspect output until the very
+ * end. The scheduler starts with a conservative batch size and then adapts it based on the observed wall time per
+ * label of the previous invocations, aiming for batches that take about {@link #getTargetBatchDurationMS()} each.
+ * <p>
+ * Note that Bazel serializes commands that run against the same output base, so running batches in parallel would not
+ * help. Instead, the aspect processor overlaps the parsing of a finished batch with the Bazel execution of the next.
+ * <p>
+ * This class is not thread-safe; it is owned by a single BazelWorkspaceAspectProcessor.
+ */
+public class AspectBatchScheduler {
+
+    public static final int DEFAULT_INITIAL_BATCH_SIZE = 25;
+    public static final int DEFAULT_MIN_BATCH_SIZE = 10;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    public static final long DEFAULT_TARGET_BATCH_DURATION_MS = 30000L;
+
+    private int initialBatchSize = DEFAULT_INITIAL_BATCH_SIZE;
+    private int minBatchSize = DEFAULT_MIN_BATCH_SIZE;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long targetBatchDurationMS = DEFAULT_TARGET_BATCH_DURATION_MS;
+
+    /**
+     * Smoothed wall time (millis) per label observed in previous invocations, or -1 if there is no history yet.
+     */
+    private double averageMSPerLabel = -1.0;
+
+    public AspectBatchScheduler() {}
+
+    public AspectBatchScheduler(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetBatchDurationMS) {
+        if ((minBatchSize < 1) || (maxBatchSize < minBatchSize)) {
+            throw new IllegalArgumentException(
+                    "Invalid batch size bounds: min=" + minBatchSize + " max=" + maxBatchSize);
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.initialBatchSize = clamp(initialBatchSize);
+        this.targetBatchDurationMS = targetBatchDurationMS;
+    }
+
+    /**
+     * Computes the size of the next batch, given the number of labels that still need to be processed. If the
+     * remainder after this batch would be smaller than the minimum batch size, it is folded into this batch so we do
+     * not pay for a tiny trailing invocation.
+     */
+    public int nextBatchSize(int remainingLabels) {
+        if (remainingLabels <= 0) {
+            return 0;
+        }
+        int batchSize = initialBatchSize;
+        if (averageMSPerLabel > 0.0) {
+            batchSize = clamp((int) (targetBatchDurationMS / averageMSPerLabel));
+        }
+        if ((remainingLabels - batchSize) < minBatchSize) {
+            batchSize = remainingLabels;
+        }
+        return Math.min(batchSize, remainingLabels);
+    }
+
+    /**
+     * Records the outcome of a Bazel invocation, which feeds the sizing of the following batches.
+     */
+    public void recordBatch(int labelCount, long elapsedMS) {
+        if ((labelCount <= 0) || (elapsedMS < 0)) {
+            return;
+        }
+        double msPerLabel = Math.max(1.0, (double) elapsedMS / labelCount);
+        if (averageMSPerLabel < 0.0) {
+            averageMSPerLabel = msPerLabel;
+        } else {
+            // weight recent invocations more heavily, as the Bazel server warms up over the first few runs
+            averageMSPerLabel = (0.5 * averageMSPerLabel) + (0.5 * msPerLabel);
+        }
+    }
+
+    /**
+     * Forgets the timing history, such that the next batch will use the initial batch size.
+     */
+    public void reset() {
+        averageMSPerLabel = -1.0;
+    }
+
+    public int getInitialBatchSize() {
+        return initialBatchSize;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getTargetBatchDurationMS() {
+        return targetBatchDurationMS;
+    }
+
+    // INTERNAL
+
+    private int clamp(int batchSize) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+    }
+}
@@ -0,0 +1,378 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelTargetKind;
+
+/**
+ * Computes the transitive closures of the AspectTargetInfos loaded by a single aspect batch.
+ * <p>
+ * Each label is interned to an int id and the dependency edges are resolved once. The closures of all nodes are then
+ * computed bottom-up over the strongly connected components of the graph, so a shared subgraph is walked once per
+ * batch instead of once per owning label. The resulting sets are immutable and backed by sorted id arrays; asking
+ * twice for the same owner returns the same set instance.
+ * <p>
+ * The closure of a node follows the long standing rules of the aspect processor: it contains every node reachable via
+ * deps, but not the node itself, unless the node is a java_test or java_import.
+ */
+public class AspectClosureEngine {
+    static final LogHelper LOG = LogHelper.log(AspectClosureEngine.class);
+
+    private final AspectTargetInfo[] nodes;
+    private final BazelLabel[] labels;
+    private final Map<String, Integer> labelToId;
+    private final Map<AspectTargetInfo, Integer> infoToId = new IdentityHashMap<>();
+    private final Map<String, List<Integer>> packageToIds = new HashMap<>();
+    private final int[][] edges;
+
+    /**
+     * Closure of each node, as a sorted id array (including self where applicable). Computed eagerly in the ctor.
+     */
+    private final int[][] closures;
+
+    /**
+     * Memoized set views, created on demand.
+     */
+    private final List<Set<AspectTargetInfo>> closureSets;
+    private Set<AspectTargetInfo> allNodesSet;
+
+    public AspectClosureEngine(Map<BazelLabel, AspectTargetInfo> labelToTargetInfo) {
+        int size = labelToTargetInfo.size();
+        nodes = new AspectTargetInfo[size];
+        labels = new BazelLabel[size];
+        labelToId = new HashMap<>(size * 2);
+        int id = 0;
+        for (Map.Entry<BazelLabel, AspectTargetInfo> entry : labelToTargetInfo.entrySet()) {
+            nodes[id] = entry.getValue();
+            labels[id] = entry.getKey();
+            labelToId.put(entry.getKey().getLabelPath(), id);
+            infoToId.put(entry.getValue(), id);
+            packageToIds.computeIfAbsent(entry.getKey().getPackagePath(true), k -> new ArrayList<>()).add(id);
+            id++;
+        }
+        edges = resolveEdges();
+        closures = computeClosures();
+        closureSets = new ArrayList<>(Collections.nCopies(size, (Set<AspectTargetInfo>) null));
+    }
+
+    /**
+     * Number of interned nodes.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the transitive closure of the passed label, or null if the label was not loaded in this batch.
+     */
+    public Set<AspectTargetInfo> getTransitiveClosure(BazelLabel label) {
+        Integer id = labelToId.get(label.getLabelPath());
+        if (id == null) {
+            return null;
+        }
+        return getClosureSet(id);
+    }
+
+    /**
+     * Returns the mapping of each loaded label in the passed package to its transitive closure.
+     */
+    public Map<BazelLabel, Set<AspectTargetInfo>> getTransitiveClosuresForPackage(BazelLabel packageLabel) {
+        Map<BazelLabel, Set<AspectTargetInfo>> result = new HashMap<>();
+        List<Integer> ids = packageToIds.get(packageLabel.getPackagePath(true));
+        if (ids != null) {
+            for (int id : ids) {
+                result.put(labels[id], getClosureSet(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an immutable set of all AspectTargetInfos loaded in this batch.
+     */
+    public Set<AspectTargetInfo> getAllTargetInfos() {
+        if (allNodesSet == null) {
+            int[] all = new int[nodes.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            allNodesSet = new ClosureSet(all, nodes, infoToId);
+        }
+        return allNodesSet;
+    }
+
+    // INTERNAL
+
+    private Set<AspectTargetInfo> getClosureSet(int id) {
+        Set<AspectTargetInfo> set = closureSets.get(id);
+        if (set == null) {
+            set = new ClosureSet(closures[id], nodes, infoToId);
+            closureSets.set(id, set);
+        }
+        return set;
+    }
+
+    /**
+     * Resolves the dep label strings of each node to ids. Each distinct dep string is resolved only once.
+     */
+    private int[][] resolveEdges() {
+        Map<String, Integer> resolved = new HashMap<>(labelToId);
+        int[][] result = new int[nodes.length][];
+        for (int id = 0; id < nodes.length; id++) {
+            List<String> deps = nodes[id].getDeps();
+            if ((deps == null) || deps.isEmpty()) {
+                result[id] = new int[0];
+                continue;
+            }
+            int[] targets = new int[deps.size()];
+            int count = 0;
+            for (String dep : deps) {
+                Integer depId = resolved.get(dep);
+                if (depId == null) {
+                    depId = resolveSlow(dep);
+                    resolved.put(dep, depId);
+                }
+                if (depId >= 0) {
+                    targets[count++] = depId;
+                }
+            }
+            result[id] = count == targets.length ? targets : Arrays.copyOf(targets, count);
+        }
+        return result;
+    }
+
+    private int resolveSlow(String dep) {
+        // the dep string may not be in canonical form, try again with the normalized label
+        try {
+            Integer depId = labelToId.get(new BazelLabel(dep).getLabelPath());
+            if (depId != null) {
+                return depId;
+            }
+        } catch (IllegalArgumentException iae) {
+            // fall through
+        }
+        LOG.info("No AspectTargetInfo exists for " + dep + "; it and its descendents are excluded from analysis.");
+        return -1;
+    }
+
+    /**
+     * Computes the closure of every node. Uses an iterative Tarjan SCC pass, which emits each component after all the
+     * components it depends on, so the reachable set of a component can be assembled from the finished components
+     * below it.
+     */
+    private int[][] computeClosures() {
+        int n = nodes.length;
+        int[] index = new int[n];
+        int[] lowlink = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        int[] sccStack = new int[n];
+        int sccStackSize = 0;
+        int[] callStack = new int[n];
+        int[] edgeCursor = new int[n];
+        int nextIndex = 0;
+
+        int[] componentOf = new int[n];
+        List<int[]> componentReach = new ArrayList<>();
+        BitSet scratch = new BitSet(n);
+        int[][] result = new int[n][];
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int callDepth = 0;
+            callStack[callDepth++] = root;
+            index[root] = lowlink[root] = nextIndex++;
+            sccStack[sccStackSize++] = root;
+            onStack[root] = true;
+
+            while (callDepth > 0) {
+                int v = callStack[callDepth - 1];
+                if (edgeCursor[v] < edges[v].length) {
+                    int w = edges[v][edgeCursor[v]++];
+                    if (index[w] == -1) {
+                        index[w] = lowlink[w] = nextIndex++;
+                        sccStack[sccStackSize++] = w;
+                        onStack[w] = true;
+                        callStack[callDepth++] = w;
+                    } else if (onStack[w]) {
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                    continue;
+                }
+                callDepth--;
+                if (callDepth > 0) {
+                    int parent = callStack[callDepth - 1];
+                    lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+                }
+                if (lowlink[v] != index[v]) {
+                    continue;
+                }
+
+                // v is the root of a component, pop its members
+                int componentId = componentReach.size();
+                int start = sccStackSize;
+                do {
+                    start--;
+                    onStack[sccStack[start]] = false;
+                    componentOf[sccStack[start]] = componentId;
+                } while (sccStack[start] != v);
+                int[] members = Arrays.copyOfRange(sccStack, start, sccStackSize);
+                sccStackSize = start;
+
+                // reach(C) = all members of components reachable from C, plus C itself if it is a cycle
+                scratch.clear();
+                boolean isCycle = members.length > 1;
+                for (int member : members) {
+                    for (int dep : edges[member]) {
+                        int depComponent = componentOf[dep];
+                        if (depComponent == componentId) {
+                            isCycle = true;
+                            continue;
+                        }
+                        scratch.set(dep);
+                        for (int reached : componentReach.get(depComponent)) {
+                            scratch.set(reached);
+                        }
+                    }
+                }
+                if (isCycle) {
+                    for (int member : members) {
+                        scratch.set(member);
+                    }
+                }
+                int[] reach = toArray(scratch);
+                componentReach.add(reach);
+
+                for (int member : members) {
+                    result[member] = closureOf(member, reach);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adjusts the reachable set of the component to the closure rules for the member node.
+     */
+    private int[] closureOf(int member, int[] reach) {
+        boolean includeSelf = false;
+        BazelTargetKind kind = nodes[member].getKind();
+        if (kind != null) {
+            // now add this aspect to the transitive closure if test or import (TODO why?)
+            includeSelf = kind.isKind("java_test") || kind.isKind("java_import");
+        } else {
+            LOG.info("AspectInfo " + labels[member] + " does not have an associated target kind.");
+        }
+        int pos = Arrays.binarySearch(reach, member);
+        if ((pos >= 0) == includeSelf) {
+            return reach;
+        }
+        if (includeSelf) {
+            int insert = -(pos + 1);
+            int[] result = new int[reach.length + 1];
+            System.arraycopy(reach, 0, result, 0, insert);
+            result[insert] = member;
+            System.arraycopy(reach, insert, result, insert + 1, reach.length - insert);
+            return result;
+        }
+        int[] result = new int[reach.length - 1];
+        System.arraycopy(reach, 0, result, 0, pos);
+        System.arraycopy(reach, pos + 1, result, pos, reach.length - pos - 1);
+        return result;
+    }
+
+    private static int[] toArray(BitSet bits) {
+        int[] result = new int[bits.cardinality()];
+        int i = 0;
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            result[i++] = bit;
+        }
+        return result;
+    }
+
+    /**
+     * Read-only set view over a sorted id array. Static, so that a set handed out to callers only holds on to the node
+     * table and not to the rest of the engine (edges, closures of all the other nodes).
+     */
+    private static class ClosureSet extends AbstractSet<AspectTargetInfo> {
+        private final int[] ids;
+        private final AspectTargetInfo[] nodes;
+        private final Map<AspectTargetInfo, Integer> infoToId;
+
+        ClosureSet(int[] ids, AspectTargetInfo[] nodes, Map<AspectTargetInfo, Integer> infoToId) {
+            this.ids = ids;
+            this.nodes = nodes;
+            this.infoToId = infoToId;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Integer id = infoToId.get(o);
+            return (id != null) && (Arrays.binarySearch(ids, id) >= 0);
+        }
+
+        @Override
+        public Iterator<AspectTargetInfo> iterator() {
+            return new Iterator<AspectTargetInfo>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < ids.length;
+                }
+
+                @Override
+                public AspectTargetInfo next() {
+                    if (next >= ids.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return nodes[ids[next++]];
+                }
+            };
+        }
+    }
+}
@@ -40,6 +40,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
@@ -63,27 +64,59 @@ public class BazelCommandExecutor {
         this.commandBuilder = commandBuilder;
     }
 
+    public File getBazelExecutable() {
+        return bazelExecutable;
+    }
+
     // WHEN INTERESTING OUTPUT IS ON STDOUT...
 
-    public synchronized List<String> runBazelAndGetOutputLines(File workingDirectory,
-            WorkProgressMonitor progressMonitor, List<String> args, Function<String, String> selector, long timeoutMS)
+    public List<String> runBazelAndGetOutputLines(File workingDirectory, WorkProgressMonitor progressMonitor,
+            List<String> args, Function<String, String> selector, long timeoutMS)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
-        CommandBuilder builder =
-                getConfiguredCommandBuilder(ConsoleType.WORKSPACE, workingDirectory, progressMonitor, args, timeoutMS);
-        Command command = builder.setStdoutLineSelector(selector).build();
+        Command command = buildCommand(ConsoleType.WORKSPACE, workingDirectory, progressMonitor, args, selector, null,
+            timeoutMS);
         command.run();
 
         return command.getSelectedOutputLines();
     }
 
-    public synchronized List<String> runBazelAndGetOuputLines(ConsoleType consoleType, File workingDirectory,
+    /**
+     * Builds the command without running it, for callers that need the exit code as well as the output lines.
+     */
+    public Command buildBazelCommand(File workingDirectory, WorkProgressMonitor progressMonitor, List<String> args,
+            Function<String, String> selector, long timeoutMS)
+            throws IOException, BazelCommandLineToolConfigurationException {
+        return buildCommand(ConsoleType.WORKSPACE, workingDirectory, progressMonitor, args, selector, null, timeoutMS);
+    }
+
+    /**
+     * Asynchronous version of {@link #runBazelAndGetOutputLines(File, WorkProgressMonitor, List, Function, long)}. The
+     * command runs on the shared CommandIoExecutor, and cancelling the returned future kills it.
+     */
+    public CompletableFuture<List<String>> runBazelAndGetOutputLinesAsync(File workingDirectory,
+            WorkProgressMonitor progressMonitor, List<String> args, Function<String, String> selector, long timeoutMS)
+            throws IOException, BazelCommandLineToolConfigurationException {
+
+        Command command = buildCommand(ConsoleType.WORKSPACE, workingDirectory, progressMonitor, args, selector, null,
+            timeoutMS);
+        CompletableFuture<Integer> exitCode = command.runAsync();
+        CompletableFuture<List<String>> result = exitCode.thenApply(code -> command.getSelectedOutputLines());
+        // propagate the cancellation to the command, so that the process is killed
+        result.whenComplete((lines, failure) -> {
+            if (result.isCancelled()) {
+                exitCode.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public List<String> runBazelAndGetOuputLines(ConsoleType consoleType, File workingDirectory,
             WorkProgressMonitor progressMonitor, List<String> args, Function<String, String> selector, long timeoutMS)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
-        CommandBuilder builder =
-                getConfiguredCommandBuilder(consoleType, workingDirectory, progressMonitor, args, timeoutMS);
-        Command command = builder.setStdoutLineSelector(selector).build();
+        Command command =
+                buildCommand(consoleType, workingDirectory, progressMonitor, args, selector, null, timeoutMS);
 
         int exitCode = command.run();
         if (exitCode == 0) {
@@ -95,24 +128,22 @@ public class BazelCommandExecutor {
 
     // WHEN INTERESTING OUTPUT IS ON STDERR...
 
-    public synchronized List<String> runBazelAndGetErrorLines(File directory, WorkProgressMonitor progressMonitor,
+    public List<String> runBazelAndGetErrorLines(File directory, WorkProgressMonitor progressMonitor,
             List<String> args, Function<String, String> selector, long timeoutMS)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
-        CommandBuilder builder =
-                getConfiguredCommandBuilder(ConsoleType.WORKSPACE, directory, progressMonitor, args, timeoutMS);
-        Command command = builder.setStderrLineSelector(selector).build();
+        Command command =
+                buildCommand(ConsoleType.WORKSPACE, directory, progressMonitor, args, null, selector, timeoutMS);
         command.run();
 
         return command.getSelectedErrorLines();
     }
 
-    public synchronized List<String> runBazelAndGetErrorLines(ConsoleType consoleType, File directory,
+    public List<String> runBazelAndGetErrorLines(ConsoleType consoleType, File directory,
             WorkProgressMonitor progressMonitor, List<String> args, Function<String, String> selector, long timeoutMS)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
-        CommandBuilder builder = getConfiguredCommandBuilder(consoleType, directory, progressMonitor, args, timeoutMS);
-        Command command = builder.setStderrLineSelector(selector).build();
+        Command command = buildCommand(consoleType, directory, progressMonitor, args, null, selector, timeoutMS);
         int exitCode = command.run();
         if (exitCode == 0) {
             return command.getSelectedErrorLines();
@@ -139,14 +170,27 @@ public class BazelCommandExecutor {
 
     // INTERNAL
 
-    private CommandBuilder getConfiguredCommandBuilder(ConsoleType type, File directory,
-            WorkProgressMonitor progressMonitor, List<String> args, long timeoutMS)
-            throws BazelCommandLineToolConfigurationException {
+    // The command builder is stateful and may be shared by several executors, so only building the command is done
+    // under its lock. Running the commands is not serialized; the Bazel server itself serializes the commands that
+    // target the same output base.
+    private Command buildCommand(ConsoleType type, File directory, WorkProgressMonitor progressMonitor,
+            List<String> args, Function<String, String> stdoutSelector, Function<String, String> stderrSelector,
+            long timeoutMS) throws IOException, BazelCommandLineToolConfigurationException {
 
         String consoleName = type.getConsoleName(directory);
 
-        return commandBuilder.setConsoleName(consoleName).setDirectory(directory).setTimeout(timeoutMS)
-                .addArguments(bazelExecutable.getAbsolutePath()).addArguments(args).setProgressMonitor(progressMonitor);
+        synchronized (commandBuilder) {
+            commandBuilder.setConsoleName(consoleName).setDirectory(directory).setTimeout(timeoutMS)
+                    .addArguments(bazelExecutable.getAbsolutePath()).addArguments(args)
+                    .setProgressMonitor(progressMonitor);
+            if (stdoutSelector != null) {
+                commandBuilder.setStdoutLineSelector(stdoutSelector);
+            }
+            if (stderrSelector != null) {
+                commandBuilder.setStderrLineSelector(stderrSelector);
+            }
+            return commandBuilder.build();
+        }
     }
 
 }
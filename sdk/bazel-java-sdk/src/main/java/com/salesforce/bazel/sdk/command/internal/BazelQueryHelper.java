@@ -37,6 +37,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
+import com.salesforce.bazel.sdk.command.Command;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelBuildFile;
 import com.salesforce.bazel.sdk.model.BazelLabel;
@@ -59,10 +60,52 @@ public class BazelQueryHelper {
 
     private final Map<BazelLabel, BazelBuildFile> buildFileCache = new HashMap<>();
 
+    /**
+     * Optional on disk cache of the query results, which survives restarts of the tool.
+     */
+    private PersistentQueryResultCache persistentCache;
+
+    // the kernel limits the length of a single command line argument (128k on Linux), stay well below it
+    private static final int MAX_QUERY_EXPRESSION_LENGTH = 64 * 1024;
+
     public BazelQueryHelper(BazelCommandExecutor bazelCommandExecutor) {
         this.bazelCommandExecutor = bazelCommandExecutor;
     }
 
+    /**
+     * Sets the directory for the on disk cache of query results. Passing null disables the on disk cache, which is the
+     * default.
+     */
+    public synchronized void setPersistentCacheDirectory(File cacheDirectory, File bazelWorkspaceRootDirectory) {
+        if (cacheDirectory == null) {
+            persistentCache = null;
+            return;
+        }
+        persistentCache = new PersistentQueryResultCache(cacheDirectory, bazelWorkspaceRootDirectory,
+                getBazelVersionKey(bazelCommandExecutor.getBazelExecutable()));
+    }
+
+    // a different (or upgraded) Bazel binary may evaluate the same query differently
+    static String getBazelVersionKey(File bazelExecutable) {
+        return bazelExecutable.getAbsolutePath() + ";" + bazelExecutable.lastModified() + ";"
+                + bazelExecutable.length();
+    }
+
+    /**
+     * Runs an arbitrary bazel query and returns the output lines. The result is served from the on disk cache, if
+     * enabled and valid.
+     *
+     * @param queryArgs
+     *            the query expression followed by any query options (e.g. --output label_kind)
+     */
+    public synchronized List<String> runQuery(File bazelWorkspaceRootDirectory, List<String> queryArgs)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        List<String> argBuilder = new ArrayList<>();
+        argBuilder.add("query");
+        argBuilder.addAll(queryArgs);
+        return runQueryCommand(argBuilder, bazelWorkspaceRootDirectory);
+    }
+
     /**
      * Returns the list of targets found in the BUILD files for the given sub-directories. Uses Bazel Query to build the
      * list.
@@ -130,16 +173,84 @@ public class BazelQueryHelper {
         return sourceFilePaths;
     }
 
-    public void flushCache(BazelLabel bazelPackageName) {
+    /**
+     * Returns the source files used to build the targets of each of the passed packages, keyed by the passed package
+     * label (e.g. //a/b/c:*). This runs one Bazel query over the union of the packages, instead of one per package.
+     * The result lines are partitioned by their owning package in a single pass; source files that belong to packages
+     * that were not passed (e.g. dependencies elsewhere in the workspace) are dropped.
+     * <p>
+     * Very large package lists are split into a few queries, to keep the query expression within the limits of the
+     * command line.
+     */
+    public synchronized Map<BazelLabel, Collection<String>> querySourceFilesForPackages(
+            File bazelWorkspaceRootDirectory, Collection<BazelLabel> packageLabels)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        // package path (a/b/c) -> requested label (//a/b/c:*)
+        Map<String, BazelLabel> packagePathToLabel = new HashMap<>();
+        Map<BazelLabel, Collection<String>> sourceFilePaths = new HashMap<>();
+        for (BazelLabel packageLabel : packageLabels) {
+            packagePathToLabel.put(packageLabel.getPackagePath(), packageLabel);
+            sourceFilePaths.put(packageLabel, new HashSet<>());
+        }
+
+        List<String> unionTerms = new ArrayList<>();
+        int unionLength = 0;
+        for (BazelLabel packageLabel : packageLabels) {
+            String term = packageLabel.getLabelPath();
+            if (!unionTerms.isEmpty() && ((unionLength + term.length()) > MAX_QUERY_EXPRESSION_LENGTH)) {
+                runSourceFileQuery(unionTerms, packagePathToLabel, sourceFilePaths, bazelWorkspaceRootDirectory);
+                unionTerms.clear();
+                unionLength = 0;
+            }
+            unionTerms.add(term);
+            unionLength += term.length() + 3;
+        }
+        if (!unionTerms.isEmpty()) {
+            runSourceFileQuery(unionTerms, packagePathToLabel, sourceFilePaths, bazelWorkspaceRootDirectory);
+        }
+        return sourceFilePaths;
+    }
+
+    public synchronized void flushCache(BazelLabel bazelPackageName) {
         BazelLabel pack = bazelPackageName.getPackageLabel();
         BazelBuildFile previousValue = buildFileCache.remove(pack);
         if (previousValue != null) {
             LOG.info("Build file cache flush, package " + pack);
         }
+        if (persistentCache != null) {
+            // the on disk entries validate themselves, but the memoized digests of the package are now suspect
+            persistentCache.clearDigestMemo();
+        }
     }
 
     // Internals
 
+    // runs the query command, consulting the on disk cache first
+    private List<String> runQueryCommand(List<String> argBuilder, File bazelWorkspaceRootDirectory)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        if (persistentCache != null) {
+            List<String> resultLines = persistentCache.load(argBuilder);
+            if (resultLines != null) {
+                LOG.info("Query cache hit: {}", argBuilder);
+                return resultLines;
+            }
+        }
+        Command command = bazelCommandExecutor.buildBazelCommand(bazelWorkspaceRootDirectory, null, argBuilder,
+            t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+        int exitCode = command.run();
+        List<String> resultLines = command.getSelectedOutputLines();
+        if (persistentCache != null) {
+            if (exitCode == 0) {
+                persistentCache.store(argBuilder, resultLines);
+            } else {
+                // the output of a failed query (e.g. a broken fetch, or a killed server) may be partial
+                LOG.info("Query failed with exit code {}, not caching the result: {}", exitCode, argBuilder);
+            }
+        }
+        return resultLines;
+    }
+
     // runs label query and populates cache, returns loaded BazelBuildFile instances
     private Collection<BazelBuildFile> runLabelQuery(Collection<BazelLabel> bazelLabels,
             File bazelWorkspaceRootDirectory)
@@ -153,8 +264,7 @@ public class BazelQueryHelper {
         argBuilder.add("kind(rule, set(" + labels + "))");
         argBuilder.add("--output");
         argBuilder.add("label_kind");
-        List<String> resultLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null,
-            argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+        List<String> resultLines = runQueryCommand(argBuilder, bazelWorkspaceRootDirectory);
 
         // Sample Output:  (format: rule_type 'rule' label)
         // java_binary rule //projects/libs/apple/apple-api:apple-main
@@ -210,8 +320,7 @@ public class BazelQueryHelper {
         List<String> argBuilder = new ArrayList<>();
         argBuilder.add("query");
         argBuilder.add("kind('source file', deps(" + bazelLabel + "))");
-        List<String> resultLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null,
-            argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+        List<String> resultLines = runQueryCommand(argBuilder, bazelWorkspaceRootDirectory);
 
         // Sample Output:  (notice the cruft we don't want)
         // @local_jdk//:bin/javap
@@ -242,4 +351,45 @@ public class BazelQueryHelper {
         return sourceFilePaths;
     }
 
+    // runs the source file query over a union of packages, and adds the results to the owning packages
+    private void runSourceFileQuery(List<String> packageLabels, Map<String, BazelLabel> packagePathToLabel,
+            Map<BazelLabel, Collection<String>> sourceFilePaths, File bazelWorkspaceRootDirectory)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        // bazel query 'kind("source file", deps(//apple-api:* + //banana-api:*))'
+
+        List<String> argBuilder = new ArrayList<>();
+        argBuilder.add("query");
+        argBuilder.add("kind('source file', deps(" + String.join(" + ", packageLabels) + "))");
+        List<String> resultLines = runQueryCommand(argBuilder, bazelWorkspaceRootDirectory);
+        partitionSourceFileLines(resultLines, packagePathToLabel, sourceFilePaths);
+    }
+
+    /**
+     * Adds each source file line of a query result to the source files of its owning package, if that package is in
+     * the passed map. //apple-api:source/dev/Apple.java is owned by apple-api, and is added as source/dev/Apple.java
+     */
+    static void partitionSourceFileLines(List<String> resultLines, Map<String, BazelLabel> packagePathToLabel,
+            Map<BazelLabel, Collection<String>> sourceFilePaths) {
+        for (String resultLine : resultLines) {
+            resultLine = resultLine.trim();
+            if (!resultLine.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
+                // external repo files, or not a source file at all
+                continue;
+            }
+            int colonIndex = resultLine.indexOf(':');
+            if (colonIndex == -1) {
+                continue;
+            }
+            BazelLabel owner = packagePathToLabel.get(resultLine.substring(2, colonIndex));
+            if (owner == null) {
+                // this file is owned by a package we did not ask for
+                continue;
+            }
+            String sourcePath = resultLine.substring(colonIndex + 1);
+            if (!BazelBuildFile.isBuildFile(sourcePath)) {
+                sourceFilePaths.get(owner).add(sourcePath);
+            }
+        }
+    }
 }
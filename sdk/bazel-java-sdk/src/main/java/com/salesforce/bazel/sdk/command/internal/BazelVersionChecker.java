@@ -83,9 +83,13 @@ public class BazelVersionChecker {
             execDir = new File(tmpdir);
         }
         try {
-            Command command = commandBuilder.setConsoleName(null).setDirectory(bazelWorkspaceRootDirectory)
-                    .addArguments(bazelExecutable.getAbsolutePath(), "version")
-                    .setStdoutLineSelector((s) -> s.startsWith("Build label:") ? s.substring(13) : null).build();
+            Command command;
+            // the builder is shared with the command executors, which build their commands under the same lock
+            synchronized (commandBuilder) {
+                command = commandBuilder.setConsoleName(null).setDirectory(bazelWorkspaceRootDirectory)
+                        .addArguments(bazelExecutable.getAbsolutePath(), "version")
+                        .setStdoutLineSelector((s) -> s.startsWith("Build label:") ? s.substring(13) : null).build();
+            }
             if (command.run() != 0) {
                 throw new BazelCommandLineToolConfigurationException.BazelNotExecutableException(
                         bazelExecutable.getAbsolutePath());
@@ -29,23 +29,29 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfoFactory;
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfoStreamLoader;
 import com.salesforce.bazel.sdk.aspect.BazelAspectLocation;
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelLabel;
-import com.salesforce.bazel.sdk.model.BazelTargetKind;
 
 /**
  * Manages running, collecting, and caching all of the build info aspects for a specific workspace.
@@ -68,21 +74,54 @@ public class BazelWorkspaceAspectProcessor {
      * Cache of the Aspect data for each target. key=String target (//a/b/c) value=Set<AspectTargetInfo> data that came
      * from running the aspect.
      *
-     * This cache includes wildcard (//a/b/c:*) targets and concrete targets.
+     * This cache includes wildcard (//a/b/c:*) targets and concrete targets. It is concurrent so that cache hits never
+     * wait behind an aspect build that is running for a different label.
      */
-    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_current = new HashMap<>();
+    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_current = new ConcurrentHashMap<>();
 
     /**
      * Cache of the Aspect data for each target. key=String target (//a/b/c) value=AspectTargetInfo data that came from
      * running the aspect. This cache is never cleared and is used for cases in which the developer introduces a compile
      * error into the package, such that the Aspect will fail to run.
      */
-    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_lastgood = new HashMap<>();
+    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_lastgood = new ConcurrentHashMap<>();
+
+    /**
+     * Labels whose aspect data is being loaded right now. The first caller that misses the cache for a label registers
+     * a future here, and concurrent callers asking for the same label wait on it instead of running the aspect again.
+     */
+    private final ConcurrentMap<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> inFlightLoads =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Serializes the aspect builds. Bazel only runs one command at a time per output base anyway, and the command
+     * builder is not thread safe.
+     */
+    private final ReentrantLock aspectBuildLock = new ReentrantLock();
+
+    /**
+     * Incremented on every flush, so that a load that was already running when the flush happened does not put its
+     * (possibly stale) results back into the current cache.
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
 
     /**
      * Tracks the number of cache hits for getAspectTargetInfos() invocations.
      */
-    int numberCacheHits = 0;
+    final AtomicInteger numberCacheHits = new AtomicInteger();
+
+    /**
+     * On disk cache of the aspect results, which survives restarts of the tool. Created lazily because the default
+     * location is in the output base, which requires a Bazel command to locate.
+     */
+    private volatile PersistentAspectTargetInfoCache persistentCache;
+    private volatile boolean persistentCacheEnabled = true;
+    private final File aspectDirectory;
+
+    /**
+     * Decides how many labels are passed to each 'bazel build' invocation of the aspect.
+     */
+    private volatile AspectBatchScheduler batchScheduler = new AspectBatchScheduler();
 
     // CTORS
 
@@ -91,11 +130,17 @@ public class BazelWorkspaceAspectProcessor {
     public static final int ASPECTCMD_EXTERNALREPO_ARGINDEX = 2;
     public static final int ASPECTCMD_TARGETLABEL_ARGINDEX = 11;
 
+    /**
+     * Name of the directory in the output base that holds the on disk cache of aspect results.
+     */
+    public static final String PERSISTENT_CACHE_DIRNAME = "bzljavasdk-aspect-cache";
+
     public BazelWorkspaceAspectProcessor(BazelWorkspaceCommandRunner bazelWorkspaceCommandRunner,
             BazelAspectLocation aspectLocation, BazelCommandExecutor bazelCommandExecutor) {
         this.bazelWorkspaceCommandRunner = bazelWorkspaceCommandRunner;
         this.bazelCommandExecutor = bazelCommandExecutor;
 
+        aspectDirectory = aspectLocation == null ? null : aspectLocation.getAspectDirectory();
         aspectOptions = null;
         if (aspectLocation != null) {
             aspectOptions = new ArrayList<String>();
@@ -120,6 +165,29 @@ public class BazelWorkspaceAspectProcessor {
         this.aspectOptions = aspectOptions;
     }
 
+    /**
+     * Replace the scheduler that decides how many labels are passed to each aspect 'bazel build' invocation. This is an
+     * advanced use case.
+     */
+    public void setBatchScheduler(AspectBatchScheduler batchScheduler) {
+        this.batchScheduler = batchScheduler;
+    }
+
+    public AspectBatchScheduler getBatchScheduler() {
+        return batchScheduler;
+    }
+
+    /**
+     * Sets the directory for the on disk cache of aspect results. By default, the cache lives in the output base of
+     * the workspace. Passing null disables the on disk cache.
+     */
+    public synchronized void setPersistentCacheDirectory(File cacheDirectory) {
+        persistentCacheEnabled = cacheDirectory != null;
+        persistentCache = cacheDirectory == null ? null
+                : new PersistentAspectTargetInfoCache(cacheDirectory,
+                        bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory(), aspectDirectory);
+    }
+
     /**
      * Runs the analysis of the given list of targets using the build information Bazel Aspect and returns a map of
      * {@link AspectTargetInfo}-s (key is the label of the target) containing the parsed form of the JSON file created
@@ -128,46 +196,90 @@ public class BazelWorkspaceAspectProcessor {
      * This method caches its results and won't recompute a previously computed version unless
      * {@link #flushAspectInfoCache()} has been called in between.
      * <p>
+     * This method is safe to call from multiple threads. Cache hits are answered without blocking. If another thread is
+     * already loading one of the requested labels, this call waits for that load instead of running the aspect again.
+     * <p>
      * TODO it would be worthwhile to evaluate whether Aspects are the best way to get build info, as we could otherwise
      * use Bazel Query here as well.
      *
      * @throws BazelCommandLineToolConfigurationException
      */
-    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<BazelLabel> targets,
+    public Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<BazelLabel> targets,
             String caller) throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
-        Map<BazelLabel, Set<AspectTargetInfo>> resultMap = new LinkedHashMap<>();
-        Collection<BazelLabel> cacheMisses = populateFromCache(targets, resultMap, caller);
-        if (!cacheMisses.isEmpty()) {
-            loadTargetInfos(cacheMisses, resultMap, caller);
+        Map<BazelLabel, Set<AspectTargetInfo>> cacheHits = new HashMap<>();
+        Collection<BazelLabel> cacheMisses = populateFromCache(targets, cacheHits, caller);
+        if (cacheMisses.isEmpty()) {
+            return orderResults(targets, cacheHits);
         }
-        return resultMap;
+
+        // claim the misses that nobody else is loading, and wait on the ones that are already in flight
+        Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> ownedLoads = new LinkedHashMap<>();
+        Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> pendingLoads = new LinkedHashMap<>();
+        for (BazelLabel target : cacheMisses) {
+            CompletableFuture<Set<AspectTargetInfo>> future = new CompletableFuture<>();
+            CompletableFuture<Set<AspectTargetInfo>> existing = inFlightLoads.putIfAbsent(target, future);
+            if (existing == null) {
+                ownedLoads.put(target, future);
+                pendingLoads.put(target, future);
+            } else {
+                LOG.info("Aspect data for {} is already being loaded, waiting for it{}", target,
+                    getLogStr(target, caller));
+                pendingLoads.put(target, existing);
+            }
+        }
+        if (!ownedLoads.isEmpty()) {
+            runLoads(ownedLoads, caller);
+        }
+
+        for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> pending : pendingLoads.entrySet()) {
+            Set<AspectTargetInfo> atis = awaitLoad(pending.getValue());
+            if (atis != null) {
+                cacheHits.put(pending.getKey(), atis);
+            }
+        }
+        return orderResults(targets, cacheHits);
     }
 
     /**
      * Clear the entire AspectTargetInfo cache. This flushes the dependency graph for the workspace.
      */
-    public synchronized void flushAspectInfoCache() {
+    public void flushAspectInfoCache() {
+        cacheGeneration.incrementAndGet();
         aspectInfoCache_current.clear();
+        PersistentAspectTargetInfoCache diskCache = persistentCache;
+        if (diskCache != null) {
+            diskCache.clear();
+        }
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed target. This flushes the dependency graph for those target.
      */
-    public synchronized void flushAspectInfoCache(BazelLabel target) {
+    public void flushAspectInfoCache(BazelLabel target) {
+        cacheGeneration.incrementAndGet();
         // the target may not even be in cache, that is ok, just try to remove it from both current and wildcard caches
         // if the target exists in either it will get flushed
         aspectInfoCache_current.remove(target);
+        PersistentAspectTargetInfoCache diskCache = persistentCache;
+        if (diskCache != null) {
+            diskCache.remove(target);
+        }
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed targets. This flushes the dependency graph for those targets.
      */
-    public synchronized void flushAspectInfoCache(Set<BazelLabel> targets) {
+    public void flushAspectInfoCache(Set<BazelLabel> targets) {
+        cacheGeneration.incrementAndGet();
+        PersistentAspectTargetInfoCache diskCache = persistentCache;
         for (BazelLabel target : targets) {
             // the target may not even be in cache, that is ok, just try to remove it from both current and wildcard caches
             // if the target exists in either it will get flushed
             aspectInfoCache_current.remove(target);
+            if (diskCache != null) {
+                diskCache.remove(target);
+            }
         }
     }
 
@@ -175,7 +287,8 @@ public class BazelWorkspaceAspectProcessor {
      * Clear the AspectTargetInfo cache for the passed package. This flushes the dependency graph for any target that
      * contains the package name.
      */
-    public synchronized Set<BazelLabel> flushAspectInfoCacheForPackage(BazelLabel bazelPackage) {
+    public Set<BazelLabel> flushAspectInfoCacheForPackage(BazelLabel bazelPackage) {
+        cacheGeneration.incrementAndGet();
         Set<BazelLabel> flushedTargets = new LinkedHashSet<>();
 
         // the target may not even be in cache, that is ok, just try to remove it from both current and wildcard caches
@@ -188,42 +301,165 @@ public class BazelWorkspaceAspectProcessor {
                 iter.remove();
             }
         }
+        PersistentAspectTargetInfoCache diskCache = persistentCache;
+        if (diskCache != null) {
+            diskCache.removePackage(bazelPackage);
+        }
         return flushedTargets;
     }
 
     // INTERNALS
 
     /**
-     * Populates the specified resultMap from cache. Returns the cache misses.
+     * Populates the specified resultMap from the in memory cache. Returns the cache misses. This never blocks.
      */
-    private synchronized Collection<BazelLabel> populateFromCache(Collection<BazelLabel> labels,
+    private Collection<BazelLabel> populateFromCache(Collection<BazelLabel> labels,
             Map<BazelLabel, Set<AspectTargetInfo>> resultMap, String caller) {
+        Set<BazelLabel> cacheMisses = new LinkedHashSet<>();
+        for (BazelLabel target : labels) {
+            Set<AspectTargetInfo> aspectInfos = aspectInfoCache_current.get(target);
+            if (aspectInfos == null) {
+                LOG.info("Aspect data not found in cache for: " + target + getLogStr(target, caller));
+                cacheMisses.add(target);
+            } else {
+                LOG.info("Aspect data found in cache for: " + target + getLogStr(target, caller));
+                resultMap.put(target, aspectInfos);
+                numberCacheHits.incrementAndGet();
+            }
+        }
+        return cacheMisses;
+    }
+
+    /**
+     * Loads the labels claimed by this thread, from the disk cache if possible and otherwise by running the aspect, and
+     * completes their futures. The futures are always completed and released, also when the load fails.
+     */
+    private void runLoads(Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> ownedLoads, String caller)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        Map<BazelLabel, Set<AspectTargetInfo>> loaded = new HashMap<>();
+        try {
+            List<BazelLabel> cacheMisses = new ArrayList<>();
+            for (BazelLabel target : ownedLoads.keySet()) {
+                // another thread may have finished loading this label just before we claimed it
+                Set<AspectTargetInfo> aspectInfos = aspectInfoCache_current.get(target);
+                if (aspectInfos == null) {
+                    cacheMisses.add(target);
+                } else {
+                    loaded.put(target, aspectInfos);
+                    numberCacheHits.incrementAndGet();
+                }
+            }
+            if (!cacheMisses.isEmpty()) {
+                cacheMisses = populateFromDiskCache(cacheMisses, loaded, caller);
+            }
+            if (!cacheMisses.isEmpty()) {
+                aspectBuildLock.lockInterruptibly();
+                try {
+                    loadTargetInfos(cacheMisses, loaded, caller);
+                } finally {
+                    aspectBuildLock.unlock();
+                }
+            }
+            for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> owned : ownedLoads.entrySet()) {
+                owned.getValue().complete(loaded.get(owned.getKey()));
+            }
+        } catch (Throwable anyT) {
+            for (CompletableFuture<Set<AspectTargetInfo>> future : ownedLoads.values()) {
+                future.completeExceptionally(anyT);
+            }
+            throw anyT;
+        } finally {
+            for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> owned : ownedLoads.entrySet()) {
+                inFlightLoads.remove(owned.getKey(), owned.getValue());
+            }
+        }
+    }
+
+    /**
+     * Waits for an in flight load and rethrows its failure as one of the exception types of the public API.
+     */
+    private static Set<AspectTargetInfo> awaitLoad(CompletableFuture<Set<AspectTargetInfo>> future)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof BazelCommandLineToolConfigurationException) {
+                throw (BazelCommandLineToolConfigurationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the results in the order of the requested labels.
+     */
+    private static Map<BazelLabel, Set<AspectTargetInfo>> orderResults(Collection<BazelLabel> targets,
+            Map<BazelLabel, Set<AspectTargetInfo>> results) {
+        Map<BazelLabel, Set<AspectTargetInfo>> resultMap = new LinkedHashMap<>();
+        for (BazelLabel target : targets) {
+            Set<AspectTargetInfo> atis = results.get(target);
+            if (atis != null) {
+                resultMap.put(target, atis);
+            }
+        }
+        return resultMap;
+    }
+
+    /**
+     * Populates the specified resultMap from the on disk cache. Returns the cache misses.
+     */
+    private List<BazelLabel> populateFromDiskCache(List<BazelLabel> labels,
+            Map<BazelLabel, Set<AspectTargetInfo>> resultMap, String caller) {
+        PersistentAspectTargetInfoCache diskCache = getPersistentCache();
+        if (diskCache == null) {
+            return labels;
+        }
+        diskCache.clearDigestMemo();
         List<BazelLabel> cacheMisses = new ArrayList<>();
         for (BazelLabel target : labels) {
             String logstr = getLogStr(target, caller);
-            Set<AspectTargetInfo> aspectInfos = aspectInfoCache_current.get(target);
+            Map<BazelLabel, Set<AspectTargetInfo>> ownerToInfos = diskCache.load(target);
+            Set<AspectTargetInfo> aspectInfos = ownerToInfos == null ? null : ownerToInfos.get(target);
             if (aspectInfos == null) {
-                LOG.info("Aspect data not found in cache for: " + target + logstr);
+                LOG.info("Aspect data not found in disk cache for: " + target + logstr);
                 cacheMisses.add(target);
             } else {
-                LOG.info("Aspect data found in cache for: " + target + logstr);
+                LOG.info("Aspect data found in disk cache for: " + target + logstr);
+                aspectInfoCache_current.putAll(ownerToInfos);
+                aspectInfoCache_lastgood.putAll(ownerToInfos);
                 resultMap.put(target, aspectInfos);
-                numberCacheHits++;
+                numberCacheHits.incrementAndGet();
             }
         }
         return cacheMisses;
     }
 
-    private synchronized void loadTargetInfos(Collection<BazelLabel> cacheMisses,
+    /**
+     * Runs the aspect for the passed cache misses and populates the caches and the resultMap. Callers must hold the
+     * aspectBuildLock.
+     */
+    private void loadTargetInfos(Collection<BazelLabel> cacheMisses,
             Map<BazelLabel, Set<AspectTargetInfo>> resultMap, String caller)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
+        long generation = cacheGeneration.get();
         LOG.info("Starting generation of Aspect files for " + cacheMisses.size() + " packages.");
-        List<String> discoveredAspectFilePaths = generateAspectTargetInfoFiles(cacheMisses);
+        Map<BazelLabel, AspectTargetInfo> aspectInfos = generateAspectTargetInfos(cacheMisses);
         LOG.info("Finished generation of Aspect files for " + cacheMisses.size() + " packages.");
 
-        Map<BazelLabel, AspectTargetInfo> aspectInfos = loadAspectFilePaths(discoveredAspectFilePaths);
-
         if (aspectInfos.isEmpty()) {
             // We were not able to load any aspects, this generally indicates some sort of error condition;
             // it could be because the user introduced a compile error in it and the Aspect wont run.
@@ -239,21 +475,33 @@ public class BazelWorkspaceAspectProcessor {
                 }
             }
         } else {
+            PersistentAspectTargetInfoCache diskCache = getPersistentCache();
+            AspectClosureEngine closureEngine = new AspectClosureEngine(aspectInfos);
             Map<BazelLabel, Set<AspectTargetInfo>> owningLabelToAspectInfos = new HashMap<>();
+            Map<BazelLabel, Map<BazelLabel, Set<AspectTargetInfo>>> diskCacheEntries = new LinkedHashMap<>();
             for (BazelLabel label : cacheMisses) {
-                Map<BazelLabel, Set<AspectTargetInfo>> m = assignAspectsToOwningLabel(label, aspectInfos);
+                Map<BazelLabel, Set<AspectTargetInfo>> m = assignAspectsToOwningLabel(label, closureEngine);
                 owningLabelToAspectInfos.putAll(m);
+                if (m.containsKey(label)) {
+                    diskCacheEntries.put(label, m);
+                }
+            }
+            // a flush that happened while the aspect was running invalidates what we just computed, so hand the
+            // results to the callers but do not cache them
+            boolean flushed = cacheGeneration.get() != generation;
+            if ((diskCache != null) && !flushed) {
+                storeUnlessFlushed(diskCache, diskCacheEntries, generation);
             }
             for (BazelLabel label : owningLabelToAspectInfos.keySet()) {
                 Set<AspectTargetInfo> infos = owningLabelToAspectInfos.get(label);
-                aspectInfoCache_current.put(label, infos);
+                if (!flushed) {
+                    aspectInfoCache_current.put(label, infos);
+                }
                 aspectInfoCache_lastgood.put(label, infos);
                 LOG.info("Aspect data loaded for target: " + label + getLogStr(label, caller));
             }
             for (BazelLabel label : cacheMisses) {
-                // since we just populated the caches above, we should now find results
-                // this could be done in the loop above, but this is good sanity
-                Set<AspectTargetInfo> atis = aspectInfoCache_current.get(label);
+                Set<AspectTargetInfo> atis = owningLabelToAspectInfos.get(label);
                 if (atis == null) {
                     LOG.error("Aspect execution failed (single) for target: " + label + getLogStr(label, caller));
                     atis = Collections.emptySet();
@@ -263,6 +511,42 @@ public class BazelWorkspaceAspectProcessor {
         }
     }
 
+    /**
+     * Writes the entries to the on disk cache, unless a flush happened since the passed generation. The flush methods
+     * bump the generation before they remove entries from the disk cache, and the removal needs the monitor of the disk
+     * cache. So holding that monitor across the check and the writes guarantees that a concurrent flush either stops
+     * the writes, or removes what they wrote.
+     */
+    private void storeUnlessFlushed(PersistentAspectTargetInfoCache diskCache,
+            Map<BazelLabel, Map<BazelLabel, Set<AspectTargetInfo>>> entries, long generation) {
+        synchronized (diskCache) {
+            if (cacheGeneration.get() != generation) {
+                return;
+            }
+            for (Map.Entry<BazelLabel, Map<BazelLabel, Set<AspectTargetInfo>>> entry : entries.entrySet()) {
+                diskCache.store(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the on disk cache, creating it in the output base on first use. Returns null if it is disabled or the
+     * output base cannot be determined.
+     */
+    private synchronized PersistentAspectTargetInfoCache getPersistentCache() {
+        if ((persistentCache == null) && persistentCacheEnabled) {
+            try {
+                File outputBase = bazelWorkspaceCommandRunner.computeBazelWorkspaceOutputBase();
+                persistentCache = new PersistentAspectTargetInfoCache(new File(outputBase, PERSISTENT_CACHE_DIRNAME),
+                        bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory(), aspectDirectory);
+            } catch (Exception anyE) {
+                LOG.error("Could not locate the output base, the aspect disk cache is disabled.", anyE);
+                persistentCacheEnabled = false;
+            }
+        }
+        return persistentCache;
+    }
+
     /**
      * This method creates and returns a mapping of a Label to the AspectTargetInfo (ATI) instances belonging to that
      * Label. These ATI instances are the transitive closure of ATIs referenced by the mapped Label.
@@ -284,103 +568,37 @@ public class BazelWorkspaceAspectProcessor {
      * of ATIs for t2
      */
     private static Map<BazelLabel, Set<AspectTargetInfo>> assignAspectsToOwningLabel(BazelLabel requestingLabel,
-            Map<BazelLabel, AspectTargetInfo> depNameToTargetInfo) {
+            AspectClosureEngine closureEngine) {
         Map<BazelLabel, Set<AspectTargetInfo>> transitivesClosures = new HashMap<>();
 
         // find starting point, based on target - this is trivial, but we also support wildcard
         // targets (so that we can run a single bazal build cmd and get all aspects)
-        for (AspectTargetInfo ati : depNameToTargetInfo.values()) {
-            BazelLabel currentLabel = new BazelLabel(ati.getLabelPath());
-            if (requestingLabel.isConcrete()) {
-                if (requestingLabel.equals(currentLabel)) {
-                    Set<AspectTargetInfo> allDeps = getTransitiveClosure(ati, depNameToTargetInfo);
-                    transitivesClosures.put(new BazelLabel(ati.getLabelPath()), allDeps);
-                }
-            } else {
-                // all targets in the requested package qualify
-                if (currentLabel.getPackagePath().equals(requestingLabel.getPackagePath())) {
-                    Set<AspectTargetInfo> allDeps = getTransitiveClosure(ati, depNameToTargetInfo);
-                    transitivesClosures.put(new BazelLabel(ati.getLabelPath()), allDeps);
-                }
+        if (requestingLabel.isConcrete()) {
+            Set<AspectTargetInfo> allDeps = closureEngine.getTransitiveClosure(requestingLabel);
+            if (allDeps != null) {
+                transitivesClosures.put(requestingLabel, allDeps);
             }
-        }
+        } else {
+            // all targets in the requested package qualify
+            transitivesClosures.putAll(closureEngine.getTransitiveClosuresForPackage(requestingLabel));
 
-        if (!requestingLabel.isConcrete()) {
             // also return a mapping of wildcard target -> all AspectTargetInfo instances
-            transitivesClosures.put(requestingLabel, new HashSet<>(depNameToTargetInfo.values()));
+            transitivesClosures.put(requestingLabel, closureEngine.getAllTargetInfos());
         }
 
         return transitivesClosures;
 
     }
 
-    private static Set<AspectTargetInfo> getTransitiveClosure(AspectTargetInfo aspectTargetInfo,
-            Map<BazelLabel, AspectTargetInfo> depNameToTargetInfo) {
-        Set<AspectTargetInfo> allDeps = new HashSet<>();
-        List<AspectTargetInfo> queue = new ArrayList<>();
-        Set<String> skippedLabels = new HashSet<>();
-        Set<String> visitedLabels = new HashSet<>();
-        queue.add(aspectTargetInfo);
-        while (!queue.isEmpty()) {
-            AspectTargetInfo ati = queue.remove(0);
-
-            String thisLabel = ati.getLabelPath();
-            if (visitedLabels.contains(thisLabel)) {
-                // we have already visited this dependency (through another path) just skip it
-                continue;
-            }
-            visitedLabels.add(thisLabel);
-
-            if (ati != aspectTargetInfo) {
-                allDeps.add(ati);
-            }
-            List<String> depLabels = ati.getDeps();
-            for (String label : depLabels) {
-                if (skippedLabels.contains(label)) {
-                    // this is a dep that is not something we work with, so we ignore it
-                    continue;
-                }
-                if (visitedLabels.contains(label)) {
-                    // we have already visited this dependency (through another path) just skip it
-                    continue;
-                }
-
-                BazelLabel depLabel = new BazelLabel(label);
-                AspectTargetInfo dep = depNameToTargetInfo.get(depLabel);
-                if (dep == null) {
-                    LOG.info("No AspectTargetInfo exists for " + label
-                            + "; it and its descendents are excluded from analysis.");
-                    skippedLabels.add(label);
-                } else {
-                    queue.add(dep);
-                }
-            }
-        }
-
-        // now add this aspect to the transitive closure if test or import (TODO why?)
-        BazelTargetKind kind = aspectTargetInfo.getKind();
-        if (kind != null) {
-            if (kind.isKind("java_test")) {
-                allDeps.add(aspectTargetInfo);
-            } else if (kind.isKind("java_import")) {
-                allDeps.add(aspectTargetInfo);
-            }
-        } else {
-            kind = aspectTargetInfo.getKind();
-            LOG.info("AspectInfo " + aspectTargetInfo.getLabel().getLabelPath()
-                + " does not have an associated target kind.");
-        }
-
-        return Collections.unmodifiableSet(allDeps);
-    }
-
     /**
-     * Runs the Aspect for the list of passed targets. Returns the list of file paths to the output artifacts created by
-     * the Aspects.
+     * Runs the Aspect for the list of passed targets, and loads the output artifacts created by the Aspects.
+     * <p>
+     * The targets are split into batches sized by the {@link AspectBatchScheduler}. Each json file is handed to an
+     * {@link AspectTargetInfoStreamLoader} as soon as Bazel prints its path, so parsing overlaps with the build.
      *
      * @throws BazelCommandLineToolConfigurationException
      */
-    private synchronized List<String> generateAspectTargetInfoFiles(Collection<BazelLabel> targets)
+    private Map<BazelLabel, AspectTargetInfo> generateAspectTargetInfos(Collection<BazelLabel> targets)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
         if (targets.isEmpty()) {
             throw new IllegalArgumentException("Parameter [targets] cannot be empty.");
@@ -388,22 +606,21 @@ public class BazelWorkspaceAspectProcessor {
         File bazelWorkspaceRootDirectory = bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory();
 
         BazelLabel[] targetsArray = targets.toArray(new BazelLabel[] {});
-        int lastValidTargetIndex = targets.size() - 1;
+        int totalTargets = targetsArray.length;
         int currentTargetIndex = 0;
-        List<String> listOfGeneratedFilePaths = new ArrayList<>();
+        AspectTargetInfoStreamLoader loader = new AspectTargetInfoStreamLoader();
+        AspectBatchScheduler scheduler = batchScheduler;
 
         // run the aspect generation for the target labels, we want to minimize the number of bazel invocations
-        // because there is a few seconds of overhead for each invocation, but we only do 25 at a time so we get
-        // progress log messages along the way
-        while (currentTargetIndex <= lastValidTargetIndex) {
+        // because there is a few seconds of overhead for each invocation, but we also want progress log messages
+        // along the way and to start parsing results early, so the batch scheduler sizes each invocation
+        while (currentTargetIndex < totalTargets) {
             int startTargetIndex = currentTargetIndex;
+            int batchSize = scheduler.nextBatchSize(totalTargets - currentTargetIndex);
             List<String> args = new ArrayList<>();
             args.add("build");
             args.addAll(aspectOptions);
-            for (int i = 0; i < 25; i++) {
-                if (currentTargetIndex > lastValidTargetIndex) {
-                    break;
-                }
+            for (int i = 0; i < batchSize; i++) {
                 String label = targetsArray[currentTargetIndex].toString();
                 currentTargetIndex++;
                 args.add(label);
@@ -412,7 +629,7 @@ public class BazelWorkspaceAspectProcessor {
             // Strip out the artifact list, keeping the xyz.bzljavasdk-data.json files (located in subdirs in the bazel-out path)
             // Line must start with >>> and end with the aspect file suffix
             LOG.info("Running command to generate aspect file for labels indexed [" + startTargetIndex + "] through ["
-                    + (startTargetIndex + 25) + "] out of the total [" + (lastValidTargetIndex + 1) + "]");
+                    + (currentTargetIndex - 1) + "] out of the total [" + totalTargets + "]");
             Function<String, String> filter = (t) -> {
                 LOG.info("Aspect output line: " + t);
                 String r = null;
@@ -420,6 +637,7 @@ public class BazelWorkspaceAspectProcessor {
                     if (t.endsWith(AspectTargetInfoFactory.ASPECT_FILENAME_SUFFIX)) {
                         LOG.info("  Aspect output (json file): {}", t);
                         r = t.substring(3);
+                        loader.submit(r);
                     } else {
                         LOG.info("  Aspect output (ignored): {}", t);
                         r = null;
@@ -431,12 +649,29 @@ public class BazelWorkspaceAspectProcessor {
                 return r;
             };
 
+            long startTimeMS = System.currentTimeMillis();
             List<String> partialListOfGeneratedFilePaths =
                     bazelCommandExecutor.runBazelAndGetErrorLines(ConsoleType.WORKSPACE, bazelWorkspaceRootDirectory,
                         null, args, filter, BazelCommandExecutor.TIMEOUT_INFINITE);
-            listOfGeneratedFilePaths.addAll(partialListOfGeneratedFilePaths);
+            scheduler.recordBatch(batchSize, System.currentTimeMillis() - startTimeMS);
+
+            // the filter has already submitted the paths it saw, but some command implementations return the
+            // selected lines without streaming them through the filter; the loader ignores duplicates
+            loader.submitAll(partialListOfGeneratedFilePaths);
+        }
+
+        int numberOfGeneratedFiles = loader.getSubmittedCount();
+        Map<String, AspectTargetInfo> lToAtis = loader.awaitResults();
+        if (numberOfGeneratedFiles == 0) {
+            LOG.error(
+                "No results returned from running aspects. This normally means there is a build error in the BUILD file. "
+                        + "Please run 'bazel build //...' to verify that the workspace is valid. ");
+            return new HashMap<>();
         }
-        return listOfGeneratedFilePaths;
+        if (lToAtis.isEmpty()) {
+            LOG.error("No aspect files were parsed successfully. Aspect file list size: " + numberOfGeneratedFiles);
+        }
+        return toLabelMap(lToAtis);
     }
 
     private static String getLogStr(BazelLabel target, String caller) {
@@ -459,6 +694,11 @@ public class BazelWorkspaceAspectProcessor {
             LOG.error("No aspect files were parsed successfully. Aspect file list size: " + aspectFilePaths.size());
             return bzToAtis;
         }
+        return toLabelMap(lToAtis);
+    }
+
+    private static Map<BazelLabel, AspectTargetInfo> toLabelMap(Map<String, AspectTargetInfo> lToAtis) {
+        Map<BazelLabel, AspectTargetInfo> bzToAtis = new HashMap<>();
         for (Map.Entry<String, AspectTargetInfo> e : lToAtis.entrySet()) {
             String key = e.getKey();
             if (key == null) {
@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfoFactory;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+/**
+ * On disk cache of the aspect results, such that a restart of the tool does not need to re-run the aspect over the
+ * whole workspace.
+ * <p>
+ * There is one cache entry per requested label (typically a package wildcard label //a/b/c:*). The entry records, for
+ * each owning label, the paths of the aspect json files that make up its transitive closure. The json files live in
+ * the Bazel output base and are written by the aspect itself, so we do not need to copy them.
+ * <p>
+ * Each entry is stamped with content digests of its inputs: the BUILD file and the file listing of every workspace
+ * package in the closure, the .bzl files loaded (transitively) from those BUILD files, the WORKSPACE file (which
+ * defines the external repositories) and the aspect implementation. The entry is only used if all of those still match,
+ * and if all the json files still exist.
+ * <p>
+ * This class is thread-safe: the methods that read or write entries are synchronized on the instance, so that a
+ * removal is never interleaved with a store of the same entry. Callers can hold the monitor of the instance to make a
+ * check and a store atomic with respect to removals.
+ */
+public class PersistentAspectTargetInfoCache {
+    private static final LogHelper LOG = LogHelper.log(PersistentAspectTargetInfoCache.class);
+
+    /**
+     * Bump this when the entry format changes, so that stale entries are ignored.
+     */
+    static final String CACHE_FORMAT_VERSION = "2";
+    static final String ENTRY_SUFFIX = ".aspectcache.json";
+
+    private final File cacheDirectory;
+    private final File workspaceRootDirectory;
+    private final File aspectDirectory;
+    private volatile String aspectDigest;
+
+    /**
+     * Digests of the BUILD, .bzl and WORKSPACE files that the entries depend on.
+     */
+    private final WorkspaceInputDigests inputDigests;
+
+    /**
+     * @param cacheDirectory
+     *            directory to hold the cache entries, it will be created if it does not exist
+     * @param workspaceRootDirectory
+     *            the root of the Bazel workspace, used to locate BUILD and .bzl files
+     * @param aspectDirectory
+     *            the directory that contains the aspect implementation, may be null
+     */
+    public PersistentAspectTargetInfoCache(File cacheDirectory, File workspaceRootDirectory, File aspectDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        this.workspaceRootDirectory = workspaceRootDirectory;
+        this.aspectDirectory = aspectDirectory;
+        inputDigests = new WorkspaceInputDigests(workspaceRootDirectory);
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Forgets the memoized file digests. Call this at the start of each sync, as BUILD files may have been edited
+     * since the previous one.
+     */
+    public synchronized void clearDigestMemo() {
+        inputDigests.clear();
+    }
+
+    /**
+     * Loads the cached mapping of owning label to the transitive closure of AspectTargetInfos for the requested label.
+     * Returns null if there is no valid entry.
+     */
+    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> load(BazelLabel requestedLabel) {
+        File entryFile = getEntryFile(requestedLabel);
+        if (!entryFile.exists()) {
+            return null;
+        }
+        JSONObject entry = null;
+        try (Reader reader = Files.newBufferedReader(entryFile.toPath(), StandardCharsets.UTF_8)) {
+            entry = (JSONObject) new JSONParser().parse(reader);
+        } catch (Exception anyE) {
+            LOG.error("Could not read the aspect cache entry {}, ignoring it.", entryFile.getAbsolutePath());
+            deleteQuietly(entryFile);
+            return null;
+        }
+
+        if (!CACHE_FORMAT_VERSION.equals(entry.get("version"))
+                || !requestedLabel.getLabelPath().equals(entry.get("label"))
+                || !getAspectDigest().equals(entry.get("aspect"))) {
+            return null;
+        }
+        JSONObject inputs = (JSONObject) entry.get("inputs");
+        JSONObject targets = (JSONObject) entry.get("targets");
+        if ((inputs == null) || (targets == null)) {
+            return null;
+        }
+        if (!inputDigests.matches(inputs)) {
+            LOG.info("Aspect cache entry for {} is stale, a BUILD or .bzl file has changed.", requestedLabel);
+            return null;
+        }
+
+        // the same json file is shared by many owning labels, only parse each once
+        Map<String, AspectTargetInfo> pathToInfo = new HashMap<>();
+        Map<BazelLabel, Set<AspectTargetInfo>> result = new LinkedHashMap<>();
+        for (Object ownerObj : targets.keySet()) {
+            String owner = (String) ownerObj;
+            Set<AspectTargetInfo> infos = new HashSet<>();
+            for (Object pathObj : (JSONArray) targets.get(owner)) {
+                String path = (String) pathObj;
+                AspectTargetInfo info = pathToInfo.get(path);
+                if (info == null) {
+                    File aspectFile = new File(path);
+                    if (!aspectFile.exists()) {
+                        // bazel clean, or the output base was otherwise pruned
+                        LOG.info("Aspect cache entry for {} refers to missing file {}.", requestedLabel, path);
+                        return null;
+                    }
+                    info = AspectTargetInfoFactory.loadAspectFile(aspectFile);
+                    if (info == null) {
+                        return null;
+                    }
+                    pathToInfo.put(path, info);
+                }
+                infos.add(info);
+            }
+            result.put(new BazelLabel(owner), infos);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the cache entry for the requested label.
+     *
+     * @param ownerToInfos
+     *            the mapping of owning labels (including the requested label itself) to the transitive closure of
+     *            AspectTargetInfos, as computed by the aspect processor
+     */
+    public synchronized void store(BazelLabel requestedLabel, Map<BazelLabel, Set<AspectTargetInfo>> ownerToInfos) {
+        JSONObject targets = new JSONObject();
+        Map<String, String> inputs = new TreeMap<>();
+        boolean hasExternalDeps = false;
+        for (Map.Entry<BazelLabel, Set<AspectTargetInfo>> ownerEntry : ownerToInfos.entrySet()) {
+            JSONArray paths = new JSONArray();
+            for (AspectTargetInfo info : ownerEntry.getValue()) {
+                if (info.getAspectDataFile() == null) {
+                    // cannot be reloaded later, so do not cache this owner at all
+                    return;
+                }
+                paths.add(info.getAspectDataFile().getAbsolutePath());
+                String labelPath = info.getLabelPath();
+                if ((labelPath == null) || labelPath.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+                    hasExternalDeps = true;
+                } else {
+                    addPackageInputs(info.getLabel().getPackagePath(), inputs);
+                }
+            }
+            targets.put(ownerEntry.getKey().getLabelPath(), paths);
+        }
+        addPackageInputs(requestedLabel.getPackagePath(), inputs);
+        if (hasExternalDeps) {
+            inputDigests.addWorkspaceInputs(inputs);
+        }
+
+        JSONObject entry = new JSONObject();
+        entry.put("version", CACHE_FORMAT_VERSION);
+        entry.put("label", requestedLabel.getLabelPath());
+        entry.put("aspect", getAspectDigest());
+        JSONObject inputsJson = new JSONObject();
+        inputsJson.putAll(inputs);
+        entry.put("inputs", inputsJson);
+        entry.put("targets", targets);
+
+        File entryFile = getEntryFile(requestedLabel);
+        try {
+            Files.createDirectories(entryFile.getParentFile().toPath());
+            // write to a temp file and move it in place, so that a crash does not leave a truncated entry behind
+            File tmpFile = new File(entryFile.getParentFile(), entryFile.getName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+                entry.writeJSONString(writer);
+            }
+            Files.move(tmpFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            LOG.error("Could not write the aspect cache entry {}", ioe, entryFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Removes the cache entry for the passed label.
+     */
+    public synchronized void remove(BazelLabel label) {
+        deleteQuietly(getEntryFile(label));
+        inputDigests.clear();
+    }
+
+    /**
+     * Removes the cache entries for all labels in the passed package.
+     */
+    public synchronized void removePackage(BazelLabel bazelPackage) {
+        File packageDir = getPackageDirectory(bazelPackage);
+        File[] entries = packageDir.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                deleteQuietly(entry);
+            }
+        }
+        deleteQuietly(packageDir);
+        inputDigests.clear();
+    }
+
+    /**
+     * Removes all cache entries.
+     */
+    public synchronized void clear() {
+        File[] packageDirs = cacheDirectory.listFiles();
+        if (packageDirs != null) {
+            for (File packageDir : packageDirs) {
+                File[] entries = packageDir.listFiles();
+                if (entries != null) {
+                    for (File entry : entries) {
+                        deleteQuietly(entry);
+                    }
+                }
+                deleteQuietly(packageDir);
+            }
+        }
+        inputDigests.clear();
+        aspectDigest = null;
+    }
+
+    // INTERNAL
+
+    // the BUILD and .bzl files of the package, and its file listing, which determines the result of glob()
+    private void addPackageInputs(String packagePath, Map<String, String> inputs) {
+        inputDigests.addPackageInputs(packagePath, inputs);
+        inputDigests.addPackageListingInput(packagePath, inputs);
+    }
+
+    File getEntryFile(BazelLabel label) {
+        String targetName = label.isConcrete() ? label.getTargetName() : BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR;
+        return new File(getPackageDirectory(label), sanitize(targetName) + ENTRY_SUFFIX);
+    }
+
+    private File getPackageDirectory(BazelLabel label) {
+        String packagePath = label.getPackagePath(true);
+        return new File(cacheDirectory, sanitize(packagePath));
+    }
+
+    private static String sanitize(String name) {
+        if ((name == null) || name.isEmpty()) {
+            return "_root";
+        }
+        // the label is stored inside each entry and verified on load, so collisions here are harmless
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private String getAspectDigest() {
+        if (aspectDigest == null) {
+            StringBuilder sb = new StringBuilder(CACHE_FORMAT_VERSION);
+            if (aspectDirectory != null) {
+                File[] aspectFiles = aspectDirectory.listFiles();
+                if (aspectFiles != null) {
+                    Arrays.sort(aspectFiles);
+                    for (File aspectFile : aspectFiles) {
+                        if (aspectFile.isFile()) {
+                            sb.append(aspectFile.getName()).append('=').append(inputDigests.digest(aspectFile))
+                                    .append(';');
+                        }
+                    }
+                }
+            }
+            aspectDigest = WorkspaceInputDigests.digestString(sb.toString());
+        }
+        return aspectDigest;
+    }
+
+    private static void deleteQuietly(File file) {
+        if (!file.delete() && file.exists()) {
+            LOG.info("Could not delete aspect cache file {}", file.getAbsolutePath());
+        }
+    }
+}
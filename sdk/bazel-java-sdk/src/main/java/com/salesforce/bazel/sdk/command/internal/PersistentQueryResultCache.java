@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * On disk cache of bazel query results, such that a restart of the tool does not need to re-run the same queries.
+ * <p>
+ * Entries are keyed by the query arguments and the Bazel version. Each entry is stamped with content digests of its
+ * inputs: the BUILD file (and the .bzl files it loads, transitively) of every workspace package named in the query
+ * expression or in the result, the file listing of those packages (which feeds glob()), and the WORKSPACE file if
+ * external repositories are involved. The entry is only used if all of those still match.
+ * <p>
+ * Queries over recursive target patterns (//a/...) are not cached, because a new package anywhere below the pattern
+ * would change the result without changing any recorded input.
+ */
+public class PersistentQueryResultCache {
+    private static final LogHelper LOG = LogHelper.log(PersistentQueryResultCache.class);
+
+    /**
+     * Bump this when the entry format changes, so that stale entries are ignored.
+     */
+    static final String CACHE_FORMAT_VERSION = "2";
+    static final String ENTRY_SUFFIX = ".querycache.json";
+
+    /**
+     * Workspace files that change the behavior of every query.
+     */
+    private static final String[] WORKSPACE_CONFIG_FILES = { ".bazelversion", ".bazelrc" };
+
+    // //a/b/c:d, @repo//a/b:c and //a/b/c; the package and target stop at the query language delimiters
+    private static final Pattern LABEL_PATTERN =
+            Pattern.compile("(@[A-Za-z0-9_.~+-]*)?//([^:\\s()'\",]*)(:[^\\s()'\",]*)?");
+
+    private final File cacheDirectory;
+    private final File workspaceRootDirectory;
+    private final String bazelVersionKey;
+    private final WorkspaceInputDigests inputDigests;
+
+    /**
+     * @param cacheDirectory
+     *            directory to hold the cache entries, it will be created if it does not exist
+     * @param workspaceRootDirectory
+     *            the root of the Bazel workspace, used to locate BUILD and .bzl files
+     * @param bazelVersionKey
+     *            identifies the Bazel executable, entries written by a different Bazel are ignored
+     */
+    public PersistentQueryResultCache(File cacheDirectory, File workspaceRootDirectory, String bazelVersionKey) {
+        this.cacheDirectory = cacheDirectory;
+        this.workspaceRootDirectory = workspaceRootDirectory;
+        this.bazelVersionKey = bazelVersionKey;
+        inputDigests = new WorkspaceInputDigests(workspaceRootDirectory);
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Forgets the memoized file digests. Call this when files in the workspace may have been edited, e.g. at the start
+     * of each sync.
+     */
+    public void clearDigestMemo() {
+        inputDigests.clear();
+    }
+
+    /**
+     * Loads the cached result lines for the query. Returns null if there is no valid entry.
+     *
+     * @param queryArgs
+     *            the arguments of the Bazel command, starting with 'query'
+     */
+    public List<String> load(List<String> queryArgs) {
+        File entryFile = getEntryFile(queryArgs);
+        if (!entryFile.exists()) {
+            return null;
+        }
+        JSONObject entry = null;
+        try (Reader reader = Files.newBufferedReader(entryFile.toPath(), StandardCharsets.UTF_8)) {
+            entry = (JSONObject) new JSONParser().parse(reader);
+        } catch (Exception anyE) {
+            LOG.error("Could not read the query cache entry {}, ignoring it.", entryFile.getAbsolutePath());
+            deleteQuietly(entryFile);
+            return null;
+        }
+
+        // the entry file name is a digest, so verify that this really is our query
+        if (!CACHE_FORMAT_VERSION.equals(entry.get("version")) || !bazelVersionKey.equals(entry.get("bazel"))
+                || !queryArgs.equals(entry.get("query"))) {
+            return null;
+        }
+        JSONObject inputs = (JSONObject) entry.get("inputs");
+        JSONArray lines = (JSONArray) entry.get("lines");
+        if ((inputs == null) || (lines == null)) {
+            return null;
+        }
+        if (!inputDigests.matches(inputs)) {
+            LOG.info("Query cache entry for {} is stale, a BUILD or .bzl file has changed.", queryArgs);
+            return null;
+        }
+        List<String> resultLines = new ArrayList<>(lines.size());
+        for (Object line : lines) {
+            resultLines.add((String) line);
+        }
+        return resultLines;
+    }
+
+    /**
+     * Writes the cache entry for the query. Queries that cannot be invalidated reliably are silently not cached.
+     *
+     * @param queryArgs
+     *            the arguments of the Bazel command, starting with 'query'
+     * @param resultLines
+     *            the output lines of the query
+     */
+    public void store(List<String> queryArgs, List<String> resultLines) {
+        Map<String, String> inputs = computeInputs(queryArgs, resultLines);
+        if (inputs == null) {
+            return;
+        }
+
+        JSONObject entry = new JSONObject();
+        entry.put("version", CACHE_FORMAT_VERSION);
+        entry.put("bazel", bazelVersionKey);
+        JSONArray query = new JSONArray();
+        query.addAll(queryArgs);
+        entry.put("query", query);
+        JSONObject inputsJson = new JSONObject();
+        inputsJson.putAll(inputs);
+        entry.put("inputs", inputsJson);
+        JSONArray lines = new JSONArray();
+        lines.addAll(resultLines);
+        entry.put("lines", lines);
+
+        File entryFile = getEntryFile(queryArgs);
+        try {
+            Files.createDirectories(entryFile.getParentFile().toPath());
+            // write to a temp file and move it in place, so that a crash does not leave a truncated entry behind
+            File tmpFile = new File(entryFile.getParentFile(), entryFile.getName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+                entry.writeJSONString(writer);
+            }
+            Files.move(tmpFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            LOG.error("Could not write the query cache entry {}", ioe, entryFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Removes all cache entries.
+     */
+    public void clear() {
+        File[] bucketDirs = cacheDirectory.listFiles();
+        if (bucketDirs != null) {
+            for (File bucketDir : bucketDirs) {
+                File[] entries = bucketDir.listFiles();
+                if (entries != null) {
+                    for (File entry : entries) {
+                        deleteQuietly(entry);
+                    }
+                }
+                deleteQuietly(bucketDir);
+            }
+        }
+        inputDigests.clear();
+    }
+
+    // INTERNAL
+
+    /**
+     * Computes the inputs of the query, as a map of workspace relative path to digest. Returns null if the query cannot
+     * be cached.
+     */
+    Map<String, String> computeInputs(List<String> queryArgs, List<String> resultLines) {
+        Map<String, String> inputs = new TreeMap<>();
+        boolean[] hasExternalDeps = new boolean[1];
+        int expressionPackages = 0;
+        for (String arg : queryArgs) {
+            int added = addLabelInputs(arg, inputs, hasExternalDeps, true);
+            if (added < 0) {
+                return null;
+            }
+            expressionPackages += added;
+        }
+        if ((expressionPackages == 0) && !hasExternalDeps[0]) {
+            // no absolute labels, the expression is something we cannot attribute to packages
+            return null;
+        }
+        for (String resultLine : resultLines) {
+            addLabelInputs(resultLine, inputs, hasExternalDeps, false);
+        }
+        if (hasExternalDeps[0]) {
+            inputDigests.addWorkspaceInputs(inputs);
+        }
+        for (String configFile : WORKSPACE_CONFIG_FILES) {
+            inputs.put(configFile, inputDigests.digest(new File(workspaceRootDirectory, configFile)));
+        }
+        return inputs;
+    }
+
+    /**
+     * Adds the inputs of the packages of the labels found in the text. Returns the number of workspace labels found,
+     * or -1 if a recursive pattern was found and rejectRecursive is set.
+     */
+    private int addLabelInputs(String text, Map<String, String> inputs, boolean[] hasExternalDeps,
+            boolean rejectRecursive) {
+        int found = 0;
+        Matcher matcher = LABEL_PATTERN.matcher(text);
+        while (matcher.find()) {
+            String repo = matcher.group(1);
+            if ((repo != null) && (repo.length() > 1)) {
+                // external repositories are defined by the WORKSPACE file
+                hasExternalDeps[0] = true;
+                continue;
+            }
+            String packagePath = matcher.group(2);
+            String target = matcher.group(3);
+            if (packagePath.endsWith("...") || ":...".equals(target)) {
+                if (rejectRecursive) {
+                    return -1;
+                }
+                continue;
+            }
+            if (packagePath.endsWith("/")) {
+                packagePath = packagePath.substring(0, packagePath.length() - 1);
+            }
+            inputDigests.addPackageInputs(packagePath, inputs);
+            inputDigests.addPackageListingInput(packagePath, inputs);
+            found++;
+        }
+        return found;
+    }
+
+    File getEntryFile(List<String> queryArgs) {
+        String key = WorkspaceInputDigests.digestString(bazelVersionKey + "\n" + String.join("\n", queryArgs));
+        return new File(new File(cacheDirectory, key.substring(0, 2)), key + ENTRY_SUFFIX);
+    }
+
+    private static void deleteQuietly(File file) {
+        if (!file.delete() && file.exists()) {
+            LOG.info("Could not delete query cache file {}", file.getAbsolutePath());
+        }
+    }
+}
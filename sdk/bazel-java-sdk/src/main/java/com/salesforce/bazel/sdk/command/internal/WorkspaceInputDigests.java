@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.util.BazelConstants;
+
+/**
+ * Computes content digests of the workspace files that Bazel reads to evaluate a package: the BUILD file, the
+ * workspace local .bzl files it loads, and the WORKSPACE file. The on disk caches use these digests to decide if an
+ * entry is still valid.
+ * <p>
+ * Digests are memoized per file, and the memo entry is reused only while the modification time and length of the file
+ * are unchanged. Package listings are memoized, and reused only while the modification times of the directories they
+ * were computed from are unchanged; adding, removing or renaming a file changes the time of its directory.
+ */
+class WorkspaceInputDigests {
+    static final String MISSING_DIGEST = "missing";
+
+    private static final Pattern LOAD_PATTERN = Pattern.compile("load\\(\\s*[\"']([^\"']+)[\"']");
+
+    private final File workspaceRootDirectory;
+    private final Map<File, MemoizedDigest> digestMemo = new ConcurrentHashMap<>();
+    private final Map<String, MemoizedListing> listingMemo = new ConcurrentHashMap<>();
+
+    WorkspaceInputDigests(File workspaceRootDirectory) {
+        this.workspaceRootDirectory = workspaceRootDirectory;
+    }
+
+    /**
+     * Forgets the memoized digests.
+     */
+    void clear() {
+        digestMemo.clear();
+        listingMemo.clear();
+    }
+
+    /**
+     * Returns true if each of the workspace relative paths in the inputs map still has the recorded digest. A path
+     * that ends with a slash denotes the file listing of a package, see {@link #addPackageListingInput(String, Map)}.
+     */
+    boolean matches(Map<?, ?> inputs) {
+        for (Map.Entry<?, ?> input : inputs.entrySet()) {
+            String relativePath = (String) input.getKey();
+            String digest = relativePath.endsWith("/")
+                    ? listingDigest(relativePath.substring(0, relativePath.length() - 1))
+                    : digest(new File(workspaceRootDirectory, relativePath));
+            if (!digest.equals(input.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the BUILD file of the package, and the workspace local .bzl files it loads directly or transitively, to the
+     * inputs map.
+     */
+    void addPackageInputs(String packagePath, Map<String, String> inputs) {
+        File packageDir = new File(workspaceRootDirectory, packagePath);
+        for (String buildFileName : BazelConstants.BUILD_FILE_NAMES) {
+            String relativePath = packagePath.isEmpty() ? buildFileName : packagePath + "/" + buildFileName;
+            if (inputs.containsKey(relativePath)) {
+                continue;
+            }
+            File buildFile = new File(packageDir, buildFileName);
+            inputs.put(relativePath, digest(buildFile));
+            if (buildFile.exists()) {
+                addLoadedFiles(packagePath, buildFile, inputs);
+            }
+        }
+    }
+
+    // adds the .bzl files loaded by the file, and the ones they load in turn
+    private void addLoadedFiles(String packagePath, File file, Map<String, String> inputs) {
+        Deque<String[]> queue = new ArrayDeque<>(findLoadedLabels(packagePath, file));
+        while (!queue.isEmpty()) {
+            String[] bzlLabel = queue.poll();
+            String bzlPath = toPath(bzlLabel);
+            if (inputs.containsKey(bzlPath)) {
+                continue;
+            }
+            File bzlFile = new File(workspaceRootDirectory, bzlPath);
+            inputs.put(bzlPath, digest(bzlFile));
+            if (bzlFile.isFile()) {
+                // relative loads in a .bzl file are relative to the package of the .bzl file
+                queue.addAll(findLoadedLabels(bzlLabel[0], bzlFile));
+            }
+        }
+    }
+
+    /**
+     * Adds the listing of the files in the package to the inputs map. The BUILD file digest does not change when a
+     * source file is added or removed, but the result of its glob() calls does.
+     */
+    void addPackageListingInput(String packagePath, Map<String, String> inputs) {
+        String key = packagePath + "/";
+        if (!inputs.containsKey(key)) {
+            inputs.put(key, listingDigest(packagePath));
+        }
+    }
+
+    /**
+     * Adds the WORKSPACE file, which defines the external repositories, to the inputs map.
+     */
+    void addWorkspaceInputs(Map<String, String> inputs) {
+        for (String workspaceFileName : BazelConstants.WORKSPACE_FILE_NAMES) {
+            inputs.put(workspaceFileName, digest(new File(workspaceRootDirectory, workspaceFileName)));
+        }
+    }
+
+    /**
+     * Finds the workspace relative paths of the .bzl files loaded by the BUILD (or .bzl) file. Loads from external
+     * repositories are skipped, those are covered by the WORKSPACE file digest.
+     */
+    static List<String> findLoadedFiles(String packagePath, File buildFile) {
+        List<String> loadedFiles = new ArrayList<>();
+        for (String[] loadedLabel : findLoadedLabels(packagePath, buildFile)) {
+            loadedFiles.add(toPath(loadedLabel));
+        }
+        return loadedFiles;
+    }
+
+    // returns the loaded labels, as pairs of package path and file path within the package
+    private static List<String[]> findLoadedLabels(String packagePath, File file) {
+        List<String[]> loadedLabels = new ArrayList<>();
+        String content = null;
+        try {
+            content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            return loadedLabels;
+        }
+        Matcher matcher = LOAD_PATTERN.matcher(content);
+        while (matcher.find()) {
+            String loadLabel = matcher.group(1);
+            if (loadLabel.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT) && !loadLabel.startsWith("@//")) {
+                continue;
+            }
+            if (loadLabel.startsWith("@")) {
+                loadLabel = loadLabel.substring(1);
+            }
+            String bzlPackage = packagePath;
+            String bzlFile = loadLabel;
+            if (loadLabel.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
+                int colon = loadLabel.indexOf(BazelLabel.BAZEL_COLON);
+                if (colon == -1) {
+                    continue;
+                }
+                bzlPackage = loadLabel.substring(2, colon);
+                bzlFile = loadLabel.substring(colon + 1);
+            } else if (loadLabel.startsWith(BazelLabel.BAZEL_COLON)) {
+                bzlFile = loadLabel.substring(1);
+            }
+            loadedLabels.add(new String[] { bzlPackage, bzlFile });
+        }
+        return loadedLabels;
+    }
+
+    private static String toPath(String[] label) {
+        return label[0].isEmpty() ? label[1] : label[0] + "/" + label[1];
+    }
+
+    String digest(File file) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        MemoizedDigest memoized = digestMemo.get(file);
+        if ((memoized != null) && (memoized.lastModified == lastModified) && (memoized.length == length)) {
+            return memoized.digest;
+        }
+        String digest;
+        if (!file.isFile()) {
+            digest = MISSING_DIGEST;
+        } else {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                MessageDigest md = newMessageDigest();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    md.update(buffer, 0, read);
+                }
+                digest = toHex(md.digest());
+            } catch (IOException ioe) {
+                digest = MISSING_DIGEST;
+            }
+        }
+        digestMemo.put(file, new MemoizedDigest(lastModified, length, digest));
+        return digest;
+    }
+
+    /**
+     * Digests the relative paths of the files in the package directory. Subdirectories that contain a BUILD file are
+     * separate packages, and are not part of the listing. Symbolic links (e.g. bazel-out) are not followed. Hidden
+     * directories (e.g. .git) and the bazel-* convenience directories of the workspace root are not part of any package
+     * and are skipped, otherwise the root package would change with every git operation.
+     */
+    String listingDigest(String packagePath) {
+        MemoizedListing memoized = listingMemo.get(packagePath);
+        if ((memoized != null) && memoized.isCurrent()) {
+            return memoized.digest;
+        }
+        Path packageDir = new File(workspaceRootDirectory, packagePath).toPath();
+        // stamp the directories before reading them, so that a concurrent change is seen on the next validation
+        List<File> directories = new ArrayList<>();
+        List<Long> lastModifieds = new ArrayList<>();
+        directories.add(packageDir.toFile());
+        lastModifieds.add(packageDir.toFile().lastModified());
+        String digest;
+        if (!Files.isDirectory(packageDir)) {
+            digest = MISSING_DIGEST;
+        } else {
+            List<String> paths = new ArrayList<>();
+            try {
+                Files.walkFileTree(packageDir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (dir.equals(packageDir)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        if (isIgnoredDirectory(dir)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        // also stamp the subpackages, removing their BUILD file merges them into this package
+                        directories.add(dir.toFile());
+                        lastModifieds.add(dir.toFile().lastModified());
+                        if (isPackageDirectory(dir)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        paths.add(packageDir.relativize(file).toString());
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                Collections.sort(paths);
+                digest = digestString(String.join("\n", paths));
+            } catch (IOException ioe) {
+                digest = MISSING_DIGEST;
+            }
+        }
+        listingMemo.put(packagePath, new MemoizedListing(directories, lastModifieds, digest));
+        return digest;
+    }
+
+    private boolean isIgnoredDirectory(Path dir) {
+        String name = dir.getFileName().toString();
+        if (name.startsWith(".")) {
+            return true;
+        }
+        return name.startsWith("bazel-") && dir.getParent().toFile().equals(workspaceRootDirectory);
+    }
+
+    private static boolean isPackageDirectory(Path dir) {
+        for (String buildFileName : BazelConstants.BUILD_FILE_NAMES) {
+            if (Files.isRegularFile(dir.resolve(buildFileName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String digestString(String value) {
+        return toHex(newMessageDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            // every JVM is required to support SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static class MemoizedListing {
+        final File[] directories;
+        final long[] lastModifieds;
+        final String digest;
+
+        MemoizedListing(List<File> directories, List<Long> lastModifieds, String digest) {
+            this.directories = directories.toArray(new File[directories.size()]);
+            this.lastModifieds = new long[lastModifieds.size()];
+            for (int i = 0; i < this.lastModifieds.length; i++) {
+                this.lastModifieds[i] = lastModifieds.get(i);
+            }
+            this.digest = digest;
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < directories.length; i++) {
+                if (directories[i].lastModified() != lastModifieds[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class MemoizedDigest {
+        final long lastModified;
+        final long length;
+        final String digest;
+
+        MemoizedDigest(long lastModified, long length, String digest) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.digest = digest;
+        }
+    }
+}
@@ -39,24 +39,27 @@ package com.salesforce.bazel.sdk.command.shell;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * A wrapper output stream to output part of the result to a given output and extracting the other part with a selector
- * function. The other part is return as a list of string.
+ * function. The other part is return as a list of string, or passed to a line consumer as it is written.
+ * <p>
+ * Lines are split in the buffers passed to {@link #write(byte[], int, int)}, and each line is decoded only once. Only
+ * a line that spans several writes is copied to an internal buffer.
  */
 public class SelectOutputStream extends OutputStream {
 
     private final OutputStream output;
     private final Function<String, String> selector;
+    private final Consumer<String> lineConsumer;
     private boolean closed = false;
-    private final List<String> lines = new LinkedList<>();
-    private final List<String> outputLines = new LinkedList<>();
-    private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    private final List<String> lines = new ArrayList<>();
+    private final LineBuffer stream = new LineBuffer();
 
     /**
      * Create a SelectOutputStream. <code>output<code> is the output stream where non-selected lines
@@ -70,9 +73,20 @@ public class SelectOutputStream extends OutputStream {
      * will be discarded. If <code>selector</code> is null, all lines will be considered as unselected.
      */
     public SelectOutputStream(OutputStream output, Function<String, String> selector) {
+        this(output, selector, null);
+    }
+
+    /**
+     * Create a SelectOutputStream that passes the selected lines to <code>lineConsumer</code> as soon as they are
+     * written, instead of storing them. Use this for large outputs that do not need to be held in memory. If
+     * <code>lineConsumer</code> is null, this is the same as {@link #SelectOutputStream(OutputStream, Function)}.
+     */
+    public SelectOutputStream(OutputStream output, Function<String, String> selector,
+            Consumer<String> lineConsumer) {
         super();
         this.output = output;
         this.selector = selector;
+        this.lineConsumer = lineConsumer;
     }
 
     @Override
@@ -80,30 +94,63 @@ public class SelectOutputStream extends OutputStream {
         if (closed) {
             throw new IllegalStateException("Attempted to write on a closed stream");
         }
-        byte b0 = (byte) b;
-        if (b0 == '\n') {
-            select(true);
-        } else {
-            stream.write(b);
+        stream.write(b);
+        if ((byte) b == '\n') {
+            selectBuffered(true);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Attempted to write on a closed stream");
+        }
+        if ((off < 0) || (len < 0) || (len > (b.length - off))) {
+            throw new IndexOutOfBoundsException();
+        }
+        int end = off + len;
+        int lineStart = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] != '\n') {
+                continue;
+            }
+            if (stream.size() == 0) {
+                // the whole line is in the passed buffer, no need to copy it
+                select(b, lineStart, i - lineStart, true);
+            } else {
+                // the line started in a previous write
+                stream.write(b, lineStart, (i - lineStart) + 1);
+                selectBuffered(true);
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < end) {
+            stream.write(b, lineStart, end - lineStart);
         }
     }
 
-    private void select(boolean appendNewLine) throws UnsupportedEncodingException, IOException {
+    // selects the line in the internal buffer, which ends with the newline character if there is one
+    private void selectBuffered(boolean hasNewLine) throws IOException {
+        select(stream.getBuffer(), 0, hasNewLine ? stream.size() - 1 : stream.size(), hasNewLine);
+        stream.reset();
+    }
+
+    // selects the line in bytes[off, off+len[, which is followed by a newline character at bytes[off+len] if hasNewLine
+    private void select(byte[] bytes, int off, int len, boolean hasNewLine) throws IOException {
         String line = null;
         if (selector != null) {
-            line = selector.apply(stream.toString(StandardCharsets.UTF_8.name()));
+            line = selector.apply(new String(bytes, off, len, StandardCharsets.UTF_8));
         }
 
         if (line != null) {
-            lines.add(line);
-        } else if (output != null) {
-            if (appendNewLine) {
-                stream.write('\n');
+            if (lineConsumer != null) {
+                lineConsumer.accept(line);
+            } else {
+                lines.add(line);
             }
-            output.write(stream.toByteArray());
-            outputLines.add(stream.toString(StandardCharsets.UTF_8.name()));
+        } else if (output != null) {
+            output.write(bytes, off, hasNewLine ? len + 1 : len);
         }
-        stream.reset();
     }
 
     @Override
@@ -112,21 +159,21 @@ public class SelectOutputStream extends OutputStream {
             throw new IllegalStateException("Attempted to close a closed stream");
         }
         super.close();
-        select(false);
+        selectBuffered(false);
         closed = true;
     }
 
     /**
-     * Returns the list of selected lines.
+     * Returns the list of selected lines. This is empty if the lines are passed to a line consumer.
      */
     List<String> getLines() {
         return lines;
     }
 
-    /**
-     * Returns the list of output lines.
-     */
-    List<String> getOutputLines() {
-        return outputLines;
+    // gives access to the internal buffer, to avoid a copy per line
+    private static class LineBuffer extends ByteArrayOutputStream {
+        byte[] getBuffer() {
+            return buf;
+        }
     }
 }
@@ -36,6 +36,7 @@
 
 package com.salesforce.bazel.sdk.command.shell;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -43,11 +44,18 @@ import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.command.BazelProcessBuilder;
 import com.salesforce.bazel.sdk.command.Command;
 import com.salesforce.bazel.sdk.command.CommandBuilder;
+import com.salesforce.bazel.sdk.command.CommandIoExecutor;
 import com.salesforce.bazel.sdk.console.CommandConsole;
 import com.salesforce.bazel.sdk.console.CommandConsoleFactory;
 import com.salesforce.bazel.sdk.logging.LogHelper;
@@ -81,15 +89,21 @@ public final class ShellCommand implements Command {
     private final SelectOutputStream stderr;
     private final WorkProgressMonitor progressMonitor;
 
-    // TODO ShellCommand timeouts are not usable; if a command times out subsequent commands hang, etc.
-    // https://github.com/salesforce/bazel-eclipse/issues/191
+    /**
+     * How long a timed out command is given to exit after being asked to terminate, before it is killed forcibly.
+     */
+    static final long TERMINATION_GRACE_PERIOD_MS = 5000;
+
+    // the command is killed if it runs longer than this, 0 means no timeout
     private long timeoutMS = 0;
 
     private boolean executed = false;
+    private volatile Process process;
+    private volatile boolean cancelled = false;
 
     ShellCommand(CommandConsole console, File directory, List<String> args, Function<String, String> stdoutSelector,
-            Function<String, String> stderrSelector, OutputStream stdout, OutputStream stderr,
-            WorkProgressMonitor progressMonitor, long timeoutMS) {
+            Function<String, String> stderrSelector, Consumer<String> stdoutLineConsumer, OutputStream stdout,
+            OutputStream stderr, WorkProgressMonitor progressMonitor, long timeoutMS) {
         this.directory = directory;
         this.args = args;
         if (console != null) {
@@ -101,7 +115,7 @@ public final class ShellCommand implements Command {
             }
         }
         this.stderr = new SelectOutputStream(stderr, stderrSelector);
-        this.stdout = new SelectOutputStream(stdout, stdoutSelector);
+        this.stdout = new SelectOutputStream(stdout, stdoutSelector, stdoutLineConsumer);
         this.progressMonitor = progressMonitor;
         this.timeoutMS = timeoutMS;
 
@@ -144,6 +158,11 @@ public final class ShellCommand implements Command {
             // this can blow up on Windows with error 5 (Access Denied) if the msys64 bash is not on disk
             throw anyE;
         }
+        this.process = process;
+        if (cancelled) {
+            // the async caller gave up before the process was started
+            process.destroyForcibly();
+        }
 
         // TODO implement the progress monitor for command line invocations
         if (progressMonitor != null) {
@@ -156,24 +175,39 @@ public final class ShellCommand implements Command {
         LOG.info("Executing command (timeout = {}): {}", timeoutMS, command);
         long startTimeMS = System.currentTimeMillis();
         boolean success = false;
+        boolean outputsComplete = false;
+        Future<?> err = null;
+        Future<?> out = null;
 
         try {
-            Thread err = copyStream(process.getErrorStream(), stderr);
-            Thread out = copyStream(process.getInputStream(), stdout);
-            int exitCode = process.waitFor();
-            if (err != null) {
-                err.join(timeoutMS);
+            err = copyStream(process.getErrorStream(), stderr);
+            out = copyStream(process.getInputStream(), stdout);
+            boolean exited;
+            try {
+                exited = waitForOrKill(process, command);
+            } catch (InterruptedException interrupted) {
+                // do not leave a hung process behind when the caller gives up on it
+                process.destroyForcibly();
+                throw interrupted;
             }
-            if (out != null) {
-                out.join(timeoutMS);
+            // the streams reach their end once the process is gone, each copy task closes its output when it is done
+            boolean errComplete = awaitCopy(err, process.getErrorStream(), command);
+            boolean outComplete = awaitCopy(out, process.getInputStream(), command);
+            outputsComplete = errComplete && outComplete;
+            if (!exited) {
+                throw new IOException("Command timed out after " + timeoutMS + " millis: " + command);
             }
+            int exitCode = process.exitValue();
             success = exitCode == 0;
             return exitCode;
-        } catch (InterruptedException interrupted) {
-            throw interrupted;
         } finally {
-            closeQuietly(stderr);
-            closeQuietly(stdout);
+            // a copy task that was started owns its output, it may still be writing to it
+            if (err == null) {
+                closeQuietly(stderr);
+            }
+            if (out == null) {
+                closeQuietly(stdout);
+            }
             if (args.size() > 1) {
                 // arg 1 typically has the more interesting command token
                 SimplePerfRecorder.addTime("commmand_" + args.get(1), startTimeMS);
@@ -185,7 +219,7 @@ public final class ShellCommand implements Command {
             long elapsedTimeMS = System.currentTimeMillis() - startTimeMS;
             LOG.info("Finished command ({} millis) (success={}): {}", elapsedTimeMS, success, command);
 
-            if (LOG.getLevel() <= LOG_LEVEL_FOR_STDOUTERR) {
+            if (outputsComplete && (LOG.getLevel() <= LOG_LEVEL_FOR_STDOUTERR)) {
                 StringBuffer stdoutBuffer = new StringBuffer();
                 for (String line : stdout.getLines()) {
                     if (!line.trim().isEmpty()) {
@@ -209,9 +243,69 @@ public final class ShellCommand implements Command {
         }
     }
 
-    private static void closeQuietly(OutputStream os) {
+    /**
+     * Executes the command on the shared {@link CommandIoExecutor}. Cancelling the returned future kills the process.
+     */
+    @Override
+    public CompletableFuture<Integer> runAsync() {
+        CompletableFuture<Integer> result = Command.super.runAsync();
+        result.whenComplete((exitCode, failure) -> {
+            if (result.isCancelled()) {
+                cancelled = true;
+                Process runningProcess = process;
+                if (runningProcess != null) {
+                    runningProcess.destroyForcibly();
+                }
+            }
+        });
+        return result;
+    }
+
+    // waits for the process to exit, and kills it if it exceeds the timeout; returns false if it was killed
+    private boolean waitForOrKill(Process process, String command) throws InterruptedException {
+        if (timeoutMS <= 0) {
+            process.waitFor();
+            return true;
+        }
+        if (process.waitFor(timeoutMS, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        LOG.error("Command timed out after {} millis, terminating it: {}", timeoutMS, command);
+        process.destroy();
+        if (!process.waitFor(TERMINATION_GRACE_PERIOD_MS, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+        return false;
+    }
+
+    // waits for a stream copy task, a descendant process may hold on to the pipe after the command has exited;
+    // returns false if the task may still be writing to its output
+    private boolean awaitCopy(Future<?> copy, InputStream source, String command) throws InterruptedException {
+        if (copy == null) {
+            return true;
+        }
+        try {
+            if (timeoutMS <= 0) {
+                copy.get();
+            } else {
+                copy.get(timeoutMS, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (TimeoutException te) {
+            LOG.error("Gave up waiting for the output of command: {}", command);
+            // interrupting the task does not unblock a pipe read, closing the pipe makes the read fail
+            closeQuietly(source);
+            copy.cancel(true);
+            return false;
+        } catch (ExecutionException ee) {
+            // the copy task logs its own failures
+            return true;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
         try {
-            os.close();
+            closeable.close();
         } catch (Exception ignore) {}
     }
 
@@ -235,16 +329,17 @@ public final class ShellCommand implements Command {
             } catch (Exception ex) {
                 LOG.error("Error writing command stream to the channel.", ex);
                 // we simply terminate the thread on exceptions
+            } finally {
+                // the output is closed here, once nothing else can be written to it
+                closeQuietly(outputStream);
             }
         }
     }
 
-    // Launch a thread to copy all data from inputStream to outputStream
-    private static Thread copyStream(InputStream inputStream, OutputStream outputStream) {
+    // Submit a task to the shared executor to copy all data from inputStream to outputStream
+    private static Future<?> copyStream(InputStream inputStream, OutputStream outputStream) {
         if (outputStream != null) {
-            Thread t = new Thread(new CopyStreamRunnable(inputStream, outputStream), "CopyStream");
-            t.start();
-            return t;
+            return CommandIoExecutor.getExecutor().submit(new CopyStreamRunnable(inputStream, outputStream));
         }
         return null;
     }
@@ -33,6 +33,10 @@
  */
 package com.salesforce.bazel.sdk.graph;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -94,6 +98,41 @@ public abstract class BazelDependencyGraph {
 
     // ANALYSIS
 
+    /**
+     * Computes the labels affected by a change to the passed labels: the labels themselves, plus every label that
+     * depends on one of them directly or transitively. This is the equivalent of a 'bazel query rdeps()' over the
+     * graph, without invoking Bazel. The traversal is linear in the number of affected labels and their edges.
+     */
+    public Set<String> getAffectedLabels(Collection<String> changedLabels) {
+        Map<String, Set<String>> usedByMap = getUsedByMap();
+        Set<String> affectedLabels = new LinkedHashSet<>(changedLabels);
+        Deque<String> queue = new ArrayDeque<>(affectedLabels);
+        while (!queue.isEmpty()) {
+            Set<String> users = usedByMap.get(queue.poll());
+            if (users == null) {
+                continue;
+            }
+            for (String user : users) {
+                if (affectedLabels.add(user)) {
+                    queue.add(user);
+                }
+            }
+        }
+        return affectedLabels;
+    }
+
+    /**
+     * Asks the graph to answer isDependency() from a precomputed reachability index, instead of crawling the graph for
+     * each call. This is worth it when the graph will be asked many questions. The index is built on the first
+     * isDependency() call after this one, and is kept up to date as dependencies are added. Implementations that do
+     * not support an index ignore this call.
+     * <p>
+     * The index precomputes the transitive closure, which takes memory in the square of the number of labels, for
+     * graphs of up to {@link ReachabilityIndex#MAX_CLOSURE_COMPONENTS} labels (labels in a cycle count once). Larger
+     * graphs get an index of the graph without its cycles, which is searched for each call.
+     */
+    public void enableReachabilityIndex() {}
+
     /**
      * Using the computed dependency graph, order the passed labels such that no label appears in the list prior to any
      * label it depends on.
@@ -123,6 +162,12 @@ public abstract class BazelDependencyGraph {
     public abstract List<BazelPackageLocation> orderLabels(List<BazelPackageLocation> selectedLabels,
             boolean followExternalTransitives);
 
+    /**
+     * Finds the cycles in the graph. Each cycle is the sorted list of labels that (transitively) depend on each other.
+     * Bazel does not allow cycles between targets, but they can appear in a graph with package granularity.
+     */
+    public abstract List<List<String>> findCycles();
+
     /**
      * Depth first search to determine if the passed <i>possibleDependency</i> is a direct or transitive dependency of
      * the pass <i>label</i>
@@ -47,7 +47,9 @@ public class BazelDependencyGraphFactory {
      */
     public static List<BazelDependencyGraphBuilder> builders = new ArrayList<>();
     static {
-        // unless the user configures a custom graph impl, the default inmemory graph will be built
+        // unless the user configures a custom graph impl, or asks for the compact graph, the default inmemory graph
+        // will be built
+        builders.add(new CompactDependencyGraphBuilder());
         builders.add(new InMemoryDependencyGraphBuilder());
     }
 
@@ -0,0 +1,637 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+
+/**
+ * A dependency graph for large workspaces, that stores the edges in compressed sparse row (CSR) arrays instead of maps
+ * of sets. Each label is interned to an int id when it is first seen, and addDependency() only appends the id pair to
+ * an edge list. On the first lookup after a change, the edge list is sorted into the forward (depends on) and reverse
+ * (used by) adjacency arrays, with duplicate edges removed. The memory cost is a few ints per edge, instead of a hash
+ * set entry per edge in each direction.
+ * <p>
+ * The maps returned by getDependsOnMap() and getUsedByMap() are read only views over the adjacency arrays, iterated
+ * in label order. The root and leaf sets are computed from the node degrees, so unlike InMemoryDependencyGraph they do
+ * not depend on the order in which the edges were added.
+ * <p>
+ * This graph is built by the BazelDependencyGraphFactory when the {@link CompactDependencyGraphBuilder#OPTION_COMPACT}
+ * option is set.
+ */
+public class CompactDependencyGraph extends BazelDependencyGraph {
+
+    // label interning: open addressing table of (id + 1), zero means an empty slot
+    private int[] idTable = new int[256];
+    private String[] labels = new String[128];
+    private int labelCount = 0;
+
+    // edge list, appended to by addDependency() and compiled into the CSR arrays on demand
+    private int[] edgeSources = new int[256];
+    private int[] edgeDeps = new int[256];
+    private int edgeCount = 0;
+
+    // CSR arrays: the deps of label id N are dependsOn[dependsOnStart[N]..dependsOnStart[N+1]), sorted by id
+    // these are null until the graph is compiled, and reset to null when an edge is added
+    private int[] dependsOnStart;
+    private int[] dependsOn;
+    private int[] usedByStart;
+    private int[] usedBy;
+
+    // computed lazily from the CSR arrays
+    private int[] labelOrder;
+    private Set<String> rootLabels;
+    private Set<String> leafLabels;
+    private Set<String> leafLabelsIgnoreExternals;
+
+    private final Map<String, Set<String>> dependsOnMap = new AdjacencyMap(true);
+    private final Map<String, Set<String>> usedByMap = new AdjacencyMap(false);
+
+    // optional indexes for isDependency(), with and without following the external transitives
+    private final ReachabilityIndexes reachabilityIndexes = new ReachabilityIndexes(dependsOnMap);
+
+    /**
+     * Callers should use the factories to construct the graph.
+     */
+    public CompactDependencyGraph() {}
+
+    // CONSTRUCTION
+
+    /**
+     * Makes a dependency from source -> dep at the package level. For some use cases, package level dependencies are
+     * sufficient (//a/b/c), but in other cases target level dependencies are needed (//a/b/c:d). The caller of this
+     * method should provide as much detail as is available.
+     *
+     * @param sourceLabel
+     *            the label for the source package (e.g. //a/b/c or //a/b/c:d)
+     * @param depLabel
+     *            the label for the depended-on package (e.g. //foo or //foo:bar)
+     */
+    @Override
+    public synchronized void addDependency(String sourceLabel, String depLabel) {
+        int sourceId = intern(sourceLabel);
+        int depId = intern(depLabel);
+
+        if (edgeCount == edgeSources.length) {
+            edgeSources = Arrays.copyOf(edgeSources, edgeCount * 2);
+            edgeDeps = Arrays.copyOf(edgeDeps, edgeCount * 2);
+        }
+        edgeSources[edgeCount] = sourceId;
+        edgeDeps[edgeCount] = depId;
+        edgeCount++;
+
+        // the compiled arrays are now stale
+        dependsOnStart = null;
+        dependsOn = null;
+        usedByStart = null;
+        usedBy = null;
+        labelOrder = null;
+        rootLabels = null;
+        leafLabels = null;
+        leafLabelsIgnoreExternals = null;
+
+        reachabilityIndexes.addDependency(sourceLabel, depLabel);
+    }
+
+    // ACCESSORS
+
+    /**
+     * Provides a read only view for tracking forward deps. The key is the label as a string, and the value is the set
+     * of dependencies (as labels) for the source.
+     */
+    @Override
+    public Map<String, Set<String>> getDependsOnMap() {
+        return dependsOnMap;
+    }
+
+    /**
+     * Provides a read only view for tracking reverse deps. The key is the label as a string, and the value is the set
+     * of sources (as labels) that depend on the label.
+     */
+    @Override
+    public Map<String, Set<String>> getUsedByMap() {
+        return usedByMap;
+    }
+
+    /**
+     * Returns the set of labels that are not dependencies for other labels in the workspace. If A depends on B, which
+     * depends on C, this method will return A.
+     */
+    @Override
+    public synchronized Set<String> getRootLabels() {
+        if (rootLabels == null) {
+            compile();
+            Set<String> roots = new LinkedHashSet<>();
+            for (int id = 0; id < labelCount; id++) {
+                if ((degree(dependsOnStart, id) > 0) && (degree(usedByStart, id) == 0)) {
+                    roots.add(labels[id]);
+                }
+            }
+            rootLabels = Collections.unmodifiableSet(roots);
+        }
+        return rootLabels;
+    }
+
+    /**
+     * Returns the set of labels that exist as dependencies to other labels in the workspace, and do not have any
+     * dependencies on other labels. If A depends on B, which depends on C, this method will return C. If a label stands
+     * alone (i.e. it has not dependency, and is not depended on by another node, it is not included).
+     */
+    @Override
+    public Set<String> getLeafLabels() {
+        return getLeafLabels(false);
+    }
+
+    /**
+     * Returns the set of labels that exist as dependencies to other labels in the workspace, and do not have any
+     * dependencies on other labels. If A depends on B, which depends on C, this method will return C. If a label stands
+     * alone (i.e. it has not dependency, and is not depended on by another node, it is not included).
+     * <p>
+     * If a label only depends on external deps (e.g. @maven//:com_spring_etc), it will be considered a leaf node only
+     * if the passed ignoreExternals is set to true
+     */
+    @Override
+    public synchronized Set<String> getLeafLabels(boolean ignoreExternals) {
+        if (leafLabels == null) {
+            compile();
+            Set<String> leaves = new LinkedHashSet<>();
+            Set<String> leavesIgnoreExternals = new LinkedHashSet<>();
+            for (int id = 0; id < labelCount; id++) {
+                if (degree(usedByStart, id) == 0) {
+                    continue;
+                }
+                if (degree(dependsOnStart, id) == 0) {
+                    leaves.add(labels[id]);
+                }
+                if (!isExternal(id) && !hasInternalDependency(id)) {
+                    leavesIgnoreExternals.add(labels[id]);
+                }
+            }
+            leafLabels = Collections.unmodifiableSet(leaves);
+            leafLabelsIgnoreExternals = Collections.unmodifiableSet(leavesIgnoreExternals);
+        }
+        return ignoreExternals ? leafLabelsIgnoreExternals : leafLabels;
+    }
+
+    // ANALYSIS
+
+    /**
+     * Asks the graph to answer isDependency() from a precomputed reachability index, instead of searching the graph
+     * for each call. See {@link BazelDependencyGraph#enableReachabilityIndex()} for the size limit of the precomputed
+     * closure.
+     */
+    @Override
+    public synchronized void enableReachabilityIndex() {
+        reachabilityIndexes.enable();
+    }
+
+    /**
+     * Using the computed dependency graph, order the passed labels such that no label appears in the list prior to any
+     * label it depends on.
+     * <p>
+     * Note that there is almost always multiple valid solutions for any given graph+label selection.
+     */
+    @Override
+    public List<BazelPackageLocation> orderLabels(Set<BazelPackageLocation> selectedLabels) {
+        return orderLabels(new ArrayList<>(selectedLabels));
+    }
+
+    /**
+     * Using the computed dependency graph, order the passed labels such that no label appears in the list prior to any
+     * label it depends on.
+     * <p>
+     * Note that there is almost always multiple valid solutions for any given graph+label selection.
+     */
+    @Override
+    public List<BazelPackageLocation> orderLabels(List<BazelPackageLocation> selectedLabels) {
+        return orderLabels(selectedLabels, true);
+    }
+
+    /**
+     * Using the computed dependency graph, order the passed labels such that no label appears in the list prior to any
+     * label it depends on.
+     * <p>
+     * Note that there is almost always multiple valid solutions for any given graph+label selection.
+     * <p>
+     * Pass false to followExternalTransitives to avoid navigating into the dependency graph of the external
+     * dependencies (e.g. maven).
+     */
+    @Override
+    public List<BazelPackageLocation> orderLabels(List<BazelPackageLocation> selectedLabels,
+            boolean followExternalTransitives) {
+        return TopologicalSorter.orderLocations(dependsOnMap, selectedLabels, followExternalTransitives);
+    }
+
+    /**
+     * Finds the cycles in the graph. Each cycle is the sorted list of labels that (transitively) depend on each other.
+     * Bazel does not allow cycles between targets, but they can appear in a graph with package granularity.
+     */
+    @Override
+    public List<List<String>> findCycles() {
+        return new TopologicalSorter(dependsOnMap).sort(new ArrayList<>(dependsOnMap.keySet()), true).cycles;
+    }
+
+    /**
+     * Breadth first search to determine if the passed <i>possibleDependency</i> is a direct or transitive dependency
+     * of the passed <i>label</i>
+     */
+    @Override
+    public boolean isDependency(String label, String possibleDependency) {
+        return isDependency(label, possibleDependency, null, true);
+    }
+
+    /**
+     * Breadth first search to determine if the passed <i>possibleDependency</i> is a direct or transitive dependency
+     * of the passed <i>label</i>. The depCache is accepted for compatibility with the other graph implementations, but
+     * is not needed by this one since each search only touches the int arrays.
+     */
+    @Override
+    public boolean isDependency(String label, String possibleDependency, Map<String, Boolean> depCache) {
+        return isDependency(label, possibleDependency, depCache, true);
+    }
+
+    /**
+     * Breadth first search to determine if the passed <i>possibleDependency</i> is a direct or transitive dependency
+     * of the passed <i>label</i>. The depCache is accepted for compatibility with the other graph implementations, but
+     * is not needed by this one since each search only touches the int arrays.
+     *
+     * @param followExternalTransitives
+     *            if false, will not look for the possibleDependency if it is a transitive of an external dependency
+     *            (e.g. //abc depends on @maven//:foo which depends on @maven//:bar; this method will return false for
+     *            label=//abc and possibleDependency=@maven//:bar). This is a performance optimization.
+     */
+    @Override
+    public synchronized boolean isDependency(String label, String possibleDependency, Map<String, Boolean> depCache,
+            boolean followExternalTransitives) {
+        if (reachabilityIndexes.isEnabled()) {
+            return reachabilityIndexes.isDependency(label, possibleDependency, followExternalTransitives);
+        }
+        int fromId = lookup(label);
+        int targetId = lookup(possibleDependency);
+        if ((fromId < 0) || (targetId < 0)) {
+            return false;
+        }
+        compile();
+
+        BitSet visited = new BitSet(labelCount);
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = fromId;
+        visited.set(fromId);
+        while (head < tail) {
+            int id = queue[head++];
+            if (!followExternalTransitives && isExternal(id)) {
+                continue;
+            }
+            for (int i = dependsOnStart[id]; i < dependsOnStart[id + 1]; i++) {
+                int depId = dependsOn[i];
+                if (depId == targetId) {
+                    return true;
+                }
+                if (!visited.get(depId)) {
+                    visited.set(depId);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, Math.min(tail * 2, labelCount));
+                    }
+                    queue[tail++] = depId;
+                }
+            }
+        }
+        return false;
+    }
+
+    // INTERNALS
+
+    private int intern(String label) {
+        int mask = idTable.length - 1;
+        int slot = hash(label) & mask;
+        int entry;
+        while ((entry = idTable[slot]) != 0) {
+            if (labels[entry - 1].equals(label)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = labelCount++;
+        if (id == labels.length) {
+            labels = Arrays.copyOf(labels, id * 2);
+        }
+        labels[id] = label;
+        idTable[slot] = id + 1;
+        if ((labelCount * 2) > idTable.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private int lookup(Object label) {
+        if (!(label instanceof String)) {
+            return -1;
+        }
+        int mask = idTable.length - 1;
+        int slot = hash((String) label) & mask;
+        int entry;
+        while ((entry = idTable[slot]) != 0) {
+            if (labels[entry - 1].equals(label)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash() {
+        idTable = new int[idTable.length * 2];
+        int mask = idTable.length - 1;
+        for (int id = 0; id < labelCount; id++) {
+            int slot = hash(labels[id]) & mask;
+            while (idTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            idTable[slot] = id + 1;
+        }
+    }
+
+    private static int hash(String label) {
+        int h = label.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private boolean isExternal(int id) {
+        return labels[id].startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT);
+    }
+
+    private static int degree(int[] start, int id) {
+        return start[id + 1] - start[id];
+    }
+
+    private boolean hasInternalDependency(int id) {
+        for (int i = dependsOnStart[id]; i < dependsOnStart[id + 1]; i++) {
+            if (!isExternal(dependsOn[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the CSR arrays from the edge list, if they are stale.
+     */
+    private synchronized void compile() {
+        if (dependsOnStart != null) {
+            return;
+        }
+
+        // counting sort of the edges by source, then sort and dedupe each row
+        int[] start = new int[labelCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            start[edgeSources[i] + 1]++;
+        }
+        for (int id = 0; id < labelCount; id++) {
+            start[id + 1] += start[id];
+        }
+        int[] next = Arrays.copyOf(start, labelCount);
+        int[] deps = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            deps[next[edgeSources[i]]++] = edgeDeps[i];
+        }
+        int[] dedupedStart = new int[labelCount + 1];
+        int write = 0;
+        for (int id = 0; id < labelCount; id++) {
+            dedupedStart[id] = write;
+            Arrays.sort(deps, start[id], start[id + 1]);
+            for (int i = start[id]; i < start[id + 1]; i++) {
+                if ((i == start[id]) || (deps[i] != deps[i - 1])) {
+                    deps[write++] = deps[i];
+                }
+            }
+        }
+        dedupedStart[labelCount] = write;
+        int[] forward = write == edgeCount ? deps : Arrays.copyOf(deps, write);
+
+        // transpose; walking the sources in id order leaves each reverse row sorted
+        int[] reverseStart = new int[labelCount + 1];
+        for (int i = 0; i < write; i++) {
+            reverseStart[forward[i] + 1]++;
+        }
+        for (int id = 0; id < labelCount; id++) {
+            reverseStart[id + 1] += reverseStart[id];
+        }
+        next = Arrays.copyOf(reverseStart, labelCount);
+        int[] reverse = new int[write];
+        for (int id = 0; id < labelCount; id++) {
+            for (int i = dedupedStart[id]; i < dedupedStart[id + 1]; i++) {
+                reverse[next[forward[i]]++] = id;
+            }
+        }
+
+        dependsOn = forward;
+        usedByStart = reverseStart;
+        usedBy = reverse;
+        dependsOnStart = dedupedStart;
+    }
+
+    /**
+     * Label ids sorted by label, so that the map views iterate like the TreeMaps of InMemoryDependencyGraph.
+     */
+    private synchronized int[] getLabelOrder() {
+        if (labelOrder == null) {
+            Integer[] boxed = new Integer[labelCount];
+            for (int id = 0; id < labelCount; id++) {
+                boxed[id] = id;
+            }
+            Arrays.sort(boxed, (a, b) -> labels[a].compareTo(labels[b]));
+            int[] order = new int[labelCount];
+            for (int i = 0; i < labelCount; i++) {
+                order[i] = boxed[i];
+            }
+            labelOrder = order;
+        }
+        return labelOrder;
+    }
+
+    /**
+     * Read only map view over one direction of the CSR arrays. Only labels with at least one edge in that direction
+     * are keys, which matches the maps of InMemoryDependencyGraph.
+     */
+    private final class AdjacencyMap extends AbstractMap<String, Set<String>> {
+        private final boolean forward;
+
+        AdjacencyMap(boolean forward) {
+            this.forward = forward;
+        }
+
+        @Override
+        public Set<String> get(Object key) {
+            synchronized (CompactDependencyGraph.this) {
+                int id = lookup(key);
+                if (id < 0) {
+                    return null;
+                }
+                compile();
+                int[] start = forward ? dependsOnStart : usedByStart;
+                int[] ids = forward ? dependsOn : usedBy;
+                if (degree(start, id) == 0) {
+                    return null;
+                }
+                return new AdjacencyRow(ids, start[id], start[id + 1]);
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, Set<String>>> entrySet() {
+            final int[] start;
+            final int[] ids;
+            final int[] order;
+            synchronized (CompactDependencyGraph.this) {
+                compile();
+                start = forward ? dependsOnStart : usedByStart;
+                ids = forward ? dependsOn : usedBy;
+                order = getLabelOrder();
+            }
+            int keyCount = 0;
+            for (int id : order) {
+                if (degree(start, id) > 0) {
+                    keyCount++;
+                }
+            }
+            final int size = keyCount;
+            return new AbstractSet<Entry<String, Set<String>>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Entry<String, Set<String>>> iterator() {
+                    return new Iterator<Entry<String, Set<String>>>() {
+                        private int position = advance(0);
+
+                        private int advance(int from) {
+                            while ((from < order.length) && (degree(start, order[from]) == 0)) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return position < order.length;
+                        }
+
+                        @Override
+                        public Entry<String, Set<String>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = order[position];
+                            position = advance(position + 1);
+                            return new SimpleImmutableEntry<>(labels[id],
+                                    new AdjacencyRow(ids, start[id], start[id + 1]));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Read only set view over one row of a CSR array. Rows are sorted by id, so contains() is a binary search.
+     */
+    private final class AdjacencyRow extends AbstractSet<String> {
+        private final int[] ids;
+        private final int from;
+        private final int to;
+
+        AdjacencyRow(int[] ids, int from, int to) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int id;
+            synchronized (CompactDependencyGraph.this) {
+                id = lookup(o);
+            }
+            return (id >= 0) && (Arrays.binarySearch(ids, from, to, id) >= 0);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int position = from;
+
+                @Override
+                public boolean hasNext() {
+                    return position < to;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return labels[ids[position++]];
+                }
+            };
+        }
+    }
+}
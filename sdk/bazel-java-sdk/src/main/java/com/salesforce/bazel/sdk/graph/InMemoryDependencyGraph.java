@@ -33,10 +33,9 @@
  */
 package com.salesforce.bazel.sdk.graph;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -101,6 +100,9 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
     // USED BY map in which the key is a label, and the value is the set of label that depend on the label
     Map<String, Set<String>> usedByMap = new TreeMap<>();
 
+    // optional indexes for isDependency(), with and without following the external transitives
+    final ReachabilityIndexes reachabilityIndexes = new ReachabilityIndexes(dependsOnMap);
+
     /**
      * Callers should use the factories to construct the graph.
      */
@@ -162,6 +164,7 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
         }
         usedbySources.add(sourceLabel);
 
+        reachabilityIndexes.addDependency(sourceLabel, depLabel);
     }
 
     // ACCESSORS
@@ -221,6 +224,16 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
 
     // ANALYSIS
 
+    /**
+     * Asks the graph to answer isDependency() from a precomputed reachability index, instead of crawling the graph for
+     * each call. The depCache passed to isDependency() is not used once the index is enabled. See
+     * {@link BazelDependencyGraph#enableReachabilityIndex()} for the size limit of the precomputed closure.
+     */
+    @Override
+    public void enableReachabilityIndex() {
+        reachabilityIndexes.enable();
+    }
+
     /**
      * Using the computed dependency graph, order the passed labels such that no label appears in the list prior to any
      * label it depends on.
@@ -229,9 +242,7 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public List<BazelPackageLocation> orderLabels(Set<BazelPackageLocation> selectedLabels) {
-        LinkedList<BazelPackageLocation> selectedLabelsList = new LinkedList<>();
-        selectedLabelsList.addAll(selectedLabels);
-        return orderLabels(selectedLabelsList);
+        return orderLabels(new ArrayList<>(selectedLabels));
     }
 
     /**
@@ -258,55 +269,16 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
     @Override
     public List<BazelPackageLocation> orderLabels(List<BazelPackageLocation> selectedLabels,
             boolean followExternalTransitives) {
-        LinkedList<BazelPackageLocation> orderedLabels = null;
-
-        /*
-         * This is a simple algorithm. It is based on the idea that this method will be used in cases
-         * in which the dependency graph can be HUGE (100,000+ edges, 10,000+ nodes) and COMPLEX (lots of overlap
-         * of trees). And the user is likely working on a small subset of that graph.
-         * For example, an IDE user wants to import a handful of related packages from a monorepo in which
-         * hundreds/thousands of packages live, and most of the dependency graph is not reachable by the
-         * imported packages. It still works if the selectedLabels reach most/all of the graph, it just is
-         * not the most efficient solution in those cases.
-         */
-
-        Map<String, Boolean> depCache = new HashMap<>();
-        for (int i = 0; i < selectedLabels.size(); i++) {
-            /*
-             * Why do we do the ordering more than once? There are cases in which a single pass, or even two,
-             * will not be correct. Since we cache isDep() decisions (the expensive part) multiple passes are
-             * a cheap operation, so just do it as many times as there are elements in the selected array.
-             * In all known cases the answer will be correct. But this is not guaranteed. If you find a use case
-             * where this approach is not good enough, we will need to implement a more powerful solution.
-             */
-
-            orderedLabels = new LinkedList<>();
-            for (BazelPackageLocation currentLabel : selectedLabels) {
-                int currentIndex = 0;
-                boolean inserted = false;
-                for (BazelPackageLocation priorInsertedLabel : orderedLabels) {
-                    if (isDependency(priorInsertedLabel.getBazelPackageName(), currentLabel.getBazelPackageName(),
-                        depCache, followExternalTransitives)) {
-                        // the label is a dependency of an item already in the list, we need to insert
-                        orderedLabels.add(currentIndex, currentLabel);
-                        inserted = true;
-                        break;
-                    }
-                    currentIndex++;
-                }
-                if (!inserted) {
-                    // none of the previously seen labels depends on the current label, so just add it to the end
-                    orderedLabels.add(currentLabel);
-                }
-            }
-            selectedLabels = orderedLabels;
-        }
-
-        // just a reminder that the cache gets cleared to free up possibly a lot of memory if the graph is huge and the
-        // ordering required traversing a lot of it
-        depCache = null;
+        return TopologicalSorter.orderLocations(dependsOnMap, selectedLabels, followExternalTransitives);
+    }
 
-        return orderedLabels;
+    /**
+     * Finds the cycles in the graph. Each cycle is the sorted list of labels that (transitively) depend on each other.
+     * Bazel does not allow cycles between targets, but they can appear in a graph with package granularity.
+     */
+    @Override
+    public List<List<String>> findCycles() {
+        return new TopologicalSorter(dependsOnMap).sort(new ArrayList<>(dependsOnMap.keySet()), true).cycles;
     }
 
     /**
@@ -319,6 +291,9 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public boolean isDependency(String label, String possibleDependency) {
+        if (reachabilityIndexes.isEnabled()) {
+            return reachabilityIndexes.isDependency(label, possibleDependency, true);
+        }
         boolean isDep = isDependencyRecur(label, possibleDependency, null, new HashSet<>(), true);
         return isDep;
     }
@@ -335,6 +310,9 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public boolean isDependency(String label, String possibleDependency, Map<String, Boolean> depCache) {
+        if (reachabilityIndexes.isEnabled()) {
+            return reachabilityIndexes.isDependency(label, possibleDependency, true);
+        }
         boolean isDep = isDependencyRecur(label, possibleDependency, depCache, new HashSet<>(), true);
         return isDep;
     }
@@ -356,6 +334,9 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
     @Override
     public boolean isDependency(String label, String possibleDependency, Map<String, Boolean> depCache,
             boolean followExternalTransitives) {
+        if (reachabilityIndexes.isEnabled()) {
+            return reachabilityIndexes.isDependency(label, possibleDependency, followExternalTransitives);
+        }
         boolean isDep =
                 isDependencyRecur(label, possibleDependency, depCache, new HashSet<>(), followExternalTransitives);
         return isDep;
@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+/**
+ * Precomputed answers to "does label A depend on label B, directly or transitively" for a dependency graph. A graph
+ * that gets many isDependency() questions builds the index once, after it is constructed, instead of crawling the
+ * graph for each question.
+ * <p>
+ * The graph is condensed into its strongly connected components, so that labels in a cycle share one entry. Each
+ * component then gets a bitset of the components it reaches (its transitive closure). Components are numbered
+ * dependencies first, so a bitset only has bits for lower numbered components and the closure takes about half of
+ * the n^2/8 bytes. A lookup is two map lookups and a bit test.
+ * <p>
+ * The closure grows with the square of the number of components, so it is only computed for graphs of up to
+ * {@link #MAX_CLOSURE_COMPONENTS} components (about 25MB). Larger graphs keep just the condensed graph, and a lookup is
+ * a breadth first search over the components, which is still cheaper than searching the labels.
+ * <p>
+ * Adding an edge updates only the components that reach the source of the edge. The exception is an edge that closes
+ * a new cycle, which merges components; in that case {@link #addDependency(String, String)} returns false and the
+ * caller should build a new index.
+ * <p>
+ * This class is not thread safe; the owning graph is expected to guard it.
+ */
+public class ReachabilityIndex {
+
+    /**
+     * Largest number of components for which the transitive closure is computed.
+     */
+    public static final int MAX_CLOSURE_COMPONENTS = 20000;
+
+    private final boolean followExternalTransitives;
+
+    // label -> component id
+    private final Map<String, Integer> components = new HashMap<>();
+
+    // component id -> the components it reaches through at least one edge; a component reaches itself only if it is
+    // a cycle. Null if the graph has too many components, see componentDeps.
+    private final List<BitSet> reachable;
+
+    // used instead of the closure for large graphs: component id -> the other components it depends on directly, and
+    // the components that are a cycle
+    private final List<int[]> componentDeps;
+    private final BitSet cycles;
+
+    /**
+     * @param dependsOnMap
+     *            the graph, in which the key is a label and the value is the set of labels it depends on
+     * @param followExternalTransitives
+     *            if false, the dependencies of external labels (e.g. @maven//:foo) are not followed, which matches
+     *            the same flag on BazelDependencyGraph.isDependency()
+     */
+    public ReachabilityIndex(Map<String, Set<String>> dependsOnMap, boolean followExternalTransitives) {
+        this(dependsOnMap, followExternalTransitives, MAX_CLOSURE_COMPONENTS);
+    }
+
+    ReachabilityIndex(Map<String, Set<String>> dependsOnMap, boolean followExternalTransitives,
+            int maxClosureComponents) {
+        this.followExternalTransitives = followExternalTransitives;
+
+        // give each label an int id
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> labels = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : dependsOnMap.entrySet()) {
+            intern(entry.getKey(), ids, labels);
+            for (String dep : entry.getValue()) {
+                intern(dep, ids, labels);
+            }
+        }
+        int nodeCount = labels.size();
+        List<int[]> adjacency = new ArrayList<>(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            String label = labels.get(node);
+            Set<String> deps = isFollowed(label) ? dependsOnMap.get(label) : null;
+            if (deps == null) {
+                adjacency.add(new int[0]);
+                continue;
+            }
+            int[] depIds = new int[deps.size()];
+            int i = 0;
+            for (String dep : deps) {
+                depIds[i++] = ids.get(dep);
+            }
+            adjacency.add(depIds);
+        }
+
+        // Tarjan numbers the components in the order they complete, so dependencies come first
+        int[] component = TopologicalSorter.findComponents(adjacency, nodeCount);
+        int componentCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            components.put(labels.get(node), component[node]);
+            componentCount = Math.max(componentCount, component[node] + 1);
+        }
+
+        // group the nodes by component
+        int[] membersStart = new int[componentCount + 1];
+        for (int c : component) {
+            membersStart[c + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            membersStart[c + 1] += membersStart[c];
+        }
+        int[] members = new int[nodeCount];
+        int[] fill = new int[componentCount];
+        System.arraycopy(membersStart, 0, fill, 0, componentCount);
+        for (int node = 0; node < nodeCount; node++) {
+            members[fill[component[node]]++] = node;
+        }
+
+        if (componentCount > maxClosureComponents) {
+            reachable = null;
+            componentDeps = new ArrayList<>(componentCount);
+            cycles = new BitSet(componentCount);
+            BitSet deps = new BitSet(componentCount);
+            for (int c = 0; c < componentCount; c++) {
+                deps.clear();
+                for (int i = membersStart[c]; i < membersStart[c + 1]; i++) {
+                    for (int dep : adjacency.get(members[i])) {
+                        deps.set(component[dep]);
+                    }
+                }
+                if (deps.get(c)) {
+                    cycles.set(c);
+                    deps.clear(c);
+                }
+                componentDeps.add(deps.stream().toArray());
+            }
+            return;
+        }
+
+        reachable = new ArrayList<>(componentCount);
+        componentDeps = null;
+        cycles = null;
+        for (int c = 0; c < componentCount; c++) {
+            BitSet reach = new BitSet();
+            for (int i = membersStart[c]; i < membersStart[c + 1]; i++) {
+                for (int dep : adjacency.get(members[i])) {
+                    int depComponent = component[dep];
+                    reach.set(depComponent);
+                    if (depComponent != c) {
+                        reach.or(reachable.get(depComponent));
+                    }
+                }
+            }
+            reachable.add(reach);
+        }
+    }
+
+    /**
+     * Returns true if the possibleDependency is a direct or transitive dependency of the label.
+     */
+    public boolean isDependency(String label, String possibleDependency) {
+        Integer from = components.get(label);
+        Integer to = components.get(possibleDependency);
+        if ((from == null) || (to == null)) {
+            return false;
+        }
+        return reaches(from, to);
+    }
+
+    /**
+     * Updates the index for a new source -> dep edge in the graph.
+     *
+     * @return false if the edge closes a new cycle, in which case this index is no longer valid and must be rebuilt
+     */
+    public boolean addDependency(String sourceLabel, String depLabel) {
+        int source = getOrAddComponent(sourceLabel);
+        int dep = getOrAddComponent(depLabel);
+        if (!isFollowed(sourceLabel)) {
+            return true;
+        }
+        if (source == dep) {
+            // a self reference, or an edge inside an existing cycle
+            if (reachable == null) {
+                cycles.set(source);
+            } else {
+                reachable.get(source).set(source);
+            }
+            return true;
+        }
+        if (reaches(source, dep)) {
+            // already implied by the other edges
+            return true;
+        }
+        if (reaches(dep, source)) {
+            // the two components (and everything between them) now form a single cycle
+            return false;
+        }
+        if (reachable == null) {
+            int[] deps = componentDeps.get(source);
+            deps = Arrays.copyOf(deps, deps.length + 1);
+            deps[deps.length - 1] = dep;
+            componentDeps.set(source, deps);
+            return true;
+        }
+
+        // everything that reaches the source now also reaches the dep and what the dep reaches
+        BitSet added = (BitSet) reachable.get(dep).clone();
+        added.set(dep);
+        for (int c = 0; c < reachable.size(); c++) {
+            BitSet reach = reachable.get(c);
+            if ((c == source) || reach.get(source)) {
+                reach.or(added);
+            }
+        }
+        return true;
+    }
+
+    // INTERNALS
+
+    private boolean reaches(int from, int to) {
+        if (reachable != null) {
+            return reachable.get(from).get(to);
+        }
+        if (from == to) {
+            return cycles.get(from);
+        }
+        // the components form a DAG, so each one is visited at most once
+        BitSet visited = new BitSet(componentDeps.size());
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        visited.set(from);
+        while (head < tail) {
+            for (int dep : componentDeps.get(queue[head++])) {
+                if (dep == to) {
+                    return true;
+                }
+                if (!visited.get(dep)) {
+                    visited.set(dep);
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = dep;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isFollowed(String label) {
+        return followExternalTransitives || !label.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT);
+    }
+
+    private int getOrAddComponent(String label) {
+        Integer component = components.get(label);
+        if (component == null) {
+            if (reachable == null) {
+                component = componentDeps.size();
+                componentDeps.add(new int[0]);
+            } else {
+                component = reachable.size();
+                reachable.add(new BitSet());
+            }
+            components.put(label, component);
+        }
+        return component;
+    }
+
+    private static void intern(String label, Map<String, Integer> ids, List<String> labels) {
+        if (ids.putIfAbsent(label, labels.size()) == null) {
+            labels.add(label);
+        }
+    }
+}
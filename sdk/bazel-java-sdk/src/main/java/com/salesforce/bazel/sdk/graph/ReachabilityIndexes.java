@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The reachability indexes of a dependency graph, one that follows the dependencies of external labels and one that
+ * does not. The graph implementations share this class so that they enable, build and update the indexes the same
+ * way.
+ * <p>
+ * The indexes are built on the first lookup after they are enabled. An index is dropped if an added edge closes a new
+ * cycle, and rebuilt on the next lookup.
+ * <p>
+ * This class is not thread safe; the owning graph is expected to guard it.
+ */
+class ReachabilityIndexes {
+
+    private final Map<String, Set<String>> dependsOnMap;
+
+    private boolean enabled = false;
+    private ReachabilityIndex index;
+    private ReachabilityIndex localIndex;
+
+    /**
+     * @param dependsOnMap
+     *            the live dependsOn map of the graph
+     */
+    ReachabilityIndexes(Map<String, Set<String>> dependsOnMap) {
+        this.dependsOnMap = dependsOnMap;
+    }
+
+    void enable() {
+        enabled = true;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Answers isDependency() from the index; only call this if the indexes are enabled.
+     */
+    boolean isDependency(String label, String possibleDependency, boolean followExternalTransitives) {
+        return getIndex(followExternalTransitives).isDependency(label, possibleDependency);
+    }
+
+    /**
+     * Updates the indexes that have been built for an edge that was added to the graph.
+     */
+    void addDependency(String sourceLabel, String depLabel) {
+        if ((index != null) && !index.addDependency(sourceLabel, depLabel)) {
+            index = null;
+        }
+        if ((localIndex != null) && !localIndex.addDependency(sourceLabel, depLabel)) {
+            localIndex = null;
+        }
+    }
+
+    private ReachabilityIndex getIndex(boolean followExternalTransitives) {
+        if (followExternalTransitives) {
+            if (index == null) {
+                index = new ReachabilityIndex(dependsOnMap, true);
+            }
+            return index;
+        }
+        if (localIndex == null) {
+            localIndex = new ReachabilityIndex(dependsOnMap, false);
+        }
+        return localIndex;
+    }
+}
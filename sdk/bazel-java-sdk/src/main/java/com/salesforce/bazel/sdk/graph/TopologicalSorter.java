@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+
+/**
+ * Orders a selection of labels from a dependency graph such that no label appears before any label it depends on,
+ * directly or through labels that were not selected.
+ * <p>
+ * The sort only visits the part of the graph that is reachable from the selected labels. That part is split into
+ * strongly connected components (Tarjan), so a cycle in the graph is detected and reported instead of breaking the
+ * ordering. The components are then ordered with Kahn's algorithm. When more than one label could go next, the one
+ * that comes first in the selection wins. This makes the order deterministic, and it keeps the caller's order where
+ * the dependencies allow it. Labels that are in a cycle are ordered as a group, in selection order.
+ * <p>
+ * The running time is linear in the size of the visited graph, plus a log factor for picking the next label.
+ */
+public class TopologicalSorter {
+    private static final LogHelper LOG = LogHelper.log(TopologicalSorter.class);
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, Set<String>> dependsOnMap;
+
+    /**
+     * @param dependsOnMap
+     *            the graph, in which the key is a label and the value is the set of labels it depends on
+     */
+    public TopologicalSorter(Map<String, Set<String>> dependsOnMap) {
+        this.dependsOnMap = dependsOnMap;
+    }
+
+    /**
+     * The result of a sort.
+     */
+    public static class Result {
+        /**
+         * The distinct selected labels, dependencies first.
+         */
+        public final List<String> orderedLabels;
+
+        /**
+         * The cycles found in the visited part of the graph. Each cycle lists its labels in sorted order.
+         */
+        public final List<List<String>> cycles;
+
+        Result(List<String> orderedLabels, List<List<String>> cycles) {
+            this.orderedLabels = orderedLabels;
+            this.cycles = cycles;
+        }
+    }
+
+    /**
+     * Orders the selected labels, dependencies first.
+     *
+     * @param followExternalTransitives
+     *            if false, the dependencies of external labels (e.g. @maven//:foo) are not visited. This is a
+     *            performance optimization for graphs that include the external dependencies.
+     */
+    public Result sort(List<String> selectedLabels, boolean followExternalTransitives) {
+        // visit the reachable graph, giving each label an int id; the selected labels get the first ids
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> labels = new ArrayList<>();
+        for (String selectedLabel : selectedLabels) {
+            if (ids.putIfAbsent(selectedLabel, labels.size()) == null) {
+                labels.add(selectedLabel);
+            }
+        }
+        int selectedCount = labels.size();
+        List<int[]> adjacency = new ArrayList<>();
+        for (int node = 0; node < labels.size(); node++) {
+            String label = labels.get(node);
+            Set<String> deps = null;
+            if (followExternalTransitives || !label.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+                deps = dependsOnMap.get(label);
+            }
+            if ((deps == null) || deps.isEmpty()) {
+                adjacency.add(EMPTY);
+                continue;
+            }
+            int[] depIds = new int[deps.size()];
+            int i = 0;
+            for (String dep : deps) {
+                Integer depId = ids.get(dep);
+                if (depId == null) {
+                    depId = labels.size();
+                    ids.put(dep, depId);
+                    labels.add(dep);
+                }
+                depIds[i++] = depId;
+            }
+            adjacency.add(depIds);
+        }
+
+        int nodeCount = labels.size();
+        int[] component = findComponents(adjacency, nodeCount);
+        int componentCount = 0;
+        for (int c : component) {
+            componentCount = Math.max(componentCount, c + 1);
+        }
+        List<List<String>> cycles = findCycles(component, componentCount, labels);
+
+        // the selected labels of each component, in selection order
+        List<List<String>> selectedMembers = new ArrayList<>(Collections.nCopies(componentCount, null));
+        for (int node = 0; node < selectedCount; node++) {
+            int c = component[node];
+            if (selectedMembers.get(c) == null) {
+                selectedMembers.set(c, new ArrayList<>(1));
+            }
+            selectedMembers.get(c).add(labels.get(node));
+        }
+        // components that have no selected label go first, they just need to be out of the way
+        int[] priority = new int[componentCount];
+        Arrays.fill(priority, -1);
+        for (int node = selectedCount - 1; node >= 0; node--) {
+            priority[component[node]] = node;
+        }
+
+        // Kahn: count the unordered dependencies of each component, and track who is waiting on each one
+        int[] pendingDeps = new int[componentCount];
+        int[] dependentsStart = new int[componentCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int dep : adjacency.get(node)) {
+                if (component[node] != component[dep]) {
+                    pendingDeps[component[node]]++;
+                    dependentsStart[component[dep] + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < componentCount; c++) {
+            dependentsStart[c + 1] += dependentsStart[c];
+        }
+        int[] dependents = new int[dependentsStart[componentCount]];
+        int[] fill = Arrays.copyOf(dependentsStart, componentCount);
+        for (int node = 0; node < nodeCount; node++) {
+            for (int dep : adjacency.get(node)) {
+                if (component[node] != component[dep]) {
+                    dependents[fill[component[dep]]++] = component[node];
+                }
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> priority[a] != priority[b]
+                ? Integer.compare(priority[a], priority[b]) : Integer.compare(a, b));
+        for (int c = 0; c < componentCount; c++) {
+            if (pendingDeps[c] == 0) {
+                ready.add(c);
+            }
+        }
+        List<String> orderedLabels = new ArrayList<>(selectedCount);
+        while (!ready.isEmpty()) {
+            int c = ready.poll();
+            if (selectedMembers.get(c) != null) {
+                orderedLabels.addAll(selectedMembers.get(c));
+            }
+            for (int i = dependentsStart[c]; i < dependentsStart[c + 1]; i++) {
+                if (--pendingDeps[dependents[i]] == 0) {
+                    ready.add(dependents[i]);
+                }
+            }
+        }
+        return new Result(orderedLabels, cycles);
+    }
+
+    /**
+     * Implementation of BazelDependencyGraph.orderLabels() for graphs that provide a depends on map.
+     */
+    static List<BazelPackageLocation> orderLocations(Map<String, Set<String>> dependsOnMap,
+            List<BazelPackageLocation> selectedLabels, boolean followExternalTransitives) {
+        // labels can be selected more than once, and there can be distinct locations for the same package
+        Map<String, List<BazelPackageLocation>> selectedLocations = new LinkedHashMap<>();
+        for (BazelPackageLocation selectedLabel : selectedLabels) {
+            selectedLocations.computeIfAbsent(selectedLabel.getBazelPackageName(), k -> new ArrayList<>(1))
+                    .add(selectedLabel);
+        }
+
+        Result sorted = new TopologicalSorter(dependsOnMap).sort(new ArrayList<>(selectedLocations.keySet()),
+            followExternalTransitives);
+        for (List<String> cycle : sorted.cycles) {
+            LOG.warn("Found a cycle between labels {} while ordering the labels. This is probably not a bug, but a "
+                    + "case where two Bazel packages reference each other. There is a way for that to happen that is "
+                    + "legal in Bazel, but the labels in the cycle will be ordered as a group, in the order they "
+                    + "were passed.", cycle);
+        }
+
+        List<BazelPackageLocation> orderedLabels = new ArrayList<>(selectedLabels.size());
+        for (String label : sorted.orderedLabels) {
+            orderedLabels.addAll(selectedLocations.get(label));
+        }
+        return orderedLabels;
+    }
+
+    // INTERNALS
+
+    /**
+     * Tarjan's strongly connected components, without recursion so that long dependency chains cannot overflow the
+     * stack. Components are numbered in the order they complete.
+     */
+    static int[] findComponents(List<int[]> adjacency, int nodeCount) {
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        int[] component = new int[nodeCount];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        int[] callNode = new int[nodeCount];
+        int[] callEdge = new int[nodeCount];
+        int nextIndex = 0;
+        int nextComponent = 0;
+
+        for (int start = 0; start < nodeCount; start++) {
+            if (index[start] != -1) {
+                continue;
+            }
+            int depth = 0;
+            callNode[0] = start;
+            callEdge[0] = 0;
+            index[start] = lowLink[start] = nextIndex++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+
+            while (depth >= 0) {
+                int node = callNode[depth];
+                int[] deps = adjacency.get(node);
+                if (callEdge[depth] < deps.length) {
+                    int dep = deps[callEdge[depth]++];
+                    if (index[dep] == -1) {
+                        index[dep] = lowLink[dep] = nextIndex++;
+                        stack[stackSize++] = dep;
+                        onStack[dep] = true;
+                        depth++;
+                        callNode[depth] = dep;
+                        callEdge[depth] = 0;
+                    } else if (onStack[dep]) {
+                        lowLink[node] = Math.min(lowLink[node], index[dep]);
+                    }
+                    continue;
+                }
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = nextComponent;
+                    } while (member != node);
+                    nextComponent++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return component;
+    }
+
+    private static List<List<String>> findCycles(int[] component, int componentCount, List<String> labels) {
+        int[] sizes = new int[componentCount];
+        for (int c : component) {
+            sizes[c]++;
+        }
+        Map<Integer, List<String>> cyclesByComponent = new HashMap<>();
+        for (int node = 0; node < component.length; node++) {
+            if (sizes[component[node]] > 1) {
+                cyclesByComponent.computeIfAbsent(component[node], c -> new ArrayList<>()).add(labels.get(node));
+            }
+        }
+        List<List<String>> cycles = new ArrayList<>(cyclesByComponent.values());
+        for (List<String> cycle : cycles) {
+            Collections.sort(cycle);
+        }
+        cycles.sort((a, b) -> a.get(0).compareTo(b.get(0)));
+        return cycles;
+    }
+}
@@ -24,7 +24,7 @@
 package com.salesforce.bazel.sdk.index;
 
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
 import com.salesforce.bazel.sdk.logging.LogHelper;
@@ -59,44 +59,61 @@ public class CodeIndex {
      * artifact is found multiple times (e.g. if there are multiple versions of it) entry will
      * list multiple locations. 
      */
-    public Map<String, CodeIndexEntry> artifactDictionary = new TreeMap<>();
+    public Map<String, CodeIndexEntry> artifactDictionary = new ConcurrentSkipListMap<>();
     // map artifact file (e.g. junit-4.12.jar) to entry(s) 
-    public Map<String, CodeIndexEntry> fileDictionary = new TreeMap<>();
-    // map class name to entry(s)
-    public Map<String, CodeIndexEntry> typeDictionary = new TreeMap<>();
+    public Map<String, CodeIndexEntry> fileDictionary = new ConcurrentSkipListMap<>();
+    // map fully qualified class name to entry(s), see TypeDictionary for the lookups it supports
+    public TypeDictionary typeDictionary = new TypeDictionary();
 
     
     // SEARCH LOCATION SETUP
+    // the crawlers add locations from many threads at once, so these must be safe for concurrent use
     
     public void addArtifactLocation(String artifact, CodeLocationDescriptor location) {
-        CodeIndexEntry indexEntry = artifactDictionary.get(artifact);
-        if (indexEntry == null) {
-            indexEntry = new CodeIndexEntry();
-        }
-        indexEntry.addLocation(location);
-        artifactDictionary.put(artifact, indexEntry);
+        addLocation(artifactDictionary, artifact, location);
         LOG.debug("add artifact ({}): {}", artifact, location.locationOnDisk.getPath());
     }
 
     public void addFileLocation(String filename, CodeLocationDescriptor location) {
-        CodeIndexEntry indexEntry = fileDictionary.get(filename);
-        if (indexEntry == null) {
-            indexEntry = new CodeIndexEntry();
-        }
-        indexEntry.addLocation(location);
-        fileDictionary.put(filename, indexEntry);
+        addLocation(fileDictionary, filename, location);
         LOG.debug("add file ({}): {}", filename, location.locationOnDisk.getPath());
     }
 
     public void addTypeLocation(String typeName, CodeLocationDescriptor location) {
-        CodeIndexEntry indexEntry = typeDictionary.get(typeName);
-        if (indexEntry == null) {
-            indexEntry = new CodeIndexEntry();
-        }
-        indexEntry.addLocation(location);
-        typeDictionary.put(typeName, indexEntry);
+        addLocation(typeDictionary, typeName, location);
         LOG.debug("add type ({}): {}", typeName, location.locationOnDisk.getPath());
     }
+
+    private static void addLocation(Map<String, CodeIndexEntry> dictionary, String key,
+            CodeLocationDescriptor location) {
+        // the add and remove go through compute, so the dictionary never holds an entry without locations
+        dictionary.compute(key, (k, indexEntry) -> {
+            if ((indexEntry != null) && indexEntry.addLocation(location)) {
+                return indexEntry;
+            }
+            // the entry is new, or lost its last location to a concurrent remove that is about to drop it
+            CodeIndexEntry newEntry = new CodeIndexEntry();
+            newEntry.addLocation(location);
+            return newEntry;
+        });
+    }
+
+    public void removeArtifactLocation(String artifact, CodeLocationDescriptor location) {
+        removeLocation(artifactDictionary, artifact, location);
+    }
+
+    public void removeFileLocation(String filename, CodeLocationDescriptor location) {
+        removeLocation(fileDictionary, filename, location);
+    }
+
+    public void removeTypeLocation(String typeName, CodeLocationDescriptor location) {
+        removeLocation(typeDictionary, typeName, location);
+    }
+
+    private static void removeLocation(Map<String, CodeIndexEntry> dictionary, String key,
+            CodeLocationDescriptor location) {
+        dictionary.computeIfPresent(key, (k, indexEntry) -> indexEntry.removeLocation(location) ? null : indexEntry);
+    }
     
     // INDEXER CONFIGURATION
     
@@ -24,6 +24,7 @@
 package com.salesforce.bazel.sdk.index;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
@@ -36,19 +37,30 @@ public class CodeIndexEntry {
     public CodeLocationDescriptor singleLocation = null;
     public List<CodeLocationDescriptor> multipleLocations = null;
 
-    public void addLocation(CodeLocationDescriptor newLocation) {
+    // set once the last location has been removed, the index then drops this entry so it must not be added to again
+    private boolean emptied = false;
+
+    /**
+     * Adds the location to this entry.
+     *
+     * @return false if the last location of this entry has been removed, in which case the location is not added
+     */
+    public synchronized boolean addLocation(CodeLocationDescriptor newLocation) {
+        if (emptied) {
+            return false;
+        }
         if (multipleLocations != null) {
             for (CodeLocationDescriptor existing : multipleLocations) {
                 if (existing.id.locationIdentifier.equals(newLocation.id.locationIdentifier)) {
                     // somehow we already added this (soft link?)
-                    return;
+                    return true;
                 }
             }
             multipleLocations.add(newLocation);
         } else if (singleLocation != null) {
             if (singleLocation.id.locationIdentifier.equals(newLocation.id.locationIdentifier)) {
                 // somehow we already added this (soft link?)
-                return;
+                return true;
             }
             multipleLocations = new ArrayList<>(2);
             multipleLocations.add(singleLocation);
@@ -57,5 +69,37 @@ public class CodeIndexEntry {
         } else {
             singleLocation = newLocation;
         }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the locations of this entry.
+     */
+    public synchronized List<CodeLocationDescriptor> getLocations() {
+        if (multipleLocations != null) {
+            return new ArrayList<>(multipleLocations);
+        } else if (singleLocation != null) {
+            return Collections.singletonList(singleLocation);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Removes the passed location from this entry.
+     *
+     * @return true if the entry no longer has any locations, it must then be dropped from the index
+     */
+    public synchronized boolean removeLocation(CodeLocationDescriptor location) {
+        if (multipleLocations != null) {
+            multipleLocations.remove(location);
+            if (multipleLocations.size() == 1) {
+                singleLocation = multipleLocations.get(0);
+                multipleLocations = null;
+            }
+        } else if (singleLocation == location) {
+            singleLocation = null;
+        }
+        emptied = (singleLocation == null) && (multipleLocations == null);
+        return emptied;
     }
 }
@@ -23,15 +23,376 @@
  */
 package com.salesforce.bazel.sdk.index;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.index.jvm.JvmCodeIndexerOptions;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentifier;
+import com.salesforce.bazel.sdk.index.model.ClassIdentifier;
+import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
+import com.salesforce.bazel.sdk.index.model.CodeLocationIdentifier;
+import com.salesforce.bazel.sdk.index.source.SourceFileIdentifier;
+import com.salesforce.bazel.sdk.logging.LogHelper;
 
 /**
  * A code index can take some time to generate, so this class can persist/read the index to/from file.
- * TODO this is not implemented yet
+ * <p>
+ * The file is a compact binary format: a string table (every path, identifier, package and class name is stored once),
+ * followed by the locations (jar files, source directories) and the three dictionaries, which refer to strings and
+ * locations by number. The file is read onto the heap in one go, and not memory mapped, so that it is closed as soon as
+ * it has been read.
+ * <p>
+ * Each location is stamped with the size and last modified time of its file. When the index is read back, locations
+ * that changed or no longer exist are left out, so the caller only needs to crawl those again. See
+ * {@link #read(CodeIndex)}.
  */
 public class CodeIndexPersister {
+    private static final LogHelper LOG = LogHelper.log(CodeIndexPersister.class);
+
+    public static final String INDEX_FILENAME = "bzljavasdk-code.index";
+
+    private static final int MAGIC = 0x425a4958; // BZIX
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte KIND_LOCATION = 0;
+    private static final byte KIND_JAR = 1;
+    private static final byte KIND_SOURCE = 2;
+
+    private static final int NO_STRING = -1;
+
+    private final File indexFile;
 
     public CodeIndexPersister(File outputDirectory) {
-        // TODO CodeIndexPersister is not implemented yet. Consider reusing the CodeIndexReport class, it does more or less what we need
+        indexFile = new File(outputDirectory, INDEX_FILENAME);
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    // WRITE
+
+    /**
+     * Writes the index to the index file, replacing the previous contents. The file is replaced atomically, so a
+     * reader never sees a partially written index.
+     */
+    public synchronized void write(CodeIndex index) throws IOException {
+        StringTable strings = new StringTable();
+        Map<CodeLocationDescriptor, Integer> locationIds = new IdentityHashMap<>();
+        List<CodeLocationDescriptor> locations = new ArrayList<>();
+        collectLocations(index.artifactDictionary, locationIds, locations);
+        collectLocations(index.fileDictionary, locationIds, locations);
+        collectLocations(index.typeDictionary, locationIds, locations);
+
+        // the body refers to the string table, which is only complete once the body is built
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        body.writeInt(locations.size());
+        for (CodeLocationDescriptor location : locations) {
+            writeLocation(body, location, strings);
+        }
+        writeDictionary(body, index.artifactDictionary, locationIds, strings);
+        writeDictionary(body, index.fileDictionary, locationIds, strings);
+        writeDictionary(body, index.typeDictionary, locationIds, strings);
+        body.flush();
+
+        File parentDir = indexFile.getAbsoluteFile().getParentFile();
+        parentDir.mkdirs();
+        File tempFile = File.createTempFile("bzljavasdk-code", ".index.tmp", parentDir);
+        try {
+            try (OutputStream fileOut = new FileOutputStream(tempFile);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(optionFlags(index));
+                strings.write(out);
+                bodyBytes.writeTo(out);
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+        LOG.info("Wrote code index with {} locations to {}", locations.size(), indexFile.getAbsolutePath());
+    }
+
+    private static void collectLocations(Map<String, CodeIndexEntry> dictionary,
+            Map<CodeLocationDescriptor, Integer> locationIds, List<CodeLocationDescriptor> locations) {
+        for (CodeIndexEntry entry : dictionary.values()) {
+            for (CodeLocationDescriptor location : entry.getLocations()) {
+                if (!locationIds.containsKey(location)) {
+                    locationIds.put(location, locations.size());
+                    locations.add(location);
+                }
+            }
+        }
+    }
+
+    private static void writeLocation(DataOutputStream out, CodeLocationDescriptor location, StringTable strings)
+            throws IOException {
+        CodeLocationIdentifier id = location.id;
+        if (id instanceof JarIdentifier) {
+            JarIdentifier jarId = (JarIdentifier) id;
+            out.writeByte(KIND_JAR);
+            out.writeInt(strings.add(jarId.group));
+            out.writeInt(strings.add(jarId.artifact));
+            out.writeInt(strings.add(jarId.version));
+        } else if (id instanceof SourceFileIdentifier) {
+            ClassIdentifier classId = ((SourceFileIdentifier) id).classId;
+            out.writeByte(KIND_SOURCE);
+            out.writeInt(strings.add(id.locationIdentifier));
+            out.writeInt(strings.add(classId.packageName));
+            out.writeInt(strings.add(classId.classname));
+        } else {
+            out.writeByte(KIND_LOCATION);
+            out.writeInt(strings.add(id != null ? id.locationIdentifier : null));
+        }
+
+        out.writeInt(strings.add(location.locationOnDisk.getPath()));
+        // the stamp taken when the location was scanned, used to detect a changed location when the index is read back
+        out.writeLong(location.sizeOnDisk);
+        out.writeLong(location.lastModifiedOnDisk);
+
+        out.writeInt(strings.add(location.bazelLabel));
+        out.writeInt(strings.add(location.version));
+        out.writeInt(location.ageInDays);
+
+        List<ClassIdentifier> classes = location.containedClasses;
+        if (classes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(classes.size());
+            for (ClassIdentifier classId : classes) {
+                out.writeInt(strings.add(classId.packageName));
+                out.writeInt(strings.add(classId.classname));
+            }
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, Map<String, CodeIndexEntry> dictionary,
+            Map<CodeLocationDescriptor, Integer> locationIds, StringTable strings) throws IOException {
+        // snapshot the entries, the count must match what is written
+        List<Map.Entry<String, CodeIndexEntry>> entries = new ArrayList<>(dictionary.entrySet());
+        out.writeInt(entries.size());
+        for (Map.Entry<String, CodeIndexEntry> entry : entries) {
+            List<CodeLocationDescriptor> locations = entry.getValue().getLocations();
+            out.writeInt(strings.add(entry.getKey()));
+            out.writeInt(locations.size());
+            for (CodeLocationDescriptor location : locations) {
+                out.writeInt(locationIds.get(location));
+            }
+        }
+    }
+
+    // READ
+
+    /**
+     * Reads the index file into the passed (empty) index. Locations whose file has changed size or modification time
+     * since the index was written, or no longer exists, are not loaded.
+     * <p>
+     * Nothing is loaded if the file does not exist, or was written by an incompatible version or with different index
+     * options.
+     *
+     * @return the locations that were loaded, these do not need to be crawled again
+     */
+    public synchronized Set<File> read(CodeIndex index) throws IOException {
+        if (!indexFile.exists()) {
+            return Collections.emptySet();
+        }
+        // read onto the heap rather than mapped, as a mapping keeps the file open until it is garbage collected, and an
+        // open file cannot be replaced by the next write() on Windows
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Code index " + indexFile.getAbsolutePath() + " is too large");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Code index " + indexFile.getAbsolutePath() + " is shorter than expected");
+                }
+            }
+            buffer.flip();
+        }
+        try {
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION)) {
+                LOG.info("Ignoring code index {} because it was written by a different version.",
+                    indexFile.getAbsolutePath());
+                return Collections.emptySet();
+            }
+            if (buffer.getInt() != optionFlags(index)) {
+                LOG.info("Ignoring code index {} because it was written with different options.",
+                    indexFile.getAbsolutePath());
+                return Collections.emptySet();
+            }
+            String[] strings = readStrings(buffer);
+
+            int locationCount = buffer.getInt();
+            CodeLocationDescriptor[] locations = new CodeLocationDescriptor[locationCount];
+            Set<File> loadedLocations = new HashSet<>();
+            for (int i = 0; i < locationCount; i++) {
+                CodeLocationDescriptor location = readLocation(buffer, strings);
+                if (location != null) {
+                    locations[i] = location;
+                    loadedLocations.add(location.locationOnDisk);
+                }
+            }
+            readDictionary(buffer, strings, locations, index::addArtifactLocation);
+            readDictionary(buffer, strings, locations, index::addFileLocation);
+            readDictionary(buffer, strings, locations, index::addTypeLocation);
+
+            LOG.info("Read {} of {} locations from code index {}", loadedLocations.size(), locationCount,
+                indexFile.getAbsolutePath());
+            return loadedLocations;
+        } catch (RuntimeException anyE) {
+            // BufferUnderflowException, IndexOutOfBoundsException etc for a truncated or corrupt file
+            throw new IOException("Code index " + indexFile.getAbsolutePath() + " is corrupt.", anyE);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        String[] strings = new String[count];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // returns null if the location changed since the index was written
+    private static CodeLocationDescriptor readLocation(ByteBuffer buffer, String[] strings) {
+        byte kind = buffer.get();
+        CodeLocationIdentifier id;
+        if (kind == KIND_JAR) {
+            id = new JarIdentifier(string(strings, buffer.getInt()), string(strings, buffer.getInt()),
+                    string(strings, buffer.getInt()));
+        } else if (kind == KIND_SOURCE) {
+            String locationIdentifier = string(strings, buffer.getInt());
+            ClassIdentifier classId =
+                    new ClassIdentifier(string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+            id = new SourceFileIdentifier(locationIdentifier, classId);
+        } else {
+            id = new CodeLocationIdentifier(string(strings, buffer.getInt()));
+        }
+
+        File file = new File(string(strings, buffer.getInt()));
+        long size = buffer.getLong();
+        long lastModified = buffer.getLong();
+
+        CodeLocationDescriptor location = new CodeLocationDescriptor(file, id, string(strings, buffer.getInt()),
+                string(strings, buffer.getInt()));
+        location.sizeOnDisk = size;
+        location.lastModifiedOnDisk = lastModified;
+        location.ageInDays = buffer.getInt();
+
+        int classCount = buffer.getInt();
+        if (classCount >= 0) {
+            location.containedClasses = new ArrayList<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                location.containedClasses
+                        .add(new ClassIdentifier(string(strings, buffer.getInt()), string(strings, buffer.getInt())));
+            }
+        }
+
+        boolean unchanged = file.exists() && (file.lastModified() == lastModified)
+                && ((size < 0) || (file.length() == size));
+        return unchanged ? location : null;
+    }
+
+    private interface LocationAdder {
+        void add(String key, CodeLocationDescriptor location);
+    }
+
+    private static void readDictionary(ByteBuffer buffer, String[] strings, CodeLocationDescriptor[] locations,
+            LocationAdder adder) {
+        int entryCount = buffer.getInt();
+        for (int i = 0; i < entryCount; i++) {
+            String key = string(strings, buffer.getInt());
+            int locationCount = buffer.getInt();
+            for (int j = 0; j < locationCount; j++) {
+                CodeLocationDescriptor location = locations[buffer.getInt()];
+                if (location != null) {
+                    adder.add(key, location);
+                }
+            }
+        }
+    }
+
+    private static String string(String[] strings, int stringId) {
+        return stringId == NO_STRING ? null : strings[stringId];
+    }
+
+    // HELPERS
+
+    /**
+     * The options that change the content of the index. An index written with other options is not reused.
+     */
+    private static int optionFlags(CodeIndex index) {
+        CodeIndexerOptions options = index.getOptions();
+        if (options == null) {
+            return 0;
+        }
+        int flags = options.doComputeTypeDictionary() ? 1 : 0;
+        if ((options instanceof JvmCodeIndexerOptions)
+                && ((JvmCodeIndexerOptions) options).doComputeJarAgeUsingInternalFiles()) {
+            flags |= 2;
+        }
+        return flags;
+    }
+
+    /**
+     * Assigns each distinct string a number, in order of first use.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int add(String string) {
+            if (string == null) {
+                return NO_STRING;
+            }
+            Integer id = ids.get(string);
+            if (id == null) {
+                id = strings.size();
+                ids.put(string, id);
+                strings.add(string);
+            }
+            return id;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
     }
 }
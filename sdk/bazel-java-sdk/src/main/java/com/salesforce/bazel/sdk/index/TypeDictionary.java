@@ -0,0 +1,1117 @@
+/**
+ * Copyright (c) 2020, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index;
+
+import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The typeDictionary of a CodeIndex. It maps the fully qualified type name (e.g. com.salesforce.foo.Bar) to the index
+ * entry for the type.
+ * <p>
+ * The types are held in two parts:
+ * <ul>
+ * <li>A frozen part of sorted arrays, used for the bulk of the types. Each package name is stored once, and each
+ * type costs a simple name reference, an entry slot and two ints of lookup order. Lookups by prefix, by simple name,
+ * and by camel case (e.g. BWCR for BazelWorkspaceCommandRunner) are binary searches.</li>
+ * <li>Concurrent skip lists for the types added since the last {@link #freeze()}, so the crawler threads can add
+ * types without blocking each other. These are folded into the frozen part by freeze(), which the indexer calls
+ * once the crawl is done, and which is also run once they grow past half the size of the frozen part.</li>
+ * </ul>
+ * Iteration is ordered by package name, then simple name.
+ */
+public class TypeDictionary extends AbstractMap<String, CodeIndexEntry> {
+
+    // the added types are not frozen before there are this many of them
+    private static final int MIN_TYPES_TO_FREEZE = 4096;
+
+    // the mutators hold the read lock, so that they can run concurrently but not while freeze() replaces the state
+    private final ReentrantReadWriteLock freezeLock = new ReentrantReadWriteLock();
+    private volatile State state = new State(Snapshot.EMPTY, new Delta());
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    // MAP
+
+    @Override
+    public CodeIndexEntry get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        State current = state;
+        String typeName = (String) key;
+        int id = current.snapshot.indexOf(typeName);
+        return id >= 0 ? current.snapshot.entries.get(id) : current.delta.get(typeName);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public CodeIndexEntry put(String typeName, CodeIndexEntry entry) {
+        if (entry == null) {
+            throw new NullPointerException();
+        }
+        CodeIndexEntry previous;
+        freezeLock.readLock().lock();
+        try {
+            State current = state;
+            int id = current.snapshot.indexOf(typeName);
+            if (id >= 0) {
+                previous = current.snapshot.entries.getAndSet(id, entry);
+            } else {
+                previous = current.delta.put(typeName, entry);
+            }
+            if (previous == null) {
+                typeAdded();
+            }
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        freezeIfLarge();
+        return previous;
+    }
+
+    @Override
+    public CodeIndexEntry computeIfAbsent(String typeName,
+            Function<? super String, ? extends CodeIndexEntry> mappingFunction) {
+        CodeIndexEntry result;
+        boolean added;
+        freezeLock.readLock().lock();
+        try {
+            State current = state;
+            int id = current.snapshot.indexOf(typeName);
+            if (id >= 0) {
+                AtomicReferenceArray<CodeIndexEntry> entries = current.snapshot.entries;
+                CodeIndexEntry newEntry = null;
+                while (true) {
+                    result = entries.get(id);
+                    if (result != null) {
+                        added = false;
+                        break;
+                    }
+                    if (newEntry == null) {
+                        newEntry = mappingFunction.apply(typeName);
+                        if (newEntry == null) {
+                            return null;
+                        }
+                    }
+                    if (entries.compareAndSet(id, null, newEntry)) {
+                        result = newEntry;
+                        added = true;
+                        break;
+                    }
+                }
+            } else {
+                CodeIndexEntry existing = current.delta.get(typeName);
+                if (existing != null) {
+                    return existing;
+                }
+                CodeIndexEntry newEntry = mappingFunction.apply(typeName);
+                if (newEntry == null) {
+                    return null;
+                }
+                existing = current.delta.putIfAbsent(typeName, newEntry);
+                // another thread may have added it first
+                added = existing == null;
+                result = added ? newEntry : existing;
+            }
+            if (added) {
+                typeAdded();
+            }
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        if (added) {
+            freezeIfLarge();
+        }
+        return result;
+    }
+
+    /**
+     * Atomically replaces the entry of the type. As with {@link ConcurrentSkipListMap}, the function is applied again
+     * if the entry is changed by another thread meanwhile, so it should not have side effects that cannot be repeated.
+     */
+    @Override
+    public CodeIndexEntry compute(String typeName,
+            BiFunction<? super String, ? super CodeIndexEntry, ? extends CodeIndexEntry> remappingFunction) {
+        return update(typeName, remappingFunction, false);
+    }
+
+    /**
+     * Atomically replaces the entry of the type, if there is one. See {@link #compute(String, BiFunction)}.
+     */
+    @Override
+    public CodeIndexEntry computeIfPresent(String typeName,
+            BiFunction<? super String, ? super CodeIndexEntry, ? extends CodeIndexEntry> remappingFunction) {
+        return update(typeName, remappingFunction, true);
+    }
+
+    @Override
+    public CodeIndexEntry remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String typeName = (String) key;
+        CodeIndexEntry removed;
+        freezeLock.readLock().lock();
+        try {
+            State current = state;
+            int id = current.snapshot.indexOf(typeName);
+            if (id >= 0) {
+                removed = current.snapshot.entries.getAndSet(id, null);
+            } else {
+                removed = current.delta.remove(typeName);
+            }
+            if (removed != null) {
+                typeRemoved();
+            }
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        freezeLock.writeLock().lock();
+        try {
+            state = new State(Snapshot.EMPTY, new Delta());
+            size.set(0);
+            modificationCount.incrementAndGet();
+        } finally {
+            freezeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, CodeIndexEntry>> entrySet() {
+        return new AbstractSet<Map.Entry<String, CodeIndexEntry>>() {
+            @Override
+            public Iterator<Map.Entry<String, CodeIndexEntry>> iterator() {
+                return new EntryIterator(state.allTypes());
+            }
+
+            @Override
+            public int size() {
+                return size.get();
+            }
+        };
+    }
+
+    private CodeIndexEntry update(String typeName,
+            BiFunction<? super String, ? super CodeIndexEntry, ? extends CodeIndexEntry> remappingFunction,
+            boolean onlyIfPresent) {
+        CodeIndexEntry previous;
+        CodeIndexEntry result;
+        freezeLock.readLock().lock();
+        try {
+            State current = state;
+            int id = current.snapshot.indexOf(typeName);
+            if (id >= 0) {
+                AtomicReferenceArray<CodeIndexEntry> entries = current.snapshot.entries;
+                do {
+                    previous = entries.get(id);
+                    if ((previous == null) && onlyIfPresent) {
+                        return null;
+                    }
+                    result = remappingFunction.apply(typeName, previous);
+                } while (!entries.compareAndSet(id, previous, result));
+            } else {
+                CodeIndexEntry[] replaced = new CodeIndexEntry[1];
+                result = current.delta.update(typeName, remappingFunction, onlyIfPresent, replaced);
+                previous = replaced[0];
+            }
+            if ((previous == null) && (result != null)) {
+                typeAdded();
+            } else if ((previous != null) && (result == null)) {
+                typeRemoved();
+            }
+        } finally {
+            freezeLock.readLock().unlock();
+        }
+        if ((previous == null) && (result != null)) {
+            freezeIfLarge();
+        }
+        return result;
+    }
+
+    private void typeAdded() {
+        size.incrementAndGet();
+        modificationCount.incrementAndGet();
+    }
+
+    private void typeRemoved() {
+        size.decrementAndGet();
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * A count that changes whenever a type is added or removed, for callers that cache what they derive from the
+     * types. Replacing the entry of a type does not change it.
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    // FREEZING
+
+    /**
+     * Moves the types added since the last freeze into the sorted arrays, and drops the slots of the removed types.
+     * Call this once a batch of types has been added, e.g. at the end of a crawl. Adds and removes wait while the
+     * arrays are rebuilt, lookups do not.
+     */
+    public void freeze() {
+        freezeLock.writeLock().lock();
+        try {
+            State current = state;
+            if (!current.delta.isEmpty() || (current.snapshot.size() != size.get())) {
+                state = new State(current.buildSnapshot(size.get()), new Delta());
+            }
+        } finally {
+            freezeLock.writeLock().unlock();
+        }
+    }
+
+    // freezes if the skip lists have grown large, unless another thread is busy with the dictionary
+    private void freezeIfLarge() {
+        State current = state;
+        if (current.delta.size() < Math.max(MIN_TYPES_TO_FREEZE, current.snapshot.size() / 2)) {
+            return;
+        }
+        if (freezeLock.writeLock().tryLock()) {
+            try {
+                if (state == current) {
+                    state = new State(current.buildSnapshot(size.get()), new Delta());
+                }
+            } finally {
+                freezeLock.writeLock().unlock();
+            }
+        }
+    }
+
+    // LOOKUPS
+
+    /**
+     * Finds the fully qualified names of the types whose name starts with the passed prefix (e.g. com.salesforce.foo.B
+     * or com.sales). Returns at most maxResults names.
+     */
+    public List<String> findByPrefix(String prefix, int maxResults) {
+        List<String> results = new ArrayList<>();
+        State current = state;
+        Snapshot snapshot = current.snapshot;
+
+        // types directly in the package named by the prefix (com.salesforce.foo.B => com.salesforce.foo)
+        String packageName = packageName(prefix);
+        String simplePrefix = simpleName(prefix);
+        int packageIndex = snapshot.packageIndex(packageName);
+        TypeCursor inPackage = new MergedCursor(
+                packageIndex < 0 ? new SnapshotCursor(snapshot, 0, 0)
+                        : new SnapshotCursor(snapshot, snapshot.lowerBound(packageIndex, simplePrefix),
+                                snapshot.packageStarts[packageIndex + 1]),
+                new DeltaCursor(current.delta.packageIterator(packageName), simplePrefix));
+        while ((results.size() < maxResults) && inPackage.advance() && inPackage.simpleName.startsWith(simplePrefix)) {
+            results.add(inPackage.typeName());
+        }
+
+        // all types in packages whose name starts with the prefix (com.sales => com.salesforce.foo)
+        TypeCursor subPackages = new MergedCursor(
+                new SnapshotCursor(snapshot, snapshot.packageStarts[snapshot.packageLowerBound(prefix)],
+                        snapshot.packageStarts[snapshot.packageLowerBound(prefix + Character.MAX_VALUE)]),
+                new DeltaCursor(withPrefix(current.delta.packages, prefix).values().iterator(), ""));
+        while ((results.size() < maxResults) && subPackages.advance()) {
+            if (!subPackages.packageName.equals(packageName)) {
+                results.add(subPackages.typeName());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the fully qualified names of the types with the passed simple name (e.g. Bar).
+     */
+    public List<String> findBySimpleName(String simpleName) {
+        List<String> results = new ArrayList<>();
+        State current = state;
+        Snapshot snapshot = current.snapshot;
+        for (int i = snapshot.simpleNameLowerBound(simpleName); i < snapshot.bySimpleName.length; i++) {
+            int id = snapshot.bySimpleName[i];
+            if (!snapshot.simpleNames[id].equals(simpleName)) {
+                break;
+            }
+            if (snapshot.entries.get(id) != null) {
+                results.add(snapshot.typeName(id));
+            }
+        }
+        addTypeNames(simpleName, current.delta.simpleNames.get(simpleName), results, Integer.MAX_VALUE);
+        return results;
+    }
+
+    /**
+     * Finds the fully qualified names of the types whose simple name starts with the passed prefix, ordered by simple
+     * name. Returns at most maxResults names.
+     */
+    public List<String> findBySimpleNamePrefix(String simpleNamePrefix, int maxResults) {
+        List<String> results = new ArrayList<>();
+        State current = state;
+        Snapshot snapshot = current.snapshot;
+        int i = snapshot.simpleNameLowerBound(simpleNamePrefix);
+        Iterator<Map.Entry<String, Object>> deltaIter =
+                withPrefix(current.delta.simpleNames, simpleNamePrefix).entrySet().iterator();
+        Map.Entry<String, Object> deltaNext = deltaIter.hasNext() ? deltaIter.next() : null;
+        while (results.size() < maxResults) {
+            String snapshotNext = null;
+            if ((i < snapshot.bySimpleName.length)
+                    && snapshot.simpleNames[snapshot.bySimpleName[i]].startsWith(simpleNamePrefix)) {
+                snapshotNext = snapshot.simpleNames[snapshot.bySimpleName[i]];
+            }
+            if ((snapshotNext != null) && ((deltaNext == null) || (snapshotNext.compareTo(deltaNext.getKey()) <= 0))) {
+                int id = snapshot.bySimpleName[i++];
+                if (snapshot.entries.get(id) != null) {
+                    results.add(snapshot.typeName(id));
+                }
+            } else if (deltaNext != null) {
+                addTypeNames(deltaNext.getKey(), deltaNext.getValue(), results, maxResults);
+                deltaNext = deltaIter.hasNext() ? deltaIter.next() : null;
+            } else {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds the fully qualified names of the types whose simple name matches the passed camel case pattern. Each hump
+     * of the pattern must be a prefix of the corresponding hump of the simple name, e.g. BWCR, BazWoCoRu and BazelWC
+     * all match BazelWorkspaceCommandRunner. Returns at most maxResults names.
+     */
+    public List<String> findByCamelCase(String pattern, int maxResults) {
+        List<String> results = new ArrayList<>();
+        if (pattern.isEmpty()) {
+            return results;
+        }
+        State current = state;
+        Snapshot snapshot = current.snapshot;
+        String patternInitials = camelCaseInitials(pattern);
+        for (int i = snapshot.initialsLowerBound(patternInitials); i < snapshot.byInitials.length; i++) {
+            int id = snapshot.byInitials[i];
+            String simpleName = snapshot.simpleNames[id];
+            if (results.size() >= maxResults) {
+                return results;
+            }
+            if (!camelCaseInitials(simpleName).startsWith(patternInitials)) {
+                break;
+            }
+            if ((snapshot.entries.get(id) != null) && matchesCamelCase(pattern, simpleName)) {
+                results.add(snapshot.typeName(id));
+            }
+        }
+        for (Object simpleNamesForInitials : withPrefix(current.delta.camelCaseInitials, patternInitials).values()) {
+            for (String simpleName : asStrings(simpleNamesForInitials)) {
+                if (results.size() >= maxResults) {
+                    return results;
+                }
+                if (matchesCamelCase(pattern, simpleName)) {
+                    addTypeNames(simpleName, current.delta.simpleNames.get(simpleName), results, maxResults);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The distinct simple names of the types, sorted. This is a copy.
+     */
+    public List<String> getSimpleNames() {
+        State current = state;
+        Snapshot snapshot = current.snapshot;
+        List<String> names = new ArrayList<>();
+        Iterator<String> deltaIter = current.delta.simpleNames.keySet().iterator();
+        String deltaNext = deltaIter.hasNext() ? deltaIter.next() : null;
+        for (int id : snapshot.bySimpleName) {
+            if (snapshot.entries.get(id) == null) {
+                continue;
+            }
+            String name = snapshot.simpleNames[id];
+            while ((deltaNext != null) && (deltaNext.compareTo(name) < 0)) {
+                names.add(deltaNext);
+                deltaNext = deltaIter.hasNext() ? deltaIter.next() : null;
+            }
+            if ((deltaNext != null) && deltaNext.equals(name)) {
+                deltaNext = deltaIter.hasNext() ? deltaIter.next() : null;
+            }
+            if (names.isEmpty() || !names.get(names.size() - 1).equals(name)) {
+                names.add(name);
+            }
+        }
+        while (deltaNext != null) {
+            names.add(deltaNext);
+            deltaNext = deltaIter.hasNext() ? deltaIter.next() : null;
+        }
+        return names;
+    }
+
+    /**
+     * Number of distinct packages that contain types.
+     */
+    public int getPackageCount() {
+        State current = state;
+        int count = current.snapshot.packageNames.length;
+        for (String packageName : current.delta.packages.keySet()) {
+            if (current.snapshot.packageIndex(packageName) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // CAMEL CASE
+
+    /**
+     * The first letter of each hump of a type name: BazelWorkspaceCommandRunner => BWCR, URLClassLoader => URLCL
+     */
+    static String camelCaseInitials(String name) {
+        StringBuilder initials = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((i == 0) || Character.isUpperCase(c)) {
+                initials.append(Character.toUpperCase(c));
+            }
+        }
+        return initials.toString();
+    }
+
+    /**
+     * Does the camel case pattern match the simple name? Each hump of the pattern must be a prefix of the
+     * corresponding hump of the name, and the humps must match in order starting with the first.
+     */
+    static boolean matchesCamelCase(String pattern, String simpleName) {
+        int patternPos = 0;
+        int namePos = 0;
+        while (patternPos < pattern.length()) {
+            int patternHumpEnd = nextHump(pattern, patternPos);
+            if (namePos >= simpleName.length()) {
+                return false;
+            }
+            int nameHumpEnd = nextHump(simpleName, namePos);
+            int humpLength = patternHumpEnd - patternPos;
+            if ((humpLength > (nameHumpEnd - namePos))
+                    || !simpleName.regionMatches(true, namePos, pattern, patternPos, humpLength)) {
+                return false;
+            }
+            patternPos = patternHumpEnd;
+            namePos = nameHumpEnd;
+        }
+        return true;
+    }
+
+    private static int nextHump(String name, int humpStart) {
+        int i = humpStart + 1;
+        while ((i < name.length()) && !Character.isUpperCase(name.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // INTERNALS
+
+    private static String packageName(String typeName) {
+        int lastDot = typeName.lastIndexOf('.');
+        return lastDot == -1 ? "" : typeName.substring(0, lastDot);
+    }
+
+    private static String simpleName(String typeName) {
+        return typeName.substring(typeName.lastIndexOf('.') + 1);
+    }
+
+    private static String typeName(String packageName, String simpleName) {
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    private static <V> ConcurrentNavigableMap<String, V> withPrefix(ConcurrentSkipListMap<String, V> map,
+            String prefix) {
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static void addTypeNames(String simpleName, Object packagesForName, List<String> results, int maxResults) {
+        if (packagesForName instanceof PackageTypes) {
+            if (results.size() < maxResults) {
+                results.add(((PackageTypes) packagesForName).typeName(simpleName));
+            }
+        } else if (packagesForName instanceof PackageTypes[]) {
+            for (PackageTypes packageTypes : (PackageTypes[]) packagesForName) {
+                if (results.size() >= maxResults) {
+                    return;
+                }
+                results.add(packageTypes.typeName(simpleName));
+            }
+        }
+    }
+
+    // the values of the secondary indexes are a single element or an array, since most names are unique
+
+    private static Object with(Object existing, Object added) {
+        if (existing.getClass().isArray()) {
+            Object[] array = (Object[]) existing;
+            for (Object element : array) {
+                if (element == added) {
+                    return existing;
+                }
+            }
+            Object[] grown = Arrays.copyOf(array, array.length + 1);
+            grown[array.length] = added;
+            return grown;
+        }
+        if (existing == added) {
+            return existing;
+        }
+        Object[] pair = (Object[]) Array.newInstance(added.getClass(), 2);
+        pair[0] = existing;
+        pair[1] = added;
+        return pair;
+    }
+
+    // returns null if nothing remains, which removes the key
+    private static Object without(Object existing, Object removed) {
+        if (!existing.getClass().isArray()) {
+            return existing.equals(removed) ? null : existing;
+        }
+        Object[] array = (Object[]) existing;
+        List<Object> remaining = new ArrayList<>(array.length);
+        for (Object element : array) {
+            if (!element.equals(removed)) {
+                remaining.add(element);
+            }
+        }
+        if (remaining.isEmpty()) {
+            return null;
+        } else if (remaining.size() == 1) {
+            return remaining.get(0);
+        }
+        return remaining.toArray((Object[]) Array.newInstance(array.getClass().getComponentType(), 0));
+    }
+
+    private static List<String> asStrings(Object simpleNamesForInitials) {
+        if (simpleNamesForInitials instanceof String[]) {
+            List<String> names = new ArrayList<>();
+            Collections.addAll(names, (String[]) simpleNamesForInitials);
+            return names;
+        }
+        return Collections.singletonList((String) simpleNamesForInitials);
+    }
+
+    /**
+     * The frozen types and the types added since, replaced as a whole by freeze().
+     */
+    private static class State {
+        final Snapshot snapshot;
+        final Delta delta;
+
+        State(Snapshot snapshot, Delta delta) {
+            this.snapshot = snapshot;
+            this.delta = delta;
+        }
+
+        // all live types, ordered by package then simple name
+        TypeCursor allTypes() {
+            return new MergedCursor(new SnapshotCursor(snapshot, 0, snapshot.size()),
+                    new DeltaCursor(delta.packages.values().iterator(), ""));
+        }
+
+        // called with the write lock held, so no type is added or removed meanwhile
+        Snapshot buildSnapshot(int typeCount) {
+            String[] packageNames = new String[typeCount];
+            int[] packageStarts = new int[typeCount + 1];
+            String[] simpleNames = new String[typeCount];
+            CodeIndexEntry[] entries = new CodeIndexEntry[typeCount];
+            int types = 0;
+            int packages = 0;
+            TypeCursor cursor = allTypes();
+            while ((types < typeCount) && cursor.advance()) {
+                if ((packages == 0) || !packageNames[packages - 1].equals(cursor.packageName)) {
+                    packageNames[packages] = cursor.packageName;
+                    packageStarts[packages] = types;
+                    packages++;
+                }
+                simpleNames[types] = cursor.simpleName;
+                entries[types] = cursor.entry;
+                types++;
+            }
+            packageStarts[packages] = types;
+            return new Snapshot(Arrays.copyOf(packageNames, packages), Arrays.copyOf(packageStarts, packages + 1),
+                    Arrays.copyOf(simpleNames, types), Arrays.copyOf(entries, types));
+        }
+    }
+
+    /**
+     * The frozen types, in sorted arrays. A type is identified by its position in the arrays, which are ordered by
+     * package then simple name. The set of types is fixed, but their entries can be removed and put back.
+     */
+    private static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new String[0], new int[1], new String[0], new CodeIndexEntry[0]);
+
+        final String[] packageNames;
+        // the first type of each package, followed by the number of types
+        final int[] packageStarts;
+        final String[] simpleNames;
+        // null once the type has been removed
+        final AtomicReferenceArray<CodeIndexEntry> entries;
+        // the types ordered by simple name, then package
+        final int[] bySimpleName;
+        // the types ordered by the camel case initials of the simple name, then simple name and package
+        final int[] byInitials;
+
+        Snapshot(String[] packageNames, int[] packageStarts, String[] simpleNames, CodeIndexEntry[] entries) {
+            this.packageNames = packageNames;
+            this.packageStarts = packageStarts;
+            this.simpleNames = simpleNames;
+            this.entries = new AtomicReferenceArray<>(entries);
+
+            int[] ids = new int[simpleNames.length];
+            for (int id = 0; id < ids.length; id++) {
+                ids[id] = id;
+            }
+            bySimpleName = sort(ids, (a, b) -> simpleNames[a].compareTo(simpleNames[b]));
+
+            // share one instance of each simple name, and compute the initials once per simple name
+            String[] initials = new String[simpleNames.length];
+            for (int i = 0; i < bySimpleName.length; i++) {
+                int id = bySimpleName[i];
+                if ((i > 0) && simpleNames[id].equals(simpleNames[bySimpleName[i - 1]])) {
+                    simpleNames[id] = simpleNames[bySimpleName[i - 1]];
+                    initials[id] = initials[bySimpleName[i - 1]];
+                } else {
+                    initials[id] = camelCaseInitials(simpleNames[id]);
+                }
+            }
+            byInitials = sort(bySimpleName, (a, b) -> initials[a].compareTo(initials[b]));
+        }
+
+        int size() {
+            return simpleNames.length;
+        }
+
+        // returns the type, or -1 if it is not in the snapshot
+        int indexOf(String typeName) {
+            int packageIndex = packageIndex(packageName(typeName));
+            if (packageIndex < 0) {
+                return -1;
+            }
+            int id = Arrays.binarySearch(simpleNames, packageStarts[packageIndex], packageStarts[packageIndex + 1],
+                simpleName(typeName));
+            return id < 0 ? -1 : id;
+        }
+
+        int packageIndex(String packageName) {
+            return Arrays.binarySearch(packageNames, packageName);
+        }
+
+        // the first package whose name is not less than packageName
+        int packageLowerBound(String packageName) {
+            int index = packageIndex(packageName);
+            return index < 0 ? -index - 1 : index;
+        }
+
+        // the first type of the package whose simple name is not less than simpleName
+        int lowerBound(int packageIndex, String simpleName) {
+            int id = Arrays.binarySearch(simpleNames, packageStarts[packageIndex], packageStarts[packageIndex + 1],
+                simpleName);
+            return id < 0 ? -id - 1 : id;
+        }
+
+        // the first position in bySimpleName whose simple name is not less than simpleName
+        int simpleNameLowerBound(String simpleName) {
+            int low = 0;
+            int high = bySimpleName.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (simpleNames[bySimpleName[mid]].compareTo(simpleName) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // the first position in byInitials whose initials are not less than initials
+        int initialsLowerBound(String initials) {
+            int low = 0;
+            int high = byInitials.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (camelCaseInitials(simpleNames[byInitials[mid]]).compareTo(initials) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        String packageNameOf(int id) {
+            int packageIndex = Arrays.binarySearch(packageStarts, id);
+            if (packageIndex < 0) {
+                packageIndex = -packageIndex - 2;
+            }
+            return packageNames[packageIndex];
+        }
+
+        String typeName(int id) {
+            return TypeDictionary.typeName(packageNameOf(id), simpleNames[id]);
+        }
+
+        private interface IdOrder {
+            int compare(int a, int b);
+        }
+
+        // stable merge sort of the ids, so ids that compare equal keep the order they are passed in
+        private static int[] sort(int[] ids, IdOrder order) {
+            int[] sorted = ids.clone();
+            int[] merged = new int[ids.length];
+            for (int width = 1; width < sorted.length; width *= 2) {
+                for (int low = 0; low < sorted.length; low += 2 * width) {
+                    int mid = Math.min(low + width, sorted.length);
+                    int high = Math.min(low + (2 * width), sorted.length);
+                    int left = low;
+                    int right = mid;
+                    int out = low;
+                    while ((left < mid) && (right < high)) {
+                        merged[out++] = order.compare(sorted[right], sorted[left]) < 0 ? sorted[right++]
+                                : sorted[left++];
+                    }
+                    while (left < mid) {
+                        merged[out++] = sorted[left++];
+                    }
+                    while (right < high) {
+                        merged[out++] = sorted[right++];
+                    }
+                }
+                int[] swap = sorted;
+                sorted = merged;
+                merged = swap;
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * The types added since the last freeze, none of which are in the snapshot. Adds to these are lock free.
+     */
+    private static class Delta {
+        // package name to the types in the package
+        final ConcurrentSkipListMap<String, PackageTypes> packages = new ConcurrentSkipListMap<>();
+
+        // simple name to the package(s) that contain a type with that simple name; the value is a PackageTypes, or a
+        // PackageTypes[] if there are several
+        final ConcurrentSkipListMap<String, Object> simpleNames = new ConcurrentSkipListMap<>();
+
+        // camel case initials (e.g. BWCR) to the simple name(s) with those initials; the value is a String, or a
+        // String[]
+        final ConcurrentSkipListMap<String, Object> camelCaseInitials = new ConcurrentSkipListMap<>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        int size() {
+            return size.get();
+        }
+
+        boolean isEmpty() {
+            return size.get() == 0;
+        }
+
+        CodeIndexEntry get(String typeName) {
+            PackageTypes packageTypes = packages.get(packageName(typeName));
+            return packageTypes == null ? null : packageTypes.types.get(simpleName(typeName));
+        }
+
+        CodeIndexEntry put(String typeName, CodeIndexEntry entry) {
+            PackageTypes packageTypes = packages.computeIfAbsent(packageName(typeName), PackageTypes::new);
+            String simpleName = simpleName(typeName);
+            CodeIndexEntry previous = packageTypes.types.put(simpleName, entry);
+            if (previous == null) {
+                typeAdded(packageTypes, simpleName);
+            }
+            return previous;
+        }
+
+        CodeIndexEntry putIfAbsent(String typeName, CodeIndexEntry entry) {
+            PackageTypes packageTypes = packages.computeIfAbsent(packageName(typeName), PackageTypes::new);
+            String simpleName = simpleName(typeName);
+            CodeIndexEntry existing = packageTypes.types.putIfAbsent(simpleName, entry);
+            if (existing == null) {
+                typeAdded(packageTypes, simpleName);
+            }
+            return existing;
+        }
+
+        CodeIndexEntry remove(String typeName) {
+            PackageTypes packageTypes = packages.get(packageName(typeName));
+            if (packageTypes == null) {
+                return null;
+            }
+            String simpleName = simpleName(typeName);
+            CodeIndexEntry removed = packageTypes.types.remove(simpleName);
+            if (removed != null) {
+                typeRemoved(packageTypes, simpleName);
+            }
+            return removed;
+        }
+
+        // replaced[0] is set to the entry the result replaced
+        CodeIndexEntry update(String typeName,
+                BiFunction<? super String, ? super CodeIndexEntry, ? extends CodeIndexEntry> remappingFunction,
+                boolean onlyIfPresent, CodeIndexEntry[] replaced) {
+            PackageTypes packageTypes = onlyIfPresent ? packages.get(packageName(typeName))
+                    : packages.computeIfAbsent(packageName(typeName), PackageTypes::new);
+            if (packageTypes == null) {
+                return null;
+            }
+            String simpleName = simpleName(typeName);
+            BiFunction<String, CodeIndexEntry, CodeIndexEntry> recordingFunction = (k, previous) -> {
+                // the function is applied again if the entry changed meanwhile, the last call is the one that counts
+                replaced[0] = previous;
+                return remappingFunction.apply(typeName, previous);
+            };
+            CodeIndexEntry result = onlyIfPresent ? packageTypes.types.computeIfPresent(simpleName, recordingFunction)
+                    : packageTypes.types.compute(simpleName, recordingFunction);
+            if ((replaced[0] == null) && (result != null)) {
+                typeAdded(packageTypes, simpleName);
+            } else if ((replaced[0] != null) && (result == null)) {
+                typeRemoved(packageTypes, simpleName);
+            }
+            return result;
+        }
+
+        Iterator<PackageTypes> packageIterator(String packageName) {
+            PackageTypes packageTypes = packages.get(packageName);
+            return packageTypes == null ? Collections.<PackageTypes> emptyIterator()
+                    : Collections.singletonList(packageTypes).iterator();
+        }
+
+        private void typeAdded(PackageTypes packageTypes, String simpleName) {
+            size.incrementAndGet();
+            if (simpleNames.putIfAbsent(simpleName, packageTypes) == null) {
+                // first type with this simple name
+                camelCaseInitials.merge(TypeDictionary.camelCaseInitials(simpleName), simpleName,
+                    TypeDictionary::with);
+            } else {
+                simpleNames.computeIfPresent(simpleName, (k, v) -> with(v, packageTypes));
+            }
+        }
+
+        private void typeRemoved(PackageTypes packageTypes, String simpleName) {
+            size.decrementAndGet();
+            Object remaining = simpleNames.computeIfPresent(simpleName, (k, v) -> without(v, packageTypes));
+            if (remaining == null) {
+                camelCaseInitials.computeIfPresent(TypeDictionary.camelCaseInitials(simpleName),
+                    (k, v) -> without(v, simpleName));
+            }
+        }
+    }
+
+    /**
+     * The types of one package, in the delta.
+     */
+    private static class PackageTypes {
+        final String packageName;
+        final ConcurrentSkipListMap<String, CodeIndexEntry> types = new ConcurrentSkipListMap<>();
+
+        PackageTypes(String packageName) {
+            this.packageName = packageName;
+        }
+
+        String typeName(String simpleName) {
+            return TypeDictionary.typeName(packageName, simpleName);
+        }
+    }
+
+    /**
+     * Walks live types in package then simple name order.
+     */
+    private abstract static class TypeCursor {
+        String packageName;
+        String simpleName;
+        CodeIndexEntry entry;
+
+        // moves to the next type, returns false if there is none
+        abstract boolean advance();
+
+        String typeName() {
+            return TypeDictionary.typeName(packageName, simpleName);
+        }
+
+        void moveTo(TypeCursor other) {
+            packageName = other.packageName;
+            simpleName = other.simpleName;
+            entry = other.entry;
+        }
+    }
+
+    private static class SnapshotCursor extends TypeCursor {
+        private final Snapshot snapshot;
+        private final int end;
+        private int next;
+
+        SnapshotCursor(Snapshot snapshot, int start, int end) {
+            this.snapshot = snapshot;
+            this.end = end;
+            next = start;
+        }
+
+        @Override
+        boolean advance() {
+            while (next < end) {
+                int id = next++;
+                CodeIndexEntry live = snapshot.entries.get(id);
+                if (live != null) {
+                    packageName = snapshot.packageNameOf(id);
+                    simpleName = snapshot.simpleNames[id];
+                    entry = live;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class DeltaCursor extends TypeCursor {
+        private final Iterator<PackageTypes> packageIter;
+        private final String simplePrefix;
+        private Iterator<Map.Entry<String, CodeIndexEntry>> typeIter = Collections.emptyIterator();
+
+        // walks the types of the packages, starting with the simple name simplePrefix in each package
+        DeltaCursor(Iterator<PackageTypes> packageIter, String simplePrefix) {
+            this.packageIter = packageIter;
+            this.simplePrefix = simplePrefix;
+        }
+
+        @Override
+        boolean advance() {
+            while (!typeIter.hasNext()) {
+                if (!packageIter.hasNext()) {
+                    return false;
+                }
+                PackageTypes packageTypes = packageIter.next();
+                packageName = packageTypes.packageName;
+                typeIter = packageTypes.types.tailMap(simplePrefix).entrySet().iterator();
+            }
+            Map.Entry<String, CodeIndexEntry> type = typeIter.next();
+            simpleName = type.getKey();
+            entry = type.getValue();
+            return true;
+        }
+    }
+
+    // merges the snapshot and delta cursors, which never hold the same type
+    private static class MergedCursor extends TypeCursor {
+        private final TypeCursor first;
+        private final TypeCursor second;
+        private boolean firstValid;
+        private boolean secondValid;
+
+        MergedCursor(TypeCursor first, TypeCursor second) {
+            this.first = first;
+            this.second = second;
+            firstValid = first.advance();
+            secondValid = second.advance();
+        }
+
+        @Override
+        boolean advance() {
+            if (firstValid && (!secondValid || (compare(first, second) < 0))) {
+                moveTo(first);
+                firstValid = first.advance();
+                return true;
+            }
+            if (secondValid) {
+                moveTo(second);
+                secondValid = second.advance();
+                return true;
+            }
+            return false;
+        }
+
+        private static int compare(TypeCursor a, TypeCursor b) {
+            int byPackage = a.packageName.compareTo(b.packageName);
+            return byPackage != 0 ? byPackage : a.simpleName.compareTo(b.simpleName);
+        }
+    }
+
+    private static class EntryIterator implements Iterator<Map.Entry<String, CodeIndexEntry>> {
+        private final TypeCursor cursor;
+        private boolean hasNext;
+
+        EntryIterator(TypeCursor cursor) {
+            this.cursor = cursor;
+            hasNext = cursor.advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public Map.Entry<String, CodeIndexEntry> next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, CodeIndexEntry> next =
+                    new AbstractMap.SimpleImmutableEntry<>(cursor.typeName(), cursor.entry);
+            hasNext = cursor.advance();
+            return next;
+        }
+    }
+}
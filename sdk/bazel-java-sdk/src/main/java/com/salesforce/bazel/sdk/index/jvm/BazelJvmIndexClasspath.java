@@ -25,8 +25,12 @@ package com.salesforce.bazel.sdk.index.jvm;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 import com.salesforce.bazel.sdk.index.CodeIndexEntry;
 import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
 import com.salesforce.bazel.sdk.lang.jvm.classpath.JvmClasspathData;
@@ -112,6 +116,25 @@ public class BazelJvmIndexClasspath extends JvmInMemoryClasspath {
         return index;
     }
 
+    /**
+     * Updates the index with the jars built by the passed targets, after a build. Only the targets whose jars changed
+     * are indexed again, which is much cheaper than calling clean() and computing the index from scratch.
+     */
+    public synchronized Set<String> updateInternalLocations(Collection<AspectTargetInfo> targetInfos,
+            WorkProgressMonitor progressMonitor) {
+        if (index == null) {
+            // the next computation of the index will pick up the built jars
+            return Collections.emptySet();
+        }
+        JvmCodeIndexer indexer = new JvmCodeIndexer();
+        Set<String> updatedTargets =
+                indexer.updateInternalLocations(bazelWorkspace, index, targetInfos, progressMonitor);
+        if (!updatedTargets.isEmpty()) {
+            cachedClasspath = null;
+        }
+        return updatedTargets;
+    }
+
     /**
      * Clears the cache, which will make the next invocation of getClasspathEntries() expensive.
      */
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package com.salesforce.bazel.sdk.index.jvm;
+
+import java.io.File;
+
+import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
+
+/**
+ * A jar built by a workspace target, as it was when it was indexed. The size and modification time are recorded so
+ * that a changed jar can be detected without opening it.
+ */
+final class BuiltJarLocation {
+    final File jarFile;
+
+    // null if the jar did not exist, or could not be read, when it was indexed
+    final CodeLocationDescriptor location;
+
+    final long size;
+    final long lastModified;
+
+    BuiltJarLocation(File jarFile, CodeLocationDescriptor location) {
+        this.jarFile = jarFile;
+        this.location = location;
+        size = jarFile.length();
+        lastModified = jarFile.lastModified();
+    }
+
+    boolean isChanged() {
+        return (jarFile.length() != size) || (jarFile.lastModified() != lastModified);
+    }
+}
@@ -57,6 +57,7 @@ public class JavaSourceCrawler extends SourceFileCrawler {
         ClassIdentifier classId = new ClassIdentifier(fqClassName);
         SourceFileIdentifier sourceFileId = new SourceFileIdentifier(sourceLocationDescriptor, classId);
         CodeLocationDescriptor sourceFileLocationDescriptor = new CodeLocationDescriptor(sourceFile, sourceFileId);
+        sourceFileLocationDescriptor.stampLocationOnDisk();
 
         sourceFileLocationDescriptor.addClass(classId);
         index.addTypeLocation(fqClassName, sourceFileLocationDescriptor);
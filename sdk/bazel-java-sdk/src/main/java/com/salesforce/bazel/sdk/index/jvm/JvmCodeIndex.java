@@ -23,6 +23,7 @@
  */
 package com.salesforce.bazel.sdk.index.jvm;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -50,15 +51,21 @@ import com.salesforce.bazel.sdk.model.BazelWorkspace;
  */
 public class JvmCodeIndex extends CodeIndex {
     // See superclass for the collections
-    //public Map<String, CodeIndexEntry> artifactDictionary = new TreeMap<>();
-    //public Map<String, CodeIndexEntry> fileDictionary = new TreeMap<>();
-    //public Map<String, CodeIndexEntry> typeDictionary = new TreeMap<>();
+    //public Map<String, CodeIndexEntry> artifactDictionary = new ConcurrentSkipListMap<>();
+    //public Map<String, CodeIndexEntry> fileDictionary = new ConcurrentSkipListMap<>();
+    //public TypeDictionary typeDictionary = new TypeDictionary();
 
     /**
      * Global cache of indices, keyed by workspace name. (BazelWorkspace.name)
      */
     protected static Map<String, JvmCodeIndex> workspaceIndices = new ConcurrentHashMap<>();
 
+    /**
+     * Jars built by the workspace, keyed by the label of the target that built them. This is how the indexer knows
+     * which targets need to be indexed again after a build. See JvmCodeIndexer.updateInternalLocations()
+     */
+    final Map<String, List<BuiltJarLocation>> builtJarLocations = new ConcurrentHashMap<>();
+
 
     public JvmCodeIndex() {
         this.indexOptions = new JvmCodeIndexerOptions();
@@ -34,12 +34,30 @@
 package com.salesforce.bazel.sdk.index.jvm;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.aspect.jvm.JVMAspectOutputJarSet;
+import com.salesforce.bazel.sdk.aspect.jvm.JVMAspectTargetInfo;
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
+import com.salesforce.bazel.sdk.index.CodeIndexEntry;
+import com.salesforce.bazel.sdk.index.CodeIndexPersister;
 import com.salesforce.bazel.sdk.index.CodeIndexer;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarCrawlStatistics;
 import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentiferResolver;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentifier;
 import com.salesforce.bazel.sdk.index.jvm.jar.JavaJarCrawler;
+import com.salesforce.bazel.sdk.index.model.ClassIdentifier;
+import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
 import com.salesforce.bazel.sdk.lang.jvm.external.BazelExternalJarRuleManager;
 import com.salesforce.bazel.sdk.lang.jvm.external.BazelExternalJarRuleType;
 import com.salesforce.bazel.sdk.logging.LogHelper;
@@ -52,6 +70,19 @@ import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
  */
 public class JvmCodeIndexer extends CodeIndexer {
     private static final LogHelper LOG = LogHelper.log(JvmCodeIndexer.class);
+
+    // the rule kinds that produce jars, used to find the workspace built jars when the full index is built
+    private static final String INTERNAL_TARGETS_QUERY = "kind('java_.* rule', //...)";
+
+    private CodeIndexPersister indexPersister;
+
+    /**
+     * Persists the index to disk after it is built, and reuses the persisted index the next time it is built. Only
+     * the jars that changed since the index was persisted are crawled again.
+     */
+    public void setIndexPersister(CodeIndexPersister indexPersister) {
+        this.indexPersister = indexPersister;
+    }
     
     /**
      * Builds an index for an entire workspace, which can be a very expensive operation.
@@ -73,6 +104,17 @@ public class JvmCodeIndexer extends CodeIndexer {
         // lock the options, as we don't want the caller to change them while we are indexing
         indexerOptions.setLock();
 
+        // reuse the persisted index for the jars that have not changed
+        Set<File> indexedJars = Collections.emptySet();
+        if (indexPersister != null) {
+            try {
+                indexedJars = indexPersister.read(index);
+            } catch (IOException ioe) {
+                LOG.error("Could not read the persisted type index, the workspace will be fully indexed.", ioe);
+                index = new JvmCodeIndex(indexerOptions);
+            }
+        }
+
         // for each jar downloading rule type in the workspace, add the appropriate local directories of the downloaded jars
         List<BazelExternalJarRuleType> ruleTypes = externalJarRuleManager.findInUseExternalJarRuleTypes(bazelWorkspace);
         for (BazelExternalJarRuleType ruleType : ruleTypes) {
@@ -80,37 +122,214 @@ public class JvmCodeIndexer extends CodeIndexer {
             locations.addAll(ruleSpecificLocations);
         }
 
-        // add internal location (jars built by the bazel workspace
-        addInternalLocations(index, locations);
-
         // add the additional directories the user wants to search
         if (additionalJarLocations != null) {
             locations.addAll(additionalJarLocations);
         }
 
-        // now build the index
-        for (File location : locations) {
-            processLocation(bazelWorkspace, externalJarRuleManager, index, location, progressMonitor);
+        // now build the index, the locations are crawled in parallel
+        JarCrawlStatistics statistics = processLocations(bazelWorkspace, externalJarRuleManager, index, locations,
+            indexedJars, progressMonitor);
+
+        // add internal locations (jars built by the bazel workspace)
+        addInternalLocations(bazelWorkspace, index, indexedJars, progressMonitor);
+
+        // the crawl is done, move the types into the compact lookup arrays
+        index.typeDictionary.freeze();
+
+        if ((indexPersister != null) && ((progressMonitor == null) || !progressMonitor.isCanceled())) {
+            try {
+                indexPersister.write(index);
+            } catch (IOException ioe) {
+                LOG.error("Could not persist the type index.", ioe);
+            }
         }
 
         JvmCodeIndex.addWorkspaceIndex(bazelWorkspace, index);
 
-        LOG.info("Finished building the type index for workspace {}", bazelWorkspace.getName());
+        LOG.info("Finished building the type index for workspace {}: {} in {} ms", bazelWorkspace.getName(),
+            statistics, statistics.getElapsedMillis());
         return index;
 
     }
 
-    void processLocation(BazelWorkspace bazelWorkspace, BazelExternalJarRuleManager externalJarRuleManager,
-            JvmCodeIndex index, File location, WorkProgressMonitor progressMonitor) {
-        if ((location != null) && location.exists()) {
-            JarIdentiferResolver jarResolver = new JarIdentiferResolver();
-            JavaJarCrawler jarCrawler = new JavaJarCrawler(bazelWorkspace, index, jarResolver, externalJarRuleManager);
-            jarCrawler.index(location);
+    JarCrawlStatistics processLocations(BazelWorkspace bazelWorkspace,
+            BazelExternalJarRuleManager externalJarRuleManager, JvmCodeIndex index, List<File> locations,
+            Set<File> indexedJars, WorkProgressMonitor progressMonitor) {
+        List<File> existingLocations = new ArrayList<>();
+        for (File location : locations) {
+            if ((location != null) && location.exists()) {
+                existingLocations.add(location);
+            }
+        }
+        JarIdentiferResolver jarResolver = new JarIdentiferResolver();
+        JavaJarCrawler jarCrawler = new JavaJarCrawler(bazelWorkspace, index, jarResolver, externalJarRuleManager);
+        jarCrawler.setProgressMonitor(progressMonitor);
+        jarCrawler.setIndexedJars(indexedJars);
+        jarCrawler.index(existingLocations);
+        return jarCrawler.getStatistics();
+    }
+
+    /**
+     * Indexes the jars built by the workspace targets. The output jars of each target come from the aspect data, so
+     * this needs a command runner on the workspace. Jars that have not been built yet are picked up by a later call
+     * to {@link #updateInternalLocations(BazelWorkspace, JvmCodeIndex, Collection, WorkProgressMonitor)}.
+     */
+    protected void addInternalLocations(BazelWorkspace bazelWorkspace, JvmCodeIndex index, Set<File> indexedJars,
+            WorkProgressMonitor progressMonitor) {
+        BazelWorkspaceCommandRunner commandRunner = bazelWorkspace.getBazelWorkspaceCommandRunner();
+        if (commandRunner == null) {
+            return;
+        }
+        List<AspectTargetInfo> targetInfos = new ArrayList<>();
+        try {
+            List<String> targets = bazelWorkspace.getTargetsForBazelQuery(INTERNAL_TARGETS_QUERY);
+            for (Set<AspectTargetInfo> infos : commandRunner.getAspectTargetInfos(targets, "JvmCodeIndexer")
+                    .values()) {
+                targetInfos.addAll(infos);
+            }
+        } catch (Exception anyE) {
+            LOG.error("Could not compute the jars built by workspace {}, they will not be in the type index.", anyE,
+                bazelWorkspace.getName());
+            return;
+        }
+        updateInternalLocations(bazelWorkspace, index, targetInfos, indexedJars, progressMonitor);
+    }
+
+    /**
+     * Updates the index with the jars built by the passed targets, typically after a build of those targets. Only
+     * targets with a changed, added or removed output jar are indexed again, and their previous entries are removed
+     * from the index. Targets that are not passed are left as is.
+     *
+     * @return the labels of the targets that were indexed again
+     */
+    public synchronized Set<String> updateInternalLocations(BazelWorkspace bazelWorkspace, JvmCodeIndex index,
+            Collection<AspectTargetInfo> targetInfos, WorkProgressMonitor progressMonitor) {
+        return updateInternalLocations(bazelWorkspace, index, targetInfos, Collections.<File> emptySet(),
+            progressMonitor);
+    }
+
+    private Set<String> updateInternalLocations(BazelWorkspace bazelWorkspace, JvmCodeIndex index,
+            Collection<AspectTargetInfo> targetInfos, Set<File> indexedJars, WorkProgressMonitor progressMonitor) {
+        File execRoot = bazelWorkspace.getBazelExecRootDirectory();
+        if (execRoot == null) {
+            LOG.error("The exec root of workspace {} is not known, the jars it built cannot be indexed.",
+                bazelWorkspace.getName());
+            return Collections.emptySet();
+        }
+
+        // find the targets with changed outputs, and the jars that need to be crawled for them
+        Map<String, List<File>> changedTargets = new LinkedHashMap<>();
+        Map<File, String> jarsToCrawl = new HashMap<>();
+        for (AspectTargetInfo targetInfo : targetInfos) {
+            if (!(targetInfo instanceof JVMAspectTargetInfo)) {
+                continue;
+            }
+            String label = targetInfo.getLabelPath();
+            List<File> builtJars = findBuiltJars(execRoot, (JVMAspectTargetInfo) targetInfo);
+            if ((label == null) || !isChanged(index.builtJarLocations.get(label), builtJars)) {
+                continue;
+            }
+            changedTargets.put(label, builtJars);
+            for (File builtJar : builtJars) {
+                if (builtJar.canRead() && !indexedJars.contains(builtJar)) {
+                    jarsToCrawl.put(builtJar, label);
+                }
+            }
+        }
+        if (changedTargets.isEmpty()) {
+            return Collections.emptySet();
+        }
+        LOG.info("Indexing the jars built by {} workspace targets", changedTargets.size());
+
+        // drop what we knew about the changed targets, and crawl their jars again
+        for (String label : changedTargets.keySet()) {
+            List<BuiltJarLocation> previousLocations = index.builtJarLocations.remove(label);
+            if (previousLocations != null) {
+                for (BuiltJarLocation previousLocation : previousLocations) {
+                    removeJarLocation(index, previousLocation.location);
+                }
+            }
         }
+        JavaJarCrawler jarCrawler = new JavaJarCrawler(index, new JarIdentiferResolver());
+        jarCrawler.setProgressMonitor(progressMonitor);
+        Map<File, CodeLocationDescriptor> crawledLocations = jarCrawler.indexBuiltJars(jarsToCrawl);
+
+        for (Map.Entry<String, List<File>> changedTarget : changedTargets.entrySet()) {
+            List<BuiltJarLocation> builtJarLocations = new ArrayList<>();
+            for (File builtJar : changedTarget.getValue()) {
+                CodeLocationDescriptor location = crawledLocations.get(builtJar);
+                if ((location == null) && indexedJars.contains(builtJar)) {
+                    // loaded from the persisted index
+                    location = findJarLocation(index, builtJar);
+                }
+                builtJarLocations.add(new BuiltJarLocation(builtJar, location));
+            }
+            index.builtJarLocations.put(changedTarget.getKey(), builtJarLocations);
+        }
+        return changedTargets.keySet();
     }
 
-    protected void addInternalLocations(JvmCodeIndex index, List<File> locations) {
-        // TODO INTERNAL (jars produced by Bazel)
-        // this needs to be implemented to make the Dynamic classpath work
+    /**
+     * The jars with the classes of the target, and the jars with the classes generated by annotation processors.
+     * Paths in the aspect data are relative to the exec root.
+     */
+    static List<File> findBuiltJars(File execRoot, JVMAspectTargetInfo targetInfo) {
+        List<File> builtJars = new ArrayList<>();
+        List<JVMAspectOutputJarSet> jarSets = new ArrayList<>(targetInfo.getJars());
+        jarSets.addAll(targetInfo.getGeneratedJars());
+        for (JVMAspectOutputJarSet jarSet : jarSets) {
+            // prefer the full jar, the interface jar has the same types but is missing the code
+            String jarPath = jarSet.getJar() != null ? jarSet.getJar() : jarSet.getInterfaceJar();
+            if (jarPath != null) {
+                File builtJar = new File(jarPath);
+                builtJars.add(builtJar.isAbsolute() ? builtJar : new File(execRoot, jarPath));
+            }
+        }
+        return builtJars;
+    }
+
+    private static boolean isChanged(List<BuiltJarLocation> previousLocations, List<File> builtJars) {
+        if ((previousLocations == null) || (previousLocations.size() != builtJars.size())) {
+            return true;
+        }
+        Set<File> previousJars = new HashSet<>();
+        for (BuiltJarLocation previousLocation : previousLocations) {
+            if (previousLocation.isChanged()) {
+                return true;
+            }
+            previousJars.add(previousLocation.jarFile);
+        }
+        return !previousJars.containsAll(builtJars);
+    }
+
+    private static void removeJarLocation(JvmCodeIndex index, CodeLocationDescriptor location) {
+        if (location == null) {
+            return;
+        }
+        if (location.id instanceof JarIdentifier) {
+            index.removeArtifactLocation(((JarIdentifier) location.id).artifact, location);
+        }
+        index.removeFileLocation(location.locationOnDisk.getName(), location);
+        if (location.containedClasses != null) {
+            for (ClassIdentifier classId : location.containedClasses) {
+                String typeName =
+                        classId.packageName.isEmpty() ? classId.classname : classId.packageName + "." + classId.classname;
+                index.removeTypeLocation(typeName, location);
+            }
+        }
+    }
+
+    private static CodeLocationDescriptor findJarLocation(JvmCodeIndex index, File jarFile) {
+        CodeIndexEntry entry = index.fileDictionary.get(jarFile.getName());
+        if (entry == null) {
+            return null;
+        }
+        for (CodeLocationDescriptor location : entry.getLocations()) {
+            if (jarFile.equals(location.locationOnDisk)) {
+                return location;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2020, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index.jvm.jar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.TimeZone;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the class entries of a jar directly from its central directory, the table of contents at the end of the zip
+ * file. This is a lightweight alternative to java.util.zip.ZipFile for the indexer, which only needs the names and
+ * timestamps of the classes, and never the content.
+ * <p>
+ * Only the central directory is read, onto the heap. It is not memory mapped, as a mapping keeps the jar open until it
+ * is garbage collected, which prevents Bazel from replacing the jar on Windows. The entries are walked in place in the
+ * buffer, and entries that are not interesting to the indexer (non class files, inner classes, package-info) are
+ * skipped by looking at the name bytes, before anything is allocated. See JavaJarCrawler.hasClassfileName() for the
+ * rules.
+ * <p>
+ * The reader is a cursor, it is not thread safe:
+ *
+ * <pre>
+ * try (JarCentralDirectoryReader reader = JarCentralDirectoryReader.open(jarFile)) {
+ *     while (reader.nextClass()) {
+ *         String classname = reader.getClassname(); // com.salesforce.foo.Bar
+ *         long writtenTimeMillis = reader.getTime();
+ *     }
+ * }
+ * </pre>
+ */
+public final class JarCentralDirectoryReader implements Closeable {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int EXTENDED_TIMESTAMP_TAG = 0x5455;
+
+    private static final byte[] CLASS_SUFFIX = ".class".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PACKAGE_INFO_SUFFIX = "package-info.class".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final ByteBuffer centralDirectory;
+    private final int entryCount;
+    private final long fileSize;
+    private final long lastModified;
+
+    // cursor state
+    private int nextEntryOffset = 0;
+    private int entriesRead = 0;
+    private int entryOffset = -1;
+    private int nameOffset;
+    private int nameLength;
+
+    // scratch space for decoding names, reused across entries
+    private char[] nameChars = new char[128];
+    private TimeZone timeZone;
+
+    private JarCentralDirectoryReader(FileChannel channel, ByteBuffer centralDirectory, int entryCount, long fileSize,
+            long lastModified) {
+        this.channel = channel;
+        this.centralDirectory = centralDirectory;
+        this.entryCount = entryCount;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Opens the jar, and loads its central directory.
+     *
+     * @throws ZipException
+     *             if the file is not a zip file
+     */
+    public static JarCentralDirectoryReader open(File jarFile) throws IOException {
+        // taken before the jar is read, so that a jar replaced while it is read looks changed to the next crawl
+        long lastModified = jarFile.lastModified();
+        FileChannel channel = FileChannel.open(jarFile.toPath(), StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            long eocdPosition = findEndOfCentralDirectory(channel, fileSize);
+            ByteBuffer eocd = read(channel, eocdPosition, EOCD_SIZE);
+            long entryCount = eocd.getShort(10) & 0xFFFF;
+            long directorySize = eocd.getInt(12) & 0xFFFFFFFFL;
+            long directoryOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+
+            if ((entryCount == 0xFFFF) || (directorySize == 0xFFFFFFFFL) || (directoryOffset == 0xFFFFFFFFL)) {
+                // the real values are in the zip64 end of central directory record
+                if (eocdPosition >= ZIP64_LOCATOR_SIZE) {
+                    ByteBuffer locator = read(channel, eocdPosition - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+                    if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                        ByteBuffer zip64Eocd = read(channel, locator.getLong(8), ZIP64_EOCD_SIZE);
+                        if (zip64Eocd.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                            throw new ZipException("invalid zip64 end of central directory in " + jarFile.getPath());
+                        }
+                        entryCount = zip64Eocd.getLong(32);
+                        directorySize = zip64Eocd.getLong(40);
+                        directoryOffset = zip64Eocd.getLong(48);
+                    }
+                }
+            }
+            if ((directorySize > Integer.MAX_VALUE) || (entryCount > Integer.MAX_VALUE)
+                    || ((directoryOffset + directorySize) > fileSize)) {
+                throw new ZipException("invalid central directory in " + jarFile.getPath());
+            }
+
+            ByteBuffer centralDirectory = read(channel, directoryOffset, (int) directorySize);
+            return new JarCentralDirectoryReader(channel, centralDirectory, (int) entryCount, fileSize, lastModified);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Size of the jar file when it was opened.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Modification time of the jar file when it was opened.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Total number of entries in the jar, including directories and non class files.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Advances to the next class entry that is interesting to the indexer.
+     *
+     * @return false if there are no more class entries
+     * @throws ZipException
+     *             if the central directory is corrupt
+     */
+    public boolean nextClass() throws ZipException {
+        while (entriesRead < entryCount) {
+            int offset = nextEntryOffset;
+            if (((offset + CEN_HEADER_SIZE) > centralDirectory.limit())
+                    || (centralDirectory.getInt(offset) != CEN_SIGNATURE)) {
+                throw new ZipException("invalid central directory entry at offset " + offset);
+            }
+            int nameLen = centralDirectory.getShort(offset + 28) & 0xFFFF;
+            int extraLen = centralDirectory.getShort(offset + 30) & 0xFFFF;
+            int commentLen = centralDirectory.getShort(offset + 32) & 0xFFFF;
+            nextEntryOffset = offset + CEN_HEADER_SIZE + nameLen + extraLen + commentLen;
+            entriesRead++;
+            if (nextEntryOffset > centralDirectory.limit()) {
+                throw new ZipException("invalid central directory entry at offset " + offset);
+            }
+
+            if (isIndexedClassName(offset + CEN_HEADER_SIZE, nameLen)) {
+                entryOffset = offset;
+                nameOffset = offset + CEN_HEADER_SIZE;
+                nameLength = nameLen;
+                return true;
+            }
+        }
+        entryOffset = -1;
+        return false;
+    }
+
+    /**
+     * The fully qualified classname of the current entry: com.salesforce.foo.Bar
+     */
+    public String getClassname() {
+        checkEntry();
+        int length = nameLength - CLASS_SUFFIX.length;
+        if (nameChars.length < length) {
+            nameChars = new char[Math.max(length, nameChars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = centralDirectory.get(nameOffset + i);
+            if (b < 0) {
+                // multi byte UTF-8 character, take the slow path
+                return decodeUtf8Classname(length);
+            }
+            nameChars[i] = b == '/' ? '.' : (char) b;
+        }
+        return new String(nameChars, 0, length);
+    }
+
+    /**
+     * The time when the current entry was written, as recorded by the tool that built the jar. Like ZipEntry.getTime(),
+     * the extended timestamp is used if present, otherwise the MS-DOS time is interpreted in the local time zone.
+     *
+     * @return the time in millis, or -1 if the entry has no valid time
+     */
+    public long getTime() {
+        checkEntry();
+        long extendedTime = readExtendedTimestamp();
+        if (extendedTime != -1) {
+            return extendedTime;
+        }
+        int dosTime = centralDirectory.getShort(entryOffset + 12) & 0xFFFF;
+        int dosDate = centralDirectory.getShort(entryOffset + 14) & 0xFFFF;
+        if (timeZone == null) {
+            timeZone = TimeZone.getDefault();
+        }
+        return dosToJavaTime(dosDate, dosTime, timeZone);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // INTERNALS
+
+    private boolean isIndexedClassName(int offset, int length) {
+        if (!endsWith(offset, length, CLASS_SUFFIX) || endsWith(offset, length, PACKAGE_INFO_SUFFIX)) {
+            return false;
+        }
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (centralDirectory.get(i) == '$') {
+                // inner class; '$' cannot be part of a multi byte UTF-8 character, so this is safe
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean endsWith(int offset, int length, byte[] suffix) {
+        if (length < suffix.length) {
+            return false;
+        }
+        int start = (offset + length) - suffix.length;
+        for (int i = 0; i < suffix.length; i++) {
+            if (centralDirectory.get(start + i) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decodeUtf8Classname(int length) {
+        byte[] nameBytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            nameBytes[i] = centralDirectory.get(nameOffset + i);
+        }
+        return new String(nameBytes, StandardCharsets.UTF_8).replace('/', '.');
+    }
+
+    private long readExtendedTimestamp() {
+        int extraOffset = nameOffset + nameLength;
+        int extraEnd = extraOffset + (centralDirectory.getShort(entryOffset + 30) & 0xFFFF);
+        while ((extraOffset + 4) <= extraEnd) {
+            int tag = centralDirectory.getShort(extraOffset) & 0xFFFF;
+            int size = centralDirectory.getShort(extraOffset + 2) & 0xFFFF;
+            int data = extraOffset + 4;
+            if ((tag == EXTENDED_TIMESTAMP_TAG) && (size >= 5) && ((data + 5) <= extraEnd)
+                    && ((centralDirectory.get(data) & 0x1) != 0)) {
+                // the central directory only carries the modification time, in seconds
+                return (centralDirectory.getInt(data + 1) & 0xFFFFFFFFL) * 1000L;
+            }
+            extraOffset = data + size;
+        }
+        return -1;
+    }
+
+    private void checkEntry() {
+        if (entryOffset < 0) {
+            throw new IllegalStateException("nextClass() has not returned an entry");
+        }
+    }
+
+    static long dosToJavaTime(int dosDate, int dosTime, TimeZone timeZone) {
+        int year = ((dosDate >> 9) & 0x7F) + 1980;
+        int month = (dosDate >> 5) & 0x0F;
+        int day = dosDate & 0x1F;
+        int hour = (dosTime >> 11) & 0x1F;
+        int minute = (dosTime >> 5) & 0x3F;
+        int second = (dosTime << 1) & 0x3E;
+        if ((month < 1) || (month > 12) || (day < 1) || (hour > 23) || (minute > 59) || (second > 59)) {
+            return -1;
+        }
+        long localMillis = ((daysFromCivil(year, month, day) * 86400L) + (hour * 3600L) + (minute * 60L) + second)
+                * 1000L;
+        return localMillis - timeZone.getOffset(localMillis - timeZone.getRawOffset());
+    }
+
+    // days since 1970-01-01 in the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - (era * 400);
+        long dayOfYear = (((153 * (month + (month > 2 ? -3 : 9))) + 2) / 5) + (day - 1);
+        long dayOfEra = ((yearOfEra * 365) + (yearOfEra / 4)) - (yearOfEra / 100) + dayOfYear;
+        return ((era * 146097) + dayOfEra) - 719468;
+    }
+
+    private static long findEndOfCentralDirectory(FileChannel channel, long fileSize) throws IOException {
+        if (fileSize < EOCD_SIZE) {
+            throw new ZipException("file is too small to be a zip file");
+        }
+        // nearly every jar has no archive comment, so the record is the last 22 bytes
+        long position = fileSize - EOCD_SIZE;
+        ByteBuffer tail = read(channel, position, EOCD_SIZE);
+        if ((tail.getInt(0) == EOCD_SIGNATURE) && (tail.getShort(20) == 0)) {
+            return position;
+        }
+        // otherwise search backwards through the possible comment
+        int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+        long tailPosition = fileSize - tailSize;
+        tail = read(channel, tailPosition, tailSize);
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if ((tail.getInt(i) == EOCD_SIGNATURE)
+                    && ((i + EOCD_SIZE + (tail.getShort(i + 20) & 0xFFFF)) == tailSize)) {
+                return tailPosition + i;
+            }
+        }
+        throw new ZipException("end of central directory not found, this is not a zip file");
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new ZipException("unexpected end of zip file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2020, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index.jvm.jar;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters for a jar crawl. The counters are updated concurrently by the crawler threads.
+ */
+public class JarCrawlStatistics {
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong jarCount = new AtomicLong();
+    private final AtomicLong entryCount = new AtomicLong();
+    private final AtomicLong directoryCount = new AtomicLong();
+
+    void recordDirectory() {
+        directoryCount.incrementAndGet();
+    }
+
+    /**
+     * Records a scanned jar, returns the number of jars scanned so far.
+     */
+    long recordJar(int numberOfEntries) {
+        entryCount.addAndGet(numberOfEntries);
+        return jarCount.incrementAndGet();
+    }
+
+    public long getJarCount() {
+        return jarCount.get();
+    }
+
+    public long getEntryCount() {
+        return entryCount.get();
+    }
+
+    public long getDirectoryCount() {
+        return directoryCount.get();
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public long getJarsPerSecond() {
+        return perSecond(jarCount.get());
+    }
+
+    public long getEntriesPerSecond() {
+        return perSecond(entryCount.get());
+    }
+
+    private long perSecond(long count) {
+        long elapsedMillis = Math.max(1L, getElapsedMillis());
+        return (count * 1000L) / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Indexed " + getJarCount() + " jars (" + getJarsPerSecond() + " jars/s), " + getEntryCount()
+                + " entries (" + getEntriesPerSecond() + " entries/s)";
+    }
+}
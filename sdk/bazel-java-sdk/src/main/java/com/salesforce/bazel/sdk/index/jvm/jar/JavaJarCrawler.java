@@ -25,9 +25,15 @@ package com.salesforce.bazel.sdk.index.jvm.jar;
 
 import java.io.File;
 import java.io.FilenameFilter;
-import java.util.Enumeration;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import com.salesforce.bazel.sdk.index.jvm.JvmCodeIndex;
 import com.salesforce.bazel.sdk.index.model.ClassIdentifier;
@@ -37,21 +43,42 @@ import com.salesforce.bazel.sdk.lang.jvm.external.BazelExternalJarRuleType;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelWorkspace;
 import com.salesforce.bazel.sdk.path.FSPathHelper;
+import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
 
 /**
  * Crawler that descends into nested directories of jar files and adds found files to the index.
  * <p>
  * There is a one to many relationship between JvmCodeIndex and JavaJarCrawler. Many crawlers will
  * be used to build a single JvmCodeIndex. See JvmCodeIndexer to see how that works.
+ * <p>
+ * The crawl runs on a work stealing pool. Each directory, and each jar, is a task, so a deep directory tree
+ * with thousands of jars keeps all the cores busy. Entries are added to the JvmCodeIndex concurrently.
  */
 public class JavaJarCrawler {
     private static final LogHelper LOG = LogHelper.log(JavaJarCrawler.class);
 
+    // how often (in jars) the throughput is reported to the progress monitor
+    private static final int PROGRESS_REPORT_INTERVAL = 500;
+
+    // shared by all crawlers, the worker threads exit when idle
+    private static final ForkJoinPool sharedPool =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("bzljavasdk-jar-crawler-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+
     private BazelWorkspace bazelWorkspace;
     private final JvmCodeIndex index;
     private final JarIdentiferResolver resolver;
     private BazelExternalJarRuleManager externalJarRuleManager;
 
+    private ForkJoinPool pool = sharedPool;
+    private WorkProgressMonitor progressMonitor = WorkProgressMonitor.NOOP;
+    private JarCrawlStatistics statistics = new JarCrawlStatistics();
+    private Set<File> indexedJars = Collections.emptySet();
+
     public JavaJarCrawler(JvmCodeIndex index, JarIdentiferResolver resolver) {
         this.index = index;
         this.resolver = resolver;
@@ -65,18 +92,63 @@ public class JavaJarCrawler {
         this.externalJarRuleManager = externalJarRuleManager;
     }
 
+    /**
+     * Uses the passed pool for crawling instead of the shared pool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * The progress monitor is notified of each scanned jar, and periodically receives the throughput as a subtask
+     * name. The crawl stops early if the monitor is canceled.
+     */
+    public void setProgressMonitor(WorkProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor != null ? progressMonitor : WorkProgressMonitor.NOOP;
+    }
+
+    /**
+     * Jars that are already in the index (for example, loaded from a persisted index) and are skipped by the crawl.
+     */
+    public void setIndexedJars(Set<File> indexedJars) {
+        this.indexedJars = indexedJars != null ? indexedJars : Collections.<File> emptySet();
+    }
+
+    /**
+     * Throughput counters for the crawls run by this crawler.
+     */
+    public JarCrawlStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * Crawls the passed file system path, descending directories looking for jar files.
      * Entries are added to the JvmCodeIndex as they are found. 
      */
     public void index(File rootCrawlDirectory) {
-        
-        if (!rootCrawlDirectory.exists()) {
-            LOG.error("JavaJarCrawler was passed a directory location that does not exist, it has been ignored. ", rootCrawlDirectory.getAbsolutePath());
-            return;
+        index(Collections.singletonList(rootCrawlDirectory));
+    }
+
+    /**
+     * Crawls the passed file system paths in parallel, descending directories looking for jar files.
+     * Entries are added to the JvmCodeIndex as they are found. Returns when all paths have been crawled.
+     */
+    public void index(List<File> rootCrawlDirectories) {
+        List<ForkJoinTask<?>> rootTasks = new ArrayList<>();
+        for (File rootCrawlDirectory : rootCrawlDirectories) {
+            if (!rootCrawlDirectory.exists()) {
+                LOG.error("JavaJarCrawler was passed a directory location that does not exist, it has been ignored. ", rootCrawlDirectory.getAbsolutePath());
+                continue;
+            }
+            if (!rootCrawlDirectory.isDirectory()) {
+                LOG.error("JavaJarCrawler was passed a location that is not a directory, it has been ignored. ", rootCrawlDirectory.getAbsolutePath());
+                continue;
+            }
+            // gavRoot is a tricky concept, see comments below; it starts off unknown
+            File gavRoot = null;
+            rootTasks.add(ForkJoinTask.adapt(() -> indexRecur(gavRoot, rootCrawlDirectory)));
         }
-        if (!rootCrawlDirectory.isDirectory()) {
-            LOG.error("JavaJarCrawler was passed a location that is not a directory, it has been ignored. ", rootCrawlDirectory.getAbsolutePath());
+        if (rootTasks.isEmpty()) {
             return;
         }
         
@@ -84,24 +156,59 @@ public class JavaJarCrawler {
         // The indexer should have already done this, but just in case...
         index.getOptions().setLock();
         
-        // gavRoot is a tricky concept, see comments below; it starts off unknown
-        File gavRoot = null;
-        
-        indexRecur(gavRoot, rootCrawlDirectory);
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(rootTasks);
+        }));
+        reportProgress(0);
+    }
+
+    /**
+     * Indexes jars built by the workspace, in parallel. The path of a built jar carries no GAV information, so the
+     * jar is identified by the Bazel label of the target that built it, which is passed in the map
+     * (jar file -> label).
+     *
+     * @return the location descriptor of each indexed jar, jars that could not be read are missing
+     */
+    public Map<File, CodeLocationDescriptor> indexBuiltJars(Map<File, String> builtJarLabels) {
+        Map<File, CodeLocationDescriptor> builtJarLocations = new ConcurrentHashMap<>();
+        List<ForkJoinTask<?>> jarTasks = new ArrayList<>();
+        for (Map.Entry<File, String> builtJar : builtJarLabels.entrySet()) {
+            jarTasks.add(ForkJoinTask.adapt(() -> {
+                CodeLocationDescriptor location = scanBuiltJar(builtJar.getKey(), builtJar.getValue());
+                if (location != null) {
+                    builtJarLocations.put(builtJar.getKey(), location);
+                }
+            }));
+        }
+        if (jarTasks.isEmpty()) {
+            return builtJarLocations;
+        }
+        index.getOptions().setLock();
+
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(jarTasks);
+        }));
+        reportProgress(0);
+        return builtJarLocations;
     }
 
     /**
      * Looks in the passed directory for jar files and processes those found. Recursively descends
-     * into any child directories.
+     * into any child directories. The child directories and jars are processed as parallel tasks, so this
+     * must be called from a task running in the crawler pool.
      * 
      * @param gavRoot see code comments about what the gavRoot is, it is complicated 
      * @param currentDirectory
      */
     protected void indexRecur(File gavRoot, File currentDirectory) {
+        if (progressMonitor.isCanceled()) {
+            return;
+        }
         File[] children = currentDirectory.listFiles();
         if (children == null) {
             return;
         }
+        statistics.recordDirectory();
 
         // some file system layouts put gav information in the path, e.g.
         // ~/.m2/repository/com/acme/blue/1.0.0/blue.jar
@@ -114,35 +221,113 @@ public class JavaJarCrawler {
                     return name.equals("com") || name.equals("org") || name.equals("net");
                 }
             });
-            if (gavRootIndicators.length > 0) {
+            if ((gavRootIndicators != null) && (gavRootIndicators.length > 0)) {
                 gavRoot = currentDirectory;
             }
         }
 
+        File childGavRoot = gavRoot;
+        List<ForkJoinTask<?>> childTasks = new ArrayList<>();
         for (File child : children) {
-            ZipFile zipFile = null;
-            try {
-                if (child.isDirectory()) {
-                    if (doSkipDirectory(child.getPath())) {
-                        continue;
-                    }
-                    indexRecur(gavRoot, child);
-                } else if (child.canRead()) {
-                    if (child.getName().endsWith(".jar")) {
-                        zipFile = new ZipFile(child);
-                        
-                        // TODO run this method async in a different thread
-                        foundJar(gavRoot, child, zipFile);
-                    }
-                }
-            } catch (Exception anyE) {
-                LOG.error("Reading jar file lead to unexpected error for path [{}]", anyE, child.getPath());
-            } finally {
-                if (zipFile != null) {
-                    try {
-                        zipFile.close();
-                    } catch (Exception ioE) {}
+            if (child.isDirectory()) {
+                if (doSkipDirectory(child.getPath())) {
+                    continue;
                 }
+                childTasks.add(ForkJoinTask.adapt(() -> indexRecur(childGavRoot, child)));
+            } else if (child.getName().endsWith(".jar") && child.canRead() && !indexedJars.contains(child)) {
+                childTasks.add(ForkJoinTask.adapt(() -> scanJar(childGavRoot, child)));
+            }
+        }
+        ForkJoinTask.invokeAll(childTasks);
+    }
+
+    /**
+     * Opens a jar file found during the crawl, and indexes it.
+     */
+    protected void scanJar(File gavRoot, File jarFile) {
+        if (progressMonitor.isCanceled()) {
+            return;
+        }
+        JarCentralDirectoryReader jarReader = null;
+        int numberOfEntries = 0;
+        try {
+            jarReader = JarCentralDirectoryReader.open(jarFile);
+            numberOfEntries = jarReader.getEntryCount();
+            foundJar(gavRoot, jarFile, jarReader);
+        } catch (Exception anyE) {
+            LOG.error("Reading jar file lead to unexpected error for path [{}]", anyE, jarFile.getPath());
+        } finally {
+            if (jarReader != null) {
+                try {
+                    jarReader.close();
+                } catch (Exception ioE) {}
+            }
+        }
+        long jarCount = statistics.recordJar(numberOfEntries);
+        if ((jarCount % PROGRESS_REPORT_INTERVAL) == 0) {
+            reportProgress(PROGRESS_REPORT_INTERVAL);
+        }
+    }
+
+    /**
+     * Opens a jar built by the workspace, and indexes it.
+     */
+    protected CodeLocationDescriptor scanBuiltJar(File jarFile, String bazelLabel) {
+        if (progressMonitor.isCanceled()) {
+            return null;
+        }
+        CodeLocationDescriptor jarLocationDescriptor = null;
+        JarCentralDirectoryReader jarReader = null;
+        int numberOfEntries = 0;
+        try {
+            jarReader = JarCentralDirectoryReader.open(jarFile);
+            numberOfEntries = jarReader.getEntryCount();
+            JarIdentifier jarId = resolveBuiltJarIdentifier(jarFile, bazelLabel);
+            jarLocationDescriptor = new CodeLocationDescriptor(jarFile, jarId, bazelLabel, jarId.version);
+            jarLocationDescriptor.sizeOnDisk = jarReader.getFileSize();
+            jarLocationDescriptor.lastModifiedOnDisk = jarReader.getLastModified();
+            indexJar(jarFile, jarReader, jarId, jarLocationDescriptor);
+        } catch (Exception anyE) {
+            LOG.error("Reading jar file lead to unexpected error for path [{}]", anyE, jarFile.getPath());
+            jarLocationDescriptor = null;
+        } finally {
+            if (jarReader != null) {
+                try {
+                    jarReader.close();
+                } catch (Exception ioE) {}
+            }
+        }
+        statistics.recordJar(numberOfEntries);
+        return jarLocationDescriptor;
+    }
+
+    /**
+     * Builds the identifier of a jar built by the workspace from the label of the target that built it. For example,
+     * bazel-bin/projects/libs/apple/libapple-api.jar built by //projects/libs/apple:apple-api is identified as
+     * projects.libs.apple:libapple-api:none
+     */
+    static JarIdentifier resolveBuiltJarIdentifier(File jarFile, String bazelLabel) {
+        String group = "";
+        if (bazelLabel != null) {
+            int packageStart = bazelLabel.indexOf("//");
+            int packageEnd = bazelLabel.lastIndexOf(':');
+            packageStart = packageStart < 0 ? 0 : packageStart + 2;
+            packageEnd = packageEnd < packageStart ? bazelLabel.length() : packageEnd;
+            group = bazelLabel.substring(packageStart, packageEnd).replace('/', '.');
+        }
+        String artifact = jarFile.getName();
+        if (artifact.endsWith(".jar")) {
+            artifact = artifact.substring(0, artifact.length() - 4);
+        }
+        return new JarIdentifier(group, artifact, "none");
+    }
+
+    private void reportProgress(int jarsWorked) {
+        // the progress monitor implementations are not expected to be thread safe
+        synchronized (progressMonitor) {
+            progressMonitor.subTask(statistics.toString());
+            if (jarsWorked > 0) {
+                progressMonitor.worked(jarsWorked);
             }
         }
     }
@@ -161,24 +346,19 @@ public class JavaJarCrawler {
      * <p>
      * Configure the CodeIndexOption class in the CodeIndex to alter the behavior of this operation.
      * <p>
-     * TODO someday we will run this method concurrent to other threads, be careful of shared state
+     * This method runs concurrently for different jars, be careful of shared state.
      */
-    protected void foundJar(File gavRootDir, File jarFile, ZipFile zipFile) {
+    protected void foundJar(File gavRootDir, File jarFile, JarCentralDirectoryReader jarReader) {
         LOG.debug("found jar: [{}]", jarFile.getName());
                 
         // precisely identify the jar file
-        JarIdentifier jarId = resolver.resolveJarIdentifier(gavRootDir, jarFile, zipFile);
+        JarIdentifier jarId = resolver.resolveJarIdentifier(gavRootDir, jarFile, null);
         if (jarId == null) {
             // this jar is not part of the typical dependencies (e.g. it is a jar used in the build toolchain); ignore
             return;
         }
         String absoluteFilepath = jarFile.getAbsolutePath();
-        
-        // use shorter names
-        boolean doComputeTypes = index.getOptions().doComputeTypeDictionary();
-        boolean doUseFileAge = index.getJvmOptions().doComputeJarAgeUsingInternalFiles();
-        boolean doUseRemoteAge = index.getJvmOptions().doComputeJarAgeUsingRemoteMavenRepo();
-        
+
         // we want to determine the Bazel label based on filename (not always possible)
         // for example: @maven//:org_slf4j_slf4j_api
         // this logic is dependent on the external jar rule type that we are using
@@ -195,7 +375,21 @@ public class JavaJarCrawler {
 
         // we have enough information to add an index entry, build the descriptor
         CodeLocationDescriptor jarLocationDescriptor = new CodeLocationDescriptor(jarFile, jarId, bazelLabel, jarId.version);
-        
+        jarLocationDescriptor.sizeOnDisk = jarReader.getFileSize();
+        jarLocationDescriptor.lastModifiedOnDisk = jarReader.getLastModified();
+        indexJar(jarFile, jarReader, jarId, jarLocationDescriptor);
+    }
+
+    /**
+     * Adds an identified jar, and depending on the index options the classes inside of it, to the index.
+     */
+    protected void indexJar(File jarFile, JarCentralDirectoryReader jarReader, JarIdentifier jarId,
+            CodeLocationDescriptor jarLocationDescriptor) {
+        // use shorter names
+        boolean doComputeTypes = index.getOptions().doComputeTypeDictionary();
+        boolean doUseFileAge = index.getJvmOptions().doComputeJarAgeUsingInternalFiles();
+        boolean doUseRemoteAge = index.getJvmOptions().doComputeJarAgeUsingRemoteMavenRepo();
+
         // add to our index using artifact name (eg. junit, hamcrest-core, slf4j-api) 
         index.addArtifactLocation(jarId.artifact, jarLocationDescriptor);
         // add to our index using file name (eg. junit-4.12.jar) 
@@ -208,30 +402,19 @@ public class JavaJarCrawler {
         }
 
         // BEGIN GOING INSIDE THE JAR FILE
-        
-        // attempt to load the zipentries; if this is not actually a zip file (or jar/tar) this operation
-        // will fail so we guard against that
-        Enumeration<? extends ZipEntry> entries = null;
+
+        // iterate through the class entries of the jar file, for as long as the keepGoing flag is still set
+        // the reader only surfaces the class files we care about, and reads nothing but the central directory
+        ZipEntriesProcessingState processEntriesState = new ZipEntriesProcessingState();
         try {
-            entries = zipFile.entries();
+            while (processEntriesState.keepGoing && jarReader.nextClass()) {
+                processJarClassEntry(processEntriesState, jarReader, jarLocationDescriptor);
+            }
         } catch (Exception anyE) {
-            LOG.error("Failure opening file [{}] as a zip/jar. Corrupt file?", anyE, jarFile.getPath());
+            LOG.error("Failure reading file [{}] as a zip/jar. Corrupt file?", anyE, jarFile.getPath());
             return;
         }
-        
-        // iterate through the contents for the jar file, for as long as the keepGoing flag is still set
-        ZipEntriesProcessingState processEntriesState = new ZipEntriesProcessingState();
-        while (processEntriesState.keepGoing && entries.hasMoreElements()) {
-            ZipEntry entry = entries.nextElement();
-            
-            // name of the zip file entry, which will contain the path info: com/salesforce/foo/Bar.class
-            String fqClassname = entry.getName();
-            // gets the time when the entry was written (as according to the builder of the jar)
-            long writtenTimeMillis = entry.getTime();
-            
-            processJarFileZipEntry(processEntriesState, fqClassname, writtenTimeMillis, jarLocationDescriptor);
-        }
-        
+
         // END GOING INSIDE THE JAR FILE
         
         if (!processEntriesState.foundValidAge && doUseRemoteAge) {
@@ -262,28 +445,24 @@ public class JavaJarCrawler {
     }
     
     /**
-     * For a given zipfile entry, process it for information that the indexer is asking for
+     * For a given class entry in the jar, process it for information that the indexer is asking for
      */
-    void processJarFileZipEntry(ZipEntriesProcessingState processEntriesState, String filepath, long writtenTimeMillis,
+    void processJarClassEntry(ZipEntriesProcessingState processEntriesState, JarCentralDirectoryReader jarReader,
             CodeLocationDescriptor jarLocationDescriptor) {
-        
-        // we only care about Java class files
-        if (!hasClassfileName(filepath)) {
-            return;
-        }
-        
-        // convert path / into . to form the legal package name, and trim the .class off the end
-        String fqClassname = convertClassfileNameToClassname(filepath);
-        if (fqClassname == null) {
-            return;
+
+        if (processEntriesState.doComputeTypes) {
+            // com.salesforce.foo.Bar, the reader already dropped non class files and inner classes
+            String fqClassname = jarReader.getClassname();
+            LOG.debug("Indexer found classname: {} in jar {}", fqClassname, jarLocationDescriptor.id);
+
+            ClassIdentifier classId = new ClassIdentifier(fqClassname);
+            jarLocationDescriptor.addClass(classId);
+            index.addTypeLocation(fqClassname, jarLocationDescriptor);
         }
-        LOG.debug("Indexer found classname: {} in jar {}", fqClassname, jarLocationDescriptor.id);
 
-        ClassIdentifier classId = new ClassIdentifier(fqClassname);
-        jarLocationDescriptor.addClass(classId);
-        index.addTypeLocation(classId.classname, jarLocationDescriptor);
-        
         if (processEntriesState.computeFileAgeAttemptsRemaining > 0) {
+            // gets the time when the entry was written (as according to the builder of the jar)
+            long writtenTimeMillis = jarReader.getTime();
             long currentTimeMillis = System.currentTimeMillis();
             long earliestRealTimeMillis = index.getJvmOptions().getEarliestTimestampForComputeJarAgeUsingInternalFiles();
             processEntriesState.foundValidAge = jarLocationDescriptor.computeAge(writtenTimeMillis, currentTimeMillis, earliestRealTimeMillis);
@@ -295,7 +474,7 @@ public class JavaJarCrawler {
             processEntriesState.computeFileAgeAttemptsRemaining = processEntriesState.foundValidAge ? 0 : processEntriesState.computeFileAgeAttemptsRemaining-1;
         }
     }
-    
+
     /**
      * @param filepath name of the zip file entry, which will contain the path info: com/salesforce/foo/Bar.class
      * @return true if the filename indicates a Java classfile
@@ -58,6 +58,14 @@ public class CodeLocationDescriptor {
      */
     public int ageInDays = -1;
 
+    /**
+     * Size (-1 if not a file) and modification time of locationOnDisk when it was scanned. The persisted index uses
+     * these to detect a location that changed after it was scanned. The crawlers set them, see
+     * {@link #stampLocationOnDisk()}.
+     */
+    public long sizeOnDisk = -1L;
+    public long lastModifiedOnDisk = 0L;
+
     public CodeLocationDescriptor() {}
 
     public CodeLocationDescriptor(File locationOnDisk, CodeLocationIdentifier id) {
@@ -78,6 +86,17 @@ public class CodeLocationDescriptor {
         this.version = version;
     }
 
+    /**
+     * Records the current size and modification time of locationOnDisk. Crawlers call this when they scan the location,
+     * unless they already know the values.
+     */
+    public void stampLocationOnDisk() {
+        if (locationOnDisk != null) {
+            sizeOnDisk = locationOnDisk.isFile() ? locationOnDisk.length() : -1L;
+            lastModifiedOnDisk = locationOnDisk.lastModified();
+        }
+    }
+
     public void addClass(ClassIdentifier classId) {
         if (containedClasses == null) {
             containedClasses = new ArrayList<>(5);
@@ -0,0 +1,329 @@
+/**
+ * Copyright (c) 2020, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index.search;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deletion index over the distinct simple names of the types in an index, used for fuzzy matching. The edits are
+ * insertions, deletions, substitutions and transpositions of adjacent characters, and each of them can be undone by
+ * deleting at most one character from each of the two strings. So a name within edit distance d of the query has a
+ * deletion variant, at most d characters shorter, in common with the query. The same holds for the first few
+ * characters of the two strings, and for the last few, so the index holds the deletion variants of the prefix and of
+ * the suffix of each name. A query is only compared with the names that share a variant with it at both ends.
+ */
+class DeletionIndex {
+    // the largest edit distance the index can answer
+    static final int MAX_DISTANCE = 2;
+
+    // a name has at most 1 + 6 + 15 variants at each end
+    private static final int AFFIX_LENGTH = 6;
+
+    private final String[] names;
+    private final String[] lowerCaseNames;
+    private final VariantTable prefixVariants;
+    private final VariantTable suffixVariants;
+
+    DeletionIndex(Collection<String> simpleNames) {
+        names = simpleNames.toArray(new String[0]);
+        lowerCaseNames = new String[names.length];
+
+        LongList prefixEntries = new LongList();
+        LongList suffixEntries = new LongList();
+        for (int i = 0; i < names.length; i++) {
+            lowerCaseNames[i] = names[i].toLowerCase();
+            String prefix = prefix(lowerCaseNames[i]);
+            for (String variant : deletionVariants(prefix, MAX_DISTANCE)) {
+                prefixEntries.add(VariantTable.entry(variant, prefix.length() - variant.length(), i));
+            }
+            String suffix = suffix(lowerCaseNames[i]);
+            for (String variant : deletionVariants(suffix, MAX_DISTANCE)) {
+                suffixEntries.add(VariantTable.entry(variant, suffix.length() - variant.length(), i));
+            }
+        }
+        prefixVariants = new VariantTable(prefixEntries);
+        suffixVariants = new VariantTable(suffixEntries);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * Finds the names within maxDistance edits of the query, ignoring case, ordered by distance. Safe to call from
+     * several threads at once.
+     *
+     * @return the matched names, each paired with its distance
+     */
+    List<Map.Entry<String, Integer>> findSimilar(String query, int maxDistance, int maxResults) {
+        String lowerCaseQuery = query.toLowerCase();
+        int[] candidates = findCandidates(lowerCaseQuery, maxDistance);
+
+        List<List<String>> byDistance = new ArrayList<>();
+        for (int d = 0; d <= maxDistance; d++) {
+            byDistance.add(new ArrayList<>());
+        }
+        EditDistance editDistance = new EditDistance(lowerCaseQuery.length() + maxDistance);
+        for (int nameId : candidates) {
+            int distance = editDistance.bounded(lowerCaseQuery, lowerCaseNames[nameId], maxDistance);
+            if (distance <= maxDistance) {
+                byDistance.get(distance).add(names[nameId]);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> results = new ArrayList<>();
+        for (int d = 0; d <= maxDistance; d++) {
+            for (String name : byDistance.get(d)) {
+                if (results.size() >= maxResults) {
+                    return results;
+                }
+                results.add(new AbstractMap.SimpleImmutableEntry<>(name, d));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The ids of the names that the query is compared with: the names of a length within maxDistance of the query
+     * length, that share a deletion variant with the query at both ends.
+     */
+    int[] findCandidates(String lowerCaseQuery, int maxDistance) {
+        if ((maxDistance < 0) || (maxDistance > MAX_DISTANCE)) {
+            throw new IllegalArgumentException("The edit distance must be between 0 and " + MAX_DISTANCE);
+        }
+        int[] prefixMatches = prefixVariants.find(prefix(lowerCaseQuery), maxDistance);
+        int[] suffixMatches = suffixVariants.find(suffix(lowerCaseQuery), maxDistance);
+
+        // both lists are sorted and distinct
+        int[] candidates = new int[Math.min(prefixMatches.length, suffixMatches.length)];
+        int count = 0;
+        for (int p = 0, s = 0; (p < prefixMatches.length) && (s < suffixMatches.length);) {
+            if (prefixMatches[p] < suffixMatches[s]) {
+                p++;
+            } else if (prefixMatches[p] > suffixMatches[s]) {
+                s++;
+            } else {
+                int nameId = prefixMatches[p];
+                if (Math.abs(lowerCaseNames[nameId].length() - lowerCaseQuery.length()) <= maxDistance) {
+                    candidates[count++] = nameId;
+                }
+                p++;
+                s++;
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private static String prefix(String name) {
+        return name.length() <= AFFIX_LENGTH ? name : name.substring(0, AFFIX_LENGTH);
+    }
+
+    private static String suffix(String name) {
+        return name.length() <= AFFIX_LENGTH ? name : name.substring(name.length() - AFFIX_LENGTH);
+    }
+
+    /**
+     * The strings obtained by deleting at most maxDeletions characters from the string, the string included.
+     */
+    static Set<String> deletionVariants(String s, int maxDeletions) {
+        Set<String> variants = new HashSet<>();
+        variants.add(s);
+        List<String> previous = new ArrayList<>(variants);
+        for (int deletions = 1; deletions <= maxDeletions; deletions++) {
+            List<String> next = new ArrayList<>();
+            for (String variant : previous) {
+                for (int i = 0; i < variant.length(); i++) {
+                    String deleted = variant.substring(0, i) + variant.substring(i + 1);
+                    if (variants.add(deleted)) {
+                        next.add(deleted);
+                    }
+                }
+            }
+            previous = next;
+        }
+        return variants;
+    }
+
+    /**
+     * Edit distance between the strings, counting a transposition of adjacent characters as one edit (the optimal
+     * string alignment distance), or maxDistance+1 if the distance is larger than maxDistance.
+     */
+    static int boundedEditDistance(String a, String b, int maxDistance) {
+        return new EditDistance(b.length()).bounded(a, b, maxDistance);
+    }
+
+    /**
+     * The rows of the edit distance table, reused for all the candidates of a query.
+     */
+    private static class EditDistance {
+        private int[] beforePrevious;
+        private int[] previous;
+        private int[] current;
+
+        EditDistance(int maxLength) {
+            beforePrevious = new int[maxLength + 1];
+            previous = new int[maxLength + 1];
+            current = new int[maxLength + 1];
+        }
+
+        int bounded(String a, String b, int maxDistance) {
+            if (b.length() >= previous.length) {
+                beforePrevious = new int[b.length() + 1];
+                previous = new int[b.length() + 1];
+                current = new int[b.length() + 1];
+            }
+            for (int j = 0; j <= b.length(); j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                int rowMin = current[0];
+                for (int j = 1; j <= b.length(); j++) {
+                    int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                    current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                    if ((i > 1) && (j > 1) && (a.charAt(i - 1) == b.charAt(j - 2))
+                            && (a.charAt(i - 2) == b.charAt(j - 1))) {
+                        current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                    }
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                if (rowMin > maxDistance) {
+                    // every path through this row is already too expensive; a transposition from the row before the
+                    // previous one costs at least as much as the substitution path through the previous row
+                    return maxDistance + 1;
+                }
+                int[] swap = beforePrevious;
+                beforePrevious = previous;
+                previous = current;
+                current = swap;
+            }
+            return Math.min(previous[b.length()], maxDistance + 1);
+        }
+    }
+
+    /**
+     * Maps the hash of a deletion variant, and the number of characters deleted from the name to get it, to the sorted
+     * ids of the names. A hash collision only adds candidates, the edit distance check drops them.
+     */
+    private static class VariantTable {
+        private final int[] keys;
+        // the ids of the names of keys[k] are ids[starts[k]] to ids[starts[k + 1] - 1]
+        private final int[] starts;
+        private final int[] ids;
+
+        VariantTable(LongList entries) {
+            long[] sorted = entries.toArray();
+            Arrays.sort(sorted);
+            int[] building = new int[sorted.length];
+            int[] buildingStarts = new int[sorted.length + 1];
+            ids = new int[sorted.length];
+            int keyCount = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                int key = (int) (sorted[i] >> 32);
+                if ((keyCount == 0) || (building[keyCount - 1] != key)) {
+                    building[keyCount] = key;
+                    buildingStarts[keyCount] = i;
+                    keyCount++;
+                }
+                ids[i] = (int) sorted[i];
+            }
+            buildingStarts[keyCount] = sorted.length;
+            keys = Arrays.copyOf(building, keyCount);
+            starts = Arrays.copyOf(buildingStarts, keyCount + 1);
+        }
+
+        static long entry(String variant, int deletions, int nameId) {
+            return ((long) key(variant, deletions) << 32) | nameId;
+        }
+
+        private static int key(String variant, int deletions) {
+            return (variant.hashCode() * 31) + deletions;
+        }
+
+        /**
+         * The sorted, distinct ids of the names that share a variant with the affix of the query, with at most
+         * maxDistance characters deleted on each side.
+         */
+        int[] find(String queryAffix, int maxDistance) {
+            IntList found = new IntList();
+            for (String variant : deletionVariants(queryAffix, maxDistance)) {
+                for (int deletions = 0; deletions <= maxDistance; deletions++) {
+                    int k = Arrays.binarySearch(keys, key(variant, deletions));
+                    if (k >= 0) {
+                        found.addAll(ids, starts[k], starts[k + 1]);
+                    }
+                }
+            }
+            return found.toSortedDistinctArray();
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[16];
+        int size = 0;
+
+        void addAll(int[] source, int from, int to) {
+            int count = to - from;
+            if ((size + count) > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + count));
+            }
+            System.arraycopy(source, from, values, size, count);
+            size += count;
+        }
+
+        int[] toSortedDistinctArray() {
+            Arrays.sort(values, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if ((distinct == 0) || (values[distinct - 1] != values[i])) {
+                    values[distinct++] = values[i];
+                }
+            }
+            return Arrays.copyOf(values, distinct);
+        }
+    }
+
+    private static class LongList {
+        long[] values = new long[64];
+        int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
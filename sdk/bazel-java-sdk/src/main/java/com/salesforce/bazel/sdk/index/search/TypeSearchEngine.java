@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2020, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.salesforce.bazel.sdk.index.CodeIndex;
+import com.salesforce.bazel.sdk.index.CodeIndexEntry;
+import com.salesforce.bazel.sdk.index.TypeDictionary;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentifier;
+import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
+import com.salesforce.bazel.sdk.index.search.TypeSearchResult.MatchKind;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Searches the types of a CodeIndex by name, for use cases like an "open type" dialog or fixing imports. The query is
+ * matched against the types in several ways:
+ * <ul>
+ * <li>a query with a dot is a prefix of the fully qualified name: com.salesforce.bazel.sdk.command.Bazel</li>
+ * <li>exact simple name: BazelWorkspaceCommandRunner</li>
+ * <li>simple name prefix: BazelWork</li>
+ * <li>camel case: BWCR or BazWoCR for BazelWorkspaceCommandRunner</li>
+ * <li>fuzzy, within a small number of typos: BazelWrokspace</li>
+ * </ul>
+ * The lookups use the sorted indexes of the {@link TypeDictionary}, and a deletion index for fuzzy matching, so a query
+ * does not scan all the types. The results are ranked by how the query matched, and then by proximity to the
+ * {@link TypeSearchContext}: types in nearby artifacts and packages rank higher.
+ * <p>
+ * The deletion index is built on the first fuzzy query. When types are added or removed, a later fuzzy query rebuilds
+ * it: right away for a small index, else on a background thread, while the fuzzy queries use the previous deletion
+ * index.
+ */
+public class TypeSearchEngine {
+    private static final LogHelper LOG = LogHelper.log(TypeSearchEngine.class);
+
+    public static final int DEFAULT_MAX_RESULTS = 50;
+
+    // fuzzy matching is not useful for short queries, every short name is within a typo or two
+    private static final int FUZZY_MIN_QUERY_LENGTH = 4;
+
+    // the deletion index of a larger type dictionary is rebuilt in the background
+    private static final int MAX_TYPES_FOR_INLINE_REBUILD = 10000;
+
+    private static final int SCORE_EXACT = 1000;
+    private static final int SCORE_PREFIX = 800;
+    private static final int SCORE_CAMEL_CASE = 600;
+    private static final int SCORE_FUZZY = 400;
+    private static final int SCORE_PER_FUZZY_EDIT = 100;
+    private static final int SCORE_NEARBY_ARTIFACT = 300;
+    private static final int SCORE_PER_SHARED_PACKAGE_SEGMENT = 20;
+
+    private static final Comparator<TypeSearchResult> RANKING = Comparator
+            .comparingInt((TypeSearchResult r) -> r.score).reversed()
+            .thenComparingInt(r -> r.typeName.length())
+            .thenComparing(r -> r.typeName);
+
+    private final CodeIndex index;
+
+    // guarded by this
+    private DeletionIndex deletionIndex;
+    private long deletionIndexModificationCount;
+    private boolean rebuildingDeletionIndex = false;
+
+    public TypeSearchEngine(CodeIndex index) {
+        this.index = index;
+    }
+
+    public List<TypeSearchResult> search(String query, int maxResults) {
+        return search(query, maxResults, TypeSearchContext.NONE);
+    }
+
+    /**
+     * Returns the best maxResults matches for the query, best first.
+     */
+    public List<TypeSearchResult> search(String query, int maxResults, TypeSearchContext context) {
+        if ((query == null) || query.trim().isEmpty() || (maxResults < 1)) {
+            return Collections.emptyList();
+        }
+        query = query.trim();
+        if (context == null) {
+            context = TypeSearchContext.NONE;
+        }
+        TypeDictionary types = index.typeDictionary;
+
+        // gather more candidates than requested, so that the ranking has something to choose from
+        int candidateLimit = Math.max(maxResults * 10, 200);
+        Map<String, TypeSearchResult> candidates = new HashMap<>();
+
+        if (query.indexOf('.') >= 0) {
+            for (String typeName : types.findByPrefix(query, candidateLimit)) {
+                addCandidate(candidates, typeName, typeName.equals(query) ? MatchKind.EXACT : MatchKind.PREFIX,
+                    SCORE_PREFIX, context);
+            }
+        } else {
+            for (String typeName : types.findBySimpleName(query)) {
+                addCandidate(candidates, typeName, MatchKind.EXACT, SCORE_EXACT, context);
+            }
+            for (String typeName : types.findBySimpleNamePrefix(query, candidateLimit)) {
+                addCandidate(candidates, typeName, MatchKind.PREFIX, SCORE_PREFIX, context);
+            }
+            if (Character.isLowerCase(query.charAt(0))) {
+                // simple names are almost always capitalized, so help out the lazy typist
+                String capitalized = Character.toUpperCase(query.charAt(0)) + query.substring(1);
+                for (String typeName : types.findBySimpleNamePrefix(capitalized, candidateLimit)) {
+                    addCandidate(candidates, typeName, MatchKind.PREFIX, SCORE_PREFIX, context);
+                }
+            }
+            if (hasInnerUpperCase(query)) {
+                for (String typeName : types.findByCamelCase(query, candidateLimit)) {
+                    addCandidate(candidates, typeName, MatchKind.CAMEL_CASE, SCORE_CAMEL_CASE, context);
+                }
+            }
+            if ((candidates.size() < maxResults) && (query.length() >= FUZZY_MIN_QUERY_LENGTH)) {
+                int maxDistance = query.length() <= 5 ? 1 : 2;
+                for (Map.Entry<String, Integer> similar : getDeletionIndex(types).findSimilar(query, maxDistance,
+                    candidateLimit)) {
+                    int score = SCORE_FUZZY - (similar.getValue() * SCORE_PER_FUZZY_EDIT);
+                    for (String typeName : types.findBySimpleName(similar.getKey())) {
+                        addCandidate(candidates, typeName, MatchKind.FUZZY, score, context);
+                    }
+                }
+            }
+        }
+        return topResults(candidates.values(), maxResults);
+    }
+
+    // INTERNALS
+
+    private void addCandidate(Map<String, TypeSearchResult> candidates, String typeName, MatchKind matchKind,
+            int matchScore, TypeSearchContext context) {
+        TypeSearchResult existing = candidates.get(typeName);
+        if ((existing != null) && (existing.matchKind.ordinal() <= matchKind.ordinal())) {
+            // already matched in a better way
+            return;
+        }
+        CodeIndexEntry entry = index.typeDictionary.get(typeName);
+        if (entry == null) {
+            return;
+        }
+        if (matchKind == MatchKind.EXACT) {
+            matchScore = SCORE_EXACT;
+        }
+        int score = matchScore + proximity(typeName, entry, context);
+        candidates.put(typeName, new TypeSearchResult(typeName, entry, matchKind, score));
+    }
+
+    static int proximity(String typeName, CodeIndexEntry entry, TypeSearchContext context) {
+        int proximity = 0;
+        if (context.packageName != null) {
+            String[] typeSegments = typeName.split("\\.");
+            String[] contextSegments = context.packageName.split("\\.");
+            // the last type segment is the simple name
+            int limit = Math.min(typeSegments.length - 1, contextSegments.length);
+            int shared = 0;
+            while ((shared < limit) && typeSegments[shared].equals(contextSegments[shared])) {
+                shared++;
+            }
+            proximity += shared * SCORE_PER_SHARED_PACKAGE_SEGMENT;
+        }
+        if (!context.nearbyArtifacts.isEmpty()) {
+            for (CodeLocationDescriptor location : entry.getLocations()) {
+                if (context.nearbyArtifacts.contains(location.bazelLabel) || ((location.id instanceof JarIdentifier)
+                        && context.nearbyArtifacts.contains(((JarIdentifier) location.id).artifact))) {
+                    proximity += SCORE_NEARBY_ARTIFACT;
+                    break;
+                }
+            }
+        }
+        return proximity;
+    }
+
+    private static List<TypeSearchResult> topResults(Iterable<TypeSearchResult> candidates, int maxResults) {
+        // min heap of the best results so far, the worst of them is on top
+        PriorityQueue<TypeSearchResult> best = new PriorityQueue<>(maxResults + 1, RANKING.reversed());
+        for (TypeSearchResult candidate : candidates) {
+            best.add(candidate);
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        }
+        List<TypeSearchResult> results = new ArrayList<>(best);
+        results.sort(RANKING);
+        return results;
+    }
+
+    private synchronized DeletionIndex getDeletionIndex(TypeDictionary types) {
+        long modificationCount = types.getModificationCount();
+        boolean current = deletionIndexModificationCount == modificationCount;
+        if ((deletionIndex != null) && (current || rebuildingDeletionIndex)) {
+            return deletionIndex;
+        }
+        if ((deletionIndex == null) || (types.size() <= MAX_TYPES_FOR_INLINE_REBUILD)) {
+            deletionIndex = new DeletionIndex(types.getSimpleNames());
+            deletionIndexModificationCount = modificationCount;
+            return deletionIndex;
+        }
+        rebuildingDeletionIndex = true;
+        Thread rebuilder = new Thread(() -> rebuildDeletionIndex(types), "bzljavasdk-type-search-index");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+        return deletionIndex;
+    }
+
+    private void rebuildDeletionIndex(TypeDictionary types) {
+        DeletionIndex rebuilt = null;
+        // read the count first, a change made while the names are read is picked up by the next rebuild
+        long modificationCount = types.getModificationCount();
+        try {
+            rebuilt = new DeletionIndex(types.getSimpleNames());
+        } catch (RuntimeException anyE) {
+            LOG.error("Could not rebuild the deletion index of the type search.", anyE);
+        } finally {
+            synchronized (this) {
+                if (rebuilt != null) {
+                    deletionIndex = rebuilt;
+                    deletionIndexModificationCount = modificationCount;
+                }
+                rebuildingDeletionIndex = false;
+            }
+        }
+    }
+
+    private static boolean hasInnerUpperCase(String query) {
+        for (int i = 1; i < query.length(); i++) {
+            if (Character.isUpperCase(query.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2020, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index.search;
+
+import com.salesforce.bazel.sdk.index.CodeIndexEntry;
+
+/**
+ * A type found by the TypeSearchEngine.
+ */
+public class TypeSearchResult {
+
+    /**
+     * How the query matched the type, in order of decreasing relevance.
+     */
+    public enum MatchKind {
+        EXACT, PREFIX, CAMEL_CASE, FUZZY
+    }
+
+    public final String typeName;
+    public final CodeIndexEntry entry;
+    public final MatchKind matchKind;
+    public final int score;
+
+    public TypeSearchResult(String typeName, CodeIndexEntry entry, MatchKind matchKind, int score) {
+        this.typeName = typeName;
+        this.entry = entry;
+        this.matchKind = matchKind;
+        this.score = score;
+    }
+
+    @Override
+    public String toString() {
+        return typeName + " (" + matchKind + " " + score + ")";
+    }
+}
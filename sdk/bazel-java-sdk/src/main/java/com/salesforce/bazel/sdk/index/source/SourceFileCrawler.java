@@ -86,6 +86,7 @@ public class SourceFileCrawler {
                 }
                 CodeLocationIdentifier myId = new CodeLocationIdentifier(parentId + relativePathToClosestArtifact);
                 closestArtifactLocationDescriptor = new CodeLocationDescriptor(path, myId);
+                closestArtifactLocationDescriptor.stampLocationOnDisk();
 
                 index.addArtifactLocation(path.getName(), closestArtifactLocationDescriptor);
                 relativePathToClosestArtifact = "";
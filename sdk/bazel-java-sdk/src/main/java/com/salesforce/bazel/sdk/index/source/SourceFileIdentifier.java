@@ -37,4 +37,9 @@ public class SourceFileIdentifier extends CodeLocationIdentifier {
         super(artifact.id.locationIdentifier + ":" + classId.toString());
         this.classId = classId;
     }
+
+    public SourceFileIdentifier(String locationIdentifier, ClassIdentifier classId) {
+        super(locationIdentifier);
+        this.classId = classId;
+    }
 }
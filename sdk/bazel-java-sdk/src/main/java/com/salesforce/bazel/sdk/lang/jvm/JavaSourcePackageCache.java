@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.lang.jvm;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared cache of the package declared by each Java source file, so that the package line of a file is read once even
+ * if several strategies (or several imports of the same packages) ask for it. Entries are validated against the
+ * modification time and length of the file, so an edited file is read again.
+ * <p>
+ * The cache is thread safe; callers may analyze packages in parallel.
+ */
+public class JavaSourcePackageCache {
+
+    // the cache is cleared when it grows past this, which is plenty for the source files of a large import
+    private static final int MAX_ENTRIES = 250000;
+
+    private static final JavaSourcePackageCache sharedCache = new JavaSourcePackageCache();
+
+    private final Map<String, CachedPackage> packages = new ConcurrentHashMap<>();
+
+    /**
+     * The cache instance shared by the SDK.
+     */
+    public static JavaSourcePackageCache getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * Returns the JVM package (ex: "a.b.c") declared by the Java file, or null if it does not have a package line.
+     * The file is only read if it is not in the cache, or if it changed since it was cached.
+     */
+    public String getPackage(File javaFile) {
+        String path = javaFile.getAbsolutePath();
+        long lastModified = javaFile.lastModified();
+        long length = javaFile.length();
+
+        CachedPackage cached = packages.get(path);
+        if ((cached != null) && (cached.lastModified == lastModified) && (cached.length == length)) {
+            return cached.packageName;
+        }
+
+        String packageName = new JavaSourceFile(javaFile).readPackageFromFile();
+        if (packages.size() >= MAX_ENTRIES) {
+            packages.clear();
+        }
+        packages.put(path, new CachedPackage(lastModified, length, packageName));
+        return packageName;
+    }
+
+    /**
+     * Number of files in the cache.
+     */
+    public int size() {
+        return packages.size();
+    }
+
+    /**
+     * Drops all the cached entries.
+     */
+    public void clear() {
+        packages.clear();
+    }
+
+    private static class CachedPackage {
+        final long lastModified;
+        final long length;
+        final String packageName;
+
+        CachedPackage(long lastModified, long length, String packageName) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.packageName = packageName;
+        }
+    }
+}
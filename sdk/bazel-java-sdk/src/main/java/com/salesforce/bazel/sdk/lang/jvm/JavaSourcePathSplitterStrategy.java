@@ -88,14 +88,11 @@ public class JavaSourcePathSplitterStrategy extends SourcePathSplitterStrategy {
     }
 
     /**
-     * This method finds the Java file on the file system, reads it, and returns the package name (with dot separators)
+     * This method finds the Java file on the file system, reads it, and returns the package name (with dot separators).
+     * The read goes through the shared JavaSourcePackageCache.
      */
     private static String findJavaFilePackage(File basePath, String relativePathToSourceFile) {
         File srcFile = new File(basePath + File.separator + relativePathToSourceFile);
-        JavaSourceFile javaSrcFile = new JavaSourceFile(srcFile);
-        String packageName = javaSrcFile.readPackageFromFile();
-
-        return packageName;
-
+        return JavaSourcePackageCache.getSharedCache().getPackage(srcFile);
     }
 }
@@ -25,7 +25,9 @@ package com.salesforce.bazel.sdk.path;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -39,7 +41,9 @@ public class FSTree implements Comparable<FSTree> {
     private final String name;
     private final String logicalPath;
     private final Set<FSTree> children = new TreeSet<>();
+    private final Map<String, FSTree> childrenByName = new HashMap<>();
     private boolean isFile = false;
+    private boolean isMarked = false;
 
     /**
      * Creates a root node.
@@ -58,6 +62,7 @@ public class FSTree implements Comparable<FSTree> {
         this.name = name;
         logicalPath = parent.logicalPath + ":" + name;
         this.parent.children.add(this);
+        this.parent.childrenByName.put(name, this);
     }
 
     /**
@@ -85,12 +90,7 @@ public class FSTree implements Comparable<FSTree> {
      * Gets the child of this node with the provided name, or null if not found.
      */
     public FSTree getChild(String searchName) {
-        for (FSTree child : children) {
-            if (searchName.equals(child.name)) {
-                return child;
-            }
-        }
-        return null;
+        return childrenByName.get(searchName);
     }
 
     /**
@@ -142,6 +142,49 @@ public class FSTree implements Comparable<FSTree> {
         currentNode.isFile = isFile;
     }
 
+    /**
+     * Adds the directory path to an existing FSTree, and marks the node at the end of the path. Marked paths can then
+     * be checked with {@link #isUnderMarkedPath(FSTree, String, String)}.
+     */
+    public static void markPath(FSTree rootNode, String path, String delimiterRegex) {
+        if (path.isEmpty()) {
+            return;
+        }
+        String[] pathTokens = path.split(delimiterRegex);
+
+        FSTree currentNode = rootNode;
+        for (String pathToken : pathTokens) {
+            FSTree nextNode = currentNode.getChild(pathToken);
+            if (nextNode == null) {
+                nextNode = new FSTree(currentNode, pathToken);
+            }
+            currentNode = nextNode;
+        }
+        currentNode.isMarked = true;
+    }
+
+    /**
+     * Checks if the file at the passed path is in a directory that was marked with
+     * {@link #markPath(FSTree, String, String)}, or in a subdirectory of one. This only walks the path, so the cost is
+     * the depth of the path and not the number of marked paths.
+     */
+    public static boolean isUnderMarkedPath(FSTree rootNode, String path, String delimiterRegex) {
+        String[] pathTokens = path.split(delimiterRegex);
+
+        // the last token is the file itself
+        FSTree currentNode = rootNode;
+        for (int i = 0; i < (pathTokens.length - 1); i++) {
+            currentNode = currentNode.getChild(pathTokens[i]);
+            if (currentNode == null) {
+                return false;
+            }
+            if (currentNode.isMarked) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Translates a File tree on the filesystem into an FSTree object.
      */
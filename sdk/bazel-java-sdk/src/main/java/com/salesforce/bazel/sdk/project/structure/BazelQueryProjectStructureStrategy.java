@@ -27,8 +27,17 @@ import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.logging.LogHelper;
@@ -61,6 +70,20 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         testSourceCodeFolderMarkers.add("tests");
     }
 
+    // shared by all batch analyses; the work is mostly file reads, so a few threads are enough
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor analysisPool;
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        analysisPool = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "bzljavasdk-structure-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        analysisPool.allowCoreThreadTimeOut(true);
+    }
+
     @Override
     public ProjectStructure doStructureAnalysis(BazelWorkspace bazelWorkspace, BazelPackageLocation packageNode,
             BazelWorkspaceCommandRunner commandRunner) {
@@ -69,8 +92,7 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         String packageRelPath = packageNode.getBazelPackageFSRelativePath();
         File packageDir = new File(workspaceRootDir, packageRelPath); // TODO move this to the PackageLocation api
 
-        String labelPath = packageRelPath.replaceAll(FSPathHelper.WINDOWS_BACKSLASH_REGEX, "/");
-        BazelLabel packageLabel = new BazelLabel(labelPath, BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR);
+        BazelLabel packageLabel = getPackageLabel(packageRelPath);
 
         // execute the expensive query, this will take a few seconds to run at least
         Collection<String> queryResults = runBazelQueryForSourceFiles(workspaceRootDir, packageLabel, commandRunner);
@@ -80,8 +102,64 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         return structure;
     }
 
+    /**
+     * Runs a single Bazel Query for the source files of all the passed packages, instead of one per package, and then
+     * determines the structure of each.
+     */
+    @Override
+    public Map<BazelPackageLocation, ProjectStructure> doStructureAnalysis(BazelWorkspace bazelWorkspace,
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspaceCommandRunner commandRunner) {
+        Map<BazelPackageLocation, ProjectStructure> results = new IdentityHashMap<>();
+        if (packageNodes.isEmpty()) {
+            return results;
+        }
+
+        File workspaceRootDir = bazelWorkspace.getBazelWorkspaceRootDirectory();
+        Map<BazelLabel, BazelPackageLocation> labelToPackage = new LinkedHashMap<>();
+        for (BazelPackageLocation packageNode : packageNodes) {
+            labelToPackage.put(getPackageLabel(packageNode.getBazelPackageFSRelativePath()), packageNode);
+        }
+
+        // execute the expensive query once for all the packages
+        Map<BazelLabel, Collection<String>> queryResults =
+                runBazelQueryForSourceFiles(workspaceRootDir, labelToPackage.keySet(), commandRunner);
+        if (queryResults == null) {
+            return results;
+        }
+
+        // the packages are independent, and most of the cost is reading source files, so process them in parallel
+        Map<BazelPackageLocation, Future<ProjectStructure>> pendingResults = new LinkedHashMap<>();
+        for (Map.Entry<BazelLabel, BazelPackageLocation> entry : labelToPackage.entrySet()) {
+            String packageRelPath = entry.getValue().getBazelPackageFSRelativePath();
+            File packageDir = new File(workspaceRootDir, packageRelPath);
+            Collection<String> packageResults = queryResults.get(entry.getKey());
+            pendingResults.put(entry.getValue(), analysisPool
+                    .submit(() -> processQueryResults(packageRelPath, packageDir, entry.getKey(), packageResults)));
+        }
+        for (Map.Entry<BazelPackageLocation, Future<ProjectStructure>> pendingResult : pendingResults.entrySet()) {
+            try {
+                ProjectStructure structure = pendingResult.getValue().get();
+                if (structure != null) {
+                    results.put(pendingResult.getKey(), structure);
+                }
+            } catch (ExecutionException ee) {
+                LOG.error("Failed computing the structure of package [{}].", ee.getCause(),
+                    pendingResult.getKey().getBazelPackageFSRelativePath());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return results;
+    }
+
     // INTERNALS
 
+    protected BazelLabel getPackageLabel(String packageRelPath) {
+        String labelPath = packageRelPath.replaceAll(FSPathHelper.WINDOWS_BACKSLASH_REGEX, "/");
+        return new BazelLabel(labelPath, BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR);
+    }
+
     protected ProjectStructure processQueryResults(String packageRelPath, File packageDir, BazelLabel packageLabel,
             Collection<String> queryResults) {
         ProjectStructure structure = new ProjectStructure();
@@ -92,7 +170,8 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
             //   source/dev/com/salesforce/foo/Bar.java
             // but it can also have non-java source files, so we need to check for that
 
-            Set<String> alreadySeenBasePaths = new HashSet<>();
+            // the source directories found so far, as a trie so that checking a path costs the depth of the path
+            FSTree sourceDirectories = new FSTree();
             FSTree resourceFileStructure = new FSTree();
             FSTree testResourceFileStructure = new FSTree();
 
@@ -105,14 +184,8 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
 
                 // it is expensive to formalize the source path as it involves parsing the source file,
                 // so try to bail out here early if we have already seen the directory this source file is in
-                boolean alreadySeen = false;
-                for (String alreadySeenBasePath : alreadySeenBasePaths) {
-                    // be careful with startsWith: source/dev and source/dev2 might be two distinct paths
-                    if (srcPath.startsWith(alreadySeenBasePath + File.separator)) {
-                        alreadySeen = true;
-                        break;
-                    }
-                }
+                boolean alreadySeen =
+                        FSTree.isUnderMarkedPath(sourceDirectories, srcPath, FSPathHelper.osSepRegex());
 
                 if (!alreadySeen) {
                     if (BazelSourceFile.hasSourceFileExtension(srcPath)) {
@@ -135,7 +208,8 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
                                 structure.mainSourceDirFSPaths.add(packageRelPathToFile);
                             }
 
-                            alreadySeenBasePaths.add(srcPathObj.sourceDirectoryPath);
+                            FSTree.markPath(sourceDirectories, srcPathObj.sourceDirectoryPath,
+                                FSPathHelper.osSepRegex());
                             LOG.info("Found source path {} for package {}", srcPathObj.sourceDirectoryPath,
                                 packageRelPath);
                         } else {
@@ -196,6 +270,17 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         return results;
     }
 
+    protected Map<BazelLabel, Collection<String>> runBazelQueryForSourceFiles(File workspaceRootDir,
+            Collection<BazelLabel> packageLabels, BazelWorkspaceCommandRunner commandRunner) {
+        Map<BazelLabel, Collection<String>> results = null;
+        try {
+            results = commandRunner.querySourceFilesForPackages(workspaceRootDir, packageLabels);
+        } catch (Exception anyE) {
+            LOG.error("Failed querying {} packages for source files.", anyE, packageLabels.size());
+        }
+        return results;
+    }
+
     /**
      * Splits the source path into the basePath and relativeSrcPath. src/main/java/com/salesforce/foo => src/main/java,
      * com/salesforce/foo
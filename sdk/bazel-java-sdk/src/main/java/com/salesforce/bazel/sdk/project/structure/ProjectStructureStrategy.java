@@ -24,7 +24,11 @@
 package com.salesforce.bazel.sdk.project.structure;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.lang.jvm.MavenProjectStructureStrategy;
@@ -85,6 +89,47 @@ public abstract class ProjectStructureStrategy {
         return result;
     }
 
+    /**
+     * Determines the structure of each of the passed packages. Each strategy gets the packages that the earlier
+     * strategies did not recognize, all at once, so that strategies with a high fixed cost per invocation (like Bazel
+     * Query) can analyze them in a batch. Packages that no strategy recognized are not in the returned map.
+     */
+    public static Map<BazelPackageLocation, ProjectStructure> determineProjectStructures(BazelWorkspace bazelWorkspace,
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspaceCommandRunner commandRunner) {
+        Map<BazelPackageLocation, ProjectStructure> found = new IdentityHashMap<>();
+        List<BazelPackageLocation> remaining = new ArrayList<>(packageNodes);
+
+        for (ProjectStructureStrategy strategy : ProjectStructureStrategy.projectStructureStrategies) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            if (!strategy.enabled) {
+                continue;
+            }
+            Map<BazelPackageLocation, ProjectStructure> results =
+                    strategy.doStructureAnalysis(bazelWorkspace, remaining, commandRunner);
+            for (BazelPackageLocation packageNode : remaining) {
+                ProjectStructure result = results.get(packageNode);
+                if (result != null) {
+                    found.put(packageNode, result);
+                    LOG.info("Package {} file layout was processed by the {}",
+                        packageNode.getBazelPackageFSRelativePath(), strategy.getClass().getName());
+                }
+            }
+            remaining.removeIf(found::containsKey);
+        }
+
+        // return the results in the order the packages were passed
+        Map<BazelPackageLocation, ProjectStructure> results = new LinkedHashMap<>();
+        for (BazelPackageLocation packageNode : packageNodes) {
+            ProjectStructure result = found.get(packageNode);
+            if (result != null) {
+                results.put(packageNode, result);
+            }
+        }
+        return results;
+    }
+
     // INSTANCES
 
     /**
@@ -114,4 +159,23 @@ public abstract class ProjectStructureStrategy {
      */
     public abstract ProjectStructure doStructureAnalysis(BazelWorkspace bazelWorkspace,
             BazelPackageLocation packageNode, BazelWorkspaceCommandRunner commandRunner);
+
+    /**
+     * Inspect each of the passed projects and determine their structure. The map contains an entry for each project
+     * that this strategy is suited to analyze.
+     * <p>
+     * This implementation calls doStructureAnalysis() for each package. Strategies that can analyze many packages
+     * more cheaply at once should override it.
+     */
+    public Map<BazelPackageLocation, ProjectStructure> doStructureAnalysis(BazelWorkspace bazelWorkspace,
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspaceCommandRunner commandRunner) {
+        Map<BazelPackageLocation, ProjectStructure> results = new IdentityHashMap<>();
+        for (BazelPackageLocation packageNode : packageNodes) {
+            ProjectStructure result = doStructureAnalysis(bazelWorkspace, packageNode, commandRunner);
+            if (result != null) {
+                results.put(packageNode, result);
+            }
+        }
+        return results;
+    }
 }
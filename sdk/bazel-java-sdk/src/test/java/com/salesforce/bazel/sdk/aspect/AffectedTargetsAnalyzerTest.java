@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.graph.BazelDependencyGraph;
+
+public class AffectedTargetsAnalyzerTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private final AspectTargetInfos aspects = new AspectTargetInfos(
+            info("//base:base", Collections.emptyList(), "base/src/main/java/base/Base.java"),
+            info("//base:util", Collections.emptyList(), "base/src/main/java/base/Util.java"),
+            info("//lib:lib", Arrays.asList("//base:base"), "lib/src/main/java/lib/Lib.java"),
+            info("//app:app", Arrays.asList("//lib:lib", "@maven//:guava"), "app/src/main/java/app/App.java"),
+            info("//tool:tool", Arrays.asList("//base:util"), "tool/src/main/java/tool/Tool.java"));
+
+    @Test
+    public void testTargetGraph() {
+        BazelDependencyGraph graph = AspectDependencyGraphFactory.build(aspects, true);
+        AffectedTargetsAnalyzer analyzer = new AffectedTargetsAnalyzer(aspects, graph, true);
+
+        assertEquals(set("//base:base", "//lib:lib", "//app:app"),
+            analyzer.findAffectedLabels(Arrays.asList("base/src/main/java/base/Base.java")));
+        assertEquals(set("//base:util", "//tool:tool"),
+            analyzer.findAffectedLabels(Arrays.asList("./base/src/main/java/base/Util.java", "README.md")));
+        assertEquals(set("@maven//:guava", "//app:app"), analyzer.findAffectedLabels(Arrays.asList("@maven//:guava")));
+
+        // a BUILD file change affects all targets in the package
+        assertEquals(set("//base:base", "//base:util", "//lib:lib", "//app:app", "//tool:tool"),
+            analyzer.findAffectedLabels(Arrays.asList("base/BUILD")));
+    }
+
+    @Test
+    public void testPackageGraph() {
+        BazelDependencyGraph graph = AspectDependencyGraphFactory.build(aspects, false);
+        AffectedTargetsAnalyzer analyzer = new AffectedTargetsAnalyzer(aspects, graph, false);
+
+        assertEquals(set("//lib"), analyzer.findOwningLabels(Arrays.asList("lib/src/main/java/lib/Lib.java")));
+        assertEquals(set("//base", "//lib", "//app", "//tool"),
+            analyzer.findAffectedLabels(Arrays.asList("base/src/main/java/base/Util.java")));
+        assertTrue(analyzer.findAffectedLabels(Arrays.asList("unknown/Foo.java")).isEmpty());
+    }
+
+    @Test
+    public void testNewFile() throws Exception {
+        BazelDependencyGraph graph = AspectDependencyGraphFactory.build(aspects, true);
+        AffectedTargetsAnalyzer analyzer = new AffectedTargetsAnalyzer(aspects, graph, true);
+
+        // a file added after the aspects were run is owned by the targets of the closest package
+        assertEquals(set("//lib:lib", "//app:app"),
+            analyzer.findAffectedLabels(Arrays.asList("lib/src/main/java/lib/NewLib.java")));
+
+        // with the workspace at hand, the closest BUILD file decides, even for a package without targets
+        File workspaceRoot = tmpFolder.newFolder("ws");
+        new File(workspaceRoot, "lib/src/main/java/lib").mkdirs();
+        new File(workspaceRoot, "lib/BUILD").createNewFile();
+        new File(workspaceRoot, "lib/src/main/java/lib/gen").mkdirs();
+        new File(workspaceRoot, "lib/src/main/java/lib/gen/BUILD.bazel").createNewFile();
+        analyzer = new AffectedTargetsAnalyzer(aspects, graph, true, workspaceRoot);
+        assertEquals(set("//lib:lib", "//app:app"),
+            analyzer.findAffectedLabels(Arrays.asList("lib/src/main/java/lib/NewLib.java")));
+        assertTrue(analyzer.findAffectedLabels(Arrays.asList("lib/src/main/java/lib/gen/Gen.java")).isEmpty());
+    }
+
+    private static AspectTargetInfo info(String label, List<String> deps, String source) {
+        return new AspectTargetInfo(new File(""), "BUILD", "java_library", label, deps,
+                Collections.singletonList(source));
+    }
+
+    private static Set<String> set(String... labels) {
+        return new HashSet<>(Arrays.asList(labels));
+    }
+}
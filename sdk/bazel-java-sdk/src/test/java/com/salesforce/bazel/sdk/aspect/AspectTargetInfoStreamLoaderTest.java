@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.workspace.test.TestAspectFileCreator;
+
+public class AspectTargetInfoStreamLoaderTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testLoadsEachPathOnce() throws Exception {
+        File outputBase = tmpFolder.newFolder();
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            paths.add(TestAspectFileCreator.createJavaLibraryAspectFile(outputBase, "projects/libs/lib" + i, "lib" + i,
+                "lib" + i, Collections.emptyList(), Collections.emptyList(), true, false));
+        }
+
+        AspectTargetInfoStreamLoader loader = new AspectTargetInfoStreamLoader();
+        for (String path : paths) {
+            loader.submit(path);
+        }
+        // resubmitting (as the aspect processor does after the command completes) is ignored
+        loader.submitAll(paths);
+        loader.submit("");
+
+        assertEquals(20, loader.getSubmittedCount());
+        Map<String, AspectTargetInfo> infos = loader.awaitResults();
+        assertEquals(20, infos.size());
+        assertNotNull(infos.get("//projects/libs/lib7:lib7"));
+    }
+
+    @Test
+    public void testMissingFileIsSkipped() throws Exception {
+        File outputBase = tmpFolder.newFolder();
+
+        AspectTargetInfoStreamLoader loader = new AspectTargetInfoStreamLoader();
+        loader.submit(new File(outputBase, "missing.bzljavasdk-data.json").getAbsolutePath());
+
+        assertEquals(0, loader.awaitResults().size());
+    }
+}
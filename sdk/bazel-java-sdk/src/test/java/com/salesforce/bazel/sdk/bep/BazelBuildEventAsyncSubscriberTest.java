@@ -0,0 +1,192 @@
+package com.salesforce.bazel.sdk.bep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPProgressEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPStartedEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPTestResultEvent;
+
+public class BazelBuildEventAsyncSubscriberTest {
+
+    @Test
+    public void testBatchDelivery() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        List<List<BEPEvent>> batches = new ArrayList<>();
+        BazelBuildEventBatchSubscriber subscriber = new BazelBuildEventBatchSubscriber() {
+            @Override
+            public void onEvent(BEPEvent event) {
+                throw new IllegalStateException("batch subscriber should receive batches");
+            }
+
+            @Override
+            public void onEvents(List<BEPEvent> events) {
+                batches.add(new ArrayList<>(events));
+            }
+        };
+        BazelBuildEventAsyncSubscriber async =
+                new BazelBuildEventAsyncSubscriber(subscriber, 10, BazelBuildEventOverflowPolicy.BLOCK, executor);
+
+        for (int i = 0; i < 5; i++) {
+            async.onEvent(progress(i));
+        }
+        // a single delivery task is scheduled no matter how many events are queued
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(1, batches.size());
+        assertEquals(5, batches.get(0).size());
+        assertEquals(0, batches.get(0).get(0).getIndex());
+        assertEquals(4, batches.get(0).get(4).getIndex());
+        assertTrue(async.awaitIdle(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        List<BEPEvent> received = new ArrayList<>();
+        BazelBuildEventAsyncSubscriber async = new BazelBuildEventAsyncSubscriber(received::add, 2,
+                BazelBuildEventOverflowPolicy.DROP_OLDEST, executor);
+
+        for (int i = 0; i < 5; i++) {
+            async.onEvent(progress(i));
+        }
+        assertEquals(3, async.getDroppedEventCount());
+        executor.runAll();
+
+        assertEquals(2, received.size());
+        assertEquals(3, received.get(0).getIndex());
+        assertEquals(4, received.get(1).getIndex());
+    }
+
+    @Test
+    public void testCoalesceProgress() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        List<BEPEvent> received = new ArrayList<>();
+        BazelBuildEventAsyncSubscriber async = new BazelBuildEventAsyncSubscriber(received::add, 3,
+                BazelBuildEventOverflowPolicy.COALESCE_PROGRESS, executor);
+
+        async.onEvent(new BEPStartedEvent(null, 0, false));
+        async.onEvent(progress(1));
+        async.onEvent(progress(2));
+        async.onEvent(new BEPTestResultEvent(null, 3, false));
+        async.onEvent(progress(4));
+        assertEquals(2, async.getDroppedEventCount());
+        executor.runAll();
+
+        // the progress events were discarded, the other events were kept
+        assertEquals(3, received.size());
+        assertEquals(0, received.get(0).getIndex());
+        assertEquals(3, received.get(1).getIndex());
+        assertEquals(4, received.get(2).getIndex());
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotStallOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<BEPEvent> fastReceived = new CopyOnWriteArrayList<>();
+        BazelBuildEventsFileStream stream = new BazelBuildEventsFileStream();
+        BazelBuildEventAsyncSubscriber slow = stream.subscribeAsync(event -> {
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }, null, true, BazelBuildEventOverflowPolicy.BLOCK);
+        BazelBuildEventAsyncSubscriber fast =
+                stream.subscribeAsync(fastReceived::add, null, true, BazelBuildEventOverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 10; i++) {
+            stream.publishEventToSubscribers(progress(i));
+        }
+        assertTrue(fast.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(10, fastReceived.size());
+
+        release.countDown();
+        assertTrue(slow.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(0, slow.getQueueSize());
+    }
+
+    @Test
+    public void testBlockReschedulesAfterRejectedDrain() throws Exception {
+        RejectingExecutor executor = new RejectingExecutor(1);
+        List<BEPEvent> received = new CopyOnWriteArrayList<>();
+        BazelBuildEventAsyncSubscriber async =
+                new BazelBuildEventAsyncSubscriber(received::add, 1, BazelBuildEventOverflowPolicy.BLOCK, executor);
+
+        // the first drain task is rejected, so the full queue must be drained by a new task instead of waiting
+        async.onEvent(progress(0));
+        async.onEvent(progress(1));
+        assertTrue(async.awaitIdle(5, TimeUnit.SECONDS));
+
+        assertEquals(2, received.size());
+        assertEquals(0, received.get(0).getIndex());
+        assertEquals(1, received.get(1).getIndex());
+        assertEquals(0, async.getDroppedEventCount());
+    }
+
+    @Test
+    public void testBlockDropsWhenDrainCannotBeScheduled() throws Exception {
+        RejectingExecutor executor = new RejectingExecutor(Integer.MAX_VALUE);
+        List<BEPEvent> received = new CopyOnWriteArrayList<>();
+        BazelBuildEventAsyncSubscriber async =
+                new BazelBuildEventAsyncSubscriber(received::add, 1, BazelBuildEventOverflowPolicy.BLOCK, executor);
+
+        async.onEvent(progress(0));
+        async.onEvent(progress(1));
+
+        assertEquals(1, async.getDroppedEventCount());
+        assertEquals(1, async.getQueueSize());
+        assertTrue(received.isEmpty());
+    }
+
+    // HELPERS
+
+    private static BEPEvent progress(int index) {
+        return new BEPProgressEvent(null, index, false);
+    }
+
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    // rejects the first tasks, then runs each task on a new thread
+    private static class RejectingExecutor implements Executor {
+        private int rejections;
+
+        RejectingExecutor(int rejections) {
+            this.rejections = rejections;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            if (rejections > 0) {
+                rejections--;
+                throw new RejectedExecutionException("rejected for the test");
+            }
+            new Thread(task).start();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.salesforce.bazel.sdk.bep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPProgressEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPTestResultEvent;
+
+public class BazelBuildEventTypeManagerTest {
+
+    @Test
+    public void testScanHeader() {
+        BEPEventHeader header = BEPEventHeader.scan(
+            "{ \"id\" : { \"progress\": {\"opaqueCount\": 5} }, \"progress\": {\"stderr\": \"a \\\"}\\\" b\"}}");
+        assertEquals("progress", header.eventType);
+        assertFalse(header.isLastMessage);
+
+        // the lastMessage key comes after values with nested objects, arrays and escaped quotes
+        header = BEPEventHeader.scan("{\"id\":{\"buildToolLogs\":{}},\"buildToolLogs\":{\"log\":[{\"name\":\"x}]\"},"
+                + "{\"contents\":\"\\\\\"}]},\"lastMessage\":true}");
+        assertEquals("buildToolLogs", header.eventType);
+        assertTrue(header.isLastMessage);
+
+        assertNull(BEPEventHeader.scan("{\"id\":{\"progress\":{}}"));
+        assertNull(BEPEventHeader.scan("not json"));
+    }
+
+    @Test
+    public void testLazyParse() {
+        String json = "{\"id\":{\"testResult\":{\"label\":\"//foo:foo-test\",\"run\":1,\"shard\":1,\"attempt\":1}},"
+                + "\"testResult\":{\"testActionOutput\":[],\"testAttemptDurationMillis\":\"826\",\"status\":\"FAILED\"}}";
+        BEPEvent event = BazelBuildEventTypeManager.parseEvent(json, 3);
+
+        assertTrue(event instanceof BEPTestResultEvent);
+        assertEquals(BEPTestResultEvent.NAME, event.getEventType());
+        assertEquals(3, event.getIndex());
+        BEPTestResultEvent testResult = (BEPTestResultEvent) event;
+        assertEquals("//foo:foo-test", testResult.getTestLabel());
+        assertEquals(826, testResult.getTestDurationMs());
+        assertTrue(testResult.isError());
+    }
+
+    @Test
+    public void testProgressErrorDetection() {
+        BEPEvent quiet = BazelBuildEventTypeManager
+                .parseEvent("{\"id\":{\"progress\":{\"opaqueCount\":1}},\"progress\":{\"stdout\":\"[1 / 6] ok\"}}", 0);
+        assertFalse(quiet.isError());
+        assertEquals("[1 / 6] ok", ((BEPProgressEvent) quiet).getStdout().get(0));
+
+        BEPEvent failed = BazelBuildEventTypeManager.parseEvent(
+            "{\"id\":{\"progress\":{\"opaqueCount\":2}},\"progress\":{\"stderr\":\"ERROR: foo/BUILD:7:12: failed\"}}", 1);
+        assertTrue(failed.isError());
+    }
+
+    @Test
+    public void testIgnoredEvents() {
+        BEPEvent event = BazelBuildEventTypeManager
+                .parseEvent("{\"id\":{\"workspaceStatus\":{}},\"workspaceStatus\":{\"item\":[]},\"lastMessage\":true}", 7);
+        assertEquals(BazelBuildEventTypeManager.EVENTTYPE_IGNORED, event.getEventType());
+        assertTrue(event.isLastMessage());
+        assertNull(event.getJsonEventObject());
+
+        assertNull(BazelBuildEventTypeManager.parseEvent("{\"id\":", 8));
+    }
+}
@@ -0,0 +1,97 @@
+package com.salesforce.bazel.sdk.bep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+
+public class BazelBuildEventsWatchFileStreamTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testWatchAppendedEvents() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_build.json");
+        append(bepFile, startedEvent() + progressEvent(0));
+
+        List<BEPEvent> received = new CopyOnWriteArrayList<>();
+        BazelBuildEventsWatchFileStream stream = new BazelBuildEventsWatchFileStream();
+        // keep the test fast also on platforms without native file watching
+        stream.setFallbackPollMillis(100L);
+        stream.addFileToMonitor(bepFile, true);
+        stream.subscribe(received::add);
+        stream.activateStream();
+        try {
+            assertTrue(stream.isRunning());
+            waitForEvents(received, 2);
+
+            append(bepFile, progressEvent(1) + progressEvent(2));
+            waitForEvents(received, 4);
+            assertEquals(3, received.get(3).getIndex());
+        } finally {
+            stream.stopStream();
+        }
+        assertFalse(stream.isRunning());
+
+        // no more events after the stream is stopped
+        append(bepFile, progressEvent(3));
+        Thread.sleep(300L);
+        assertEquals(4, received.size());
+    }
+
+    @Test
+    public void testSkipExistingEvents() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_test.json");
+        append(bepFile, startedEvent() + progressEvent(0));
+
+        List<BEPEvent> received = new CopyOnWriteArrayList<>();
+        BazelBuildEventsWatchFileStream stream = new BazelBuildEventsWatchFileStream();
+        stream.setFallbackPollMillis(100L);
+        stream.addFileToMonitor(bepFile, false);
+        stream.subscribe(received::add);
+        stream.activateStream();
+        try {
+            Thread.sleep(300L);
+            assertEquals(0, received.size());
+        } finally {
+            stream.stopStream();
+        }
+    }
+
+    // HELPERS
+
+    private static void waitForEvents(List<BEPEvent> received, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((received.size() < count) && (System.nanoTime() < deadline)) {
+            Thread.sleep(10L);
+        }
+        assertEquals(count, received.size());
+    }
+
+    private static void append(File file, String text) throws Exception {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static String startedEvent() {
+        return "{\"id\":{\"started\":{}},\"started\":{\"uuid\":\"b4fa160a\",\"startTimeMillis\":\"1000\","
+                + "\"buildToolVersion\":\"3.7.1\",\"command\":\"build\"}}\n";
+    }
+
+    private static String progressEvent(int count) {
+        return "{\"id\":{\"progress\":{\"opaqueCount\":" + count + "}},\"progress\":{\"stdout\":\"[" + count
+                + " / 6] checking cached actions\"}}\n";
+    }
+}
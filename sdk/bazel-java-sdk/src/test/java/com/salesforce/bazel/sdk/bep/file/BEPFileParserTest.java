@@ -0,0 +1,174 @@
+package com.salesforce.bazel.sdk.bep.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPProgressEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPStartedEvent;
+
+public class BEPFileParserTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testTailAppendedEvents() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_build.json");
+        append(bepFile, startedEvent(1000L) + progressEvent(0) + progressEvent(1));
+        BEPFileParser parser = new BEPFileParser(bepFile);
+
+        BEPFileContents contents = parser.readEvents("test", null);
+        assertEquals(3, contents.events.size());
+        assertEquals(3, contents.newEvents.size());
+        assertEquals(1000L, contents.startedEvent.getStartTimeMillis());
+
+        // Bazel appends an event and is in the middle of writing the next one
+        String partial = progressEvent(3);
+        append(bepFile, progressEvent(2) + partial.substring(0, 20));
+        BEPFileContents appended = parser.readEvents("test", contents);
+        assertEquals(4, appended.events.size());
+        assertEquals(1, appended.newEvents.size());
+        assertEquals(3, appended.newEvents.get(0).getIndex());
+        assertSame(contents.startedEvent, appended.startedEvent);
+
+        // the rest of the partial line arrives
+        append(bepFile, partial.substring(20));
+        appended = parser.readEvents("test", appended);
+        assertEquals(5, appended.events.size());
+        assertEquals(1, appended.newEvents.size());
+        assertEquals(bepFile.length(), parser.getTailer().getOffset());
+
+        // nothing new
+        appended = parser.readEvents("test", appended);
+        assertEquals(5, appended.events.size());
+        assertEquals(0, appended.newEvents.size());
+    }
+
+    @Test
+    public void testTruncatedForNewBuild() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_test.json");
+        append(bepFile, startedEvent(1000L) + progressEvent(0) + progressEvent(1) + progressEvent(2));
+        BEPFileParser parser = new BEPFileParser(bepFile);
+        BEPFileContents contents = parser.readEvents("test", null);
+        assertEquals(4, contents.events.size());
+
+        // a new build truncates the file and starts over
+        Files.write(bepFile.toPath(), (startedEvent(2000L) + progressEvent(0)).getBytes(StandardCharsets.UTF_8));
+        BEPFileContents newBuild = parser.readEvents("test", contents);
+        assertTrue(parser.getTailer().isRestart());
+        assertEquals(2, newBuild.events.size());
+        assertEquals(2, newBuild.newEvents.size());
+        assertEquals(2000L, newBuild.startedEvent.getStartTimeMillis());
+    }
+
+    @Test
+    public void testRewrittenForNewBuild() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_build.json");
+        append(bepFile, startedEvent(1000L) + progressEvent(0));
+        BEPFileParser parser = new BEPFileParser(bepFile);
+        BEPFileContents contents = parser.readEvents("test", null);
+        assertEquals(2, contents.events.size());
+
+        // the new build has already written more than the previous one by the time we look again
+        Files.write(bepFile.toPath(), (startedEvent(2000L) + progressEvent(0) + progressEvent(1) + progressEvent(2))
+                .getBytes(StandardCharsets.UTF_8));
+        BEPFileContents newBuild = parser.readEvents("test", contents);
+        assertTrue(parser.getTailer().isRestart());
+        assertEquals(4, newBuild.events.size());
+        assertEquals(4, newBuild.newEvents.size());
+        assertEquals(2000L, newBuild.startedEvent.getStartTimeMillis());
+    }
+
+    @Test
+    public void testBoundedRetention() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_build.json");
+        File spillDir = tmpFolder.newFolder("spill");
+        append(bepFile, startedEvent(1000L) + progressEvent(0) + progressEvent(1) + progressEvent(2));
+        BEPFileParser parser = new BEPFileParser(bepFile);
+        parser.setRetentionPolicy(new BEPRetentionPolicy(2, 10, true, spillDir));
+
+        List<BEPEvent> consumed = new ArrayList<>();
+        BEPFileContents contents = parser.readEvents("test", null, consumed::add);
+        assertEquals(2, contents.events.size());
+        assertEquals(0, contents.newEvents.size());
+        assertEquals(4, consumed.size());
+        assertEquals(4, contents.eventCount);
+        assertEquals(Integer.valueOf(3), contents.eventTypeCounts.get("progress"));
+        assertEquals(2, contents.events.get(0).getIndex());
+        assertEquals(3, contents.events.get(1).getIndex());
+
+        // without a consumer, the new events are bounded like the retained events
+        append(bepFile, progressEvent(3) + progressEvent(4) + progressEvent(5));
+        BEPFileContents appended = parser.readEvents("test", contents);
+        assertEquals(2, appended.newEvents.size());
+        assertEquals(6, appended.newEvents.get(1).getIndex());
+        assertEquals(2, appended.events.size());
+        assertEquals(7, appended.eventCount);
+        assertEquals(6, appended.events.get(1).getIndex());
+
+        // the json of the unparsed event was moved to the spill file, and is read back when needed
+        BEPProgressEvent progress = (BEPProgressEvent) appended.events.get(1);
+        assertTrue(progress.hasUnparsedPayload());
+        assertEquals(1, spillDir.listFiles().length);
+        assertTrue(progress.getStdout().contains("[5 / 6] checking cached actions"));
+        assertFalse(progress.hasUnparsedPayload());
+
+        // the spill file is deleted when the parser is no longer used
+        parser.close();
+        assertEquals(0, spillDir.listFiles().length);
+    }
+
+    @Test
+    public void testSpilledEventsOutliveNewBuild() throws Exception {
+        File bepFile = tmpFolder.newFile("bep_build.json");
+        File spillDir = tmpFolder.newFolder("spill");
+        append(bepFile, startedEvent(1000L) + progressEvent(0) + progressEvent(1));
+        BEPFileParser parser = new BEPFileParser(bepFile);
+        parser.setRetentionPolicy(new BEPRetentionPolicy(10, 10, true, spillDir));
+        BEPFileContents contents = parser.readEvents("test", null);
+        BEPProgressEvent first = (BEPProgressEvent) contents.newEvents.get(1);
+        BEPProgressEvent second = (BEPProgressEvent) contents.newEvents.get(2);
+        assertTrue(first.hasUnparsedPayload());
+        assertTrue(second.hasUnparsedPayload());
+
+        // a subscriber may still be working through the events of the previous build when the next one starts
+        Files.write(bepFile.toPath(), startedEvent(2000L).getBytes(StandardCharsets.UTF_8));
+        parser.readEvents("test", contents);
+        assertTrue(parser.getTailer().isRestart());
+        assertTrue(first.getStdout().contains("[0 / 6] checking cached actions"));
+        assertEquals(1, spillDir.listFiles().length);
+
+        // the spill file of the previous build goes away with its last unparsed event
+        assertTrue(second.getStdout().contains("[1 / 6] checking cached actions"));
+        assertEquals(0, spillDir.listFiles().length);
+    }
+
+    // HELPERS
+
+    private static void append(File file, String text) throws Exception {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static String startedEvent(long startTimeMillis) {
+        return "{\"id\":{\"" + BEPStartedEvent.NAME + "\":{}},\"started\":{\"uuid\":\"b4fa160a\",\"startTimeMillis\":\""
+                + startTimeMillis + "\",\"buildToolVersion\":\"3.7.1\",\"command\":\"build\"}}\n";
+    }
+
+    private static String progressEvent(int count) {
+        return "{\"id\":{\"progress\":{\"opaqueCount\":" + count + "}},\"progress\":{\"stdout\":\"[" + count
+                + " / 6] checking cached actions\"}}\n";
+    }
+}
@@ -37,14 +37,20 @@
 package com.salesforce.bazel.sdk.command;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import org.junit.Before;
@@ -202,4 +208,83 @@ public class ShellCommandTest {
         assertEquals(1, cmd.getSelectedOutputLines().size());
         assertEquals(tempFolder.getRoot().getCanonicalPath(), cmd.getSelectedOutputLines().get(0));
     }
+
+    @Test
+    public void testBashCommandLineConsumer() throws IOException, InterruptedException {
+        if (isWindows) {
+            return; // no bash on Windows
+        }
+        List<String> consumed = new LinkedList<>();
+        CommandBuilder builder =
+                ShellCommand.builder(mockConsoleFactory).setConsoleName(null).setDirectory(tempFolder.getRoot());
+        builder.setStdoutLineSelector(NON_EMPTY_LINES_SELECTOR).setStdoutLineConsumer(consumed::add);
+        builder.addArguments("bash", "-c", "for i in $(seq 1 5000); do echo line$i; done");
+        Command cmd = builder.build();
+        assertEquals(0, cmd.run());
+        assertTrue(cmd.getSelectedOutputLines().isEmpty());
+        assertEquals(5000, consumed.size());
+        assertEquals("line1", consumed.get(0));
+        assertEquals("line5000", consumed.get(4999));
+    }
+
+    @Test
+    public void testBashCommandAsync() throws Exception {
+        if (isWindows) {
+            return; // no bash on Windows
+        }
+        List<Command> cmds = new LinkedList<>();
+        List<CompletableFuture<Integer>> futures = new LinkedList<>();
+        for (int i = 0; i < 3; i++) {
+            CommandBuilder builder =
+                    ShellCommand.builder(mockConsoleFactory).setConsoleName(null).setDirectory(tempFolder.getRoot());
+            builder.setStdoutLineSelector(NON_EMPTY_LINES_SELECTOR);
+            builder.addArguments("bash", "-c", "sleep 0.2; echo " + i);
+            Command cmd = builder.build();
+            cmds.add(cmd);
+            futures.add(cmd.runAsync());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, futures.get(i).get(10, TimeUnit.SECONDS).intValue());
+            assertEquals("" + i, cmds.get(i).getSelectedOutputLines().get(0));
+        }
+    }
+
+    @Test
+    public void testBashCommandTimeout() throws Exception {
+        if (isWindows) {
+            return; // no bash on Windows
+        }
+        CommandBuilder builder = ShellCommand.builder(mockConsoleFactory).setConsoleName(null)
+                .setDirectory(tempFolder.getRoot()).setTimeout(200);
+        builder.addArguments("bash", "-c", "exec sleep 30");
+        Command cmd = builder.build();
+        long startTimeMS = System.currentTimeMillis();
+        try {
+            cmd.run();
+            fail("The command should have timed out");
+        } catch (IOException expected) {}
+        assertTrue((System.currentTimeMillis() - startTimeMS) < 20000);
+    }
+
+    @Test
+    public void testBashCommandAsyncCancel() throws Exception {
+        if (isWindows) {
+            return; // no bash on Windows
+        }
+        File marker = new File(tempFolder.getRoot(), "finished");
+        CommandBuilder builder =
+                ShellCommand.builder(mockConsoleFactory).setConsoleName(null).setDirectory(tempFolder.getRoot());
+        builder.addArguments("bash", "-c", "sleep 1; touch " + marker.getName());
+        Command cmd = builder.build();
+        CompletableFuture<Integer> future = cmd.runAsync();
+        Thread.sleep(200);
+        future.cancel(true);
+        try {
+            future.get();
+            fail("The command should have been cancelled");
+        } catch (CancellationException expected) {}
+        // the shell was killed, so it never gets to touch the file
+        Thread.sleep(1500);
+        assertFalse(marker.exists());
+    }
 }
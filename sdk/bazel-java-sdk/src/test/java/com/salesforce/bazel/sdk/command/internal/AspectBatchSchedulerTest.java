@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AspectBatchSchedulerTest {
+
+    @Test
+    public void testInitialBatchSize() {
+        AspectBatchScheduler scheduler = new AspectBatchScheduler(25, 10, 500, 30000L);
+
+        assertEquals(25, scheduler.nextBatchSize(1000));
+        assertEquals(0, scheduler.nextBatchSize(0));
+        // small requests are done in a single invocation
+        assertEquals(7, scheduler.nextBatchSize(7));
+    }
+
+    @Test
+    public void testTrailingRemainderIsFolded() {
+        AspectBatchScheduler scheduler = new AspectBatchScheduler(25, 10, 500, 30000L);
+
+        // 25 + 9 would leave a 9 label trailing batch, which is below the min
+        assertEquals(34, scheduler.nextBatchSize(34));
+        assertEquals(25, scheduler.nextBatchSize(35));
+    }
+
+    @Test
+    public void testAdaptsToObservedDuration() {
+        AspectBatchScheduler scheduler = new AspectBatchScheduler(25, 10, 500, 30000L);
+
+        // fast invocations: 100ms per label, so 300 labels fit in the target duration
+        scheduler.recordBatch(25, 2500L);
+        assertEquals(300, scheduler.nextBatchSize(10000));
+
+        // very slow invocations clamp to the min
+        scheduler.reset();
+        scheduler.recordBatch(10, 100000L);
+        assertEquals(10, scheduler.nextBatchSize(10000));
+
+        // very fast invocations clamp to the max
+        scheduler.reset();
+        scheduler.recordBatch(100, 100L);
+        assertEquals(500, scheduler.nextBatchSize(10000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        new AspectBatchScheduler(25, 100, 50, 30000L);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+public class AspectClosureEngineTest {
+
+    @Test
+    public void testDiamond() {
+        // a -> b, a -> c, b -> d, c -> d, d -> (unknown dep, excluded)
+        Map<BazelLabel, AspectTargetInfo> infos = new LinkedHashMap<>();
+        add(infos, "//p:a", "java_library", "//p:b", "//p:c");
+        add(infos, "//p:b", "java_library", "//q:d");
+        add(infos, "//p:c", "java_library", "//q:d");
+        add(infos, "//q:d", "java_library", "@maven//:missing");
+
+        AspectClosureEngine engine = new AspectClosureEngine(infos);
+        assertEquals(4, engine.size());
+        assertEquals(labels("//p:b", "//p:c", "//q:d"), labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:a"))));
+        assertEquals(labels("//q:d"), labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:b"))));
+        assertEquals(labels(), labelsOf(engine.getTransitiveClosure(new BazelLabel("//q:d"))));
+        assertNull(engine.getTransitiveClosure(new BazelLabel("//p:unknown")));
+
+        // memoized, the same instance is shared
+        assertSame(engine.getTransitiveClosure(new BazelLabel("//p:a")),
+            engine.getTransitiveClosure(new BazelLabel("//p:a")));
+
+        Map<BazelLabel, Set<AspectTargetInfo>> pkg = engine.getTransitiveClosuresForPackage(new BazelLabel("//p:*"));
+        assertEquals(3, pkg.size());
+        assertEquals(4, engine.getAllTargetInfos().size());
+    }
+
+    @Test
+    public void testTestAndImportIncludeSelf() {
+        Map<BazelLabel, AspectTargetInfo> infos = new LinkedHashMap<>();
+        add(infos, "//p:t", "java_test", "//p:lib");
+        add(infos, "//p:lib", "java_library", "//p:imp");
+        add(infos, "//p:imp", "java_import");
+
+        AspectClosureEngine engine = new AspectClosureEngine(infos);
+        assertEquals(labels("//p:t", "//p:lib", "//p:imp"),
+            labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:t"))));
+        assertEquals(labels("//p:imp"), labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:lib"))));
+        assertEquals(labels("//p:imp"), labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:imp"))));
+    }
+
+    @Test
+    public void testCycle() {
+        // a -> b -> c -> a, c -> d
+        Map<BazelLabel, AspectTargetInfo> infos = new LinkedHashMap<>();
+        add(infos, "//p:a", "java_library", "//p:b");
+        add(infos, "//p:b", "java_library", "//p:c");
+        add(infos, "//p:c", "java_library", "//p:a", "//p:d");
+        add(infos, "//p:d", "java_library");
+
+        AspectClosureEngine engine = new AspectClosureEngine(infos);
+        assertEquals(labels("//p:b", "//p:c", "//p:d"), labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:a"))));
+        assertEquals(labels("//p:a", "//p:b", "//p:d"), labelsOf(engine.getTransitiveClosure(new BazelLabel("//p:c"))));
+    }
+
+    @Test
+    public void testSetIsImmutable() {
+        Map<BazelLabel, AspectTargetInfo> infos = new LinkedHashMap<>();
+        AspectTargetInfo a = add(infos, "//p:a", "java_library", "//p:b");
+        AspectTargetInfo b = add(infos, "//p:b", "java_library");
+        Set<AspectTargetInfo> closure = new AspectClosureEngine(infos).getTransitiveClosure(new BazelLabel("//p:a"));
+
+        assertTrue(closure.contains(b));
+        assertFalse(closure.contains(a));
+        try {
+            closure.add(a);
+            throw new AssertionError("closure sets must be immutable");
+        } catch (UnsupportedOperationException expected) {}
+    }
+
+    // HELPERS
+
+    private static AspectTargetInfo add(Map<BazelLabel, AspectTargetInfo> infos, String label, String kind,
+            String... deps) {
+        AspectTargetInfo info = new AspectTargetInfo(new File(""), "BUILD", kind, label, Arrays.asList(deps),
+                new ArrayList<>()) {};
+        infos.put(new BazelLabel(label), info);
+        return info;
+    }
+
+    private static Set<String> labels(String... labels) {
+        return new TreeSet<>(Arrays.asList(labels));
+    }
+
+    private static Set<String> labelsOf(Set<AspectTargetInfo> infos) {
+        Set<String> labels = new TreeSet<>();
+        for (AspectTargetInfo info : infos) {
+            labels.add(info.getLabelPath());
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,125 @@
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.command.BazelProcessBuilder;
+import com.salesforce.bazel.sdk.command.Command;
+import com.salesforce.bazel.sdk.command.CommandBuilder;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+public class BazelQueryHelperTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testFailedQueryIsNotCached() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = new File(root, "ws");
+        Files.createDirectories(new File(workspaceDir, "a").toPath());
+        Files.write(new File(workspaceDir, "a/BUILD").toPath(),
+            "java_library(name = 'a')\n".getBytes(StandardCharsets.UTF_8));
+        File cacheDir = new File(root, "cache");
+        List<String> queryArgs = Collections.singletonList("kind(rule, //a:*)");
+        List<String> fullArgs = Arrays.asList("query", "kind(rule, //a:*)");
+
+        // a failed query, with partial output
+        StubCommandBuilder builder = new StubCommandBuilder(1, Collections.emptyList());
+        BazelQueryHelper helper = new BazelQueryHelper(new BazelCommandExecutor(new File("bazel"), builder));
+        helper.setPersistentCacheDirectory(cacheDir, workspaceDir);
+        assertEquals(Collections.emptyList(), helper.runQuery(workspaceDir, queryArgs));
+        PersistentQueryResultCache cache = new PersistentQueryResultCache(cacheDir, workspaceDir,
+                BazelQueryHelper.getBazelVersionKey(new File("bazel")));
+        assertNull(cache.load(fullArgs));
+
+        // the same query succeeds
+        builder.exitCode = 0;
+        builder.outputLines = Collections.singletonList("//a:a");
+        assertEquals(builder.outputLines, helper.runQuery(workspaceDir, queryArgs));
+        assertEquals(builder.outputLines, cache.load(fullArgs));
+
+        // and is now served from the cache, even if bazel would fail
+        builder.exitCode = 1;
+        builder.outputLines = Collections.emptyList();
+        assertEquals(Collections.singletonList("//a:a"), helper.runQuery(workspaceDir, queryArgs));
+    }
+
+    @Test
+    public void testPartitionSourceFileLines() {
+        BazelLabel apple = new BazelLabel("//apple-api:*");
+        BazelLabel banana = new BazelLabel("//libs/banana:*");
+        Map<String, BazelLabel> packagePathToLabel = new HashMap<>();
+        packagePathToLabel.put(apple.getPackagePath(), apple);
+        packagePathToLabel.put(banana.getPackagePath(), banana);
+        Map<BazelLabel, Collection<String>> sourceFilePaths = new HashMap<>();
+        sourceFilePaths.put(apple, new HashSet<>());
+        sourceFilePaths.put(banana, new HashSet<>());
+
+        BazelQueryHelper.partitionSourceFileLines(Arrays.asList( //
+            "@local_jdk//:bin/javap", //
+            "@bazel_tools//third_party/def_parser:def_parser.h", //
+            "//apple-api:source/dev/demo/apple/api/Apple.java", //
+            "//apple-api:BUILD", //
+            "//libs/banana:src/main/java/Banana.java", //
+            "  //libs/banana:src/main/resources/banana.properties", //
+            "//libs/cherry:src/main/java/Cherry.java"), packagePathToLabel, sourceFilePaths);
+
+        assertEquals(new HashSet<>(Arrays.asList("source/dev/demo/apple/api/Apple.java")), sourceFilePaths.get(apple));
+        assertEquals(
+            new HashSet<>(Arrays.asList("src/main/java/Banana.java", "src/main/resources/banana.properties")),
+            sourceFilePaths.get(banana));
+    }
+
+    private static class StubCommandBuilder extends CommandBuilder {
+        int exitCode;
+        List<String> outputLines;
+
+        StubCommandBuilder(int exitCode, List<String> outputLines) {
+            super(null);
+            this.exitCode = exitCode;
+            this.outputLines = outputLines;
+        }
+
+        @Override
+        protected Command build_impl() {
+            int commandExitCode = exitCode;
+            List<String> commandOutputLines = outputLines;
+            return new Command() {
+                @Override
+                public int run() {
+                    return commandExitCode;
+                }
+
+                @Override
+                public List<String> getSelectedOutputLines() {
+                    return commandOutputLines;
+                }
+
+                @Override
+                public List<String> getSelectedErrorLines() {
+                    return Collections.emptyList();
+                }
+
+                @Override
+                public BazelProcessBuilder getProcessBuilder() {
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -25,12 +25,20 @@ package com.salesforce.bazel.sdk.command.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -113,13 +121,13 @@ public class BazelWorkspaceAspectHelperTest {
                 aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         // aspect infos returned for: guava, slf4j, javalib0, javalib0-test
         assertEquals(1, aspectMap.size());
-        assertEquals(0, aspectHelper.numberCacheHits);
+        assertEquals(0, aspectHelper.numberCacheHits.get());
 
         // ask for the same target again
         aspectMap = aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         // aspect infos returned for: guava, slf4j, javalib0, javalib0-test
         assertEquals(1, aspectMap.size());
-        assertEquals(1, aspectHelper.numberCacheHits); // the entries all came from cache
+        assertEquals(1, aspectHelper.numberCacheHits.get()); // the entries all came from cache
     }
 
     @Test
@@ -134,13 +142,13 @@ public class BazelWorkspaceAspectHelperTest {
                 aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         assertEquals(1, aspectMap.size());
         assertEquals(label, aspectMap.keySet().iterator().next());
-        assertEquals(0, aspectHelper.numberCacheHits);
+        assertEquals(0, aspectHelper.numberCacheHits.get());
 
         // ask for the same target again
         aspectMap = aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         assertEquals(1, aspectMap.size());
         assertEquals(label, aspectMap.keySet().iterator().next());
-        assertEquals(1, aspectHelper.numberCacheHits); // the entries all came from cache
+        assertEquals(1, aspectHelper.numberCacheHits.get()); // the entries all came from cache
 
         // flush the cache (we do this when the user executes a 'clean' in Eclipse)
         aspectHelper.flushAspectInfoCache();
@@ -152,7 +160,77 @@ public class BazelWorkspaceAspectHelperTest {
         aspectMap = aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         assertEquals(1, aspectMap.size());
         assertEquals(label, aspectMap.keySet().iterator().next());
-        assertEquals(1, aspectHelper.numberCacheHits); // the entries all came from cache
+        assertEquals(1, aspectHelper.numberCacheHits.get()); // the entries all came from cache
+    }
+
+    @Test
+    public void testAspectDiskCacheAcrossRestart() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("diskcache");
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        BazelLabel label = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+        List<BazelLabel> targets = Collections.singletonList(label);
+        Map<BazelLabel, Set<AspectTargetInfo>> aspectMap =
+                aspectHelper.getAspectTargetInfos(targets, "testAspectDiskCacheAcrossRestart");
+        int aspectCount = aspectMap.get(label).size();
+
+        // simulate a restart of the tool, with an empty in memory cache
+        BazelWorkspaceAspectProcessor restartedHelper = new BazelWorkspaceAspectProcessor(
+                env.bazelWorkspaceCommandRunner, env.bazelAspectLocation,
+                new BazelCommandExecutor(env.bazelExecutable.bazelExecutableFile, env.commandBuilder));
+        aspectMap = restartedHelper.getAspectTargetInfos(targets, "testAspectDiskCacheAcrossRestart");
+        assertEquals(1, restartedHelper.numberCacheHits.get()); // served from disk
+        assertEquals(aspectCount, aspectMap.get(label).size());
+        assertEquals(3, restartedHelper.aspectInfoCache_current.size());
+
+        // a flush also clears the disk cache
+        restartedHelper.flushAspectInfoCache();
+        BazelWorkspaceAspectProcessor restartedAgainHelper = new BazelWorkspaceAspectProcessor(
+                env.bazelWorkspaceCommandRunner, env.bazelAspectLocation,
+                new BazelCommandExecutor(env.bazelExecutable.bazelExecutableFile, env.commandBuilder));
+        restartedAgainHelper.getAspectTargetInfos(targets, "testAspectDiskCacheAcrossRestart");
+        assertEquals(0, restartedAgainHelper.numberCacheHits.get());
+    }
+
+    @Test
+    public void testAspectSingleFlightLoading() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("singleflight");
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        aspectHelper.setPersistentCacheDirectory(null);
+        AtomicInteger batchCount = new AtomicInteger();
+        aspectHelper.setBatchScheduler(new AspectBatchScheduler() {
+            @Override
+            public int nextBatchSize(int remainingLabels) {
+                batchCount.incrementAndGet();
+                return super.nextBatchSize(remainingLabels);
+            }
+        });
+        BazelLabel label = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+        List<BazelLabel> targets = Collections.singletonList(label);
+
+        // many callers ask for the same label at the same time, the aspect must only run once
+        int callerCount = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callerCount);
+        try {
+            List<Future<Map<BazelLabel, Set<AspectTargetInfo>>>> results = new ArrayList<>();
+            for (int i = 0; i < callerCount; i++) {
+                Callable<Map<BazelLabel, Set<AspectTargetInfo>>> caller = () -> {
+                    start.await();
+                    return aspectHelper.getAspectTargetInfos(targets, "testAspectSingleFlightLoading");
+                };
+                results.add(executor.submit(caller));
+            }
+            start.countDown();
+
+            Set<AspectTargetInfo> first = results.get(0).get().get(label);
+            assertNotNull(first);
+            for (Future<Map<BazelLabel, Set<AspectTargetInfo>>> result : results) {
+                assertSame(first, result.get().get(label));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, batchCount.get());
     }
 
     // INTERNAL
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfoFactory;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.workspace.test.TestAspectFileCreator;
+
+public class PersistentAspectTargetInfoCacheTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentAspectTargetInfoCache cache = new PersistentAspectTargetInfoCache(new File(root, "cache"),
+                workspaceDir, null);
+        BazelLabel wildcard = new BazelLabel("//projects/libs/lib0:*");
+
+        assertNull(cache.load(wildcard));
+        cache.store(wildcard, createOwnerMap(root, wildcard));
+
+        // simulate a restart with a new cache instance
+        cache = new PersistentAspectTargetInfoCache(new File(root, "cache"), workspaceDir, null);
+        Map<BazelLabel, Set<AspectTargetInfo>> loaded = cache.load(wildcard);
+        assertNotNull(loaded);
+        assertEquals(2, loaded.size());
+        assertEquals(2, loaded.get(wildcard).size());
+        assertEquals(1, loaded.get(new BazelLabel("//projects/libs/lib0:lib0")).size());
+    }
+
+    @Test
+    public void testBuildFileChangeInvalidates() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentAspectTargetInfoCache cache = new PersistentAspectTargetInfoCache(new File(root, "cache"),
+                workspaceDir, null);
+        BazelLabel wildcard = new BazelLabel("//projects/libs/lib0:*");
+        cache.store(wildcard, createOwnerMap(root, wildcard));
+
+        // the dependency lib1 is in the closure, so its BUILD file is an input as well
+        write(new File(workspaceDir, "projects/libs/lib1/BUILD"), "java_library(name = 'lib1', srcs = [])\n");
+        cache.clearDigestMemo();
+        assertNull(cache.load(wildcard));
+    }
+
+    @Test
+    public void testLoadedBzlChangeInvalidates() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentAspectTargetInfoCache cache = new PersistentAspectTargetInfoCache(new File(root, "cache"),
+                workspaceDir, null);
+        BazelLabel wildcard = new BazelLabel("//projects/libs/lib0:*");
+        cache.store(wildcard, createOwnerMap(root, wildcard));
+        assertNotNull(cache.load(wildcard));
+
+        write(new File(workspaceDir, "tools/defs.bzl"), "# changed\n");
+        cache.clearDigestMemo();
+        assertNull(cache.load(wildcard));
+    }
+
+    @Test
+    public void testTransitivelyLoadedBzlChangeInvalidates() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentAspectTargetInfoCache cache = new PersistentAspectTargetInfoCache(new File(root, "cache"),
+                workspaceDir, null);
+        BazelLabel wildcard = new BazelLabel("//projects/libs/lib0:*");
+        cache.store(wildcard, createOwnerMap(root, wildcard));
+        assertNotNull(cache.load(wildcard));
+
+        // impl.bzl is loaded by defs.bzl, which is loaded by the BUILD file
+        write(new File(workspaceDir, "tools/impl.bzl"), "def y(**kwargs):\n    pass\n");
+        assertNull(cache.load(wildcard));
+    }
+
+    @Test
+    public void testNewSourceFileInvalidates() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentAspectTargetInfoCache cache = new PersistentAspectTargetInfoCache(new File(root, "cache"),
+                workspaceDir, null);
+        BazelLabel wildcard = new BazelLabel("//projects/libs/lib0:*");
+        cache.store(wildcard, createOwnerMap(root, wildcard));
+        assertNotNull(cache.load(wildcard));
+
+        // the BUILD files are unchanged, but the result of a glob() is not
+        write(new File(workspaceDir, "projects/libs/lib1/src/main/java/New.java"), "class New {}");
+        assertNull(cache.load(wildcard));
+    }
+
+    @Test
+    public void testRootListingIgnoresHiddenAndConvenienceDirectories() throws Exception {
+        File workspaceDir = createWorkspace(tmpFolder.newFolder());
+        write(new File(workspaceDir, "BUILD"), "");
+        WorkspaceInputDigests digests = new WorkspaceInputDigests(workspaceDir);
+        String rootDigest = digests.listingDigest("");
+
+        // git operations and bazel output do not change the root package
+        write(new File(workspaceDir, ".git/objects/ab/cdef"), "blob");
+        write(new File(workspaceDir, "bazel-out/k8-fastbuild/bin/lib0.jar"), "jar");
+        assertEquals(rootDigest, digests.listingDigest(""));
+
+        write(new File(workspaceDir, "README.md"), "readme");
+        assertNotEquals(rootDigest, digests.listingDigest(""));
+    }
+
+    @Test
+    public void testRemovePackage() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentAspectTargetInfoCache cache = new PersistentAspectTargetInfoCache(new File(root, "cache"),
+                workspaceDir, null);
+        BazelLabel wildcard = new BazelLabel("//projects/libs/lib0:*");
+        cache.store(wildcard, createOwnerMap(root, wildcard));
+
+        cache.removePackage(new BazelLabel("//projects/libs/lib0"));
+        assertNull(cache.load(wildcard));
+    }
+
+    @Test
+    public void testFindLoadedFiles() throws Exception {
+        File buildFile = tmpFolder.newFile("BUILD");
+        write(buildFile, "load(\"//tools:defs.bzl\", \"x\")\nload(':local.bzl', 'y')\n"
+                + "load(\"@rules_jvm_external//:defs.bzl\", \"z\")\n");
+
+        List<String> loaded = WorkspaceInputDigests.findLoadedFiles("a/b", buildFile);
+        assertEquals(Arrays.asList("tools/defs.bzl", "a/b/local.bzl"), loaded);
+    }
+
+    // HELPERS
+
+    private File createWorkspace(File root) throws Exception {
+        File workspaceDir = new File(root, "ws");
+        write(new File(workspaceDir, "WORKSPACE"), "workspace(name = 'test')\n");
+        write(new File(workspaceDir, "tools/defs.bzl"), "load(':impl.bzl', 'y')\ndef x():\n    pass\n");
+        write(new File(workspaceDir, "tools/impl.bzl"), "def y():\n    pass\n");
+        write(new File(workspaceDir, "projects/libs/lib0/BUILD"),
+            "load('//tools:defs.bzl', 'x')\njava_library(name = 'lib0', deps = ['//projects/libs/lib1'])\n");
+        write(new File(workspaceDir, "projects/libs/lib1/BUILD"), "java_library(name = 'lib1')\n");
+        return workspaceDir;
+    }
+
+    private Map<BazelLabel, Set<AspectTargetInfo>> createOwnerMap(File root, BazelLabel wildcard) {
+        File outputBase = new File(root, "obase");
+        String lib0Path = TestAspectFileCreator.createJavaLibraryAspectFile(outputBase, "projects/libs/lib0", "lib0",
+            "lib0", Collections.singletonList("//projects/libs/lib1:lib1"), Collections.emptyList(), true, false);
+        String lib1Path = TestAspectFileCreator.createJavaLibraryAspectFile(outputBase, "projects/libs/lib1", "lib1",
+            "lib1", Collections.emptyList(), Collections.emptyList(), true, false);
+        AspectTargetInfo lib0 = AspectTargetInfoFactory.loadAspectFile(new File(lib0Path));
+        AspectTargetInfo lib1 = AspectTargetInfoFactory.loadAspectFile(new File(lib1Path));
+
+        Map<BazelLabel, Set<AspectTargetInfo>> ownerMap = new LinkedHashMap<>();
+        ownerMap.put(wildcard, new HashSet<>(Arrays.asList(lib0, lib1)));
+        ownerMap.put(new BazelLabel("//projects/libs/lib0:lib0"), Collections.singleton(lib1));
+        return ownerMap;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
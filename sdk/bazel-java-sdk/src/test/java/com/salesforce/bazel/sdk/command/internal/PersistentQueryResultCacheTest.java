@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentQueryResultCacheTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final List<String> KIND_QUERY =
+            Arrays.asList("query", "kind(rule, set(//a:*))", "--output", "label_kind");
+    private static final List<String> KIND_RESULT =
+            Arrays.asList("java_library rule //a:a", "java_test rule //a:a-test");
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentQueryResultCache cache = new PersistentQueryResultCache(new File(root, "cache"), workspaceDir, "7.0");
+
+        assertNull(cache.load(KIND_QUERY));
+        cache.store(KIND_QUERY, KIND_RESULT);
+
+        // simulate a restart with a new cache instance
+        cache = new PersistentQueryResultCache(new File(root, "cache"), workspaceDir, "7.0");
+        assertEquals(KIND_RESULT, cache.load(KIND_QUERY));
+
+        // a different Bazel does not see the entry
+        cache = new PersistentQueryResultCache(new File(root, "cache"), workspaceDir, "7.1");
+        assertNull(cache.load(KIND_QUERY));
+    }
+
+    @Test
+    public void testInputChangesInvalidate() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentQueryResultCache cache = new PersistentQueryResultCache(new File(root, "cache"), workspaceDir, "7.0");
+        cache.store(KIND_QUERY, KIND_RESULT);
+
+        // an edit to the loaded .bzl file
+        write(new File(workspaceDir, "tools/defs.bzl"), "def my_rule(**kwargs):\n    pass\n");
+        assertNull(cache.load(KIND_QUERY));
+
+        // a new source file changes glob() results
+        cache.store(KIND_QUERY, KIND_RESULT);
+        assertEquals(KIND_RESULT, cache.load(KIND_QUERY));
+        write(new File(workspaceDir, "a/src/B.java"), "class B {}");
+        assertNull(cache.load(KIND_QUERY));
+    }
+
+    @Test
+    public void testResultPackagesAreInputs() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentQueryResultCache cache = new PersistentQueryResultCache(new File(root, "cache"), workspaceDir, "7.0");
+        List<String> query = Arrays.asList("query", "kind('source file', deps(//a:*))");
+        cache.store(query, Arrays.asList("//a:src/A.java", "//b:B.java"));
+
+        write(new File(workspaceDir, "b/BUILD"), "java_library(name = 'b2')\n");
+        assertNull(cache.load(query));
+    }
+
+    @Test
+    public void testRecursivePatternsAreNotCached() throws Exception {
+        File root = tmpFolder.newFolder();
+        File workspaceDir = createWorkspace(root);
+        PersistentQueryResultCache cache = new PersistentQueryResultCache(new File(root, "cache"), workspaceDir, "7.0");
+        List<String> query = Arrays.asList("query", "tests(//a/...)");
+        cache.store(query, Arrays.asList("//a:a-test"));
+
+        assertNull(cache.load(query));
+        assertNull(cache.computeInputs(Arrays.asList("query", "attr(test_class, 'Foo', //...)"),
+            Arrays.asList("//a:a-test")));
+    }
+
+    // HELPERS
+
+    private File createWorkspace(File root) throws Exception {
+        File workspaceDir = new File(root, "ws");
+        write(new File(workspaceDir, "WORKSPACE"), "workspace(name = 'ws')\n");
+        write(new File(workspaceDir, "tools/BUILD"), "");
+        write(new File(workspaceDir, "tools/defs.bzl"), "def my_rule():\n    pass\n");
+        write(new File(workspaceDir, "a/BUILD"), "load('//tools:defs.bzl', 'my_rule')\njava_library(name = 'a')\n");
+        write(new File(workspaceDir, "a/src/A.java"), "class A {}");
+        write(new File(workspaceDir, "b/BUILD"), "java_library(name = 'b')\n");
+        return workspaceDir;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class SelectOutputStreamTest {
+
+    private static final Function<String, String> SELECT_B_LINES = x -> x.startsWith("b") ? x.toUpperCase() : null;
+
+    @Test
+    public void testBulkWriteMatchesSingleByteWrites() throws Exception {
+        // the euro sign is three bytes in UTF-8, the chunks below split it
+        byte[] content = "a1\nb2\n\nb\u20ac3\na4".getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream singleOutput = new ByteArrayOutputStream();
+        SelectOutputStream single = new SelectOutputStream(singleOutput, SELECT_B_LINES);
+        for (byte b : content) {
+            single.write(b);
+        }
+        single.close();
+
+        for (int chunkSize = 1; chunkSize <= content.length; chunkSize++) {
+            ByteArrayOutputStream bulkOutput = new ByteArrayOutputStream();
+            SelectOutputStream bulk = new SelectOutputStream(bulkOutput, SELECT_B_LINES);
+            for (int off = 0; off < content.length; off += chunkSize) {
+                bulk.write(content, off, Math.min(chunkSize, content.length - off));
+            }
+            bulk.close();
+
+            assertEquals(Arrays.asList("B2", "B\u20ac3"), bulk.getLines());
+            assertEquals(single.getLines(), bulk.getLines());
+            assertEquals("a1\n\na4", new String(bulkOutput.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(new String(singleOutput.toByteArray(), StandardCharsets.UTF_8),
+                new String(bulkOutput.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testLineConsumer() throws Exception {
+        List<String> consumed = new ArrayList<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SelectOutputStream stream = new SelectOutputStream(output, SELECT_B_LINES, consumed::add);
+        byte[] content = "a1\nb2\nb3\n".getBytes(StandardCharsets.UTF_8);
+        stream.write(content, 0, 4);
+        assertEquals(0, consumed.size());
+        stream.write(content, 4, content.length - 4);
+        assertEquals(Arrays.asList("B2", "B3"), consumed);
+        stream.close();
+
+        assertTrue(stream.getLines().isEmpty());
+        assertEquals("a1\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBulkWriteBounds() throws Exception {
+        SelectOutputStream stream = new SelectOutputStream(null, null);
+        stream.write(new byte[4], 2, 3);
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,23 +16,25 @@ public class BazelDependencyGraphFactoryTest {
 
     @Test
     public void testBuilderInvocation() {
-        List<BazelDependencyGraphBuilder> origBuilders = BazelDependencyGraphFactory.builders;
-        TestDependencyGraphBuilder testBuilder = new TestDependencyGraphBuilder();
-        BazelDependencyGraphFactory.builders.add(0, testBuilder);
-        Map<String, String> options = new HashMap<>();
-
-        BazelDependencyGraph mockGraph = BazelDependencyGraphFactory.build("testBuilderInvocation", options);
-        assertTrue(testBuilder.built);
-        testBuilder.built = false;
-        assertNotNull(mockGraph);
-
-        options.put("pass", "true");
-        BazelDependencyGraph inmemoryGraph = BazelDependencyGraphFactory.build("testBuilderInvocation", options);
-        assertFalse(testBuilder.built);
-        assertNotNull(inmemoryGraph);
-        assertTrue(inmemoryGraph instanceof InMemoryDependencyGraph);
-
-        BazelDependencyGraphFactory.builders = origBuilders;
+        List<BazelDependencyGraphBuilder> origBuilders = new ArrayList<>(BazelDependencyGraphFactory.builders);
+        try {
+            TestDependencyGraphBuilder testBuilder = new TestDependencyGraphBuilder();
+            BazelDependencyGraphFactory.builders.add(0, testBuilder);
+            Map<String, String> options = new HashMap<>();
+
+            BazelDependencyGraph mockGraph = BazelDependencyGraphFactory.build("testBuilderInvocation", options);
+            assertTrue(testBuilder.built);
+            testBuilder.built = false;
+            assertNotNull(mockGraph);
+
+            options.put("pass", "true");
+            BazelDependencyGraph inmemoryGraph = BazelDependencyGraphFactory.build("testBuilderInvocation", options);
+            assertFalse(testBuilder.built);
+            assertNotNull(inmemoryGraph);
+            assertTrue(inmemoryGraph instanceof InMemoryDependencyGraph);
+        } finally {
+            BazelDependencyGraphFactory.builders = origBuilders;
+        }
     }
 
     private static class TestDependencyGraphBuilder implements BazelDependencyGraphBuilder {
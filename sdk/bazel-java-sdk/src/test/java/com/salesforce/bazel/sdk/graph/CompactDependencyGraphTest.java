@@ -0,0 +1,100 @@
+package com.salesforce.bazel.sdk.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+
+public class CompactDependencyGraphTest {
+
+    @Test
+    public void testBuilderOption() {
+        CompactDependencyGraphBuilder builder = new CompactDependencyGraphBuilder();
+        Map<String, String> options = new HashMap<>();
+        assertNull(builder.build("test", options));
+        options.put(CompactDependencyGraphBuilder.OPTION_COMPACT, "true");
+        assertTrue(builder.build("test", options) instanceof CompactDependencyGraph);
+    }
+
+    @Test
+    public void testParityWithInMemoryGraph() {
+        InMemoryDependencyGraph expected = new InMemoryDependencyGraph();
+        CompactDependencyGraph actual = new CompactDependencyGraph();
+
+        // a layered random DAG, with duplicate edges and external deps; edges point from lower to higher layers
+        Random random = new Random(17);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            labels.add(i % 10 == 9 ? "@maven//:lib" + i : "//pkg" + i);
+        }
+        for (int i = 0; i < 1200; i++) {
+            int source = random.nextInt(labels.size() - 1);
+            int dep = source + 1 + random.nextInt(labels.size() - source - 1);
+            expected.addDependency(labels.get(source), labels.get(dep));
+            actual.addDependency(labels.get(source), labels.get(dep));
+        }
+
+        assertEquals(expected.getDependsOnMap(), actual.getDependsOnMap());
+        assertEquals(expected.getUsedByMap(), actual.getUsedByMap());
+        assertEquals(new ArrayList<>(expected.getDependsOnMap().keySet()),
+            new ArrayList<>(actual.getDependsOnMap().keySet()));
+        assertEquals(expected.getRootLabels(), actual.getRootLabels());
+        assertEquals(expected.getLeafLabels(), actual.getLeafLabels());
+
+        for (int i = 0; i < 2000; i++) {
+            String label = labels.get(random.nextInt(labels.size()));
+            String dep = labels.get(random.nextInt(labels.size()));
+            boolean follow = random.nextBoolean();
+            assertEquals(label + " -> " + dep,
+                expected.isDependency(label, dep, null, follow), actual.isDependency(label, dep, null, follow));
+        }
+
+        List<BazelPackageLocation> selected = new ArrayList<>();
+        for (String label : labels) {
+            selected.add(new InMemoryPackageLocation(label));
+        }
+        Collections.shuffle(selected, random);
+        assertEquals(names(expected.orderLabels(selected)), names(actual.orderLabels(selected)));
+    }
+
+    @Test
+    public void testLookupsAfterMoreEdges() {
+        CompactDependencyGraph graph = new CompactDependencyGraph();
+        graph.addDependency("//a", "//b");
+        graph.addDependency("//a", "//b");
+        assertEquals(1, graph.getDependsOnMap().get("//a").size());
+        assertTrue(graph.getLeafLabels().contains("//b"));
+        assertNull(graph.getDependsOnMap().get("//b"));
+
+        // the compiled arrays are rebuilt after the graph changes
+        graph.addDependency("//b", "//c");
+        graph.addDependency("//c", "@maven//:guava");
+        assertTrue(graph.getDependsOnMap().get("//b").contains("//c"));
+        assertFalse(graph.getDependsOnMap().get("//b").contains("//a"));
+        assertEquals(new HashSet<>(Collections.singletonList("@maven//:guava")), graph.getLeafLabels());
+        assertEquals(new HashSet<>(Collections.singletonList("//c")), graph.getLeafLabels(true));
+        assertTrue(graph.isDependency("//a", "@maven//:guava"));
+        assertFalse(graph.isDependency("//c", "//a"));
+        assertTrue(graph.findCycles().isEmpty());
+    }
+
+    private static List<String> names(List<BazelPackageLocation> locations) {
+        List<String> names = new ArrayList<>();
+        for (BazelPackageLocation location : locations) {
+            names.add(location.getBazelPackageName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,114 @@
+package com.salesforce.bazel.sdk.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReachabilityIndexTest {
+
+    @Test
+    public void testCyclesAndExternals() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("//app", "//lib1");
+        graph.addDependency("//lib1", "//lib2");
+        graph.addDependency("//lib2", "//lib1");
+        graph.addDependency("//lib2", "@maven//:guava");
+        graph.addDependency("@maven//:guava", "@maven//:failureaccess");
+
+        ReachabilityIndex index = new ReachabilityIndex(graph.getDependsOnMap(), true);
+        assertTrue(index.isDependency("//app", "//lib2"));
+        assertTrue(index.isDependency("//lib1", "//lib1"));
+        assertFalse(index.isDependency("//app", "//app"));
+        assertFalse(index.isDependency("//lib1", "//app"));
+        assertTrue(index.isDependency("//app", "@maven//:failureaccess"));
+        assertFalse(index.isDependency("//app", "//unknown"));
+
+        ReachabilityIndex localIndex = new ReachabilityIndex(graph.getDependsOnMap(), false);
+        assertTrue(localIndex.isDependency("//app", "@maven//:guava"));
+        assertFalse(localIndex.isDependency("//app", "@maven//:failureaccess"));
+        assertFalse(localIndex.isDependency("@maven//:guava", "@maven//:failureaccess"));
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("//a", "//b");
+        ReachabilityIndex index = new ReachabilityIndex(graph.getDependsOnMap(), true);
+
+        assertTrue(index.addDependency("//b", "//c"));
+        assertTrue(index.addDependency("//x", "//a"));
+        assertTrue(index.isDependency("//x", "//c"));
+        assertTrue(index.addDependency("//a", "//c"));
+
+        // closing a cycle invalidates the index
+        assertFalse(index.addDependency("//c", "//x"));
+    }
+
+    @Test
+    public void testLargeGraphWithoutClosure() {
+        Random random = new Random(7);
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        for (int i = 0; i < 200; i++) {
+            int dep = random.nextInt(10) == 0 ? random.nextInt(50) : 50 + random.nextInt(50);
+            graph.addDependency("//pkg" + random.nextInt(50), "//pkg" + dep);
+        }
+
+        // too many components for the closure, the lookups search the condensed graph instead
+        ReachabilityIndex closureIndex = new ReachabilityIndex(graph.getDependsOnMap(), true);
+        ReachabilityIndex searchIndex = new ReachabilityIndex(graph.getDependsOnMap(), true, 0);
+        for (int round = 0; round < 2; round++) {
+            for (int from = 0; from < 100; from++) {
+                for (int to = 0; to < 100; to++) {
+                    assertEquals(closureIndex.isDependency("//pkg" + from, "//pkg" + to),
+                        searchIndex.isDependency("//pkg" + from, "//pkg" + to));
+                }
+            }
+            for (int i = 0; i < 20; i++) {
+                String source = "//pkg" + (50 + random.nextInt(60));
+                String dep = "//pkg" + (50 + random.nextInt(60));
+                assertEquals(closureIndex.addDependency(source, dep), searchIndex.addDependency(source, dep));
+            }
+        }
+    }
+
+    @Test
+    public void testParityWithGraphSearch() {
+        Random random = new Random(19);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            labels.add(i % 8 == 7 ? "@maven//:lib" + i : "//pkg" + i);
+        }
+        InMemoryDependencyGraph expected = new InMemoryDependencyGraph();
+        InMemoryDependencyGraph indexed = new InMemoryDependencyGraph();
+        CompactDependencyGraph compact = new CompactDependencyGraph();
+        indexed.enableReachabilityIndex();
+        compact.enableReachabilityIndex();
+
+        // edges mostly point forward, with a few back edges that make cycles; lookups are interleaved with the adds
+        // so the incremental updates are exercised too
+        for (int round = 0; round < 6; round++) {
+            for (int i = 0; i < 60; i++) {
+                int source = random.nextInt(labels.size());
+                int dep = random.nextInt(10) == 0 ? random.nextInt(labels.size())
+                        : Math.min(labels.size() - 1, source + 1 + random.nextInt(20));
+                expected.addDependency(labels.get(source), labels.get(dep));
+                indexed.addDependency(labels.get(source), labels.get(dep));
+                compact.addDependency(labels.get(source), labels.get(dep));
+            }
+            for (int i = 0; i < 500; i++) {
+                String label = labels.get(random.nextInt(labels.size()));
+                String dep = labels.get(random.nextInt(labels.size()));
+                boolean follow = random.nextBoolean();
+                boolean isDep = expected.isDependency(label, dep, null, follow);
+                assertEquals(label + " -> " + dep, isDep, indexed.isDependency(label, dep, null, follow));
+                assertEquals(label + " -> " + dep, isDep, compact.isDependency(label, dep, null, follow));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.salesforce.bazel.sdk.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TopologicalSorterTest {
+
+    @Test
+    public void testTransitiveThroughUnselected() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("//a", "//b");
+        graph.addDependency("//b", "//c");
+        graph.addDependency("//c", "//d");
+        graph.addDependency("//x", "//y");
+
+        // //a depends on //d only through unselected labels
+        TopologicalSorter.Result result =
+                new TopologicalSorter(graph.getDependsOnMap()).sort(Arrays.asList("//x", "//a", "//d"), true);
+        assertEquals(Arrays.asList("//x", "//d", "//a"), result.orderedLabels);
+        assertTrue(result.cycles.isEmpty());
+    }
+
+    @Test
+    public void testSelectionOrderIsKept() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("//a", "//b");
+
+        // unrelated labels keep their relative order, only //a has to move after //b
+        List<String> selection = Arrays.asList("//e", "//a", "//d", "//b", "//c");
+        assertEquals(Arrays.asList("//e", "//d", "//b", "//a", "//c"),
+            new TopologicalSorter(graph.getDependsOnMap()).sort(selection, true).orderedLabels);
+    }
+
+    @Test
+    public void testCycles() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("//app", "//lib1");
+        graph.addDependency("//lib1", "//lib2");
+        graph.addDependency("//lib2", "//lib1");
+        graph.addDependency("//lib2", "//base");
+
+        TopologicalSorter.Result result = new TopologicalSorter(graph.getDependsOnMap())
+                .sort(Arrays.asList("//app", "//lib2", "//lib1", "//base"), true);
+        // the cycle is ordered as a group, in selection order, after its dependencies
+        assertEquals(Arrays.asList("//base", "//lib2", "//lib1", "//app"), result.orderedLabels);
+        assertEquals(Collections.singletonList(Arrays.asList("//lib1", "//lib2")), result.cycles);
+
+        assertEquals(Collections.singletonList(Arrays.asList("//lib1", "//lib2")), graph.findCycles());
+    }
+
+    @Test
+    public void testExternalTransitives() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("//a", "@maven//:foo");
+        graph.addDependency("@maven//:foo", "@maven//:bar");
+
+        List<String> selection = Arrays.asList("@maven//:bar", "//a");
+        assertEquals(Arrays.asList("@maven//:bar", "//a"),
+            new TopologicalSorter(graph.getDependsOnMap()).sort(selection, true).orderedLabels);
+        // without following externals, //a does not reach @maven//:bar, so nothing forces an order
+        selection = Arrays.asList("//a", "@maven//:bar");
+        assertEquals(Arrays.asList("//a", "@maven//:bar"),
+            new TopologicalSorter(graph.getDependsOnMap()).sort(selection, false).orderedLabels);
+    }
+
+    @Test
+    public void testLongChain() {
+        // deep enough to overflow the stack with a recursive search
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        int length = 50000;
+        List<String> selection = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            graph.addDependency("//p" + i, "//p" + (i + 1));
+            selection.add("//p" + i);
+        }
+        List<String> ordered = new TopologicalSorter(graph.getDependsOnMap()).sort(selection, true).orderedLabels;
+        assertEquals(length, ordered.size());
+        assertEquals("//p" + (length - 1), ordered.get(0));
+        assertEquals("//p0", ordered.get(length - 1));
+    }
+}
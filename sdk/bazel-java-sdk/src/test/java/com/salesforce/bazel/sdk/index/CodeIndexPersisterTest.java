@@ -0,0 +1,140 @@
+package com.salesforce.bazel.sdk.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.index.jvm.JvmCodeIndex;
+import com.salesforce.bazel.sdk.index.jvm.JvmCodeIndexerOptions;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentiferResolver;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentifier;
+import com.salesforce.bazel.sdk.index.jvm.jar.JavaJarCrawler;
+import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
+
+public class CodeIndexPersisterTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        File repoRoot = tmpFolder.newFolder("repository");
+        File blueJar = new File(repoRoot, "com/acme/blue/1.0.0/blue-1.0.0.jar");
+        File redJar = new File(repoRoot, "com/acme/red/2.0.0/red-2.0.0.jar");
+        TestIndexSetupHelper.writeJar(blueJar, "com/acme/blue/Blue.class", "com/acme/shared/Shared.class");
+        TestIndexSetupHelper.writeJar(redJar, "com/acme/red/Red.class", "com/acme/shared/Shared.class");
+
+        JvmCodeIndex index = newIndex();
+        new JavaJarCrawler(index, new JarIdentiferResolver()).index(repoRoot);
+        assertEquals(3, index.typeDictionary.size());
+
+        CodeIndexPersister persister = new CodeIndexPersister(tmpFolder.newFolder("index"));
+        persister.write(index);
+        assertTrue(persister.getIndexFile().exists());
+
+        JvmCodeIndex readIndex = newIndex();
+        Set<File> loaded = persister.read(readIndex);
+        assertEquals(2, loaded.size());
+        assertEquals(index.artifactDictionary.keySet(), readIndex.artifactDictionary.keySet());
+        assertEquals(index.fileDictionary.keySet(), readIndex.fileDictionary.keySet());
+        assertEquals(index.typeDictionary.keySet(), readIndex.typeDictionary.keySet());
+        assertEquals(2, readIndex.typeDictionary.get("com.acme.shared.Shared").multipleLocations.size());
+
+        CodeLocationDescriptor blue = readIndex.artifactDictionary.get("blue").singleLocation;
+        assertEquals(blueJar.getPath(), blue.locationOnDisk.getPath());
+        assertEquals("com.acme:blue:1.0.0", blue.id.locationIdentifier);
+        assertEquals("1.0.0", ((JarIdentifier) blue.id).version);
+        assertEquals(2, blue.containedClasses.size());
+
+        // the locations are shared between the dictionaries, as they are when crawled
+        assertSame(blue, readIndex.fileDictionary.get("blue-1.0.0.jar").singleLocation);
+    }
+
+    @Test
+    public void testChangedJarIsNotLoaded() throws Exception {
+        File repoRoot = tmpFolder.newFolder("repository");
+        File blueJar = new File(repoRoot, "com/acme/blue/1.0.0/blue-1.0.0.jar");
+        File redJar = new File(repoRoot, "com/acme/red/2.0.0/red-2.0.0.jar");
+        TestIndexSetupHelper.writeJar(blueJar, "com/acme/blue/Blue.class");
+        TestIndexSetupHelper.writeJar(redJar, "com/acme/red/Red.class");
+
+        JvmCodeIndex index = newIndex();
+        new JavaJarCrawler(index, new JarIdentiferResolver()).index(repoRoot);
+        CodeIndexPersister persister = new CodeIndexPersister(tmpFolder.newFolder("index"));
+        persister.write(index);
+
+        // the red jar is rebuilt with a new class
+        TestIndexSetupHelper.writeJar(redJar, "com/acme/red/Red.class", "com/acme/red/Orange.class");
+        redJar.setLastModified(redJar.lastModified() + 2000L);
+
+        JvmCodeIndex readIndex = newIndex();
+        Set<File> loaded = persister.read(readIndex);
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.contains(blueJar));
+        assertNull(readIndex.artifactDictionary.get("red"));
+        assertNull(readIndex.typeDictionary.get("com.acme.red.Red"));
+
+        // crawling again only scans the changed jar
+        JavaJarCrawler crawler = new JavaJarCrawler(readIndex, new JarIdentiferResolver());
+        crawler.setIndexedJars(loaded);
+        crawler.index(repoRoot);
+        assertEquals(1, crawler.getStatistics().getJarCount());
+        assertEquals(3, readIndex.typeDictionary.size());
+        assertNotNull(readIndex.typeDictionary.get("com.acme.red.Orange"));
+    }
+
+    @Test
+    public void testJarChangedBeforeWriteIsNotLoaded() throws Exception {
+        File repoRoot = tmpFolder.newFolder("repository");
+        File blueJar = new File(repoRoot, "com/acme/blue/1.0.0/blue-1.0.0.jar");
+        TestIndexSetupHelper.writeJar(blueJar, "com/acme/blue/Blue.class");
+        JvmCodeIndex index = newIndex();
+        new JavaJarCrawler(index, new JarIdentiferResolver()).index(repoRoot);
+
+        // the jar is rebuilt after it was scanned, but before the index is written
+        TestIndexSetupHelper.writeJar(blueJar, "com/acme/blue/Blue.class", "com/acme/blue/Navy.class");
+        blueJar.setLastModified(blueJar.lastModified() + 2000L);
+        CodeIndexPersister persister = new CodeIndexPersister(tmpFolder.newFolder("index"));
+        persister.write(index);
+
+        JvmCodeIndex readIndex = newIndex();
+        assertTrue(persister.read(readIndex).isEmpty());
+        assertNull(readIndex.artifactDictionary.get("blue"));
+
+        // reading does not keep the index file open, so it can be replaced right away
+        persister.write(index);
+        assertTrue(persister.getIndexFile().exists());
+    }
+
+    @Test
+    public void testDifferentOptionsAreNotLoaded() throws Exception {
+        File repoRoot = tmpFolder.newFolder("repository");
+        TestIndexSetupHelper.writeJar(new File(repoRoot, "com/acme/blue/1.0.0/blue-1.0.0.jar"),
+            "com/acme/blue/Blue.class");
+        JvmCodeIndex index = newIndex();
+        new JavaJarCrawler(index, new JarIdentiferResolver()).index(repoRoot);
+        CodeIndexPersister persister = new CodeIndexPersister(tmpFolder.newFolder("index"));
+        persister.write(index);
+
+        // an index without the type dictionary can't be used when types are wanted
+        JvmCodeIndex readIndex = new JvmCodeIndex(new JvmCodeIndexerOptions());
+        assertTrue(persister.read(readIndex).isEmpty());
+        assertTrue(readIndex.artifactDictionary.isEmpty());
+    }
+
+    // HELPERS
+
+    private static JvmCodeIndex newIndex() {
+        JvmCodeIndexerOptions options = new JvmCodeIndexerOptions();
+        options.setDoComputeTypeDictionary(true);
+        return new JvmCodeIndex(options);
+    }
+}
@@ -1,6 +1,10 @@
 package com.salesforce.bazel.sdk.index;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
 public class TestIndexSetupHelper {
 
@@ -18,4 +22,17 @@ public class TestIndexSetupHelper {
         return null;
     }
 
+    /**
+     * Writes a jar file with the passed entries. The entry contents are not real classfiles.
+     */
+    public static void writeJar(File jarFile, String... entryNames) throws IOException {
+        jarFile.getParentFile().mkdirs();
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (String entryName : entryNames) {
+                jar.putNextEntry(new ZipEntry(entryName));
+                jar.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+                jar.closeEntry();
+            }
+        }
+    }
 }
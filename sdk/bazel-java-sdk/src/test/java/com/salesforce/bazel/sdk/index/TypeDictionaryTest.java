@@ -0,0 +1,211 @@
+package com.salesforce.bazel.sdk.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TypeDictionaryTest {
+
+    @Test
+    public void testMapOperations() {
+        TypeDictionary dictionary = new TypeDictionary();
+        CodeIndexEntry runner = new CodeIndexEntry();
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner", runner);
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelCommandManager", new CodeIndexEntry());
+        dictionary.put("com.acme.Dog", new CodeIndexEntry());
+        dictionary.put("Dog", new CodeIndexEntry());
+
+        assertEquals(4, dictionary.size());
+        assertEquals(3, dictionary.getPackageCount());
+        assertSame(runner, dictionary.get("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"));
+        assertNull(dictionary.get("com.salesforce.bazel.sdk.BazelWorkspaceCommandRunner"));
+        assertTrue(dictionary.containsKey("Dog"));
+
+        // ordered by package, then simple name
+        assertEquals(Arrays.asList("Dog", "com.acme.Dog", "com.salesforce.bazel.sdk.command.BazelCommandManager",
+            "com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"), new ArrayList<>(dictionary.keySet()));
+
+        assertSame(runner, dictionary.remove("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"));
+        assertEquals(3, dictionary.size());
+        assertTrue(dictionary.findByCamelCase("BWCR", 10).isEmpty());
+        assertTrue(dictionary.findBySimpleName("BazelWorkspaceCommandRunner").isEmpty());
+    }
+
+    @Test
+    public void testLookups() {
+        TypeDictionary dictionary = new TypeDictionary();
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner", new CodeIndexEntry());
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelCommandManager", new CodeIndexEntry());
+        dictionary.put("com.salesforce.bazel.sdk.model.BazelWorkspace", new CodeIndexEntry());
+        dictionary.put("com.acme.BazelWorkspace", new CodeIndexEntry());
+        dictionary.put("java.net.URLClassLoader", new CodeIndexEntry());
+
+        assertEquals(Arrays.asList("com.salesforce.bazel.sdk.command.BazelCommandManager",
+            "com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"),
+            dictionary.findByPrefix("com.salesforce.bazel.sdk.command.Bazel", 10));
+        assertEquals(4, dictionary.findByPrefix("com.", 10).size());
+        assertEquals(3, dictionary.findByPrefix("com.sales", 10).size());
+        assertEquals(2, dictionary.findByPrefix("com.sales", 2).size());
+        assertEquals(5, dictionary.findByPrefix("", 10).size());
+
+        List<String> workspaces = dictionary.findBySimpleName("BazelWorkspace");
+        Collections.sort(workspaces);
+        assertEquals(Arrays.asList("com.acme.BazelWorkspace", "com.salesforce.bazel.sdk.model.BazelWorkspace"),
+            workspaces);
+        assertEquals(3, dictionary.findBySimpleNamePrefix("BazelW", 10).size());
+
+        assertEquals(Arrays.asList("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"),
+            dictionary.findByCamelCase("BWCR", 10));
+        assertEquals(Arrays.asList("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"),
+            dictionary.findByCamelCase("BazWoCoRu", 10));
+        assertEquals(3, dictionary.findByCamelCase("BW", 10).size());
+        assertEquals(Arrays.asList("java.net.URLClassLoader"), dictionary.findByCamelCase("URLCL", 10));
+        assertTrue(dictionary.findByCamelCase("BWX", 10).isEmpty());
+    }
+
+    @Test
+    public void testFrozenLookups() {
+        TypeDictionary dictionary = new TypeDictionary();
+        CodeIndexEntry runner = new CodeIndexEntry();
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner", runner);
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelCommandManager", new CodeIndexEntry());
+        dictionary.put("com.salesforce.bazel.sdk.model.BazelWorkspace", new CodeIndexEntry());
+        dictionary.put("java.net.URLClassLoader", new CodeIndexEntry());
+        dictionary.freeze();
+
+        // types added after the freeze are looked up along with the frozen ones
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelAnalyzer", new CodeIndexEntry());
+        dictionary.put("com.acme.BazelWorkspace", new CodeIndexEntry());
+        assertEquals(6, dictionary.size());
+        assertEquals(4, dictionary.getPackageCount());
+        assertSame(runner, dictionary.get("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"));
+        assertEquals(Arrays.asList("com.acme.BazelWorkspace", "com.salesforce.bazel.sdk.command.BazelAnalyzer",
+            "com.salesforce.bazel.sdk.command.BazelCommandManager",
+            "com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner",
+            "com.salesforce.bazel.sdk.model.BazelWorkspace", "java.net.URLClassLoader"),
+            new ArrayList<>(dictionary.keySet()));
+        assertEquals(Arrays.asList("com.salesforce.bazel.sdk.command.BazelAnalyzer",
+            "com.salesforce.bazel.sdk.command.BazelCommandManager",
+            "com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"),
+            dictionary.findByPrefix("com.salesforce.bazel.sdk.command.Bazel", 10));
+        assertEquals(4, dictionary.findByPrefix("com.sales", 10).size());
+        assertEquals(2, dictionary.findBySimpleName("BazelWorkspace").size());
+        assertEquals(Arrays.asList("com.salesforce.bazel.sdk.command.BazelAnalyzer",
+            "com.salesforce.bazel.sdk.command.BazelCommandManager"), dictionary.findBySimpleNamePrefix("Bazel", 2));
+        assertEquals(3, dictionary.findByCamelCase("BW", 10).size());
+        assertEquals(Arrays.asList("BazelAnalyzer", "BazelCommandManager", "BazelWorkspace",
+            "BazelWorkspaceCommandRunner", "URLClassLoader"), dictionary.getSimpleNames());
+
+        // a frozen type can be removed and put back
+        assertSame(runner, dictionary.remove("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"));
+        assertNull(dictionary.get("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"));
+        assertTrue(dictionary.findByCamelCase("BWCR", 10).isEmpty());
+        assertEquals(5, dictionary.size());
+        dictionary.put("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner", runner);
+        assertEquals(Arrays.asList("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner"),
+            dictionary.findByCamelCase("BWCR", 10));
+
+        dictionary.remove("java.net.URLClassLoader");
+        dictionary.freeze();
+        assertEquals(5, dictionary.size());
+        assertEquals(3, dictionary.getPackageCount());
+        assertEquals(5, dictionary.keySet().size());
+        assertTrue(dictionary.findByCamelCase("URLCL", 10).isEmpty());
+    }
+
+    @Test
+    public void testCompute() {
+        TypeDictionary dictionary = new TypeDictionary();
+        CodeIndexEntry frozen = new CodeIndexEntry();
+        dictionary.put("com.acme.Frozen", frozen);
+        dictionary.freeze();
+
+        for (String typeName : Arrays.asList("com.acme.Frozen", "com.acme.Added")) {
+            CodeIndexEntry replacement = new CodeIndexEntry();
+            assertSame(replacement, dictionary.compute(typeName, (k, entry) -> replacement));
+            assertSame(replacement, dictionary.get(typeName));
+            assertSame(replacement, dictionary.computeIfPresent(typeName, (k, entry) -> entry));
+
+            // returning null removes the type
+            assertNull(dictionary.computeIfPresent(typeName, (k, entry) -> null));
+            assertNull(dictionary.get(typeName));
+            assertNull(dictionary.computeIfPresent(typeName, (k, entry) -> replacement));
+            assertNull(dictionary.get(typeName));
+        }
+        assertTrue(dictionary.isEmpty());
+        assertTrue(dictionary.findBySimpleName("Added").isEmpty());
+    }
+
+    @Test
+    public void testMatchesCamelCase() {
+        assertEquals("BWCR", TypeDictionary.camelCaseInitials("BazelWorkspaceCommandRunner"));
+        assertEquals("URLCL", TypeDictionary.camelCaseInitials("URLClassLoader"));
+        assertTrue(TypeDictionary.matchesCamelCase("BWCR", "BazelWorkspaceCommandRunner"));
+        assertTrue(TypeDictionary.matchesCamelCase("BazelWC", "BazelWorkspaceCommandRunner"));
+        assertTrue(TypeDictionary.matchesCamelCase("BW", "BazelWorkspaceCommandRunner"));
+        assertFalse(TypeDictionary.matchesCamelCase("BWCRX", "BazelWorkspaceCommandRunner"));
+        assertFalse(TypeDictionary.matchesCamelCase("BazeliWCR", "BazelWorkspaceCommandRunner"));
+        assertFalse(TypeDictionary.matchesCamelCase("WCR", "BazelWorkspaceCommandRunner"));
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        TypeDictionary dictionary = new TypeDictionary();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    dictionary.computeIfAbsent("com.acme.p" + (i % 10) + ".Type" + i, k -> new CodeIndexEntry());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, dictionary.size());
+        assertEquals(10, dictionary.getPackageCount());
+        assertEquals(1000, dictionary.keySet().size());
+        assertEquals(1, dictionary.findBySimpleName("Type42").size());
+    }
+
+    @Test
+    public void testConcurrentAddsWhileFreezing() throws Exception {
+        TypeDictionary dictionary = new TypeDictionary();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                // enough types for the dictionary to freeze several times while the threads add
+                for (int i = 0; i < 20000; i++) {
+                    dictionary.computeIfAbsent("com.acme.p" + (i % 100) + ".Type" + i, k -> new CodeIndexEntry());
+                    if ((i % 1000) == thread) {
+                        dictionary.remove("com.acme.p" + (i % 100) + ".Type" + i);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        dictionary.freeze();
+        int found = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (dictionary.get("com.acme.p" + (i % 100) + ".Type" + i) != null) {
+                found++;
+            }
+        }
+        assertEquals(dictionary.size(), found);
+        assertEquals(found, dictionary.keySet().size());
+        assertEquals(100, dictionary.getPackageCount());
+    }
+}
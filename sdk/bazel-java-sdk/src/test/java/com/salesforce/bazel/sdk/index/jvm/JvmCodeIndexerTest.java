@@ -0,0 +1,115 @@
+package com.salesforce.bazel.sdk.index.jvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfoFactory;
+import com.salesforce.bazel.sdk.index.TestIndexSetupHelper;
+import com.salesforce.bazel.sdk.model.BazelWorkspace;
+import com.salesforce.bazel.sdk.model.test.MockBazelWorkspaceMetadataStrategy;
+import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
+import com.salesforce.bazel.sdk.workspace.OperatingEnvironmentDetectionStrategy;
+import com.salesforce.bazel.sdk.workspace.RealOperatingEnvironmentDetectionStrategy;
+import com.salesforce.bazel.sdk.workspace.test.TestAspectFileCreator;
+
+public class JvmCodeIndexerTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testUpdateInternalLocations() throws Exception {
+        File workspaceDir = tmpFolder.newFolder("ws");
+        File outputBase = tmpFolder.newFolder("obase");
+        OperatingEnvironmentDetectionStrategy os = new RealOperatingEnvironmentDetectionStrategy();
+        BazelWorkspace bazelWorkspace = new BazelWorkspace("test", workspaceDir, os,
+                new MockBazelWorkspaceMetadataStrategy("test", workspaceDir, outputBase, os));
+        File execRoot = bazelWorkspace.getBazelExecRootDirectory();
+
+        AspectTargetInfo apple = createTargetInfo(outputBase, "projects/libs/apple", "apple-api");
+        AspectTargetInfo banana = createTargetInfo(outputBase, "projects/libs/banana", "banana-api");
+        File appleJar = new File(execRoot, "bazel-out/darwin-fastbuild/bin/projects/libs/apple/libapple-api.jar");
+        File bananaJar = new File(execRoot, "bazel-out/darwin-fastbuild/bin/projects/libs/banana/libbanana-api.jar");
+        TestIndexSetupHelper.writeJar(appleJar, "com/acme/apple/Apple.class");
+        TestIndexSetupHelper.writeJar(bananaJar, "com/acme/banana/Banana.class");
+
+        JvmCodeIndex index = newIndex();
+        JvmCodeIndexer indexer = new JvmCodeIndexer();
+        List<AspectTargetInfo> targetInfos = Arrays.asList(apple, banana);
+
+        assertEquals(2,
+            indexer.updateInternalLocations(bazelWorkspace, index, targetInfos, WorkProgressMonitor.NOOP).size());
+        assertNotNull(index.typeDictionary.get("com.acme.apple.Apple"));
+        assertNotNull(index.typeDictionary.get("com.acme.banana.Banana"));
+        assertEquals("//projects/libs/apple:apple-api",
+            index.typeDictionary.get("com.acme.apple.Apple").singleLocation.bazelLabel);
+        assertNotNull(index.artifactDictionary.get("libapple-api"));
+
+        // nothing was built, nothing to do
+        assertTrue(
+            indexer.updateInternalLocations(bazelWorkspace, index, targetInfos, WorkProgressMonitor.NOOP).isEmpty());
+
+        // rebuild apple with a renamed class, only apple is indexed again
+        TestIndexSetupHelper.writeJar(appleJar, "com/acme/apple/GreenApple.class", "com/acme/apple/RedApple.class");
+        appleJar.setLastModified(appleJar.lastModified() + 2000);
+        assertEquals(Collections.singleton("//projects/libs/apple:apple-api"),
+            indexer.updateInternalLocations(bazelWorkspace, index, targetInfos, WorkProgressMonitor.NOOP));
+        assertNull(index.typeDictionary.get("com.acme.apple.Apple"));
+        assertNotNull(index.typeDictionary.get("com.acme.apple.GreenApple"));
+        assertNotNull(index.typeDictionary.get("com.acme.apple.RedApple"));
+        assertNotNull(index.typeDictionary.get("com.acme.banana.Banana"));
+        assertNull(index.fileDictionary.get("libapple-api.jar").multipleLocations);
+    }
+
+    @Test
+    public void testUnbuiltTargetIsIndexedLater() throws Exception {
+        File workspaceDir = tmpFolder.newFolder("ws");
+        File outputBase = tmpFolder.newFolder("obase");
+        OperatingEnvironmentDetectionStrategy os = new RealOperatingEnvironmentDetectionStrategy();
+        BazelWorkspace bazelWorkspace = new BazelWorkspace("test", workspaceDir, os,
+                new MockBazelWorkspaceMetadataStrategy("test", workspaceDir, outputBase, os));
+        File execRoot = bazelWorkspace.getBazelExecRootDirectory();
+
+        List<AspectTargetInfo> targetInfos =
+                Collections.singletonList(createTargetInfo(outputBase, "projects/libs/apple", "apple-api"));
+        JvmCodeIndex index = newIndex();
+        JvmCodeIndexer indexer = new JvmCodeIndexer();
+
+        // the jar does not exist yet
+        indexer.updateInternalLocations(bazelWorkspace, index, targetInfos, WorkProgressMonitor.NOOP);
+        assertTrue(index.typeDictionary.isEmpty());
+
+        TestIndexSetupHelper.writeJar(
+            new File(execRoot, "bazel-out/darwin-fastbuild/bin/projects/libs/apple/libapple-api.jar"),
+            "com/acme/apple/Apple.class");
+        assertEquals(1,
+            indexer.updateInternalLocations(bazelWorkspace, index, targetInfos, WorkProgressMonitor.NOOP).size());
+        assertNotNull(index.typeDictionary.get("com.acme.apple.Apple"));
+    }
+
+    // HELPERS
+
+    private static JvmCodeIndex newIndex() {
+        JvmCodeIndexerOptions options = new JvmCodeIndexerOptions();
+        options.setDoComputeTypeDictionary(true);
+        return new JvmCodeIndex(options);
+    }
+
+    private static AspectTargetInfo createTargetInfo(File outputBase, String packagePath, String targetName) {
+        String aspectFilePath = TestAspectFileCreator.createJavaLibraryAspectFile(outputBase, packagePath,
+            packagePath.substring(packagePath.lastIndexOf('/') + 1), targetName, Collections.emptyList(),
+            Collections.emptyList(), true, false);
+        return AspectTargetInfoFactory.loadAspectFile(new File(aspectFilePath));
+    }
+}
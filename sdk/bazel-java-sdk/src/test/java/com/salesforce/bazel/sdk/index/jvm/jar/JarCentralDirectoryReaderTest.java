@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.index.jvm.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarCentralDirectoryReaderTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesZipFile() throws Exception {
+        File jarFile = tmpFolder.newFile("test.jar");
+        writeJar(jarFile, null, "META-INF/", "META-INF/MANIFEST.MF", "com/", "com/acme/", "com/acme/Foo.class",
+            "com/acme/Foo$Inner.class", "com/acme/package-info.class", "com/acme/foo.properties", "Bar.class",
+            "com/acme/\u00e9t\u00e9/Caf\u00e9.class", "module-info.class");
+
+        List<String> expected = readWithZipFile(jarFile);
+        assertEquals(4, expected.size());
+        assertTrue(expected.get(2).startsWith("com.acme.\u00e9t\u00e9.Caf\u00e9@"));
+        assertEquals(expected, readWithReader(jarFile));
+
+        try (JarCentralDirectoryReader reader = JarCentralDirectoryReader.open(jarFile)) {
+            assertEquals(11, reader.getEntryCount());
+        }
+    }
+
+    @Test
+    public void testArchiveComment() throws Exception {
+        File jarFile = tmpFolder.newFile("commented.jar");
+        writeJar(jarFile, "built by a tool that likes comments", "com/acme/Foo.class");
+        assertEquals(readWithZipFile(jarFile), readWithReader(jarFile));
+        assertEquals(1, readWithReader(jarFile).size());
+    }
+
+    @Test
+    public void testLargeCentralDirectory() throws Exception {
+        // a central directory of more than 64k
+        File jarFile = tmpFolder.newFile("large.jar");
+        String[] entryNames = new String[2000];
+        for (int i = 0; i < entryNames.length; i++) {
+            entryNames[i] = "com/acme/some/deeply/nested/package/name/Type" + i + ".class";
+        }
+        writeJar(jarFile, null, entryNames);
+        assertTrue(jarFile.length() > 64 * 1024);
+
+        List<String> classnames = readWithReader(jarFile);
+        assertEquals(2000, classnames.size());
+        assertEquals(readWithZipFile(jarFile), classnames);
+    }
+
+    @Test
+    public void testNotAZipFile() throws Exception {
+        File notAJar = tmpFolder.newFile("not.jar");
+        Files.write(notAJar.toPath(), "this is not a zip file, even though the name says so".getBytes());
+        try {
+            JarCentralDirectoryReader.open(notAJar);
+            fail("expected a ZipException");
+        } catch (ZipException expected) {}
+
+        File emptyJar = tmpFolder.newFile("empty.jar");
+        try {
+            JarCentralDirectoryReader.open(emptyJar);
+            fail("expected a ZipException");
+        } catch (ZipException expected) {}
+    }
+
+    @Test
+    public void testEmptyZipFile() throws Exception {
+        File jarFile = tmpFolder.newFile("nothing.jar");
+        writeJar(jarFile, null);
+        try (JarCentralDirectoryReader reader = JarCentralDirectoryReader.open(jarFile)) {
+            assertEquals(0, reader.getEntryCount());
+            assertFalse(reader.nextClass());
+        }
+    }
+
+    // HELPERS
+
+    private static void writeJar(File jarFile, String comment, String... entryNames) throws Exception {
+        long time = 1600000000000L;
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jarFile))) {
+            if (comment != null) {
+                zip.setComment(comment);
+            }
+            for (String entryName : entryNames) {
+                ZipEntry entry = new ZipEntry(entryName);
+                // spread the times out, and use even seconds so the MS-DOS time is exact
+                time += 86400000L + 2000L;
+                entry.setTime(time);
+                zip.putNextEntry(entry);
+                if (!entryName.endsWith("/")) {
+                    zip.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+                }
+                zip.closeEntry();
+            }
+        }
+    }
+
+    // classname@time for each class, using ZipFile and the crawler's string based rules
+    private static List<String> readWithZipFile(File jarFile) throws Exception {
+        List<String> classnames = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (JavaJarCrawler.hasClassfileName(entry.getName())) {
+                    String classname = JavaJarCrawler.convertClassfileNameToClassname(entry.getName());
+                    classnames.add(classname + "@" + entry.getTime());
+                }
+            }
+        }
+        return classnames;
+    }
+
+    private static List<String> readWithReader(File jarFile) throws Exception {
+        List<String> classnames = new ArrayList<>();
+        try (JarCentralDirectoryReader reader = JarCentralDirectoryReader.open(jarFile)) {
+            while (reader.nextClass()) {
+                classnames.add(reader.getClassname() + "@" + reader.getTime());
+            }
+        }
+        return classnames;
+    }
+}
@@ -25,12 +25,54 @@ package com.salesforce.bazel.sdk.index.jvm.jar;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.index.TestIndexSetupHelper;
+import com.salesforce.bazel.sdk.index.jvm.JvmCodeIndex;
+import com.salesforce.bazel.sdk.index.jvm.JvmCodeIndexerOptions;
 
 public class JavaJarCrawlerTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testParallelCrawl() throws Exception {
+        File repoRoot = tmpFolder.newFolder("repository");
+        int numArtifacts = 20;
+        for (int i = 0; i < numArtifacts; i++) {
+            File versionDir = new File(repoRoot, "com/acme/lib" + i + "/1.0." + i);
+            TestIndexSetupHelper.writeJar(new File(versionDir, "lib" + i + "-1.0." + i + ".jar"),
+                "com/acme/lib" + i + "/Foo.class", "com/acme/lib" + i + "/Foo$Inner.class",
+                "com/acme/lib" + i + "/Bar.class");
+        }
+        // jars in the bazel test sandbox are not indexed
+        File runfilesDir = new File(repoRoot, "com/acme/foo_test.runfiles/1.0.0");
+        TestIndexSetupHelper.writeJar(new File(runfilesDir, "skipped-1.0.0.jar"), "com/acme/skipped/Foo.class");
+
+        JvmCodeIndexerOptions options = new JvmCodeIndexerOptions();
+        options.setDoComputeTypeDictionary(true);
+        JvmCodeIndex index = new JvmCodeIndex(options);
+        JavaJarCrawler crawler = new JavaJarCrawler(index, new JarIdentiferResolver());
+        crawler.index(repoRoot);
+
+        assertEquals(numArtifacts, index.artifactDictionary.size());
+        assertEquals(numArtifacts, index.fileDictionary.size());
+        assertEquals(numArtifacts * 2, index.typeDictionary.size());
+        assertNotNull(index.typeDictionary.get("com.acme.lib7.Bar"));
+        assertNull(index.typeDictionary.get("com.acme.lib7.Foo$Inner"));
+        assertNull(index.artifactDictionary.get("skipped"));
+
+        assertEquals(numArtifacts, crawler.getStatistics().getJarCount());
+        assertEquals(numArtifacts * 3, crawler.getStatistics().getEntryCount());
+    }
 
     @Test
     public void testSkipDirectory() {
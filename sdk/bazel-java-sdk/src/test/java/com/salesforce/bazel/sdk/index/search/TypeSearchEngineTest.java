@@ -0,0 +1,170 @@
+package com.salesforce.bazel.sdk.index.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.index.CodeIndex;
+import com.salesforce.bazel.sdk.index.jvm.jar.JarIdentifier;
+import com.salesforce.bazel.sdk.index.model.CodeLocationDescriptor;
+import com.salesforce.bazel.sdk.index.search.TypeSearchResult.MatchKind;
+
+public class TypeSearchEngineTest {
+
+    @Test
+    public void testMatchKinds() {
+        TypeSearchEngine engine = new TypeSearchEngine(buildIndex());
+
+        List<TypeSearchResult> results = engine.search("BazelWorkspace", 10);
+        assertEquals("com.salesforce.bazel.sdk.model.BazelWorkspace", results.get(0).typeName);
+        assertEquals(MatchKind.EXACT, results.get(0).matchKind);
+        assertEquals(MatchKind.PREFIX, results.get(results.size() - 1).matchKind);
+        assertEquals("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner",
+            results.get(results.size() - 1).typeName);
+
+        results = engine.search("BWCR", 10);
+        assertEquals(1, results.size());
+        assertEquals("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner", results.get(0).typeName);
+        assertEquals(MatchKind.CAMEL_CASE, results.get(0).matchKind);
+
+        results = engine.search("BazelWrokspace", 10);
+        assertEquals("com.salesforce.bazel.sdk.model.BazelWorkspace", results.get(0).typeName);
+        assertEquals(MatchKind.FUZZY, results.get(0).matchKind);
+
+        results = engine.search("com.salesforce.bazel.sdk.command.", 10);
+        assertEquals(2, results.size());
+
+        results = engine.search("bazelCommand", 10);
+        assertEquals("com.salesforce.bazel.sdk.command.BazelCommandManager", results.get(0).typeName);
+
+        assertTrue(engine.search("Zebra", 10).isEmpty());
+        assertTrue(engine.search(" ", 10).isEmpty());
+    }
+
+    @Test
+    public void testProximityRanking() {
+        CodeIndex index = buildIndex();
+        TypeSearchEngine engine = new TypeSearchEngine(index);
+
+        // two exact matches, without context the shorter name wins
+        List<TypeSearchResult> results = engine.search("Logger", 10);
+        assertEquals(2, results.size());
+        assertEquals("org.slf4j.Logger", results.get(0).typeName);
+
+        // a nearby artifact beats the tie breaker
+        results = engine.search("Logger", 10,
+            new TypeSearchContext(null, Collections.singleton("log4j-api")));
+        assertEquals("org.apache.logging.log4j.Logger", results.get(0).typeName);
+
+        // so does a shared package
+        results = engine.search("Logger", 10, new TypeSearchContext("org.apache.logging.log4j.core", null));
+        assertEquals("org.apache.logging.log4j.Logger", results.get(0).typeName);
+    }
+
+    @Test
+    public void testTopResults() {
+        CodeIndex index = new CodeIndex();
+        for (int i = 0; i < 100; i++) {
+            index.addTypeLocation("com.acme.Widget" + i, location("widgets"));
+        }
+        TypeSearchEngine engine = new TypeSearchEngine(index);
+
+        List<TypeSearchResult> results = engine.search("Widget", 5);
+        assertEquals(5, results.size());
+        // ties are broken by length, then name
+        assertEquals("com.acme.Widget0", results.get(0).typeName);
+        assertEquals("com.acme.Widget4", results.get(4).typeName);
+
+        // the deletion index picks up types added after the first fuzzy search
+        assertTrue(engine.search("Gadgett", 5).isEmpty());
+        CodeLocationDescriptor gadgetLocation = location("widgets");
+        index.addTypeLocation("com.acme.Gadget", gadgetLocation);
+        assertEquals("com.acme.Gadget", engine.search("Gadgett", 5).get(0).typeName);
+
+        // and a remove followed by an add, which leaves the number of types unchanged
+        index.removeTypeLocation("com.acme.Gadget", gadgetLocation);
+        index.addTypeLocation("com.acme.Gizmo", location("widgets"));
+        assertTrue(engine.search("Gadgett", 5).isEmpty());
+        assertEquals("com.acme.Gizmo", engine.search("Gizmoo", 5).get(0).typeName);
+    }
+
+    @Test
+    public void testShortTransposition() {
+        CodeIndex index = new CodeIndex();
+        index.addTypeLocation("java.util.List", location("jdk"));
+        index.addTypeLocation("java.util.Lock", location("jdk"));
+        TypeSearchEngine engine = new TypeSearchEngine(index);
+
+        // a transposition in a short name leaves little in common with the name
+        List<TypeSearchResult> results = engine.search("Lsit", 5);
+        assertEquals(1, results.size());
+        assertEquals("java.util.List", results.get(0).typeName);
+        assertEquals(1, DeletionIndex.boundedEditDistance("lsit", "list", 1));
+    }
+
+    @Test
+    public void testFuzzyCandidatesStayBounded() {
+        // many names that share their leading and trailing words, like the types of a large classpath
+        String[] words = { "Abstract", "Bazel", "Build", "Command", "Default", "Event", "File", "Graph", "Index", "Jar",
+                "Label", "List", "Lock", "Map", "Node", "Package", "Rule", "Target", "Type", "Workspace" };
+        List<String> names = new ArrayList<>();
+        for (String first : words) {
+            names.add(first);
+            for (String second : words) {
+                for (String third : words) {
+                    names.add(first + second + third);
+                }
+            }
+        }
+        DeletionIndex index = new DeletionIndex(names);
+
+        String[] queries = { "Lsit", "Lokc", "Grpah", "AbstractBazelComand", "DefaultEvnetFile", "JarLableMap",
+                "WorkspaceRuleTraget", "BuildGraphNdoe" };
+        for (String query : queries) {
+            String lowerCaseQuery = query.toLowerCase();
+            int maxDistance = query.length() <= 5 ? 1 : 2;
+            int[] candidates = index.findCandidates(lowerCaseQuery, maxDistance);
+            assertTrue(query + " compared with " + candidates.length + " names", candidates.length <= 50);
+
+            // the pruning does not lose a match
+            Set<String> expected = new HashSet<>();
+            for (String name : names) {
+                if (DeletionIndex.boundedEditDistance(lowerCaseQuery, name.toLowerCase(), maxDistance) <= maxDistance) {
+                    expected.add(name);
+                }
+            }
+            Set<String> found = new HashSet<>();
+            for (Map.Entry<String, Integer> similar : index.findSimilar(query, maxDistance, Integer.MAX_VALUE)) {
+                found.add(similar.getKey());
+            }
+            assertEquals(query, expected, found);
+            assertTrue(query, !found.isEmpty());
+        }
+    }
+
+    // HELPERS
+
+    private static CodeIndex buildIndex() {
+        CodeIndex index = new CodeIndex();
+        CodeLocationDescriptor sdk = location("bazel-java-sdk");
+        index.addTypeLocation("com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner", sdk);
+        index.addTypeLocation("com.salesforce.bazel.sdk.command.BazelCommandManager", sdk);
+        index.addTypeLocation("com.salesforce.bazel.sdk.model.BazelWorkspace", sdk);
+        index.addTypeLocation("org.slf4j.Logger", location("slf4j-api"));
+        index.addTypeLocation("org.apache.logging.log4j.Logger", location("log4j-api"));
+        return index;
+    }
+
+    private static CodeLocationDescriptor location(String artifact) {
+        return new CodeLocationDescriptor(new File(artifact + ".jar"), new JarIdentifier("com.acme", artifact, "1.0"));
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2021, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.lang.jvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavaSourcePackageCacheTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void testCachedUntilChanged() throws Exception {
+        JavaSourcePackageCache cache = new JavaSourcePackageCache();
+        File javaFile = tmpDir.newFile("Foo.java");
+        Files.write(javaFile.toPath(), "package com.salesforce.foo;\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("com.salesforce.foo", cache.getPackage(javaFile));
+        assertEquals("com.salesforce.foo", cache.getPackage(javaFile));
+        assertEquals(1, cache.size());
+
+        // a changed file is read again
+        Files.write(javaFile.toPath(), "package com.salesforce.foobar;\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("com.salesforce.foobar", cache.getPackage(javaFile));
+
+        File defaultPackageFile = tmpDir.newFile("Bar.java");
+        Files.write(defaultPackageFile.toPath(), "public class Bar {}\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.getPackage(defaultPackageFile));
+        assertEquals(2, cache.size());
+    }
+}
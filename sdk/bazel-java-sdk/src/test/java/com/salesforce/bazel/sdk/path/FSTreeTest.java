@@ -1,6 +1,8 @@
 package com.salesforce.bazel.sdk.path;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 
@@ -25,6 +27,23 @@ public class FSTreeTest {
         assertEquals(2, a1.getChildrenCount());
     }
 
+    @Test
+    public void markedPaths() {
+        FSTree rootNode = new FSTree();
+        FSTree.markPath(rootNode, "source:dev", ":");
+        FSTree.markPath(rootNode, "a:b:src:main:java", ":");
+
+        assertTrue(FSTree.isUnderMarkedPath(rootNode, "source:dev:Foo.java", ":"));
+        assertTrue(FSTree.isUnderMarkedPath(rootNode, "source:dev:com:salesforce:Foo.java", ":"));
+        assertTrue(FSTree.isUnderMarkedPath(rootNode, "a:b:src:main:java:com:Foo.java", ":"));
+        // source/dev2 is a distinct directory
+        assertFalse(FSTree.isUnderMarkedPath(rootNode, "source:dev2:Foo.java", ":"));
+        // the path itself is not under the marked path
+        assertFalse(FSTree.isUnderMarkedPath(rootNode, "source:dev", ":"));
+        assertFalse(FSTree.isUnderMarkedPath(rootNode, "a:b:src:Foo.java", ":"));
+        assertFalse(FSTree.isUnderMarkedPath(rootNode, "Foo.java", ":"));
+    }
+
     @Test
     public void happyTrees2() {
         FSTree rootNode = new FSTree();
@@ -1,12 +1,17 @@
 package com.salesforce.bazel.sdk.project;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -17,6 +22,7 @@ import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.graph.InMemoryPackageLocation;
 import com.salesforce.bazel.sdk.init.JvmRuleInit;
 import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
 import com.salesforce.bazel.sdk.model.BazelWorkspace;
 import com.salesforce.bazel.sdk.path.FSPathHelper;
 import com.salesforce.bazel.sdk.path.FSTree;
@@ -122,6 +128,32 @@ public class BazelQueryProjectStructureStrategyTest {
         assertContains(structure.testResourceDirFSPaths, "projects/libs/apple/source/test/resources");
     }
 
+    @Test
+    public void testBatchAnalysis() {
+        TestBazelQueryProjectStructureStrategy strategy = new TestBazelQueryProjectStructureStrategy();
+        addSourcePathForTest(strategy, "source/main/java");
+        addSourcePathForTest(strategy, "source/test/java");
+
+        InMemoryPackageLocation apple = new InMemoryPackageLocation(FSPathHelper.osSeps("projects/libs/apple"));
+        InMemoryPackageLocation banana = new InMemoryPackageLocation(FSPathHelper.osSeps("projects/libs/banana"));
+        InMemoryPackageLocation empty = new InMemoryPackageLocation(FSPathHelper.osSeps("projects/libs/empty"));
+        strategy.batchQueryResults.put(new BazelLabel("//projects/libs/apple:*"),
+            Arrays.asList(FSPathHelper.osSeps("source/main/java/com/salesforce/apple/api/Apple.java")));
+        strategy.batchQueryResults.put(new BazelLabel("//projects/libs/banana:*"),
+            Arrays.asList(FSPathHelper.osSeps("source/test/java/com/salesforce/banana/api/BananaTest.java")));
+
+        Map<BazelPackageLocation, ProjectStructure> structures =
+                strategy.doStructureAnalysis(bazelWorkspace, Arrays.asList(apple, banana, empty), nullCommandRunner);
+
+        // a single query for all the packages
+        assertEquals(1, strategy.batchQueryCount);
+        assertEquals(2, structures.size());
+        assertContains(structures.get(apple).mainSourceDirFSPaths, "projects/libs/apple/source/main/java");
+        assertTrue(structures.get(apple).testSourceDirFSPaths.isEmpty());
+        assertContains(structures.get(banana).testSourceDirFSPaths, "projects/libs/banana/source/test/java");
+        assertNull(structures.get(empty));
+    }
+
     // INTERNALS
 
     private void addSourcePathForTest(TestBazelQueryProjectStructureStrategy strategy, String unixPath) {
@@ -152,6 +184,8 @@ public class BazelQueryProjectStructureStrategyTest {
         // to make this a unit test, we need to mock out the computations that would ordinarily involve collaborators
         // such as Bazel Query and filesystem scanning
         public Collection<String> queryResults = new ArrayList<>();
+        public Map<BazelLabel, Collection<String>> batchQueryResults = new HashMap<>();
+        public int batchQueryCount = 0;
         public List<String> sourcePathsForThisTest = new ArrayList<>();
         public List<String> mainResourcePathsForThisTest = new ArrayList<>();
         public List<String> testResourcePathsForThisTest = new ArrayList<>();
@@ -167,6 +201,17 @@ public class BazelQueryProjectStructureStrategyTest {
             return queryResults;
         }
 
+        @Override
+        protected Map<BazelLabel, Collection<String>> runBazelQueryForSourceFiles(File workspaceRootDir,
+                Collection<BazelLabel> packageLabels, BazelWorkspaceCommandRunner commandRunner) {
+            batchQueryCount++;
+            Map<BazelLabel, Collection<String>> results = new HashMap<>();
+            for (BazelLabel packageLabel : packageLabels) {
+                results.put(packageLabel, batchQueryResults.getOrDefault(packageLabel, new ArrayList<>()));
+            }
+            return results;
+        }
+
         @Override
         protected boolean doIgnoreFile(File packageDir, String srcPath) {
             // in the real class, this method does a File.exists() check, since we don't create files for these